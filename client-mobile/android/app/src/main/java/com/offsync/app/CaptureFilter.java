@@ -0,0 +1,92 @@
+package com.offsync.app;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.work.RemotePolicyStore;
+import java.time.Instant;
+
+/**
+ * The process-wide {@link LocationFilter} in front of {@code saveLocation}, configured per
+ * device from {@code app_prefs}; the accuracy limit falls back to the remote policy when it has
+ * not been set locally. Rejections are counted in {@link SyncMetrics}.
+ */
+public final class CaptureFilter {
+    private static final String PREF_ENABLED = "filter_enabled";
+    private static final String PREF_SMOOTHING = "filter_smoothing";
+    private static final String PREF_MAX_ACCURACY = "filter_max_accuracy_m";
+    private static final String PREF_MAX_SPEED = "filter_max_speed_mps";
+
+    private static LocationFilter filter;
+    private static final LocationFilter.Fix fix = new LocationFilter.Fix();
+
+    private CaptureFilter() {
+    }
+
+    /** Judge {@code point}; on acceptance its coordinates may be replaced by the smoothed estimate. */
+    public static synchronized LocationFilter.Verdict apply(Context context, LocationPointEntity point) {
+        LocationFilter f = filter(context);
+        long timeMs;
+        try {
+            timeMs = Instant.parse(point.capturedAt).toEpochMilli();
+        } catch (Exception e) {
+            // Without a usable timestamp there is no motion model; store the fix as reported
+            return LocationFilter.Verdict.ACCEPTED;
+        }
+        LocationFilter.Verdict verdict = f.apply(fix.set(timeMs, point.lat, point.lng, point.accuracyM, point.provider));
+        switch (verdict) {
+            case REJECTED_ACCURACY:
+                SyncMetrics.FIXES_REJECTED_ACCURACY.inc();
+                break;
+            case REJECTED_SPEED:
+                SyncMetrics.FIXES_REJECTED_SPEED.inc();
+                break;
+            case REJECTED_OUTLIER:
+                SyncMetrics.FIXES_REJECTED_OUTLIER.inc();
+                break;
+            default:
+                point.lat = fix.lat;
+                point.lng = fix.lng;
+        }
+        return verdict;
+    }
+
+    public static synchronized LocationFilter.Config config(Context context) {
+        return filter(context).config();
+    }
+
+    /** Persist new settings and restart the filter with them. */
+    public static synchronized void configure(Context context, boolean enabled, boolean smoothing,
+                                              double maxAccuracyM, double maxSpeedMps) {
+        prefs(context).edit()
+                .putBoolean(PREF_ENABLED, enabled)
+                .putBoolean(PREF_SMOOTHING, smoothing)
+                .putFloat(PREF_MAX_ACCURACY, (float) maxAccuracyM)
+                .putFloat(PREF_MAX_SPEED, (float) maxSpeedMps)
+                .apply();
+        filter = null;
+    }
+
+    /** Rebuild the filter on next use, e.g. after the remote policy changed. */
+    public static synchronized void reload() {
+        filter = null;
+    }
+
+    private static LocationFilter filter(Context context) {
+        if (filter == null) {
+            SharedPreferences prefs = prefs(context);
+            LocationFilter.Config config = new LocationFilter.Config();
+            config.enabled = prefs.getBoolean(PREF_ENABLED, config.enabled);
+            config.smoothing = prefs.getBoolean(PREF_SMOOTHING, config.smoothing);
+            config.maxAccuracyM = prefs.getFloat(PREF_MAX_ACCURACY, (float) RemotePolicyStore.current(context).maxAccuracyM);
+            config.maxSpeedMps = prefs.getFloat(PREF_MAX_SPEED, (float) config.maxSpeedMps);
+            filter = new LocationFilter(config);
+        }
+        return filter;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,225 @@
+package com.offsync.app;
+
+/**
+ * Streaming filter for raw fixes before they are stored.
+ *
+ * Each fix first passes an accuracy gate and a speed check against the last accepted position.
+ * It then goes through a constant-velocity Kalman filter, run separately on the east and north
+ * axes of a local metric frame, with white-acceleration process noise. Measurement noise is
+ * the reported accuracy, floored per provider, since network fixes routinely claim better
+ * accuracy than they have. A fix whose innovation is too unlikely under the filter is
+ * rejected as an outlier. After {@link Config#maxConsecutiveRejects} rejections in a row, or a
+ * gap longer than {@link Config#resetAfterMs}, the filter restarts from the new fix, so a real
+ * jump (a flight, a tunnel exit) is not locked out for good.
+ *
+ * Deterministic: the same sequence of fixes always gives the same output. Not thread-safe.
+ */
+public final class LocationFilter {
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+    // 99.7% of a 2-dof chi-square: a fix this far off is not noise
+    private static final double OUTLIER_CHI2 = 11.8;
+
+    public enum Verdict {
+        /** Stored; coordinates may have been smoothed. */
+        ACCEPTED,
+        /** First fix or a filter restart: stored as reported. */
+        RESET,
+        REJECTED_ACCURACY,
+        REJECTED_SPEED,
+        REJECTED_OUTLIER;
+
+        public boolean isRejected() {
+            return this != ACCEPTED && this != RESET;
+        }
+    }
+
+    public static final class Config {
+        public boolean enabled = true;
+        public boolean smoothing = true;
+        /** Fixes reporting worse accuracy than this are dropped. */
+        public double maxAccuracyM = 150;
+        /** Faster than this, after allowing for both fixes' accuracy, is not a real move. */
+        public double maxSpeedMps = 70;
+        /** Acceleration noise of the constant-velocity model, in m/s^2. */
+        public double accelerationNoise = 1.5;
+        public double gpsFloorM = 3;
+        /** Also the app's GPS-timeout fixes ({@code network_fallback}), the ones least worth trusting. */
+        public double networkFloorM = 25;
+        /** The background watcher's fused fixes blend GPS and network, so they sit between the two. */
+        public double fusedFloorM = 10;
+        public double otherFloorM = 10;
+        public int maxConsecutiveRejects = 3;
+        public long resetAfterMs = 10 * 60 * 1000L;
+
+        double floorFor(String provider) {
+            if (provider == null) return otherFloorM;
+            switch (provider) {
+                case "gps":
+                    return gpsFloorM;
+                case "network":
+                case "network_fallback":
+                case "wifi":
+                case "cell":
+                    return networkFloorM;
+                case "fused":
+                    return fusedFloorM;
+                default:
+                    return otherFloorM;
+            }
+        }
+    }
+
+    /** A fix and, after {@link #apply}, the coordinates to store. */
+    public static final class Fix {
+        public long timeMs;
+        public double lat;
+        public double lng;
+        public double accuracyM;
+        public String provider;
+
+        public Fix set(long timeMs, double lat, double lng, double accuracyM, String provider) {
+            this.timeMs = timeMs;
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracyM = accuracyM;
+            this.provider = provider;
+            return this;
+        }
+    }
+
+    private final Config config;
+    private final Axis east = new Axis();
+    private final Axis north = new Axis();
+    private boolean initialized;
+    private double originLat;
+    private double originLng;
+    private double metersPerDegLng;
+    private long lastTimeMs;
+    private double lastAccuracyM;
+    private int consecutiveRejects;
+
+    public LocationFilter(Config config) {
+        this.config = config;
+    }
+
+    public Config config() {
+        return config;
+    }
+
+    public void reset() {
+        initialized = false;
+        consecutiveRejects = 0;
+    }
+
+    /** Judge {@code fix}; on acceptance its lat/lng are replaced by the filtered estimate. */
+    public Verdict apply(Fix fix) {
+        if (!config.enabled) return Verdict.ACCEPTED;
+        if (!(fix.accuracyM <= config.maxAccuracyM)) return Verdict.REJECTED_ACCURACY;
+        long dtMs = fix.timeMs - lastTimeMs;
+        if (!initialized || dtMs > config.resetAfterMs || consecutiveRejects >= config.maxConsecutiveRejects) {
+            start(fix);
+            return Verdict.RESET;
+        }
+        // Late or duplicate fixes carry no new motion; keep them as reported and leave the state alone
+        if (dtMs <= 0) return Verdict.ACCEPTED;
+
+        double dt = dtMs / 1000.0;
+        double x = (fix.lng - originLng) * metersPerDegLng;
+        double y = (fix.lat - originLat) * metersPerDegLat();
+        double jump = Math.hypot(x - east.p, y - north.p);
+        if ((jump - Math.max(0, fix.accuracyM) - Math.max(0, lastAccuracyM)) / dt > config.maxSpeedMps) {
+            consecutiveRejects++;
+            return Verdict.REJECTED_SPEED;
+        }
+
+        double q = config.accelerationNoise * config.accelerationNoise;
+        east.predict(dt, q);
+        north.predict(dt, q);
+        double sigma = Math.max(fix.accuracyM, config.floorFor(fix.provider));
+        double r = sigma * sigma;
+        double ie = x - east.p;
+        double in = y - north.p;
+        double d2 = ie * ie / (east.p00 + r) + in * in / (north.p00 + r);
+        if (d2 > OUTLIER_CHI2) {
+            // Keep the prediction so the next fix is judged against where we should be by then
+            east.commitPrediction();
+            north.commitPrediction();
+            lastTimeMs = fix.timeMs;
+            consecutiveRejects++;
+            return Verdict.REJECTED_OUTLIER;
+        }
+        east.update(x, r);
+        north.update(y, r);
+        lastTimeMs = fix.timeMs;
+        lastAccuracyM = fix.accuracyM;
+        consecutiveRejects = 0;
+        if (config.smoothing) {
+            fix.lat = originLat + north.p / metersPerDegLat();
+            fix.lng = originLng + east.p / metersPerDegLng;
+        }
+        return Verdict.ACCEPTED;
+    }
+
+    private void start(Fix fix) {
+        initialized = true;
+        originLat = fix.lat;
+        originLng = fix.lng;
+        metersPerDegLng = Math.toRadians(1) * EARTH_RADIUS_M * Math.max(0.01, Math.cos(Math.toRadians(fix.lat)));
+        double r = Math.max(fix.accuracyM, config.floorFor(fix.provider));
+        east.start(r * r);
+        north.start(r * r);
+        lastTimeMs = fix.timeMs;
+        lastAccuracyM = fix.accuracyM;
+        consecutiveRejects = 0;
+    }
+
+    private static double metersPerDegLat() {
+        return Math.toRadians(1) * EARTH_RADIUS_M;
+    }
+
+    /** One axis of the constant-velocity model: position, velocity and their 2x2 covariance. */
+    private static final class Axis {
+        double p, v;
+        double p00, p01, p11;
+        // Predicted state, applied by update() or commitPrediction()
+        private double pp, pv, q00, q01, q11;
+
+        void start(double variance) {
+            p = 0;
+            v = 0;
+            p00 = variance;
+            p01 = 0;
+            // Unknown initial speed: a few m/s either way
+            p11 = 25;
+        }
+
+        void predict(double dt, double q) {
+            pp = p + v * dt;
+            pv = v;
+            double dt2 = dt * dt;
+            q00 = p00 + 2 * dt * p01 + dt2 * p11 + q * dt2 * dt / 3;
+            q01 = p01 + dt * p11 + q * dt2 / 2;
+            q11 = p11 + q * dt;
+            p = pp;
+        }
+
+        void commitPrediction() {
+            v = pv;
+            p00 = q00;
+            p01 = q01;
+            p11 = q11;
+        }
+
+        void update(double z, double r) {
+            double s = q00 + r;
+            double k0 = q00 / s;
+            double k1 = q01 / s;
+            double innovation = z - pp;
+            p = pp + k0 * innovation;
+            v = pv + k1 * innovation;
+            p00 = (1 - k0) * q00;
+            p01 = (1 - k0) * q01;
+            p11 = q11 - k1 * q01;
+        }
+    }
+}
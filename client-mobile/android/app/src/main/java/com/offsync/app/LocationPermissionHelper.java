@@ -11,7 +11,6 @@ import android.net.Uri;
 import android.os.Build;
 import android.provider.ContactsContract;
 import android.provider.Settings;
-import android.text.format.DateFormat;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -59,25 +58,19 @@ public final class LocationPermissionHelper {
     }
 
     /**
-     * Build a short SMS body for a location.
-     * Example: "I'm here: https://maps.google.com/?q=12.34,56.78 (accuracy 5m) at 2/12/2026 3:30 PM"
+     * Build a short single-segment SMS body for a location.
+     * Example: "I'm here: https://maps.google.com/?q=12.3457,56.7891 ~5m 3min ago (gps)"
      */
     public static String buildSmsMessage(Location location) {
         if (location == null) return "";
-        double lat = location.getLatitude();
-        double lng = location.getLongitude();
-        StringBuilder sb = new StringBuilder();
-        sb.append("I'm here: https://maps.google.com/?q=").append(lat).append(",").append(lng);
-        if (location.hasAccuracy()) {
-            sb.append(" (accuracy ").append(Math.round(location.getAccuracy())).append("m)");
-        }
-        long time = location.getTime();
-        if (time > 0) {
-            CharSequence date = DateFormat.getDateFormat(null).format(new java.util.Date(time));
-            CharSequence timeOfDay = DateFormat.getTimeFormat(null).format(new java.util.Date(time));
-            sb.append(" at ").append(date).append(" ").append(timeOfDay);
-        }
-        return sb.toString();
+        return SmsLocationCodec.encode(
+                location.getLatitude(),
+                location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : -1,
+                location.getTime(),
+                System.currentTimeMillis(),
+                location.getProvider(),
+                false);
     }
 
     /**
@@ -2,6 +2,7 @@ package com.offsync.app;
 
 import android.os.Bundle;
 import com.getcapacitor.BridgeActivity;
+import com.offsync.app.metrics.SyncTrace;
 
 public class MainActivity extends BridgeActivity {
     private static final int LOCATION_PERMISSION_REQUEST =
@@ -9,6 +10,7 @@ public class MainActivity extends BridgeActivity {
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
+        SyncTrace.init(this);
         // Register custom plugins before super.onCreate
         registerPlugin(NativeSettingsPlugin.class);
         registerPlugin(NativeSyncPlugin.class);
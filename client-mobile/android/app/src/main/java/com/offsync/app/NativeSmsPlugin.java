@@ -4,7 +4,6 @@ import android.Manifest;
 import android.app.Activity;
 import android.content.Context;
 import android.content.pm.PackageManager;
-import android.telephony.SmsManager;
 
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
@@ -21,6 +20,11 @@ import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.OutboundSmsDao;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @CapacitorPlugin(name = "NativeSms")
 public class NativeSmsPlugin extends Plugin {
@@ -82,15 +86,45 @@ public class NativeSmsPlugin extends Plugin {
             return;
         }
 
-        try {
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(number, null, message, null, null);
-            JSObject ret = new JSObject();
-            ret.put("sent", true);
-            call.resolve(ret);
-        } catch (Exception e) {
-            call.reject("Failed to send SMS", e);
-        }
+        // Queue the message; the outbox worker paces sends and tracks sent/delivered reports
+        new Thread(() -> {
+            try {
+                long id = SmsOutbox.enqueue(ctx, number, message);
+                JSObject ret = new JSObject();
+                ret.put("queued", true);
+                ret.put("id", id);
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Failed to queue SMS", e);
+            }
+        }).start();
+    }
+
+    @PluginMethod
+    public void getOutboxStats(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                OutboundSmsDao dao = AppDatabase.getInstance(ctx).outboundSmsDao();
+                int depth = dao.countQueued();
+                List<Long> latencies = dao.getRecentDeliveryLatencies(100);
+                JSObject ret = new JSObject();
+                ret.put("queueDepth", depth);
+                ret.put("deliveredSamples", latencies.size());
+                if (!latencies.isEmpty()) {
+                    List<Long> sorted = new ArrayList<>(latencies);
+                    Collections.sort(sorted);
+                    long sum = 0;
+                    for (Long l : sorted) sum += l;
+                    ret.put("avgDeliveryLatencyMs", sum / sorted.size());
+                    ret.put("p50DeliveryLatencyMs", sorted.get(sorted.size() / 2));
+                    ret.put("p95DeliveryLatencyMs", sorted.get(Math.min(sorted.size() - 1, (int) (sorted.size() * 0.95))));
+                }
+                call.resolve(ret);
+            } catch (Exception e) {
+                call.reject("Failed to read outbox stats", e);
+            }
+        }).start();
     }
 
     @PluginMethod
@@ -122,6 +156,18 @@ public class NativeSmsPlugin extends Plugin {
         call.resolve();
     }
 
+    @PluginMethod
+    public void getSmsQueryStats(PluginCall call) {
+        SmsQueryDispatcher dispatcher = SmsQueryDispatcher.getInstance();
+        JSObject ret = new JSObject();
+        ret.put("accepted", dispatcher.getAcceptedCount());
+        ret.put("duplicates", dispatcher.getDuplicateCount());
+        ret.put("throttled", dispatcher.getThrottledCount());
+        ret.put("coalesced", dispatcher.getCoalescedCount());
+        ret.put("acquisitions", dispatcher.getAcquisitionCount());
+        call.resolve(ret);
+    }
+
     // Handle activity result for contact picker
     @Override
     protected void handleOnActivityResult(int requestCode, int resultCode, Intent data) {
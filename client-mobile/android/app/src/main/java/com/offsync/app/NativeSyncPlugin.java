@@ -2,41 +2,111 @@ package com.offsync.app;
 
 import android.content.Context;
 import androidx.annotation.NonNull;
+import com.getcapacitor.JSArray;
 import com.getcapacitor.JSObject;
 import com.getcapacitor.Plugin;
 import com.getcapacitor.PluginCall;
 import com.getcapacitor.PluginMethod;
 import com.getcapacitor.annotation.CapacitorPlugin;
+import com.offsync.app.db.AggregateStore;
 import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.DailySummaryEntity;
+import com.offsync.app.db.HourlyCountEntity;
+import com.offsync.app.db.LegacyQueueImporter;
+import com.offsync.app.db.LocationDao;
 import com.offsync.app.db.LocationPointEntity;
-import androidx.work.OneTimeWorkRequest;
-import androidx.work.PeriodicWorkRequest;
-import androidx.work.WorkManager;
-import androidx.work.Constraints;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.NetworkType;
-import java.util.concurrent.TimeUnit;
-import com.offsync.app.work.LocationSyncWorker;
-import androidx.security.crypto.EncryptedSharedPreferences;
-import androidx.security.crypto.MasterKey;
+import com.offsync.app.db.LocationWriter;
+import com.offsync.app.db.SpatialIndex;
+import com.offsync.app.db.SpatialQuery;
+import com.offsync.app.db.StopEntity;
+import com.offsync.app.db.StorageQuota;
+import com.offsync.app.db.StorageQuotaStore;
+import com.offsync.app.db.TrackAggregator;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.metrics.SyncTrace;
+import com.offsync.app.work.HistoryExport;
+import com.offsync.app.work.HistoryExporter;
+import com.offsync.app.work.IngestEndpointStore;
+import com.offsync.app.work.IngestEndpoints;
+import com.offsync.app.work.LivePositionFeed;
+import com.offsync.app.work.LiveStream;
+import com.offsync.app.work.RemotePolicy;
+import com.offsync.app.work.RemotePolicyStore;
+import com.offsync.app.work.SmsFallbackWorker;
+import com.offsync.app.work.SyncPolicy;
+import com.offsync.app.work.SyncPolicyStore;
+import com.offsync.app.work.SyncStateObserver;
+import com.offsync.app.work.SyncScheduler;
 import android.content.SharedPreferences;
 import android.app.NotificationManager;
 import android.app.NotificationChannel;
 import android.app.PendingIntent;
 import android.content.Intent;
 import androidx.core.app.NotificationCompat;
-import android.util.Base64;
-import java.security.SecureRandom;
+import androidx.core.content.FileProvider;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @CapacitorPlugin(name = "NativeSync")
 public class NativeSyncPlugin extends Plugin {
-    private static final String PREFS_NAME = "secure_prefs";
-    private static final String DB_SECRET_KEY = "db_secret";
+    private static final int MAX_SPATIAL_RESULTS = 10_000;
+    static final String EVENT_SYNC_STATE = "syncState";
+    static final String EVENT_EXPORT_PROGRESS = "exportProgress";
+    static final String EVENT_LIVE_POSITION = "livePosition";
+
+    private SyncStateObserver stateObserver;
+    private final Map<String, AtomicBoolean> exports = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService liveExecutor = Executors.newSingleThreadScheduledExecutor();
+    private LivePositionFeed.Subscription livePositions;
+    private boolean foreground = true;
+
+    @Override
+    public void load() {
+        // Retained so a listener registered after the first emission still gets the current state
+        stateObserver = new SyncStateObserver(getContext(),
+                state -> notifyListeners(EVENT_SYNC_STATE, toJs(state), true));
+        stateObserver.start();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        if (stateObserver != null) stateObserver.stop();
+        for (AtomicBoolean cancelled : exports.values()) cancelled.set(true);
+        synchronized (this) {
+            if (livePositions != null) livePositions.close();
+            livePositions = null;
+        }
+        liveExecutor.shutdown();
+        super.handleOnDestroy();
+    }
+
+    private static JSObject toJs(SyncStateObserver.State state) {
+        JSObject ret = new JSObject();
+        ret.put("pending", state.pending);
+        ret.put("oldestPendingAt", state.oldestPendingAt);
+        ret.put("outboxDepth", state.outboxDepth);
+        ret.put("lastSyncAt", state.lastSyncAt);
+        ret.put("lastFailureAt", state.lastFailureAt);
+        ret.put("syncing", state.syncing);
+        ret.put("retrying", state.retrying);
+        ret.put("liveConnected", state.liveConnected);
+        return ret;
+    }
 
     @PluginMethod
     public void saveLocation(PluginCall call) {
+        boolean traced = SyncTrace.begin("offsync:bridge.saveLocation");
         try {
             String capturedAt = call.getString("capturedAt");
             double lat = call.getDouble("lat");
@@ -45,10 +115,9 @@ public class NativeSyncPlugin extends Plugin {
             String provider = call.getString("provider");
             Integer batteryPct = call.hasOption("batteryPct") ? (int) call.getInt("batteryPct", 0) : null;
             Boolean isCharging = call.hasOption("isCharging") ? call.getBoolean("isCharging", false) : null;
-            String accuracyMode = call.getString("accuracyMode");
-
             Context ctx = getContext();
-            AppDatabase db = AppDatabase.getInstance(ctx);
+            String accuracyMode = call.getString("accuracyMode", RemotePolicyStore.current(ctx).accuracyMode);
+
             LocationPointEntity e = new LocationPointEntity();
             e.capturedAt = capturedAt;
             e.lat = lat;
@@ -60,27 +129,26 @@ public class NativeSyncPlugin extends Plugin {
             e.accuracyMode = accuracyMode;
             e.isUploaded = 0;
 
+            // Garbage fixes never reach the database, the upload or the server
+            LocationFilter.Verdict verdict = CaptureFilter.apply(ctx, e);
+            if (verdict.isRejected()) {
+                JSObject ret = new JSObject();
+                ret.put("saved", false);
+                ret.put("rejected", verdict.name());
+                call.resolve(ret);
+                return;
+            }
+
             // Insert on background thread
             new Thread(() -> {
-                db.locationDao().insert(e);
-                // Trigger a one-off sync that only runs when network is connected
-                Constraints constraints = new Constraints.Builder()
-                    .setRequiredNetworkType(NetworkType.CONNECTED)
-                    .build();
-                OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(LocationSyncWorker.class)
-                    .setConstraints(constraints)
-                    .build();
-                WorkManager.getInstance(ctx).enqueue(req);
-
-                // Ensure a periodic sync is scheduled (15 minute interval minimum)
-                PeriodicWorkRequest periodic = new PeriodicWorkRequest.Builder(LocationSyncWorker.class, 15, TimeUnit.MINUTES)
-                    .setConstraints(constraints)
-                    .build();
-                WorkManager.getInstance(ctx).enqueueUniquePeriodicWork(
-                    "offsync_periodic_sync",
-                    ExistingPeriodicWorkPolicy.KEEP,
-                    periodic
-                );
+                e.id = (int) LocationWriter.insert(ctx, e);
+                LivePositionFeed.publish(e);
+                // Streamed points are marked on ack; otherwise the batch worker picks them up
+                if (LiveStream.offer(ctx, e)) {
+                    SyncScheduler.ensurePeriodic(ctx);
+                } else {
+                    SyncScheduler.scheduleAfterWrite(ctx);
+                }
             }).start();
 
             JSObject ret = new JSObject();
@@ -88,67 +156,524 @@ public class NativeSyncPlugin extends Plugin {
             call.resolve(ret);
         } catch (Exception ex) {
             call.reject("Failed to save location", ex);
+        } finally {
+            SyncTrace.end(traced);
         }
     }
 
     @PluginMethod
-    public void getEncryptionKey(PluginCall call) {
+    public void pruneOldPoints(PluginCall call) {
         try {
             Context ctx = getContext();
-            MasterKey masterKey = new MasterKey.Builder(ctx)
-                    .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
-                    .build();
-
-            SharedPreferences prefs = EncryptedSharedPreferences.create(
-                    ctx,
-                    PREFS_NAME,
-                    masterKey,
-                    EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-                    EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
-            );
-
-            String secret = prefs.getString(DB_SECRET_KEY, null);
-            if (secret == null) {
-                byte[] pass = new byte[32];
-                SecureRandom rnd = new SecureRandom();
-                rnd.nextBytes(pass);
-                secret = Base64.encodeToString(pass, Base64.NO_WRAP);
-                prefs.edit().putString(DB_SECRET_KEY, secret).apply();
+            int maxAgeDays = (int) call.getInt("maxAgeDays", RemotePolicyStore.current(ctx).retentionDays);
+            String cutoffIso = TrackAggregator.formatTime(System.currentTimeMillis()
+                    - ChronoUnit.DAYS.getDuration().toMillis() * maxAgeDays);
+
+            new Thread(() -> {
+                int deleted = LocationWriter.pruneOlderThan(ctx, cutoffIso);
+                JSObject ret = new JSObject();
+                ret.put("deleted", deleted);
+                call.resolve(ret);
+            }).start();
+        } catch (Exception ex) {
+            call.reject("Failed to prune old points", ex);
+        }
+    }
+
+    /**
+     * Per-day distance, stop and dwell totals for local days {@code from}..{@code to}
+     * (yyyy-MM-dd, inclusive); defaults to the last 7 days. Reads the aggregate tables only.
+     */
+    @PluginMethod
+    public void getDailySummaries(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                ZoneId zone = ZoneId.systemDefault();
+                LocalDate today = LocalDate.now(zone);
+                String to = call.getString("to", today.toString());
+                String from = call.getString("from", LocalDate.parse(to).minusDays(6).toString());
+                AppDatabase db = AppDatabase.getInstance(ctx);
+                AggregateStore.ensureBuilt(db, zone);
+                JSArray days = new JSArray();
+                for (DailySummaryEntity d : db.aggregateDao().getDays(from, to)) {
+                    JSObject o = new JSObject();
+                    o.put("day", d.day);
+                    o.put("points", d.pointCount);
+                    o.put("distanceM", d.distanceM);
+                    o.put("stops", d.stopCount);
+                    o.put("dwellMs", d.dwellMs);
+                    o.put("firstAt", Instant.ofEpochMilli(d.firstAt).toString());
+                    o.put("lastAt", Instant.ofEpochMilli(d.lastAt).toString());
+                    days.put(o);
+                }
+                JSObject ret = new JSObject();
+                ret.put("days", days);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read daily summaries", ex);
+            }
+        }).start();
+    }
+
+    /** Points per hour between ISO instants {@code from} and {@code to}; defaults to the last 24 hours. */
+    @PluginMethod
+    public void getHourlyCounts(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                long to = parseInstant(call.getString("to"), System.currentTimeMillis());
+                long from = parseInstant(call.getString("from"), to - ChronoUnit.DAYS.getDuration().toMillis());
+                AppDatabase db = AppDatabase.getInstance(ctx);
+                AggregateStore.ensureBuilt(db, ZoneId.systemDefault());
+                JSArray hours = new JSArray();
+                for (HourlyCountEntity h : db.aggregateDao().getHours(from, to)) {
+                    JSObject o = new JSObject();
+                    o.put("hour", Instant.ofEpochMilli(h.hourStart).toString());
+                    o.put("points", h.pointCount);
+                    hours.put(o);
+                }
+                JSObject ret = new JSObject();
+                ret.put("hours", hours);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read hourly counts", ex);
+            }
+        }).start();
+    }
+
+    /** Stops overlapping {@code from}..{@code to} (ISO instants), newest first; defaults to the last 7 days. */
+    @PluginMethod
+    public void getStops(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                long to = parseInstant(call.getString("to"), System.currentTimeMillis());
+                long from = parseInstant(call.getString("from"), to - ChronoUnit.WEEKS.getDuration().toMillis());
+                int limit = Math.max(1, Math.min(1_000, call.getInt("limit", 100)));
+                AppDatabase db = AppDatabase.getInstance(ctx);
+                AggregateStore.ensureBuilt(db, ZoneId.systemDefault());
+                JSArray stops = new JSArray();
+                for (StopEntity s : db.aggregateDao().getStops(from, to, limit)) {
+                    JSObject o = new JSObject();
+                    o.put("startAt", Instant.ofEpochMilli(s.startAt).toString());
+                    o.put("endAt", Instant.ofEpochMilli(s.endAt).toString());
+                    o.put("dwellMs", s.endAt - s.startAt);
+                    o.put("lat", s.lat);
+                    o.put("lng", s.lng);
+                    o.put("points", s.pointCount);
+                    stops.put(o);
+                }
+                JSObject ret = new JSObject();
+                ret.put("stops", stops);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read stops", ex);
             }
+        }).start();
+    }
 
+    /**
+     * Stored points inside a map viewport, oldest first: {@code minLat, minLng, maxLat, maxLng},
+     * optional ISO {@code from}/{@code to} and {@code limit} (default 1000). A viewport across the
+     * antimeridian has {@code minLng > maxLng}.
+     */
+    @PluginMethod
+    public void findPointsInBox(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                double minLat = call.getDouble("minLat");
+                double maxLat = call.getDouble("maxLat");
+                double minLng = call.getDouble("minLng");
+                double maxLng = call.getDouble("maxLng");
+                Long from = call.hasOption("from") ? parseInstant(call.getString("from"), 0) : null;
+                Long to = call.hasOption("to") ? parseInstant(call.getString("to"), 0) : null;
+                int limit = Math.max(1, Math.min(MAX_SPATIAL_RESULTS, call.getInt("limit", 1_000)));
+                LocationDao dao = AppDatabase.getInstance(ctx).locationDao();
+                JSArray points = new JSArray();
+                if (minLng <= maxLng) {
+                    for (LocationPointEntity p : dao.findInBox(new SpatialQuery.Box(minLat, minLng, maxLat, maxLng), from, to, limit)) {
+                        points.put(pointJson(p));
+                    }
+                } else {
+                    // Two halves, each oldest first; the caller asked for a limit, not an interleaving
+                    List<LocationPointEntity> found = new ArrayList<>(dao.findInBox(new SpatialQuery.Box(minLat, minLng, maxLat, 180), from, to, limit));
+                    found.addAll(dao.findInBox(new SpatialQuery.Box(minLat, -180, maxLat, maxLng), from, to, limit));
+                    found.sort((a, b) -> a.capturedAt.compareTo(b.capturedAt));
+                    for (int i = 0; i < Math.min(limit, found.size()); i++) points.put(pointJson(found.get(i)));
+                }
+                JSObject ret = new JSObject();
+                ret.put("points", points);
+                ret.put("indexed", SpatialIndex.isEnabled());
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to query points in box", ex);
+            }
+        }).start();
+    }
+
+    /**
+     * Stored points within {@code radiusM} of {@code lat, lng}, nearest first, each with its
+     * {@code distanceM}; optional ISO {@code from}/{@code to} and {@code limit} (default 1000).
+     */
+    @PluginMethod
+    public void findPointsNear(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                double lat = call.getDouble("lat");
+                double lng = call.getDouble("lng");
+                double radiusM = call.getDouble("radiusM");
+                Long from = call.hasOption("from") ? parseInstant(call.getString("from"), 0) : null;
+                Long to = call.hasOption("to") ? parseInstant(call.getString("to"), 0) : null;
+                int limit = Math.max(1, Math.min(MAX_SPATIAL_RESULTS, call.getInt("limit", 1_000)));
+                JSArray points = new JSArray();
+                for (SpatialQuery.Near n : AppDatabase.getInstance(ctx).locationDao().findNear(lat, lng, radiusM, from, to, limit)) {
+                    JSObject o = pointJson(n.point);
+                    o.put("distanceM", n.distanceM);
+                    points.put(o);
+                }
+                JSObject ret = new JSObject();
+                ret.put("points", points);
+                ret.put("indexed", SpatialIndex.isEnabled());
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to query points near place", ex);
+            }
+        }).start();
+    }
+
+    private static JSObject pointJson(LocationPointEntity p) {
+        JSObject o = new JSObject();
+        o.put("id", p.id);
+        o.put("capturedAt", p.capturedAt);
+        o.put("lat", p.lat);
+        o.put("lng", p.lng);
+        o.put("accuracyM", p.accuracyM);
+        o.put("provider", p.provider);
+        o.put("isUploaded", p.isUploaded != null && p.isUploaded == 1);
+        return o;
+    }
+
+    /** Recompute the aggregates from the stored history, e.g. after a time zone change. */
+    @PluginMethod
+    public void rebuildAggregates(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                AggregateStore.rebuild(AppDatabase.getInstance(ctx), ZoneId.systemDefault());
+                JSObject ret = new JSObject();
+                ret.put("rebuilt", true);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to rebuild aggregates", ex);
+            }
+        }).start();
+    }
+
+    private static long parseInstant(String iso, long fallback) {
+        return iso == null ? fallback : Instant.parse(iso).toEpochMilli();
+    }
+
+    /**
+     * Stream all stored points to a gzip NDJSON or CSV file and resolve with a shareable content
+     * URI. Emits {@code exportProgress} events while running; {@link #cancelExport} stops it.
+     */
+    @PluginMethod
+    public void exportHistory(PluginCall call) {
+        Context ctx = getContext();
+        HistoryExporter.Format format = HistoryExporter.Format.of(call.getString("format"));
+        String exportId = UUID.randomUUID().toString();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        exports.put(exportId, cancelled);
+        new Thread(() -> {
+            try {
+                int total = AppDatabase.getInstance(ctx).locationDao().countAll();
+                HistoryExport.Result result = HistoryExport.run(ctx, format, cancelled::get, rows -> {
+                    JSObject progress = new JSObject();
+                    progress.put("exportId", exportId);
+                    progress.put("rows", rows);
+                    progress.put("total", total);
+                    notifyListeners(EVENT_EXPORT_PROGRESS, progress);
+                });
+                JSObject ret = new JSObject();
+                ret.put("exportId", exportId);
+                ret.put("path", result.file.getAbsolutePath());
+                ret.put("uri", FileProvider.getUriForFile(ctx, ctx.getPackageName() + ".fileprovider", result.file)
+                        .toString());
+                ret.put("mimeType", "application/gzip");
+                ret.put("format", format.extension);
+                ret.put("rows", result.rows);
+                ret.put("bytes", result.bytes);
+                call.resolve(ret);
+            } catch (CancellationException ex) {
+                call.reject("Export cancelled", "CANCELLED");
+            } catch (Exception ex) {
+                call.reject("Failed to export history", ex);
+            } finally {
+                exports.remove(exportId);
+            }
+        }).start();
+    }
+
+    @PluginMethod
+    public void cancelExport(PluginCall call) {
+        String exportId = call.getString("exportId");
+        AtomicBoolean cancelled = exportId == null ? null : exports.get(exportId);
+        if (cancelled != null) cancelled.set(true);
+        JSObject ret = new JSObject();
+        ret.put("cancelled", cancelled != null);
+        call.resolve(ret);
+    }
+
+    /**
+     * Move the queue the JS layer used to keep into the native store, once. Resolves with the
+     * rows {@code imported}, the {@code duplicates} skipped and whether the import is {@code done}.
+     */
+    @PluginMethod
+    public void importLegacyQueue(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                LegacyQueueImporter.Result result = LegacyQueueImporter.run(ctx);
+                if (result.imported > 0) SyncScheduler.scheduleAfterWrite(ctx);
+                JSObject ret = new JSObject();
+                ret.put("imported", result.imported);
+                ret.put("duplicates", result.duplicates);
+                ret.put("done", result.done);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to import legacy queue", ex);
+            }
+        }).start();
+    }
+
+    @PluginMethod
+    public void getPendingCount(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                JSObject ret = new JSObject();
+                ret.put("count", AppDatabase.getInstance(ctx).locationDao().countPending());
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to count pending points", ex);
+            }
+        }).start();
+    }
+
+    /** Oldest points not yet uploaded, at most {@code limit} (default 100). */
+    @PluginMethod
+    public void getPendingLocations(PluginCall call) {
+        Context ctx = getContext();
+        int limit = Math.max(1, call.getInt("limit", 100));
+        new Thread(() -> {
+            try {
+                JSArray points = new JSArray();
+                for (LocationPointEntity p : AppDatabase.getInstance(ctx).locationDao().getPending(limit)) {
+                    points.put(pointJson(p));
+                }
+                JSObject ret = new JSObject();
+                ret.put("points", points);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read pending points", ex);
+            }
+        }).start();
+    }
+
+    /** Ask for an upload as soon as the network allows, e.g. from a "retry" button. */
+    @PluginMethod
+    public void requestSync(PluginCall call) {
+        SyncScheduler.scheduleAfterWrite(getContext());
+        JSObject ret = new JSObject();
+        ret.put("scheduled", true);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void getSyncStats(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                LocationDao dao = AppDatabase.getInstance(ctx).locationDao();
+                SyncMetrics.BACKLOG.set(dao.countPending());
+                String oldest = dao.getOldestPendingCapturedAt();
+                SyncMetrics.OLDEST_PENDING_AGE_MS.set(oldest == null ? 0
+                        : Math.max(0, System.currentTimeMillis() - Instant.parse(oldest).toEpochMilli()));
+                JSObject ret = new JSObject();
+                SyncMetrics.snapshot(ret);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read sync stats", ex);
+            }
+        }).start();
+    }
+
+    /** Current sync tier and the settings and metered budget it was derived from. */
+    @PluginMethod
+    public void getSyncPolicy(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                int backlog = AppDatabase.getInstance(ctx).locationDao().countPending();
+                SyncMetrics.BACKLOG.set(backlog);
+                long now = System.currentTimeMillis();
+                SyncPolicy.Config config = SyncPolicyStore.config(ctx);
+                SyncPolicy.Decision policy = SyncPolicyStore.current(ctx, backlog);
+                JSObject ret = new JSObject();
+                ret.put("tier", policy.tier.name());
+                ret.put("batchSize", policy.batchSize);
+                ret.put("compressionLevel", policy.compressionLevel);
+                ret.put("expedite", policy.expedite);
+                ret.put("backlog", backlog);
+                ret.put("meteredBudgetBytes", config.meteredBudgetBytes);
+                ret.put("meteredBytesUsed", SyncPolicyStore.usedBytes(ctx, now));
+                ret.put("budgetResetsAt", SyncPolicyStore.windowResetsAt(ctx, now));
+                ret.put("expediteBacklog", config.expediteBacklog);
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read sync policy", ex);
+            }
+        }).start();
+    }
+
+    @PluginMethod
+    public void setSyncPolicy(PluginCall call) {
+        try {
+            Context ctx = getContext();
+            SyncPolicy.Config current = SyncPolicyStore.config(ctx);
+            long budget = call.hasOption("meteredBudgetBytes")
+                    ? call.getLong("meteredBudgetBytes", current.meteredBudgetBytes) : current.meteredBudgetBytes;
+            int expedite = call.hasOption("expediteBacklog")
+                    ? call.getInt("expediteBacklog", current.expediteBacklog) : current.expediteBacklog;
+            SyncPolicyStore.setConfig(ctx, budget, expedite);
             JSObject ret = new JSObject();
-            ret.put("secret", secret);
+            ret.put("saved", true);
             call.resolve(ret);
         } catch (Exception ex) {
-            call.reject("Failed to obtain encryption key", ex);
+            call.reject("Failed to set sync policy", ex);
         }
     }
 
     @PluginMethod
-    public void pruneOldPoints(PluginCall call) {
+    public void getLocationFilter(PluginCall call) {
         try {
-            int maxAgeDays = (int) call.getInt("maxAgeDays", 90);
-            Instant cutoff = Instant.now().minus(maxAgeDays, ChronoUnit.DAYS);
-            String cutoffIso = cutoff.toString();
+            LocationFilter.Config config = CaptureFilter.config(getContext());
+            JSObject ret = new JSObject();
+            ret.put("enabled", config.enabled);
+            ret.put("smoothing", config.smoothing);
+            ret.put("maxAccuracyM", config.maxAccuracyM);
+            ret.put("maxSpeedMps", config.maxSpeedMps);
+            ret.put("rejectedAccuracy", SyncMetrics.FIXES_REJECTED_ACCURACY.get());
+            ret.put("rejectedSpeed", SyncMetrics.FIXES_REJECTED_SPEED.get());
+            ret.put("rejectedOutlier", SyncMetrics.FIXES_REJECTED_OUTLIER.get());
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to get location filter", ex);
+        }
+    }
 
+    @PluginMethod
+    public void setLocationFilter(PluginCall call) {
+        try {
             Context ctx = getContext();
-            AppDatabase db = AppDatabase.getInstance(ctx);
+            LocationFilter.Config current = CaptureFilter.config(ctx);
+            CaptureFilter.configure(ctx,
+                    call.getBoolean("enabled", current.enabled),
+                    call.getBoolean("smoothing", current.smoothing),
+                    call.getDouble("maxAccuracyM", current.maxAccuracyM),
+                    call.getDouble("maxSpeedMps", current.maxSpeedMps));
+            JSObject ret = new JSObject();
+            ret.put("saved", true);
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to set location filter", ex);
+        }
+    }
 
-            new Thread(() -> {
-                int deleted = db.locationDao().deleteOlderThan(cutoffIso);
+    /** The device policy in effect; {@code source} is "remote" once a document has been fetched. */
+    @PluginMethod
+    public void getRemotePolicy(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                RemotePolicy policy = RemotePolicyStore.current(ctx);
+                JSObject ret = JSObject.fromJSONObject(policy.toJson());
+                ret.put("etag", RemotePolicyStore.etag(ctx));
+                ret.put("checkedAt", RemotePolicyStore.checkedAt(ctx));
+                ret.put("source", policy == RemotePolicy.DEFAULTS ? "default" : "remote");
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read remote policy", ex);
+            }
+        }).start();
+    }
+
+    @PluginMethod
+    public void getStorageQuota(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                StorageQuota.Config config = StorageQuotaStore.config(ctx);
+                StorageQuotaStore.Usage usage = StorageQuotaStore.usage(ctx);
+                JSObject ret = new JSObject();
+                ret.put("maxRows", config.maxRows);
+                ret.put("maxBytes", config.maxBytes);
+                ret.put("minFreeBytes", config.minFreeBytes);
+                ret.put("protectNewest", config.protectNewest);
+                ret.put("rows", usage.rows);
+                ret.put("pending", usage.pending);
+                ret.put("uploaded", usage.uploaded);
+                ret.put("usedBytes", usage.usedBytes);
+                ret.put("fileBytes", usage.fileBytes);
+                ret.put("freeBytes", usage.freeBytes);
+                ret.put("lowDisk", usage.freeBytes < config.minFreeBytes);
+                ret.put("overQuota", usage.overage > 0);
+                ret.put("evicted", SyncMetrics.POINTS_EVICTED.get());
+                ret.put("thinned", SyncMetrics.POINTS_THINNED.get());
+                call.resolve(ret);
+            } catch (Exception ex) {
+                call.reject("Failed to read storage quota", ex);
+            }
+        }).start();
+    }
+
+    /** Save new limits and apply them right away; resolves with the number of rows deleted. */
+    @PluginMethod
+    public void setStorageQuota(PluginCall call) {
+        Context ctx = getContext();
+        new Thread(() -> {
+            try {
+                StorageQuota.Config current = StorageQuotaStore.config(ctx);
+                StorageQuotaStore.setConfig(ctx,
+                        call.getInt("maxRows", current.maxRows),
+                        call.getLong("maxBytes", current.maxBytes),
+                        call.getLong("minFreeBytes", current.minFreeBytes),
+                        call.getInt("protectNewest", current.protectNewest));
+                int deleted = StorageQuotaStore.enforce(ctx);
                 JSObject ret = new JSObject();
+                ret.put("saved", true);
                 ret.put("deleted", deleted);
                 call.resolve(ret);
-            }).start();
-        } catch (Exception ex) {
-            call.reject("Failed to prune old points", ex);
-        }
+            } catch (Exception ex) {
+                call.reject("Failed to set storage quota", ex);
+            }
+        }).start();
     }
 
     @PluginMethod
     public void setServerUrl(PluginCall call) {
         try {
+            // Several endpoints may be given as urls; the first is preferred until health says otherwise
             String url = call.getString("url");
+            JSArray urls = call.getArray("urls");
+            if (urls != null && urls.length() > 0) {
+                List<String> list = new ArrayList<>();
+                for (int i = 0; i < urls.length(); i++) list.add(urls.getString(i));
+                url = String.join(",", list);
+            }
             if (url == null) {
                 call.reject("Missing url");
                 return;
@@ -172,12 +697,39 @@ public class NativeSyncPlugin extends Plugin {
             String url = prefs.getString("runtime_offsync_server_url", null);
             JSObject ret = new JSObject();
             ret.put("url", url);
+            ret.put("urls", new JSArray(IngestEndpoints.parse(url)));
             call.resolve(ret);
         } catch (Exception ex) {
             call.reject("Failed to get server URL", ex);
         }
     }
 
+    /** Health of each ingest endpoint as seen by this process, and which one uploads go to. */
+    @PluginMethod
+    public void getIngestEndpoints(PluginCall call) {
+        try {
+            IngestEndpoints endpoints = IngestEndpointStore.get(getContext());
+            String preferred = endpoints.preferred();
+            JSArray list = new JSArray();
+            for (IngestEndpoints.Endpoint e : endpoints.snapshot()) {
+                JSObject o = new JSObject();
+                o.put("url", e.baseUrl);
+                o.put("preferred", e.baseUrl.equals(preferred));
+                if (e.latencyMs >= 0) o.put("latencyMs", Math.round(e.latencyMs));
+                o.put("errorRate", e.errorRate);
+                o.put("samples", e.samples);
+                o.put("consecutiveFailures", e.consecutiveFailures);
+                if (e.downUntil > System.currentTimeMillis()) o.put("downUntil", Instant.ofEpochMilli(e.downUntil).toString());
+                list.put(o);
+            }
+            JSObject ret = new JSObject();
+            ret.put("endpoints", list);
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to read ingest endpoints", ex);
+        }
+    }
+
     @PluginMethod
     public void clearServerUrl(PluginCall call) {
         try {
@@ -192,6 +744,134 @@ public class NativeSyncPlugin extends Plugin {
         }
     }
 
+    @PluginMethod
+    public void setLiveStream(PluginCall call) {
+        try {
+            boolean enabled = call.getBoolean("enabled", false);
+            LiveStream.setEnabled(getContext(), enabled);
+            JSObject ret = new JSObject();
+            ret.put("enabled", enabled);
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to set live stream", ex);
+        }
+    }
+
+    @PluginMethod
+    public void getLiveStream(PluginCall call) {
+        try {
+            JSObject ret = new JSObject();
+            ret.put("enabled", LiveStream.isEnabled(getContext()));
+            ret.put("connected", LiveStream.isConnected());
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to get live stream", ex);
+        }
+    }
+
+    /**
+     * Push stored positions to JS as {@code livePosition} events: at most {@code maxRateHz} per
+     * second (default 1, capped at 10), only after moving {@code minDisplacementM} (default 0),
+     * always the newest point of the window. Paused while the app is in the background, with one
+     * {@code catchUp} event on return. Replaces any earlier subscription of this WebView.
+     */
+    @PluginMethod
+    public void startLivePositions(PluginCall call) {
+        double maxRateHz = call.getDouble("maxRateHz", 1.0);
+        double minDisplacementM = call.getDouble("minDisplacementM", 0.0);
+        if (!(maxRateHz > 0) || !(minDisplacementM >= 0)) {
+            call.reject("maxRateHz must be > 0 and minDisplacementM >= 0");
+            return;
+        }
+        synchronized (this) {
+            if (livePositions != null) livePositions.close();
+            livePositions = LivePositionFeed.subscribe(liveExecutor, maxRateHz, minDisplacementM, (point, catchUp) -> {
+                JSObject event = new JSObject();
+                event.put("point", pointJson(point));
+                event.put("catchUp", catchUp);
+                notifyListeners(EVENT_LIVE_POSITION, event);
+            });
+            livePositions.setPaused(!foreground);
+        }
+        JSObject ret = new JSObject();
+        ret.put("maxRateHz", Math.min(maxRateHz, LivePositionFeed.MAX_RATE_HZ));
+        ret.put("minDisplacementM", minDisplacementM);
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void stopLivePositions(PluginCall call) {
+        boolean stopped;
+        synchronized (this) {
+            stopped = livePositions != null;
+            if (stopped) livePositions.close();
+            livePositions = null;
+        }
+        JSObject ret = new JSObject();
+        ret.put("stopped", stopped);
+        call.resolve(ret);
+    }
+
+    @Override
+    protected void handleOnResume() {
+        super.handleOnResume();
+        LiveStream.setForeground(getContext(), true);
+        setLivePositionsPaused(false);
+    }
+
+    @Override
+    protected void handleOnPause() {
+        super.handleOnPause();
+        LiveStream.setForeground(getContext(), false);
+        setLivePositionsPaused(true);
+    }
+
+    private synchronized void setLivePositionsPaused(boolean paused) {
+        foreground = !paused;
+        if (livePositions != null) livePositions.setPaused(paused);
+    }
+
+    @PluginMethod
+    public void setSmsFallback(PluginCall call) {
+        try {
+            boolean enabled = call.getBoolean("enabled", false);
+            String number = call.getString("number");
+            if (enabled && (number == null || number.isEmpty())) {
+                call.reject("Missing gateway number");
+                return;
+            }
+            Context ctx = getContext();
+            SharedPreferences prefs = ctx.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+            SharedPreferences.Editor editor = prefs.edit().putBoolean(SmsFallbackWorker.PREF_ENABLED, enabled);
+            if (number != null) editor.putString(SmsFallbackWorker.PREF_GATEWAY_NUMBER, number);
+            editor.apply();
+            if (enabled) {
+                SmsFallbackWorker.schedule(ctx);
+            } else {
+                SmsFallbackWorker.cancel(ctx);
+            }
+            JSObject ret = new JSObject();
+            ret.put("enabled", enabled);
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to set SMS fallback", ex);
+        }
+    }
+
+    @PluginMethod
+    public void getSmsFallback(PluginCall call) {
+        try {
+            Context ctx = getContext();
+            SharedPreferences prefs = ctx.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+            JSObject ret = new JSObject();
+            ret.put("enabled", prefs.getBoolean(SmsFallbackWorker.PREF_ENABLED, false));
+            ret.put("number", prefs.getString(SmsFallbackWorker.PREF_GATEWAY_NUMBER, null));
+            call.resolve(ret);
+        } catch (Exception ex) {
+            call.reject("Failed to get SMS fallback", ex);
+        }
+    }
+
     @PluginMethod
     public void checkAndConsumeOpenDevFlag(PluginCall call) {
         try {
@@ -216,6 +896,7 @@ public class NativeSyncPlugin extends Plugin {
             Context ctx = getContext();
             SharedPreferences prefs = ctx.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
             prefs.edit().putBoolean("developer_mode", enabled).apply();
+            SyncTrace.setEnabled(enabled);
             JSObject ret = new JSObject();
             ret.put("developerMode", enabled);
             call.resolve(ret);
@@ -0,0 +1,37 @@
+package com.offsync.app;
+
+import com.google.i18n.phonenumbers.NumberParseException;
+import com.google.i18n.phonenumbers.PhoneNumberUtil;
+import com.google.i18n.phonenumbers.Phonenumber;
+
+/**
+ * Phone number normalization using libphonenumber, free of Android dependencies.
+ * Normalizes input to E.164 when possible. If parsing fails, falls back to digit-only prefixed with '+'.
+ */
+public final class PhoneNormalizer {
+    public static final String DEFAULT_REGION = "IN"; // change if your default country differs
+
+    private PhoneNormalizer() {
+    }
+
+    public static String normalize(String raw) {
+        return normalize(raw, DEFAULT_REGION);
+    }
+
+    public static String normalize(String raw, String defaultRegion) {
+        if (raw == null) return "";
+        PhoneNumberUtil util = PhoneNumberUtil.getInstance();
+        try {
+            Phonenumber.PhoneNumber num = util.parse(raw, defaultRegion);
+            if (util.isPossibleNumber(num)) {
+                return util.format(num, PhoneNumberUtil.PhoneNumberFormat.E164);
+            }
+        } catch (NumberParseException e) {
+            // fall through
+        }
+        // Fallback: strip non-digits and prefix +
+        String digits = raw.replaceAll("[^0-9]", "");
+        if (digits.isEmpty()) return "";
+        return "+" + digits;
+    }
+}
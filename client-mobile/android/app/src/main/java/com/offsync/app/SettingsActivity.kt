@@ -19,6 +19,7 @@ class SettingsActivity : AppCompatActivity() {
     private val REQ_PERMS = 1001
     private lateinit var etKeyword: EditText
     private lateinit var switchEnabled: Switch
+    private lateinit var switchMachineReadable: Switch
     private lateinit var etNumber: EditText
     private lateinit var btnAdd: Button
     private lateinit var listNumbers: ListView
@@ -33,6 +34,7 @@ class SettingsActivity : AppCompatActivity() {
 
         etKeyword = findViewById(R.id.etKeyword)
         switchEnabled = findViewById(R.id.switchEnabled)
+        switchMachineReadable = findViewById(R.id.switchMachineReadable)
         etNumber = findViewById(R.id.etNumber)
         btnAdd = findViewById(R.id.btnAdd)
         listNumbers = findViewById(R.id.listNumbers)
@@ -46,6 +48,7 @@ class SettingsActivity : AppCompatActivity() {
         val enabled = prefs.getBoolean("sms_location_enabled", true)
         etKeyword.setText(keyword)
         switchEnabled.isChecked = enabled
+        switchMachineReadable.isChecked = prefs.getBoolean("sms_location_machine_readable", false)
 
         loadContacts()
 
@@ -68,6 +71,10 @@ class SettingsActivity : AppCompatActivity() {
             prefs.edit().putBoolean("sms_location_enabled", checked).apply()
         }
 
+        switchMachineReadable.setOnCheckedChangeListener { _, checked ->
+            prefs.edit().putBoolean("sms_location_machine_readable", checked).apply()
+        }
+
         etKeyword.setOnFocusChangeListener { _, hasFocus ->
             if (!hasFocus) {
                 prefs.edit().putString("sms_location_keyword", etKeyword.text.toString()).apply()
@@ -0,0 +1,250 @@
+package com.offsync.app;
+
+import java.util.Locale;
+
+/**
+ * Compact SMS encoding for a location fix.
+ *
+ * Human form: {@code I'm here: https://maps.google.com/?q=12.3457,56.7891 ~8m 3min ago (gps)}
+ * with coordinate decimals limited to what the fix accuracy justifies and a relative age
+ * instead of a locale-formatted date. The optional machine form appends a token our gateway
+ * can parse: {@code #OFS1:<geohash>:<ageSec>:<accM>:<provider>}, geohash length sized to the
+ * accuracy. Every message is GSM-7 only and is trimmed until it fits one 160-char segment.
+ */
+public final class SmsLocationCodec {
+    public static final String MACHINE_PREFIX = "#OFS1:";
+    public static final int GSM7_SINGLE_SEGMENT = 160;
+    private static final int GSM7_MULTIPART_SEGMENT = 153;
+    private static final int UCS2_SINGLE_SEGMENT = 70;
+    private static final int UCS2_MULTIPART_SEGMENT = 67;
+
+    private static final String MAPS_PREFIX = "https://maps.google.com/?q=";
+    private static final String GEOHASH_ALPHABET = "0123456789bcdefghjkmnpqrstuvwxyz";
+    // Half-width of a geohash cell (meters, worst case) for lengths 0..12
+    private static final double[] GEOHASH_ERROR_M = {
+            20_000_000, 2_500_000, 630_000, 78_000, 20_000, 2_400, 610, 76, 19, 2.4, 0.6, 0.074, 0.019
+    };
+    // GSM 03.38 default alphabet (escape character excluded) and its extension table
+    private static final String GSM7_BASIC =
+            "@\u00A3$\u00A5\u00E8\u00E9\u00F9\u00EC\u00F2\u00C7\n\u00D8\u00F8\r\u00C5\u00E5\u0394_\u03A6\u0393\u039B\u03A9\u03A0\u03A8\u03A3\u0398\u039E\u00C6\u00E6\u00DF\u00C9 !\"#\u00A4%&'()*+,-./0123456789:;<=>?"
+                    + "\u00A1ABCDEFGHIJKLMNOPQRSTUVWXYZ\u00C4\u00D6\u00D1\u00DC\u00A7\u00BFabcdefghijklmnopqrstuvwxyz\u00E4\u00F6\u00F1\u00FC\u00E0";
+    private static final String GSM7_EXTENSION = "\f^{}\\[~]|\u20AC";
+
+    private SmsLocationCodec() {
+    }
+
+    /** Decoded form of a machine-readable token. */
+    public static final class Decoded {
+        public final double lat;
+        public final double lng;
+        public final double accuracyM; // -1 when unknown
+        public final long fixTimeMs;
+        public final String provider;
+
+        Decoded(double lat, double lng, double accuracyM, long fixTimeMs, String provider) {
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracyM = accuracyM;
+            this.fixTimeMs = fixTimeMs;
+            this.provider = provider;
+        }
+    }
+
+    /**
+     * Encode a fix into a single-segment GSM-7 message.
+     *
+     * @param accuracyM fix accuracy in meters, or a negative value when unknown
+     * @param fixTimeMs fix timestamp (epoch ms), or {@code <= 0} when unknown
+     */
+    public static String encode(double lat, double lng, double accuracyM, long fixTimeMs, long nowMs,
+                                String provider, boolean machineReadable) {
+        long ageSec = fixTimeMs > 0 ? Math.max(0, (nowMs - fixTimeMs) / 1000) : -1;
+        String providerLabel = providerLabel(provider);
+        int decimals = decimalsFor(accuracyM);
+
+        String msg = human(lat, lng, decimals, accuracyM, ageSec, providerLabel);
+        if (machineReadable) {
+            msg = msg + "\n" + machineToken(lat, lng, accuracyM, ageSec, providerLabel);
+        }
+        if (fitsSingleSegment(msg)) return msg;
+
+        // Shed optional parts until the message fits one segment
+        msg = human(lat, lng, decimals, accuracyM, ageSec, null);
+        if (machineReadable) msg = msg + "\n" + machineToken(lat, lng, accuracyM, ageSec, providerLabel);
+        if (fitsSingleSegment(msg)) return msg;
+        if (machineReadable) return machineToken(lat, lng, accuracyM, ageSec, providerLabel);
+        return formatCoord(lat, decimals) + "," + formatCoord(lng, decimals);
+    }
+
+    /** Decode the machine token embedded in {@code message}, or null if it carries none. */
+    public static Decoded decode(String message, long receivedAtMs) {
+        if (message == null) return null;
+        int start = message.indexOf(MACHINE_PREFIX);
+        if (start < 0) return null;
+        int end = start + MACHINE_PREFIX.length();
+        while (end < message.length() && !Character.isWhitespace(message.charAt(end))) end++;
+        String[] fields = message.substring(start + MACHINE_PREFIX.length(), end).split(":", -1);
+        if (fields.length != 4) return null;
+        try {
+            double[] center = geohashDecode(fields[0]);
+            long ageSec = fields[1].isEmpty() ? -1 : Long.parseLong(fields[1]);
+            double acc = fields[2].isEmpty() ? -1 : Double.parseDouble(fields[2]);
+            long fixTime = ageSec < 0 ? 0 : receivedAtMs - ageSec * 1000;
+            return new Decoded(center[0], center[1], acc, fixTime, providerName(fields[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /** Number of SMS segments {@code message} needs (GSM-7 if possible, UCS-2 otherwise). */
+    public static int segmentCount(String message) {
+        if (message == null || message.isEmpty()) return 1;
+        int septets = gsm7Septets(message);
+        if (septets >= 0) {
+            return septets <= GSM7_SINGLE_SEGMENT ? 1 : (septets + GSM7_MULTIPART_SEGMENT - 1) / GSM7_MULTIPART_SEGMENT;
+        }
+        int units = message.length();
+        return units <= UCS2_SINGLE_SEGMENT ? 1 : (units + UCS2_MULTIPART_SEGMENT - 1) / UCS2_MULTIPART_SEGMENT;
+    }
+
+    public static boolean fitsSingleSegment(String message) {
+        int septets = gsm7Septets(message);
+        return septets >= 0 && septets <= GSM7_SINGLE_SEGMENT;
+    }
+
+    /** Geohash length whose cell error does not exceed the accuracy (8 when unknown, capped at 9). */
+    public static int geohashLengthFor(double accuracyM) {
+        if (accuracyM < 0) return 8;
+        for (int len = 5; len <= 9; len++) {
+            if (GEOHASH_ERROR_M[len] <= Math.max(accuracyM, 1.0)) return len;
+        }
+        return 9;
+    }
+
+    public static String geohashEncode(double lat, double lng, int length) {
+        double minLat = -90, maxLat = 90, minLng = -180, maxLng = 180;
+        StringBuilder sb = new StringBuilder(length);
+        boolean evenBit = true;
+        int bit = 0;
+        int ch = 0;
+        while (sb.length() < length) {
+            if (evenBit) {
+                double mid = (minLng + maxLng) / 2;
+                if (lng >= mid) { ch = (ch << 1) | 1; minLng = mid; } else { ch = ch << 1; maxLng = mid; }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (lat >= mid) { ch = (ch << 1) | 1; minLat = mid; } else { ch = ch << 1; maxLat = mid; }
+            }
+            evenBit = !evenBit;
+            if (++bit == 5) {
+                sb.append(GEOHASH_ALPHABET.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Center of the geohash cell as {lat, lng}. */
+    public static double[] geohashDecode(String hash) {
+        if (hash == null || hash.isEmpty()) throw new IllegalArgumentException("empty geohash");
+        double minLat = -90, maxLat = 90, minLng = -180, maxLng = 180;
+        boolean evenBit = true;
+        for (int i = 0; i < hash.length(); i++) {
+            int idx = GEOHASH_ALPHABET.indexOf(hash.charAt(i));
+            if (idx < 0) throw new IllegalArgumentException("invalid geohash: " + hash);
+            for (int n = 4; n >= 0; n--) {
+                int bitN = (idx >> n) & 1;
+                if (evenBit) {
+                    double mid = (minLng + maxLng) / 2;
+                    if (bitN == 1) minLng = mid; else maxLng = mid;
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (bitN == 1) minLat = mid; else maxLat = mid;
+                }
+                evenBit = !evenBit;
+            }
+        }
+        return new double[] {(minLat + maxLat) / 2, (minLng + maxLng) / 2};
+    }
+
+    private static String human(double lat, double lng, int decimals, double accuracyM, long ageSec, String providerLabel) {
+        StringBuilder sb = new StringBuilder(96);
+        sb.append("I'm here: ").append(MAPS_PREFIX)
+                .append(formatCoord(lat, decimals)).append(',').append(formatCoord(lng, decimals));
+        if (accuracyM >= 0) sb.append(" ~").append(Math.round(accuracyM)).append('m');
+        if (ageSec >= 0) sb.append(' ').append(formatAge(ageSec));
+        if (providerLabel != null) sb.append(" (").append(providerLabel).append(')');
+        return sb.toString();
+    }
+
+    private static String machineToken(double lat, double lng, double accuracyM, long ageSec, String providerLabel) {
+        return MACHINE_PREFIX + geohashEncode(lat, lng, geohashLengthFor(accuracyM))
+                + ':' + (ageSec >= 0 ? Long.toString(ageSec) : "")
+                + ':' + (accuracyM >= 0 ? Long.toString(Math.min(99_999, Math.round(accuracyM))) : "")
+                + ':' + providerLabel.charAt(0);
+    }
+
+    // ~1.1 m per 0.00001 degree; no point printing digits the fix cannot back up
+    private static int decimalsFor(double accuracyM) {
+        if (accuracyM < 0) return 5;
+        if (accuracyM >= 1100) return 2;
+        if (accuracyM >= 110) return 3;
+        if (accuracyM >= 11) return 4;
+        return 5;
+    }
+
+    private static String formatCoord(double v, int decimals) {
+        String s = String.format(Locale.US, "%." + decimals + "f", v);
+        // Trim trailing zeros to save characters ("12.3400" -> "12.34")
+        int end = s.length();
+        while (end > 0 && s.charAt(end - 1) == '0') end--;
+        if (end > 0 && s.charAt(end - 1) == '.') end--;
+        return s.substring(0, end);
+    }
+
+    private static String formatAge(long ageSec) {
+        if (ageSec < 60) return "just now";
+        if (ageSec < 3600) return (ageSec / 60) + "min ago";
+        if (ageSec < 86_400) return (ageSec / 3600) + "h ago";
+        return (ageSec / 86_400) + "d ago";
+    }
+
+    private static String providerLabel(String provider) {
+        if (provider == null) return "unknown";
+        String p = provider.toLowerCase(Locale.US);
+        switch (p) {
+            case "gps":
+            case "network":
+            case "fused":
+                return p;
+            default:
+                return "unknown";
+        }
+    }
+
+    private static String providerName(String code) {
+        switch (code) {
+            case "g": return "gps";
+            case "n": return "network";
+            case "f": return "fused";
+            default: return "unknown";
+        }
+    }
+
+    /** Septet count of {@code s} in GSM 03.38, or -1 if it needs UCS-2. */
+    private static int gsm7Septets(String s) {
+        int septets = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (GSM7_BASIC.indexOf(c) >= 0) {
+                septets++;
+            } else if (GSM7_EXTENSION.indexOf(c) >= 0) {
+                septets += 2;
+            } else {
+                return -1;
+            }
+        }
+        return septets;
+    }
+}
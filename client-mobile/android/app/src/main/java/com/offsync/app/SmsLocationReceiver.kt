@@ -8,6 +8,7 @@ import android.telephony.SmsManager
 import android.telephony.TelephonyManager
 import android.util.Log
 import androidx.work.Data
+import androidx.work.ExistingWorkPolicy
 import androidx.work.OneTimeWorkRequestBuilder
 import androidx.work.WorkManager
 import android.provider.Telephony
@@ -72,7 +73,9 @@ class SmsLocationReceiver : BroadcastReceiver() {
                 .setInputData(input)
                 .build()
 
-            WorkManager.getInstance(context.applicationContext).enqueue(work)
+            // One queued request per sender; repeats while it is pending are dropped here
+            WorkManager.getInstance(context.applicationContext)
+                .enqueueUniqueWork("sms_location_$sender", ExistingWorkPolicy.KEEP, work)
         }
     }
 }
@@ -4,7 +4,6 @@ import android.Manifest
 import android.content.Context
 import android.location.Location
 import android.location.LocationManager
-import android.telephony.SmsManager
 import android.util.Log
 import android.content.pm.PackageManager
 import android.Manifest
@@ -14,9 +13,8 @@ import androidx.work.WorkerParameters
 import com.google.android.gms.location.LocationServices
 import com.google.android.gms.location.Priority
 import com.google.android.gms.tasks.Tasks
-import java.time.Instant
-import java.time.ZoneId
-import java.time.format.DateTimeFormatter
+import com.offsync.app.metrics.SyncTrace
+import java.util.concurrent.Callable
 import java.util.concurrent.TimeUnit
 
 class SmsLocationWorker(appContext: Context, params: WorkerParameters) : CoroutineWorker(appContext, params) {
@@ -39,6 +37,14 @@ class SmsLocationWorker(appContext: Context, params: WorkerParameters) : Corouti
             return Result.success()
         }
 
+        // Collapse repeats and rate-limit per sender before touching the GPS radio
+        val decision = SmsQueryDispatcher.getInstance()
+            .admit(AuthorizationHelper.normalizePhone(sender), System.currentTimeMillis())
+        if (decision != SmsQueryDispatcher.Decision.ACCEPT) {
+            Log.d(TAG, "Dropping location request from $sender: $decision")
+            return Result.success()
+        }
+
         // Check location permission
         val fine = ContextCompat.checkSelfPermission(applicationContext, Manifest.permission.ACCESS_FINE_LOCATION) == android.content.pm.PackageManager.PERMISSION_GRANTED
         val coarse = ContextCompat.checkSelfPermission(applicationContext, Manifest.permission.ACCESS_COARSE_LOCATION) == android.content.pm.PackageManager.PERMISSION_GRANTED
@@ -56,6 +62,38 @@ class SmsLocationWorker(appContext: Context, params: WorkerParameters) : Corouti
             return Result.success()
         }
 
+        // Concurrent requests share whichever acquisition is already in flight
+        val cookie = id.hashCode()
+        val locateTraced = SyncTrace.beginAsync("offsync:sms.locate", cookie)
+        val location: Location? = try {
+            SmsQueryDispatcher.getInstance().acquire(Callable { acquireLocation() })
+        } catch (e: Exception) {
+            Log.w(TAG, "Location acquisition failed: ${e.message}")
+            null
+        } finally {
+            SyncTrace.endAsync(locateTraced, "offsync:sms.locate", cookie)
+        }
+
+        if (location == null) {
+            sendSms(applicationContext, sender, "Unable to get location right now. Try again.")
+            return Result.success()
+        }
+
+        val acc = if (location.hasAccuracy()) location.accuracy.toDouble() else -1.0
+        // Fall back to now when the fix carries no timestamp
+        val timeMillis = if (location.time > 0) location.time else System.currentTimeMillis()
+        val prefs = applicationContext.getSharedPreferences("offsync_prefs", Context.MODE_PRIVATE)
+        val machineReadable = prefs.getBoolean("sms_location_machine_readable", false)
+        val message = SmsLocationCodec.encode(
+            location.latitude, location.longitude, acc, timeMillis,
+            System.currentTimeMillis(), location.provider, machineReadable
+        )
+        sendSms(applicationContext, sender, message)
+
+        return Result.success()
+    }
+
+    private fun acquireLocation(): Location? {
         val fused = LocationServices.getFusedLocationProviderClient(applicationContext)
         var location: Location? = null
         try {
@@ -73,34 +111,7 @@ class SmsLocationWorker(appContext: Context, params: WorkerParameters) : Corouti
                 Log.w(TAG, "High accuracy attempt failed: ${e.message}")
             }
         }
-
-        if (location == null) {
-            sendSms(applicationContext, sender, "Unable to get location right now. Try again.")
-            return Result.success()
-        }
-
-        val lat = location.latitude
-        val lon = location.longitude
-        val acc = if (location.hasAccuracy()) location.accuracy else -1f
-        val providerRaw = location.provider ?: "unknown"
-        val providerLabel = when (providerRaw.lowercase()) {
-            LocationManager.GPS_PROVIDER -> "gps"
-            LocationManager.NETWORK_PROVIDER -> "network"
-            "fused" -> "fused"
-            else -> providerRaw
-        }
-
-        // Local time from location timestamp if available, otherwise now
-        val timeMillis = if (location.time > 0) location.time else System.currentTimeMillis()
-        val localTime = Instant.ofEpochMilli(timeMillis).atZone(ZoneId.systemDefault())
-            .format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss z"))
-
-        val maps = "https://maps.google.com/?q=$lat,$lon"
-        val accuracyLine = if (acc >= 0f) "Accuracy: ${acc}m" else "Accuracy: unknown"
-        val message = "My location: $maps\n$accuracyLine\nTime: $localTime\nSource: $providerLabel"
-        sendSms(applicationContext, sender, message)
-
-        return Result.success()
+        return location
     }
 
     private fun sendSms(context: Context, to: String, body: String) {
@@ -111,16 +122,11 @@ class SmsLocationWorker(appContext: Context, params: WorkerParameters) : Corouti
                 return
             }
 
-            val sms = SmsManager.getDefault()
-            val parts = sms.divideMessage(body)
-            if (parts.size > 1) {
-                sms.sendMultipartTextMessage(to, null, parts, null, null)
-            } else {
-                sms.sendTextMessage(to, null, body, null, null)
-            }
-            Log.d(TAG, "Sent SMS to $to")
+            // Queued so bursts are paced and sent/delivered reports are recorded
+            SmsOutbox.enqueue(context, to, body)
+            Log.d(TAG, "Queued SMS to $to")
         } catch (e: Exception) {
-            Log.e(TAG, "Failed to send SMS to $to", e)
+            Log.e(TAG, "Failed to queue SMS to $to", e)
         }
     }
 }
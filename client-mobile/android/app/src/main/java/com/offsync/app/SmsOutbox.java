@@ -0,0 +1,97 @@
+package com.offsync.app;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.telephony.SmsManager;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.OutboundSmsDao;
+import com.offsync.app.db.OutboundSmsEntity;
+import com.offsync.app.metrics.SyncTrace;
+import com.offsync.app.work.SmsOutboxWorker;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistent outbound SMS queue.
+ * Messages are stored in {@code outbound_sms}, drained by {@link SmsOutboxWorker} at a pace the
+ * carrier tolerates, and sent with per-part sent/delivered {@link PendingIntent}s that
+ * {@link SmsStatusReceiver} turns into sent and delivered timestamps.
+ */
+public final class SmsOutbox {
+    static final String ACTION_SMS_SENT = "com.offsync.app.SMS_SENT";
+    static final String ACTION_SMS_DELIVERED = "com.offsync.app.SMS_DELIVERED";
+    static final String EXTRA_OUTBOX_ID = "outbox_id";
+    public static final int MAX_ATTEMPTS = 3;
+    private static final String UNIQUE_WORK_NAME = "offsync_sms_outbox";
+
+    private SmsOutbox() {
+    }
+
+    /** Persist a message and make sure the drain worker will pick it up. Call off the main thread. */
+    public static long enqueue(Context context, String destination, String body) {
+        OutboundSmsEntity e = new OutboundSmsEntity();
+        e.destination = destination;
+        e.body = body;
+        e.status = OutboundSmsEntity.STATUS_PENDING;
+        e.createdAt = System.currentTimeMillis();
+        long id = AppDatabase.getInstance(context).outboundSmsDao().insert(e);
+        scheduleDrain(context, 0);
+        return id;
+    }
+
+    public static void scheduleDrain(Context context, long delayMs) {
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(SmsOutboxWorker.class)
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .build();
+        // APPEND_OR_REPLACE so a message queued while a drain is finishing still gets its own pass
+        WorkManager.getInstance(context.getApplicationContext())
+                .enqueueUniqueWork(UNIQUE_WORK_NAME, ExistingWorkPolicy.APPEND_OR_REPLACE, req);
+    }
+
+    /** Hand one queued message to the radio, split into parts when it exceeds one segment. */
+    public static void dispatch(Context context, OutboundSmsEntity sms) {
+        boolean traced = SyncTrace.begin("offsync:sms.dispatch");
+        try {
+            dispatchTraced(context, sms);
+        } finally {
+            SyncTrace.end(traced);
+        }
+    }
+
+    private static void dispatchTraced(Context context, OutboundSmsEntity sms) {
+        OutboundSmsDao dao = AppDatabase.getInstance(context).outboundSmsDao();
+        SmsManager smsManager = SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(sms.body);
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+        ArrayList<PendingIntent> deliveredIntents = new ArrayList<>(parts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            sentIntents.add(statusIntent(context, ACTION_SMS_SENT, sms.id, i, PendingIntent.FLAG_IMMUTABLE));
+            deliveredIntents.add(statusIntent(context, ACTION_SMS_DELIVERED, sms.id, i, PendingIntent.FLAG_MUTABLE));
+        }
+        dao.markDispatched(sms.id, parts.size(), System.currentTimeMillis());
+        try {
+            if (parts.size() > 1) {
+                smsManager.sendMultipartTextMessage(sms.destination, null, parts, sentIntents, deliveredIntents);
+            } else {
+                smsManager.sendTextMessage(sms.destination, null, sms.body, sentIntents.get(0), deliveredIntents.get(0));
+            }
+        } catch (Exception ex) {
+            dao.markFailed(sms.id, String.valueOf(ex.getMessage()), MAX_ATTEMPTS);
+        }
+    }
+
+    // The delivered intents must be mutable, or the radio's "pdu" status report is dropped
+    private static PendingIntent statusIntent(Context context, String action, long id, int part, int mutability) {
+        Intent intent = new Intent(action);
+        intent.setClass(context, SmsStatusReceiver.class);
+        // Unique data URI per part so PendingIntents are not collapsed by the system
+        intent.setData(Uri.parse("offsync-sms://outbox/" + id + "/" + part));
+        intent.putExtra(EXTRA_OUTBOX_ID, id);
+        return PendingIntent.getBroadcast(context, 0, intent, mutability);
+    }
+}
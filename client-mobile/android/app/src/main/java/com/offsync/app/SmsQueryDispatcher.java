@@ -0,0 +1,153 @@
+package com.offsync.app;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sits in front of the SMS location reply pipeline.
+ * Collapses repeated requests from the same sender, rate-limits each sender with a token bucket
+ * and lets concurrent queries share a single in-flight location acquisition, so a burst of
+ * texts costs one GPS fix instead of one per message.
+ */
+public final class SmsQueryDispatcher {
+    public enum Decision { ACCEPT, DUPLICATE, THROTTLED }
+
+    private static final long DEFAULT_DUPLICATE_WINDOW_MS = 60_000L;
+    private static final int DEFAULT_BURST = 3;
+    private static final long DEFAULT_REFILL_INTERVAL_MS = 5 * 60_000L; // one token every 5 minutes
+    private static final int MAX_TRACKED_SENDERS = 256;
+
+    private static volatile SmsQueryDispatcher INSTANCE;
+
+    private final long duplicateWindowMs;
+    private final int burst;
+    private final long refillIntervalMs;
+    private final Map<String, SenderState> senders = new HashMap<>();
+    private FutureTask<?> inFlight;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong duplicates = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    public static SmsQueryDispatcher getInstance() {
+        if (INSTANCE == null) {
+            synchronized (SmsQueryDispatcher.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new SmsQueryDispatcher(DEFAULT_DUPLICATE_WINDOW_MS, DEFAULT_BURST, DEFAULT_REFILL_INTERVAL_MS);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    SmsQueryDispatcher(long duplicateWindowMs, int burst, long refillIntervalMs) {
+        this.duplicateWindowMs = duplicateWindowMs;
+        this.burst = burst;
+        this.refillIntervalMs = refillIntervalMs;
+    }
+
+    /**
+     * Decide whether a query from {@code sender} should get a reply.
+     * A repeat inside the duplicate window is collapsed into the reply already under way and
+     * does not consume a token; otherwise the sender's bucket must have a token left.
+     */
+    public synchronized Decision admit(String sender, long nowMs) {
+        String key = sender == null ? "" : sender;
+        SenderState state = senders.get(key);
+        if (state == null) {
+            if (senders.size() >= MAX_TRACKED_SENDERS) evictIdle(nowMs);
+            state = new SenderState(burst, nowMs);
+            senders.put(key, state);
+        }
+        if (state.lastAcceptedAt > 0 && nowMs - state.lastAcceptedAt < duplicateWindowMs) {
+            duplicates.incrementAndGet();
+            return Decision.DUPLICATE;
+        }
+        state.refill(nowMs, burst, refillIntervalMs);
+        if (state.tokens < 1) {
+            throttled.incrementAndGet();
+            return Decision.THROTTLED;
+        }
+        state.tokens -= 1;
+        state.lastAcceptedAt = nowMs;
+        accepted.incrementAndGet();
+        return Decision.ACCEPT;
+    }
+
+    /**
+     * Run {@code loader} unless an acquisition is already in flight, in which case wait for
+     * and return that one's result. Exceptions from the loader are seen by every waiter.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T acquire(Callable<T> loader) throws Exception {
+        FutureTask<T> task;
+        boolean owner = false;
+        synchronized (this) {
+            if (inFlight == null) {
+                inFlight = new FutureTask<>(loader);
+                owner = true;
+            } else {
+                coalesced.incrementAndGet();
+            }
+            task = (FutureTask<T>) inFlight;
+        }
+        if (owner) {
+            acquisitions.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                synchronized (this) {
+                    inFlight = null;
+                }
+            }
+        }
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
+        }
+    }
+
+    public long getAcceptedCount() { return accepted.get(); }
+    public long getDuplicateCount() { return duplicates.get(); }
+    public long getThrottledCount() { return throttled.get(); }
+    public long getCoalescedCount() { return coalesced.get(); }
+    public long getAcquisitionCount() { return acquisitions.get(); }
+
+    // Drop senders whose bucket is full again and whose duplicate window has passed
+    private void evictIdle(long nowMs) {
+        Iterator<Map.Entry<String, SenderState>> it = senders.entrySet().iterator();
+        while (it.hasNext()) {
+            SenderState s = it.next().getValue();
+            s.refill(nowMs, burst, refillIntervalMs);
+            if (s.tokens >= burst && nowMs - s.lastAcceptedAt >= duplicateWindowMs) it.remove();
+        }
+    }
+
+    private static final class SenderState {
+        double tokens;
+        long refilledAt;
+        long lastAcceptedAt;
+
+        SenderState(int burst, long nowMs) {
+            this.tokens = burst;
+            this.refilledAt = nowMs;
+        }
+
+        void refill(long nowMs, int burst, long refillIntervalMs) {
+            long elapsed = nowMs - refilledAt;
+            if (elapsed <= 0) return;
+            tokens = Math.min(burst, tokens + (double) elapsed / refillIntervalMs);
+            refilledAt = nowMs;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.offsync.app;
+
+import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.telephony.SmsMessage;
+import android.util.Log;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.OutboundSmsDao;
+import com.offsync.app.db.SmsBatchDao;
+import com.offsync.app.db.SmsBatchEntity;
+import com.offsync.app.work.SmsFallbackWorker;
+import java.util.List;
+
+/**
+ * Receives per-part sent and delivered reports for messages dispatched by {@link SmsOutbox}
+ * and records them in {@code outbound_sms}. Also handles the reports for binary batches sent by
+ * {@link SmsFallbackWorker}, whose points count as uploaded once the batch is delivered.
+ */
+public class SmsStatusReceiver extends BroadcastReceiver {
+    private static final String TAG = "SmsStatusReceiver";
+    // TP-Status (3GPP TS 23.040 9.2.3.15): below 0x20 the transaction completed, 0x20-0x3F the
+    // SMSC is still trying, and from 0x40 it gave up
+    private static final int TP_STATUS_TEMPORARY_ERROR = 0x20;
+    private static final int TP_STATUS_PERMANENT_ERROR = 0x40;
+
+    /** What a delivery report says about the message. */
+    enum Delivery {
+        DELIVERED,
+        /** The SMSC is still trying; a final report may follow. */
+        PENDING,
+        FAILED,
+        /** No readable status report; nothing can be concluded. */
+        UNKNOWN
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String batchAction = intent.getAction();
+        if (SmsFallbackWorker.ACTION_BATCH_SENT.equals(batchAction)
+                || SmsFallbackWorker.ACTION_BATCH_DELIVERED.equals(batchAction)) {
+            onBatchStatus(context, intent);
+            return;
+        }
+        long id = intent.getLongExtra(SmsOutbox.EXTRA_OUTBOX_ID, -1);
+        if (id < 0) return;
+        String action = intent.getAction();
+        int resultCode = getResultCode();
+        Delivery delivery = SmsOutbox.ACTION_SMS_DELIVERED.equals(action) ? readDelivery(intent) : null;
+        // Not final yet, or unreadable: keep the message as sent rather than stamp a delivery time
+        if (delivery == Delivery.PENDING || delivery == Delivery.UNKNOWN) return;
+        Context appContext = context.getApplicationContext();
+        PendingResult pending = goAsync();
+
+        new Thread(() -> {
+            try {
+                OutboundSmsDao dao = AppDatabase.getInstance(appContext).outboundSmsDao();
+                long now = System.currentTimeMillis();
+                if (SmsOutbox.ACTION_SMS_SENT.equals(action)) {
+                    if (resultCode == Activity.RESULT_OK) {
+                        dao.incrementPartsSent(id);
+                        dao.markSentIfComplete(id, now);
+                    } else if (dao.markFailed(id, "send result " + resultCode, SmsOutbox.MAX_ATTEMPTS) > 0) {
+                        SmsOutbox.scheduleDrain(appContext, 30_000L);
+                    }
+                } else if (SmsOutbox.ACTION_SMS_DELIVERED.equals(action)) {
+                    if (delivery == Delivery.FAILED) {
+                        Log.w(TAG, "Delivery failed for outbox " + id);
+                        if (dao.markFailed(id, "delivery failed", SmsOutbox.MAX_ATTEMPTS) > 0) {
+                            SmsOutbox.scheduleDrain(appContext, 30_000L);
+                        }
+                    } else {
+                        dao.incrementPartsDelivered(id);
+                        dao.markDeliveredIfComplete(id, now);
+                    }
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to record SMS status", e);
+            } finally {
+                pending.finish();
+            }
+        }).start();
+    }
+
+    private void onBatchStatus(Context context, Intent intent) {
+        long batchId = intent.getLongExtra(SmsFallbackWorker.EXTRA_BATCH_ID, -1);
+        if (batchId < 0) return;
+        boolean sentReport = SmsFallbackWorker.ACTION_BATCH_SENT.equals(intent.getAction());
+        boolean ok;
+        if (sentReport) {
+            if (getResultCode() == Activity.RESULT_OK) return; // only delivery acknowledges points
+            ok = false;
+        } else {
+            Delivery delivery = readDelivery(intent);
+            // A report that is not final, or not readable, leaves the batch in flight until a later
+            // report or the delivery timeout
+            if (delivery == Delivery.PENDING || delivery == Delivery.UNKNOWN) return;
+            ok = delivery == Delivery.DELIVERED;
+        }
+        Context appContext = context.getApplicationContext();
+        PendingResult pending = goAsync();
+
+        new Thread(() -> {
+            try {
+                AppDatabase db = AppDatabase.getInstance(appContext);
+                SmsBatchDao dao = db.smsBatchDao();
+                if (!ok) {
+                    dao.markFailed(batchId);
+                    return;
+                }
+                SmsBatchEntity batch = dao.getById(batchId);
+                if (batch != null && dao.markDelivered(batchId, System.currentTimeMillis()) > 0) {
+                    List<Integer> ids = SmsFallbackWorker.parseIds(batch.pointIds);
+                    if (!ids.isEmpty()) db.locationDao().markBatchAsUploaded(ids);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to record SMS batch status", e);
+            } finally {
+                pending.finish();
+            }
+        }).start();
+    }
+
+    /** Read the status report the radio attached to a delivery intent. */
+    static Delivery readDelivery(Intent intent) {
+        try {
+            byte[] pdu = intent.getByteArrayExtra("pdu");
+            String format = intent.getStringExtra("format");
+            if (pdu == null) return Delivery.UNKNOWN;
+            SmsMessage msg = SmsMessage.createFromPdu(pdu, format);
+            return msg == null ? Delivery.UNKNOWN : deliveryOf(msg.getStatus());
+        } catch (Exception e) {
+            Log.w(TAG, "Unreadable delivery report", e);
+            return Delivery.UNKNOWN;
+        }
+    }
+
+    static Delivery deliveryOf(int tpStatus) {
+        if (tpStatus < 0) return Delivery.UNKNOWN;
+        if (tpStatus < TP_STATUS_TEMPORARY_ERROR) return Delivery.DELIVERED;
+        if (tpStatus < TP_STATUS_PERMANENT_ERROR) return Delivery.PENDING;
+        return Delivery.FAILED;
+    }
+}
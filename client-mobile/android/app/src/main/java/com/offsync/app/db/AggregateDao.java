@@ -0,0 +1,69 @@
+package com.offsync.app.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import java.util.List;
+
+/**
+ * Aggregate tables maintained by {@link AggregateStore}. Increments are an INSERT OR IGNORE of
+ * a zero row followed by an UPDATE, since the platform SQLite on older devices has no upsert.
+ */
+@Dao
+public interface AggregateDao {
+    @Query("SELECT * FROM track_state WHERE id = 0")
+    TrackStateEntity getState();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void saveState(TrackStateEntity state);
+
+    @Query("INSERT OR IGNORE INTO daily_summaries (day, point_count, distance_m, stop_count, dwell_ms, first_at, last_at) "
+            + "VALUES (:day, 0, 0, 0, 0, :at, :at)")
+    void ensureDay(String day, long at);
+
+    @Query("UPDATE daily_summaries SET point_count = point_count + 1, distance_m = distance_m + :distanceM, "
+            + "stop_count = stop_count + :stops, dwell_ms = dwell_ms + :dwellMs, "
+            + "first_at = MIN(first_at, :at), last_at = MAX(last_at, :at) WHERE day = :day")
+    void addToDay(String day, long at, double distanceM, int stops, long dwellMs);
+
+    @Query("INSERT OR IGNORE INTO hourly_counts (hour_start, point_count) VALUES (:hourStart, 0)")
+    void ensureHour(long hourStart);
+
+    @Query("UPDATE hourly_counts SET point_count = point_count + 1 WHERE hour_start = :hourStart")
+    void addToHour(long hourStart);
+
+    @Insert
+    long insertStop(StopEntity stop);
+
+    @Query("UPDATE stops SET end_at = :endAt, lat = :lat, lng = :lng, point_count = :pointCount WHERE id = :id")
+    void extendStop(long id, long endAt, double lat, double lng, int pointCount);
+
+    @Query("SELECT * FROM daily_summaries WHERE day BETWEEN :fromDay AND :toDay ORDER BY day ASC")
+    List<DailySummaryEntity> getDays(String fromDay, String toDay);
+
+    @Query("SELECT * FROM hourly_counts WHERE hour_start >= :from AND hour_start < :to ORDER BY hour_start ASC")
+    List<HourlyCountEntity> getHours(long from, long to);
+
+    // Stops overlapping [from, to), newest first
+    @Query("SELECT * FROM stops WHERE end_at >= :from AND start_at < :to ORDER BY start_at DESC LIMIT :limit")
+    List<StopEntity> getStops(long from, long to, int limit);
+
+    @Query("DELETE FROM daily_summaries WHERE day < :day")
+    int deleteDaysBefore(String day);
+
+    @Query("DELETE FROM hourly_counts WHERE hour_start < :hourStart")
+    int deleteHoursBefore(long hourStart);
+
+    @Query("DELETE FROM stops WHERE end_at < :ts")
+    int deleteStopsEndedBefore(long ts);
+
+    @Query("DELETE FROM daily_summaries")
+    void clearDays();
+
+    @Query("DELETE FROM hourly_counts")
+    void clearHours();
+
+    @Query("DELETE FROM stops")
+    void clearStops();
+}
@@ -0,0 +1,115 @@
+package com.offsync.app.db;
+
+import android.database.Cursor;
+import android.util.Log;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import com.offsync.app.metrics.SyncTrace;
+import java.time.ZoneId;
+
+/**
+ * Keeps {@code daily_summaries}, {@code hourly_counts} and {@code stops} current as points are
+ * written, so summary screens read a handful of rows whatever the size of the history.
+ * {@link LocationWriter} calls {@link #apply} in the transaction of each insert and
+ * {@link #pruneBefore} in the transaction of each retention prune.
+ *
+ * Retention drops aggregates older than the cutoff with the points, so no summary outlives the
+ * retention window; the day holding the cutoff keeps its totals until the next prune. Quota
+ * eviction and thinning keep them: the aggregates describe the track as captured, not what is
+ * still stored.
+ */
+public final class AggregateStore {
+    private static final String TAG = "AggregateStore";
+    private static final String BY_TIME = "SELECT capturedAt, lat, lng FROM location_points ORDER BY capturedAt ASC, id ASC";
+
+    private AggregateStore() {
+    }
+
+    /** Fold one newly inserted point into the aggregates. Call inside the insert's transaction. */
+    static void apply(AppDatabase db, LocationPointEntity point, ZoneId zone) {
+        AggregateDao dao = db.aggregateDao();
+        TrackStateEntity stored = dao.getState();
+        if (stored != null && stored.rebuildPending) {
+            // The point is already in location_points, so the backfill covers it
+            rebuild(db, zone);
+            return;
+        }
+        long at = TrackAggregator.parseTime(point.capturedAt);
+        if (at < 0) return;
+        TrackAggregator.State state = stored == null ? new TrackAggregator.State() : stored.toState();
+        fold(dao, state, at, point.lat, point.lng, new TrackAggregator.Step(), zone);
+        dao.saveState(TrackStateEntity.of(state));
+    }
+
+    /** Run the backfill left pending by the migration, if no write has done it yet. Call before reading. */
+    public static void ensureBuilt(AppDatabase db, ZoneId zone) {
+        TrackStateEntity stored = db.aggregateDao().getState();
+        if (stored != null && stored.rebuildPending) rebuild(db, zone);
+    }
+
+    /** Recompute every aggregate from {@code location_points}. */
+    public static void rebuild(AppDatabase db, ZoneId zone) {
+        boolean traced = SyncTrace.begin("offsync:db.aggregateRebuild");
+        try {
+            db.runInTransaction(() -> {
+                AggregateDao dao = db.aggregateDao();
+                dao.clearDays();
+                dao.clearHours();
+                dao.clearStops();
+                TrackAggregator.State state = new TrackAggregator.State();
+                TrackAggregator.Step step = new TrackAggregator.Step();
+                int skipped = 0;
+                try (Cursor c = db.query(new SimpleSQLiteQuery(BY_TIME))) {
+                    while (c.moveToNext()) {
+                        long at = TrackAggregator.parseTime(c.getString(0));
+                        if (at < 0) {
+                            skipped++;
+                            continue;
+                        }
+                        fold(dao, state, at, c.getDouble(1), c.getDouble(2), step, zone);
+                    }
+                }
+                dao.saveState(TrackStateEntity.of(state));
+                if (skipped > 0) Log.w(TAG, "Skipped " + skipped + " points with unreadable capturedAt");
+            });
+        } finally {
+            SyncTrace.end(traced);
+        }
+    }
+
+    /** Drop aggregates older than {@code cutoffMs}. Call inside the prune's transaction. */
+    static void pruneBefore(AppDatabase db, long cutoffMs, ZoneId zone) {
+        AggregateDao dao = db.aggregateDao();
+        dao.deleteDaysBefore(TrackAggregator.dayOf(cutoffMs, zone));
+        dao.deleteHoursBefore(TrackAggregator.hourOf(cutoffMs));
+        dao.deleteStopsEndedBefore(cutoffMs);
+    }
+
+    private static void fold(AggregateDao dao, TrackAggregator.State state, long at, double lat, double lng,
+                             TrackAggregator.Step step, ZoneId zone) {
+        TrackAggregator.advance(state, at, lat, lng, step);
+        switch (step.stop) {
+            case OPENED: {
+                StopEntity stop = new StopEntity();
+                stop.startAt = state.clusterStartAt;
+                stop.endAt = at;
+                stop.lat = TrackAggregator.stopLat(state);
+                stop.lng = TrackAggregator.stopLng(state);
+                stop.pointCount = state.clusterCount;
+                state.openStopId = dao.insertStop(stop);
+                break;
+            }
+            case EXTENDED:
+                dao.extendStop(state.openStopId, at, TrackAggregator.stopLat(state), TrackAggregator.stopLng(state),
+                        state.clusterCount);
+                break;
+            default:
+                break;
+        }
+        String day = TrackAggregator.dayOf(at, zone);
+        dao.ensureDay(day, at);
+        dao.addToDay(day, at, step.distanceM, step.stop == TrackAggregator.StopChange.OPENED ? 1 : 0, step.dwellMs);
+        long hour = TrackAggregator.hourOf(at);
+        dao.ensureHour(hour);
+        dao.addToHour(hour);
+    }
+}
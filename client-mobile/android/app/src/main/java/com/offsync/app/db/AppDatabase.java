@@ -1,6 +1,7 @@
 package com.offsync.app.db;
 
 import com.offsync.app.BuildConfig;
+import com.offsync.app.metrics.SyncTrace;
 
 import androidx.room.Database;
 import androidx.room.Room;
@@ -13,10 +14,15 @@ import androidx.security.crypto.MasterKey;
 import net.sqlcipher.database.SupportFactory;
 import java.security.SecureRandom;
 
-@Database(entities = {LocationPointEntity.class, AuthorizedContactEntity.class}, version = 2, exportSchema = false)
+@Database(entities = {LocationPointEntity.class, AuthorizedContactEntity.class, OutboundSmsEntity.class, SmsBatchEntity.class, UploadSegmentEntity.class,
+        DailySummaryEntity.class, HourlyCountEntity.class, StopEntity.class, TrackStateEntity.class}, version = 9, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     public abstract LocationDao locationDao();
     public abstract AuthorizedContactDao authorizedContactDao();
+    public abstract OutboundSmsDao outboundSmsDao();
+    public abstract SmsBatchDao smsBatchDao();
+    public abstract UploadSegmentDao uploadSegmentDao();
+    public abstract AggregateDao aggregateDao();
 
     private static volatile AppDatabase INSTANCE;
     private static final String PREFS_NAME = "secure_prefs";
@@ -26,15 +32,13 @@ public abstract class AppDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
-                    SupportFactory factory = getSupportFactory(context);
-                    RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
-                                AppDatabase.class, "offsync_native_db");
-                    if (factory != null) {
-                        builder = builder.openHelperFactory(factory);
+                    SyncTrace.init(context);
+                    boolean traced = SyncTrace.begin("offsync:db.open");
+                    try {
+                        INSTANCE = build(context);
+                    } finally {
+                        SyncTrace.end(traced);
                     }
-                    // Add explicit migrations to preserve data; define MIGRATION_1_2 below
-                    builder = builder.addMigrations(MIGRATION_1_2);
-                    INSTANCE = builder.build();
 
                     // Seed a test authorized contact in debug builds if none exist
                     if (BuildConfig.DEBUG) {
@@ -60,6 +64,30 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    private static AppDatabase build(Context context) {
+        boolean traced = SyncTrace.begin("offsync:db.key");
+        SupportFactory factory;
+        try {
+            factory = getSupportFactory(context);
+        } finally {
+            SyncTrace.end(traced);
+        }
+        RoomDatabase.Builder<AppDatabase> builder = Room.databaseBuilder(context.getApplicationContext(),
+                    AppDatabase.class, "offsync_native_db");
+        if (factory != null) {
+            builder = builder.openHelperFactory(factory);
+        }
+        return configure(builder).build();
+    }
+
+    /** Migrations and callbacks every build of this database needs, whatever its open helper. */
+    static RoomDatabase.Builder<AppDatabase> configure(RoomDatabase.Builder<AppDatabase> builder) {
+        // Add explicit migrations to preserve data; defined below
+        return builder.addMigrations(MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+                        MIGRATION_7_8, MIGRATION_8_9)
+                .addCallback(SpatialIndex.CALLBACK);
+    }
+
     // Migration from version 1 -> 2: create authorized_contacts table
     private static final androidx.room.migration.Migration MIGRATION_1_2 =
             new androidx.room.migration.Migration(1, 2) {
@@ -70,30 +98,91 @@ public abstract class AppDatabase extends RoomDatabase {
                 }
             };
 
+    // Migration from version 2 -> 3: create outbound_sms queue table
+    private static final androidx.room.migration.Migration MIGRATION_2_3 =
+            new androidx.room.migration.Migration(2, 3) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `outbound_sms` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `destination` TEXT, `body` TEXT, `status` TEXT, `part_count` INTEGER NOT NULL, `parts_sent` INTEGER NOT NULL, `parts_delivered` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `created_at` INTEGER NOT NULL, `dispatched_at` INTEGER, `sent_at` INTEGER, `delivered_at` INTEGER, `last_error` TEXT)");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_outbound_sms_status` ON `outbound_sms` (`status`)");
+                }
+            };
+
+    // Migration from version 3 -> 4: create sms_transport_batches for the SMS fallback transport
+    private static final androidx.room.migration.Migration MIGRATION_3_4 =
+            new androidx.room.migration.Migration(3, 4) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `sms_transport_batches` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `sequence` INTEGER NOT NULL, `point_ids` TEXT, `payload_bytes` INTEGER NOT NULL, `status` TEXT, `created_at` INTEGER NOT NULL, `delivered_at` INTEGER)");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_sms_transport_batches_status` ON `sms_transport_batches` (`status`)");
+                }
+            };
+
+    // Migration from version 4 -> 5: create upload_segments for resumable catch-up uploads
+    private static final androidx.room.migration.Migration MIGRATION_4_5 =
+            new androidx.room.migration.Migration(4, 5) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `upload_segments` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `segment_id` TEXT, `first_point_id` INTEGER NOT NULL, `last_point_id` INTEGER NOT NULL, `point_count` INTEGER NOT NULL, `byte_count` INTEGER NOT NULL, `sha256` TEXT, `file_name` TEXT, `uploaded_bytes` INTEGER NOT NULL, `status` TEXT, `created_at` INTEGER NOT NULL, `committed_at` INTEGER)");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_upload_segments_status` ON `upload_segments` (`status`)");
+                }
+            };
+
+    // Migration from version 5 -> 6: row claims so concurrent sync runs never send the same point
+    private static final androidx.room.migration.Migration MIGRATION_5_6 =
+            new androidx.room.migration.Migration(5, 6) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("ALTER TABLE `location_points` ADD COLUMN `claimToken` TEXT");
+                    database.execSQL("ALTER TABLE `location_points` ADD COLUMN `claimExpiresAt` INTEGER NOT NULL DEFAULT 0");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_location_points_claimToken` ON `location_points` (`claimToken`)");
+                    // Segments sealed before claims existed now hold their pending rows like new ones do,
+                    // for the same one-day lease (CatchUpSync.SEGMENT_LEASE_MS)
+                    long leaseEnd = System.currentTimeMillis() + 24L * 60 * 60 * 1000;
+                    database.execSQL("UPDATE `location_points` SET `claimExpiresAt` = " + leaseEnd + ", `claimToken` = "
+                            + "(SELECT `segment_id` FROM `upload_segments` s WHERE s.`status` = 'SEALED'"
+                            + " AND `location_points`.`id` BETWEEN s.`first_point_id` AND s.`last_point_id`)"
+                            + " WHERE `isUploaded` = 0 AND EXISTS (SELECT 1 FROM `upload_segments` s WHERE s.`status` = 'SEALED'"
+                            + " AND `location_points`.`id` BETWEEN s.`first_point_id` AND s.`last_point_id`)");
+                }
+            };
+
+    // Migration from version 6 -> 7: aggregate tables, backfilled from the history on the next write
+    private static final androidx.room.migration.Migration MIGRATION_6_7 =
+            new androidx.room.migration.Migration(6, 7) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `daily_summaries` (`day` TEXT NOT NULL, `point_count` INTEGER NOT NULL, `distance_m` REAL NOT NULL, `stop_count` INTEGER NOT NULL, `dwell_ms` INTEGER NOT NULL, `first_at` INTEGER NOT NULL, `last_at` INTEGER NOT NULL, PRIMARY KEY(`day`))");
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `hourly_counts` (`hour_start` INTEGER NOT NULL, `point_count` INTEGER NOT NULL, PRIMARY KEY(`hour_start`))");
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `stops` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `start_at` INTEGER NOT NULL, `end_at` INTEGER NOT NULL, `lat` REAL NOT NULL, `lng` REAL NOT NULL, `point_count` INTEGER NOT NULL)");
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_stops_end_at` ON `stops` (`end_at`)");
+                    database.execSQL("CREATE TABLE IF NOT EXISTS `track_state` (`id` INTEGER NOT NULL, `has_last` INTEGER NOT NULL, `last_at` INTEGER NOT NULL, `last_lat` REAL NOT NULL, `last_lng` REAL NOT NULL, `cluster_start_at` INTEGER NOT NULL, `cluster_lat` REAL NOT NULL, `cluster_lng` REAL NOT NULL, `cluster_sum_lat` REAL NOT NULL, `cluster_sum_lng` REAL NOT NULL, `cluster_count` INTEGER NOT NULL, `open_stop_id` INTEGER NOT NULL, `rebuild_pending` INTEGER NOT NULL, PRIMARY KEY(`id`))");
+                    // A full scan here would stall the first open on a long history
+                    database.execSQL("INSERT OR REPLACE INTO `track_state` VALUES (0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1)");
+                }
+            };
+
+    // Migration from version 7 -> 8: R-Tree spatial index over location_points, filled from the existing rows
+    private static final androidx.room.migration.Migration MIGRATION_7_8 =
+            new androidx.room.migration.Migration(7, 8) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    SpatialIndex.create(database, true);
+                }
+            };
+
+    // Migration from version 8 -> 9: index capturedAt, the dedup key of the legacy queue import and the sort key of most queries
+    private static final androidx.room.migration.Migration MIGRATION_8_9 =
+            new androidx.room.migration.Migration(8, 9) {
+                @Override
+                public void migrate(androidx.sqlite.db.SupportSQLiteDatabase database) {
+                    database.execSQL("CREATE INDEX IF NOT EXISTS `index_location_points_capturedAt` ON `location_points` (`capturedAt`)");
+                }
+            };
+
     private static SupportFactory getSupportFactory(Context context) {
         try {
-            MasterKey masterKey = new MasterKey.Builder(context)
-                    .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
-                    .build();
-
-            SharedPreferences prefs = EncryptedSharedPreferences.create(
-                    context,
-                    PREFS_NAME,
-                    masterKey,
-                    EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
-                    EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
-            );
-
-            String secret = prefs.getString(DB_SECRET_KEY, null);
-            if (secret == null) {
-                byte[] pass = new byte[32];
-                SecureRandom rnd = new SecureRandom();
-                rnd.nextBytes(pass);
-                secret = Base64.encodeToString(pass, Base64.NO_WRAP);
-                prefs.edit().putString(DB_SECRET_KEY, secret).apply();
-            }
-
-            byte[] passphrase = secret.getBytes("UTF-8");
+            byte[] passphrase = secret(context).getBytes("UTF-8");
             return new SupportFactory(passphrase);
         } catch (Exception e) {
             // If any error occurs, fall back to unencrypted DB
@@ -101,4 +190,29 @@ public abstract class AppDatabase extends RoomDatabase {
             return null;
         }
     }
+
+    /** The database passphrase from {@code secure_prefs}, created on first use. Also opens the legacy JS queue file; it never leaves the native side. */
+    static String secret(Context context) throws Exception {
+        MasterKey masterKey = new MasterKey.Builder(context)
+                .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                .build();
+
+        SharedPreferences prefs = EncryptedSharedPreferences.create(
+                context,
+                PREFS_NAME,
+                masterKey,
+                EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
+        );
+
+        String secret = prefs.getString(DB_SECRET_KEY, null);
+        if (secret == null) {
+            byte[] pass = new byte[32];
+            SecureRandom rnd = new SecureRandom();
+            rnd.nextBytes(pass);
+            secret = Base64.encodeToString(pass, Base64.NO_WRAP);
+            prefs.edit().putString(DB_SECRET_KEY, secret).apply();
+        }
+        return secret;
+    }
 }
@@ -0,0 +1,34 @@
+package com.offsync.app.db;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/** Per local day totals, kept current by {@link AggregateStore} as points are written. */
+@Entity(tableName = "daily_summaries")
+public class DailySummaryEntity {
+    /** yyyy-MM-dd in the device's zone at the time the point was written. */
+    @PrimaryKey
+    @NonNull
+    @ColumnInfo(name = "day")
+    public String day = "";
+
+    @ColumnInfo(name = "point_count")
+    public int pointCount;
+
+    @ColumnInfo(name = "distance_m")
+    public double distanceM;
+
+    @ColumnInfo(name = "stop_count")
+    public int stopCount;
+
+    @ColumnInfo(name = "dwell_ms")
+    public long dwellMs;
+
+    @ColumnInfo(name = "first_at")
+    public long firstAt;
+
+    @ColumnInfo(name = "last_at")
+    public long lastAt;
+}
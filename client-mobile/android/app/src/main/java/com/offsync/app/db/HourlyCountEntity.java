@@ -0,0 +1,17 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/** Points captured per UTC hour. */
+@Entity(tableName = "hourly_counts")
+public class HourlyCountEntity {
+    /** Epoch ms of the start of the hour. */
+    @PrimaryKey
+    @ColumnInfo(name = "hour_start")
+    public long hourStart;
+
+    @ColumnInfo(name = "point_count")
+    public int pointCount;
+}
@@ -0,0 +1,198 @@
+package com.offsync.app.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.util.Log;
+import com.offsync.app.metrics.SyncTrace;
+import java.io.File;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.sqlcipher.database.SQLiteDatabase;
+
+/**
+ * One-time move of the queue the JS layer kept in its own SQLite file
+ * ({@code pending_location_points} in {@code offsync_db}) into {@code location_points}, which
+ * is now the only store. Rows are streamed in pages by id, so memory stays flat however long the
+ * queue grew, and the last id copied is saved after each page so an interrupted import resumes
+ * where it stopped. Points the native store already holds, i.e. every point captured since both
+ * paths were written, are skipped on {@code capturedAt}. Once the whole queue is copied the
+ * legacy file is deleted. Call off the main thread.
+ */
+public final class LegacyQueueImporter {
+    private static final String TAG = "LegacyQueueImporter";
+    // @capacitor-community/sqlite appends "SQLite.db" to the connection name
+    static final String LEGACY_DB_NAME = "offsync_dbSQLite.db";
+    private static final String APP_PREFS = "app_prefs";
+    private static final String PREF_DONE = "legacy_queue_imported";
+    private static final String PREF_AFTER_ID = "legacy_queue_import_after_id";
+    static final int PAGE_SIZE = 500;
+    private static final String PAGE = "SELECT * FROM pending_location_points WHERE id > ? ORDER BY id ASC LIMIT " + PAGE_SIZE;
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    private LegacyQueueImporter() {
+    }
+
+    /** Outcome of one run, as reported to JS. */
+    public static final class Result {
+        public int imported;
+        public int duplicates;
+        /** False when the legacy file could not be read; the next run tries again. */
+        public boolean done;
+    }
+
+    /** The legacy file as the import reads it. */
+    interface LegacyFile {
+        Cursor rawQuery(String sql, Object[] args);
+
+        void close();
+    }
+
+    /** Opens the legacy file; null when it cannot be read. */
+    interface Opener {
+        LegacyFile open(Context context, File file);
+    }
+
+    /** Import whatever is left of the legacy queue. A no-op once an import has completed. */
+    public static Result run(Context context) {
+        return run(context, LegacyQueueImporter::open);
+    }
+
+    // Local tests read the file with the framework SQLite; SQLCipher's native library only loads on a device
+    static Result run(Context context, Opener opener) {
+        Result result = new Result();
+        SharedPreferences prefs = context.getSharedPreferences(APP_PREFS, Context.MODE_PRIVATE);
+        if (prefs.getBoolean(PREF_DONE, false)) {
+            result.done = true;
+            return result;
+        }
+        if (!running.compareAndSet(false, true)) return result;
+        boolean traced = SyncTrace.begin("offsync:db.legacyImport");
+        try {
+            File file = context.getDatabasePath(LEGACY_DB_NAME);
+            if (file.exists()) {
+                LegacyFile legacy = opener.open(context, file);
+                if (legacy == null) return result;
+                try {
+                    if (hasQueue(legacy)) copy(context, legacy, prefs, result);
+                } finally {
+                    legacy.close();
+                }
+                context.deleteDatabase(LEGACY_DB_NAME);
+            }
+            if (result.imported > 0) {
+                // Imported points predate the ones the aggregates were folded from
+                AggregateStore.rebuild(AppDatabase.getInstance(context), ZoneId.systemDefault());
+                StorageQuotaStore.enforce(context);
+            }
+            prefs.edit().putBoolean(PREF_DONE, true).remove(PREF_AFTER_ID).apply();
+            result.done = true;
+            Log.i(TAG, "Legacy queue imported: " + result.imported + " new, " + result.duplicates + " already stored");
+            return result;
+        } catch (Exception e) {
+            Log.w(TAG, "Legacy queue import failed; will retry", e);
+            return result;
+        } finally {
+            SyncTrace.end(traced);
+            running.set(false);
+        }
+    }
+
+    private static void copy(Context context, LegacyFile legacy, SharedPreferences prefs, Result result) {
+        long afterId = prefs.getLong(PREF_AFTER_ID, 0);
+        List<LocationPointEntity> page = new ArrayList<>(PAGE_SIZE);
+        while (true) {
+            page.clear();
+            int read = 0;
+            try (Cursor c = legacy.rawQuery(PAGE, new Object[]{afterId})) {
+                int idColumn = c.getColumnIndexOrThrow("id");
+                while (c.moveToNext()) {
+                    read++;
+                    afterId = c.getLong(idColumn);
+                    LocationPointEntity p = toEntity(c);
+                    if (p != null) page.add(p);
+                }
+            }
+            if (read == 0) return;
+            int inserted = page.isEmpty() ? 0 : LocationWriter.importPoints(context, page);
+            result.imported += inserted;
+            result.duplicates += page.size() - inserted;
+            prefs.edit().putLong(PREF_AFTER_ID, afterId).apply();
+        }
+    }
+
+    /** Map one legacy row; null for a row without a usable capture time. */
+    static LocationPointEntity toEntity(Cursor c) {
+        String capturedAt = string(c, "capturedAt");
+        if (capturedAt == null || TrackAggregator.parseTime(capturedAt) < 0) return null;
+        LocationPointEntity e = new LocationPointEntity();
+        e.capturedAt = capturedAt;
+        e.lat = c.getDouble(c.getColumnIndexOrThrow("lat"));
+        e.lng = c.getDouble(c.getColumnIndexOrThrow("lng"));
+        e.accuracyM = c.getDouble(c.getColumnIndexOrThrow("accuracyM"));
+        e.provider = string(c, "provider");
+        int battery = c.getColumnIndex("batteryPct");
+        e.batteryPct = battery < 0 || c.isNull(battery) ? null : (int) Math.round(c.getDouble(battery));
+        int charging = c.getColumnIndex("isCharging");
+        e.isCharging = charging < 0 || c.isNull(charging) ? null : (c.getInt(charging) != 0 ? 1 : 0);
+        e.accuracyMode = string(c, "accuracyMode");
+        // The JS sync may already have sent it; keep that so it is not uploaded twice
+        int uploaded = c.getColumnIndex("isUploaded");
+        e.isUploaded = uploaded >= 0 && !c.isNull(uploaded) && c.getInt(uploaded) != 0 ? 1 : 0;
+        return e;
+    }
+
+    private static String string(Cursor c, String column) {
+        int i = c.getColumnIndex(column);
+        return i < 0 || c.isNull(i) ? null : c.getString(i);
+    }
+
+    /** Open with the shared passphrase, then as plaintext for installs that never had one; null if neither works. */
+    private static LegacyFile open(Context context, File file) {
+        SQLiteDatabase.loadLibs(context);
+        String secret = null;
+        try {
+            secret = AppDatabase.secret(context);
+        } catch (Exception e) {
+            Log.w(TAG, "No database passphrase; trying the legacy file as plaintext", e);
+        }
+        for (String password : secret == null ? new String[]{""} : new String[]{secret, ""}) {
+            SQLiteDatabase db = null;
+            try {
+                db = SQLiteDatabase.openDatabase(file.getPath(), password, null, SQLiteDatabase.OPEN_READWRITE);
+                // SQLCipher only checks the key on first read
+                try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM sqlite_master", new Object[0])) {
+                    c.moveToFirst();
+                }
+                return wrap(db);
+            } catch (Exception e) {
+                if (db != null) db.close();
+            }
+        }
+        Log.w(TAG, "Could not open " + file.getName());
+        return null;
+    }
+
+    private static LegacyFile wrap(SQLiteDatabase db) {
+        return new LegacyFile() {
+            @Override
+            public Cursor rawQuery(String sql, Object[] args) {
+                return db.rawQuery(sql, args);
+            }
+
+            @Override
+            public void close() {
+                db.close();
+            }
+        };
+    }
+
+    private static boolean hasQueue(LegacyFile db) {
+        try (Cursor c = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'pending_location_points'", new Object[0])) {
+            return c.moveToFirst();
+        }
+    }
+}
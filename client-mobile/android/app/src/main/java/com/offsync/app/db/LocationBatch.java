@@ -0,0 +1,103 @@
+package com.offsync.app.db;
+
+/**
+ * Column-oriented, reusable buffer for a batch of {@code location_points} rows.
+ * Arrays are allocated once for {@link #capacity} rows and overwritten by every read, so a
+ * long drain does not produce garbage per point. Text columns keep their chars in per-row
+ * arrays that only grow.
+ */
+public final class LocationBatch {
+    public static final int NO_BATTERY = Integer.MIN_VALUE;
+    public static final byte CHARGING_UNKNOWN = -1;
+
+    public final int capacity;
+    public int size;
+    public final long[] ids;
+    public final TextColumn capturedAt;
+    public final double[] lat;
+    public final double[] lng;
+    public final double[] accuracyM;
+    public final TextColumn provider;
+    public final int[] batteryPct;
+    public final byte[] isCharging;
+    public final TextColumn accuracyMode;
+    /** 1 once the server has the row; always 0 for pending reads. */
+    public final byte[] isUploaded;
+
+    public LocationBatch(int capacity) {
+        this.capacity = capacity;
+        ids = new long[capacity];
+        capturedAt = new TextColumn(capacity, 24);
+        lat = new double[capacity];
+        lng = new double[capacity];
+        accuracyM = new double[capacity];
+        provider = new TextColumn(capacity, 8);
+        batteryPct = new int[capacity];
+        isCharging = new byte[capacity];
+        accuracyMode = new TextColumn(capacity, 8);
+        isUploaded = new byte[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean isFull() {
+        return size == capacity;
+    }
+
+    /** Append a row from plain values; used by tests and benchmarks, the cursor reader fills arrays directly. */
+    public void add(long id, String capturedAt, double lat, double lng, double accuracyM, String provider,
+                    Integer batteryPct, Integer isCharging, String accuracyMode) {
+        int row = size++;
+        ids[row] = id;
+        this.capturedAt.set(row, capturedAt);
+        this.lat[row] = lat;
+        this.lng[row] = lng;
+        this.accuracyM[row] = accuracyM;
+        this.provider.set(row, provider);
+        this.batteryPct[row] = batteryPct == null ? NO_BATTERY : batteryPct;
+        this.isCharging[row] = isCharging == null ? CHARGING_UNKNOWN : (byte) (isCharging != 0 ? 1 : 0);
+        this.accuracyMode.set(row, accuracyMode);
+        this.isUploaded[row] = 0;
+    }
+
+    /** Nullable text values stored as reusable char arrays; length -1 means SQL NULL. */
+    public static final class TextColumn {
+        public final char[][] chars;
+        public final int[] length;
+
+        TextColumn(int capacity, int initialChars) {
+            chars = new char[capacity][initialChars];
+            length = new int[capacity];
+        }
+
+        public void setNull(int row) {
+            length[row] = -1;
+        }
+
+        public void set(int row, char[] src, int count) {
+            ensure(row, count);
+            System.arraycopy(src, 0, chars[row], 0, count);
+            length[row] = count;
+        }
+
+        public void set(int row, String value) {
+            if (value == null) {
+                setNull(row);
+                return;
+            }
+            ensure(row, value.length());
+            value.getChars(0, value.length(), chars[row], 0);
+            length[row] = value.length();
+        }
+
+        public boolean isNull(int row) {
+            return length[row] < 0;
+        }
+
+        private void ensure(int row, int count) {
+            if (chars[row].length < count) chars[row] = new char[Math.max(count, chars[row].length * 2)];
+        }
+    }
+}
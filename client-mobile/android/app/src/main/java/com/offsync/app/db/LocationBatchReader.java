@@ -0,0 +1,141 @@
+package com.offsync.app.db;
+
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+/**
+ * Reads pending {@code location_points} straight from a cursor into a reusable
+ * {@link LocationBatch}, skipping entity and boxed-field allocation. Columns are selected in a
+ * fixed order so their indices are constants. Uploads read only rows they have claimed (see
+ * {@link LocationDao#claimOldestPending}), so concurrent runs never load the same pending row.
+ * Not thread-safe; use one reader per worker run.
+ */
+public final class LocationBatchReader {
+    private static final String COLUMNS =
+            "id, capturedAt, lat, lng, accuracyM, provider, batteryPct, isCharging, accuracyMode";
+    private static final String CLAIMED_OLDEST_FIRST = "SELECT " + COLUMNS
+            + " FROM location_points WHERE claimToken = ? AND isUploaded = 0 ORDER BY capturedAt ASC LIMIT ?";
+    private static final String CLAIMED_NEWEST_FIRST = "SELECT " + COLUMNS
+            + " FROM location_points WHERE claimToken = ? AND isUploaded = 0 ORDER BY capturedAt DESC LIMIT ?";
+    private static final String CLAIMED_AFTER = "SELECT " + COLUMNS
+            + " FROM location_points WHERE claimToken = ? AND isUploaded = 0 AND id > ? ORDER BY id ASC LIMIT ?";
+    // Keyset paging on the primary key: each page is an index seek, however deep the export is
+    private static final String HISTORY_AFTER =
+            "SELECT " + COLUMNS + ", isUploaded FROM location_points WHERE id > ? ORDER BY id ASC LIMIT ?";
+    private static final int COL_ID = 0;
+    private static final int COL_CAPTURED_AT = 1;
+    private static final int COL_LAT = 2;
+    private static final int COL_LNG = 3;
+    private static final int COL_ACCURACY = 4;
+    private static final int COL_PROVIDER = 5;
+    private static final int COL_BATTERY = 6;
+    private static final int COL_CHARGING = 7;
+    private static final int COL_ACCURACY_MODE = 8;
+    private static final int COL_UPLOADED = 9;
+
+    private final AppDatabase db;
+    private final CharArrayBuffer scratch = new CharArrayBuffer(32);
+    private final Object[] claimedArgs = new Object[2];
+    private final Object[] afterArgs = new Object[2];
+    private final Object[] claimedAfterArgs = new Object[3];
+    private SupportSQLiteStatement markUploaded;
+
+    public LocationBatchReader(AppDatabase db) {
+        this.db = db;
+    }
+
+    /**
+     * Claim up to {@code out.capacity} free pending rows for {@code token} until {@code expiresAt}
+     * and fill {@code out} with them; returns the row count, 0 when every pending row is taken.
+     */
+    public int claimPending(boolean newestFirst, String token, long now, long expiresAt, LocationBatch out) {
+        out.clear();
+        LocationDao dao = db.locationDao();
+        int claimed = newestFirst
+                ? dao.claimNewestPending(token, now, expiresAt, out.capacity)
+                : dao.claimOldestPending(token, now, expiresAt, out.capacity);
+        if (claimed == 0) return 0;
+        claimedArgs[0] = token;
+        claimedArgs[1] = out.capacity;
+        try (Cursor c = db.query(new SimpleSQLiteQuery(newestFirst ? CLAIMED_NEWEST_FIRST : CLAIMED_OLDEST_FIRST, claimedArgs))) {
+            while (!out.isFull() && c.moveToNext()) {
+                int row = out.size++;
+                readRow(c, out, row);
+                out.isUploaded[row] = 0;
+            }
+        }
+        return out.size;
+    }
+
+    /**
+     * Fill {@code out} with the rows whose id is greater than {@code afterId}, uploaded or not,
+     * in id order. Pass the last id of the previous page to continue; returns the row count.
+     */
+    public int readAfter(long afterId, LocationBatch out) {
+        out.clear();
+        afterArgs[0] = afterId;
+        afterArgs[1] = out.capacity;
+        try (Cursor c = db.query(new SimpleSQLiteQuery(HISTORY_AFTER, afterArgs))) {
+            while (!out.isFull() && c.moveToNext()) {
+                int row = out.size++;
+                readRow(c, out, row);
+                out.isUploaded[row] = (byte) (c.getInt(COL_UPLOADED) != 0 ? 1 : 0);
+            }
+        }
+        return out.size;
+    }
+
+    /** Rows still claimed by {@code token}, in id order after {@code afterId}; used to seal catch-up segments. */
+    public int readClaimedAfter(String token, long afterId, LocationBatch out) {
+        out.clear();
+        claimedAfterArgs[0] = token;
+        claimedAfterArgs[1] = afterId;
+        claimedAfterArgs[2] = out.capacity;
+        try (Cursor c = db.query(new SimpleSQLiteQuery(CLAIMED_AFTER, claimedAfterArgs))) {
+            while (!out.isFull() && c.moveToNext()) {
+                int row = out.size++;
+                readRow(c, out, row);
+                out.isUploaded[row] = 0;
+            }
+        }
+        return out.size;
+    }
+
+    /** Mark every row of {@code batch} uploaded, releasing its claim, in one transaction with a reused statement. */
+    public void markUploaded(LocationBatch batch) {
+        db.runInTransaction(() -> {
+            if (markUploaded == null) {
+                markUploaded = db.compileStatement("UPDATE location_points SET isUploaded = 1, claimToken = NULL, claimExpiresAt = 0 WHERE id = ?");
+            }
+            for (int i = 0; i < batch.size; i++) {
+                markUploaded.bindLong(1, batch.ids[i]);
+                markUploaded.executeUpdateDelete();
+            }
+        });
+    }
+
+    private void readRow(Cursor c, LocationBatch out, int row) {
+        out.ids[row] = c.getLong(COL_ID);
+        copyText(c, COL_CAPTURED_AT, out.capturedAt, row);
+        out.lat[row] = c.getDouble(COL_LAT);
+        out.lng[row] = c.getDouble(COL_LNG);
+        out.accuracyM[row] = c.getDouble(COL_ACCURACY);
+        copyText(c, COL_PROVIDER, out.provider, row);
+        out.batteryPct[row] = c.isNull(COL_BATTERY) ? LocationBatch.NO_BATTERY : c.getInt(COL_BATTERY);
+        out.isCharging[row] = c.isNull(COL_CHARGING) ? LocationBatch.CHARGING_UNKNOWN
+                : (byte) (c.getInt(COL_CHARGING) != 0 ? 1 : 0);
+        copyText(c, COL_ACCURACY_MODE, out.accuracyMode, row);
+    }
+
+    private void copyText(Cursor c, int column, LocationBatch.TextColumn out, int row) {
+        if (c.isNull(column)) {
+            out.setNull(row);
+            return;
+        }
+        // Copies from the cursor window without materializing a String
+        c.copyStringToBuffer(column, scratch);
+        out.set(row, scratch.data, scratch.sizeCopied);
+    }
+}
@@ -4,6 +4,10 @@ import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+import java.util.ArrayList;
 import java.util.List;
 
 @Dao
@@ -17,9 +21,102 @@ public interface LocationDao {
     @Query("UPDATE location_points SET isUploaded = 1 WHERE id IN (:ids)")
     void markBatchAsUploaded(List<Integer> ids);
 
+    // Claims: a row is free when claimExpiresAt has passed (0 when never claimed). Each UPDATE is atomic,
+    // so two runs claiming at once get disjoint rows; the holder then reads its rows back by token.
+    @Query("UPDATE location_points SET claimToken = :token, claimExpiresAt = :expiresAt WHERE id IN "
+            + "(SELECT id FROM location_points WHERE isUploaded = 0 AND claimExpiresAt < :now ORDER BY capturedAt ASC LIMIT :limit)")
+    int claimOldestPending(String token, long now, long expiresAt, int limit);
+
+    @Query("UPDATE location_points SET claimToken = :token, claimExpiresAt = :expiresAt WHERE id IN "
+            + "(SELECT id FROM location_points WHERE isUploaded = 0 AND claimExpiresAt < :now ORDER BY capturedAt DESC LIMIT :limit)")
+    int claimNewestPending(String token, long now, long expiresAt, int limit);
+
+    @Query("UPDATE location_points SET claimToken = :token, claimExpiresAt = :expiresAt WHERE id IN "
+            + "(SELECT id FROM location_points WHERE isUploaded = 0 AND claimExpiresAt < :now AND id > :afterId ORDER BY id ASC LIMIT :limit)")
+    int claimPendingAfter(long afterId, String token, long now, long expiresAt, int limit);
+
+    @Query("UPDATE location_points SET claimToken = NULL, claimExpiresAt = 0 WHERE claimToken = :token AND isUploaded = 0")
+    int releaseClaims(String token);
+
+    @Query("UPDATE location_points SET isUploaded = 1, claimToken = NULL, claimExpiresAt = 0 WHERE claimToken = :token")
+    int markClaimUploaded(String token);
+
+    // The live stream claims each point it sends, so the batch worker leaves it alone until acked or dropped
+    @Query("UPDATE location_points SET claimToken = :token, claimExpiresAt = :expiresAt "
+            + "WHERE id = :id AND isUploaded = 0 AND claimExpiresAt < :now")
+    int claimPoint(long id, String token, long now, long expiresAt);
+
+    @Query("UPDATE location_points SET claimToken = NULL, claimExpiresAt = 0 "
+            + "WHERE id IN (:ids) AND claimToken = :token AND isUploaded = 0")
+    int releaseClaimsOf(List<Integer> ids, String token);
+
+    // Extends a segment's hold on the rows it still has; rows taken over after a lapse keep their new token
+    @Query("UPDATE location_points SET claimExpiresAt = :expiresAt WHERE claimToken = :token AND isUploaded = 0")
+    int renewClaims(String token, long expiresAt);
+
+    @Query("SELECT COUNT(*) FROM location_points WHERE claimToken = :token AND isUploaded = 0")
+    int countClaimed(String token);
+
+    // Segment holds that outlived their segment, e.g. a crash between claiming and recording it;
+    // only segment holds run past :longerThan, the end of the longest batch lease
+    @Query("UPDATE location_points SET claimToken = NULL, claimExpiresAt = 0 WHERE claimExpiresAt > :longerThan AND isUploaded = 0 "
+            + "AND claimToken NOT IN (SELECT segment_id FROM upload_segments WHERE status = 'SEALED')")
+    int releaseOrphanedHolds(long longerThan);
+
+    @Query("SELECT COUNT(*) FROM location_points WHERE isUploaded = 0")
+    int countPending();
+
+    @Query("SELECT COUNT(*) FROM location_points WHERE isUploaded = 0 AND claimExpiresAt < :now")
+    int countUnclaimedPending(long now);
+
+    @Query("SELECT COUNT(*) FROM location_points")
+    int countAll();
+
+    @Query("SELECT COUNT(*) FROM location_points WHERE isUploaded = 0 AND id > :afterId")
+    int countPendingAfter(long afterId);
+
+    @Query("SELECT MIN(capturedAt) FROM location_points WHERE isUploaded = 0")
+    String getOldestPendingCapturedAt();
+
     @Query("SELECT * FROM location_points ORDER BY capturedAt DESC LIMIT 1")
     LocationPointEntity getLatest();
 
+    // Import dedup key; served by the capturedAt index
+    @Query("SELECT COUNT(*) FROM location_points WHERE capturedAt = :capturedAt")
+    int countByCapturedAt(String capturedAt);
+
     @Query("DELETE FROM location_points WHERE capturedAt < :ts")
     int deleteOlderThan(String ts);
+
+    @Query("DELETE FROM location_points WHERE isUploaded = 1 AND capturedAt < :ts")
+    int deleteUploadedOlderThan(String ts);
+
+    // Start of the quota's protected tail: capturedAt of the (offset + 1)th newest row, null if there are fewer
+    @Query("SELECT capturedAt FROM location_points ORDER BY capturedAt DESC LIMIT 1 OFFSET :offset")
+    String getCapturedAtFromNewest(int offset);
+
+    @Query("DELETE FROM location_points WHERE id IN (SELECT id FROM location_points WHERE isUploaded = 1 AND capturedAt < :before ORDER BY capturedAt ASC LIMIT :limit)")
+    int deleteOldestUploaded(String before, int limit);
+
+    @Query("DELETE FROM location_points WHERE id IN (:ids)")
+    int deleteByIds(List<Integer> ids);
+
+    // Spatial lookups go through location_rtree (see SpatialIndex), which Room cannot check at compile time
+    @RawQuery(observedEntities = LocationPointEntity.class)
+    List<LocationPointEntity> findPoints(SupportSQLiteQuery query);
+
+    /** Points in {@code box} captured in [{@code fromMs}, {@code toMs}), oldest first; null bounds are open. */
+    default List<LocationPointEntity> findInBox(SpatialQuery.Box box, Long fromMs, Long toMs, int limit) {
+        SpatialQuery.Sql sql = SpatialQuery.inBox(box, fromMs, toMs, limit, SpatialIndex.isEnabled());
+        return findPoints(new SimpleSQLiteQuery(sql.text, sql.args));
+    }
+
+    /** Points within {@code radiusM} of a place captured in [{@code fromMs}, {@code toMs}), nearest first. */
+    default List<SpatialQuery.Near> findNear(double lat, double lng, double radiusM, Long fromMs, Long toMs, int limit) {
+        List<LocationPointEntity> candidates = new ArrayList<>();
+        for (SpatialQuery.Box box : SpatialQuery.around(lat, lng, radiusM)) {
+            candidates.addAll(findInBox(box, fromMs, toMs, SpatialQuery.NO_LIMIT));
+        }
+        return SpatialQuery.nearest(candidates, lat, lng, radiusM, limit);
+    }
 }
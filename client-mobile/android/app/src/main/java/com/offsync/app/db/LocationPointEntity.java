@@ -2,9 +2,10 @@ package com.offsync.app.db;
 
 import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "location_points")
+@Entity(tableName = "location_points", indices = {@Index("claimToken"), @Index("capturedAt")})
 public class LocationPointEntity {
     @PrimaryKey(autoGenerate = true)
     public Integer id;
@@ -36,5 +37,12 @@ public class LocationPointEntity {
     @ColumnInfo(name = "isUploaded")
     public Integer isUploaded; // 0 = false, 1 = true
 
+    // Lease held by the sync run or catch-up segment sending this row; free once claimExpiresAt has passed
+    @ColumnInfo(name = "claimToken")
+    public String claimToken;
+
+    @ColumnInfo(name = "claimExpiresAt", defaultValue = "0")
+    public long claimExpiresAt;
+
     public LocationPointEntity() {}
 }
@@ -0,0 +1,116 @@
+package com.offsync.app.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.metrics.SyncTrace;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Native write path for location points. Every insert and prune goes through here so the
+ * bookkeeping around {@code location_points} lives in one place, including the aggregates
+ * {@link AggregateStore} updates in the same transaction. Call off the main thread.
+ */
+public final class LocationWriter {
+    // Measuring the table costs a few queries, so the quota is checked on the first insert and then
+    // periodically, on a background thread rather than in the caller's write
+    private static final int QUOTA_CHECK_EVERY = 200;
+    private static final AtomicInteger insertsSinceCheck = new AtomicInteger(QUOTA_CHECK_EVERY);
+    private static final String PREF_LAST_PRUNE = "retention_last_prune_at";
+    private static final long PRUNE_EVERY_MS = 24 * 60 * 60 * 1000L;
+
+    private LocationWriter() {
+    }
+
+    public static long insert(Context context, LocationPointEntity point) {
+        long start = SystemClock.elapsedRealtime();
+        boolean traced = SyncTrace.begin("offsync:db.insert");
+        long id;
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            id = db.runInTransaction(() -> {
+                long rowId = db.locationDao().insert(point);
+                AggregateStore.apply(db, point, ZoneId.systemDefault());
+                return rowId;
+            });
+        } finally {
+            SyncTrace.end(traced);
+        }
+        SyncMetrics.WRITE_LATENCY_MS.record(SystemClock.elapsedRealtime() - start);
+        SyncMetrics.POINTS_WRITTEN.inc();
+        if (insertsSinceCheck.incrementAndGet() >= QUOTA_CHECK_EVERY) {
+            insertsSinceCheck.set(0);
+            StorageQuotaStore.enforceInBackground(context);
+        }
+        return id;
+    }
+
+    /**
+     * Insert points from another store, skipping any whose capturedAt is already present.
+     * Points arrive out of order, so aggregates are not folded per point; call
+     * {@link AggregateStore#rebuild} once the import is complete. Returns the rows inserted.
+     */
+    public static int importPoints(Context context, List<LocationPointEntity> points) {
+        boolean traced = SyncTrace.begin("offsync:db.import");
+        int inserted;
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            inserted = db.runInTransaction(() -> {
+                LocationDao dao = db.locationDao();
+                int rows = 0;
+                for (LocationPointEntity p : points) {
+                    if (dao.countByCapturedAt(p.capturedAt) > 0) continue;
+                    dao.insert(p);
+                    rows++;
+                }
+                return rows;
+            });
+        } finally {
+            SyncTrace.end(traced);
+        }
+        SyncMetrics.POINTS_WRITTEN.add(inserted);
+        return inserted;
+    }
+
+    /** Delete every point captured before {@code cutoffIso}, sent or not; for an explicit user request. */
+    public static int pruneOlderThan(Context context, String cutoffIso) {
+        return prune(context, cutoffIso, false);
+    }
+
+    private static int prune(Context context, String cutoffIso, boolean uploadedOnly) {
+        boolean traced = SyncTrace.begin("offsync:db.prune");
+        int deleted;
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            deleted = db.runInTransaction(() -> {
+                LocationDao dao = db.locationDao();
+                int rows = uploadedOnly ? dao.deleteUploadedOlderThan(cutoffIso) : dao.deleteOlderThan(cutoffIso);
+                long cutoffMs = TrackAggregator.parseTime(cutoffIso);
+                if (cutoffMs >= 0) AggregateStore.pruneBefore(db, cutoffMs, ZoneId.systemDefault());
+                return rows;
+            });
+        } finally {
+            SyncTrace.end(traced);
+        }
+        SyncMetrics.POINTS_PRUNED.add(deleted);
+        return deleted;
+    }
+
+    /**
+     * Apply a remotely set retention window at most once a day; returns the rows deleted, 0 when
+     * not due. Only points already uploaded are deleted: points the server has not seen are left
+     * to the storage quota, so a short window cannot wipe a device's unsent backlog.
+     */
+    public static int pruneIfDue(Context context, int retentionDays) {
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+        long now = System.currentTimeMillis();
+        long last = prefs.getLong(PREF_LAST_PRUNE, 0);
+        if (last <= now && now - last < PRUNE_EVERY_MS) return 0;
+        prefs.edit().putLong(PREF_LAST_PRUNE, now).apply();
+        return prune(context, TrackAggregator.formatTime(now - TimeUnit.DAYS.toMillis(retentionDays)), true);
+    }
+}
@@ -0,0 +1,59 @@
+package com.offsync.app.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import java.util.List;
+
+@Dao
+public interface OutboundSmsDao {
+    @Insert
+    long insert(OutboundSmsEntity sms);
+
+    @Query("SELECT * FROM outbound_sms WHERE id = :id LIMIT 1")
+    OutboundSmsEntity getById(long id);
+
+    @Query("SELECT * FROM outbound_sms WHERE status = 'PENDING' ORDER BY id ASC LIMIT :limit")
+    List<OutboundSmsEntity> getQueued(int limit);
+
+    @Query("SELECT COUNT(*) FROM outbound_sms WHERE status IN ('PENDING', 'SENDING')")
+    int countQueued();
+
+    @Query("SELECT COUNT(*) FROM outbound_sms WHERE dispatched_at >= :since")
+    int countDispatchedSince(long since);
+
+    @Query("UPDATE outbound_sms SET status = 'SENDING', part_count = :partCount, parts_sent = 0, parts_delivered = 0, "
+            + "attempts = attempts + 1, dispatched_at = :now WHERE id = :id")
+    void markDispatched(long id, int partCount, long now);
+
+    @Query("UPDATE outbound_sms SET parts_sent = parts_sent + 1 WHERE id = :id")
+    void incrementPartsSent(long id);
+
+    @Query("UPDATE outbound_sms SET status = 'SENT', sent_at = :now "
+            + "WHERE id = :id AND status = 'SENDING' AND parts_sent >= part_count")
+    int markSentIfComplete(long id, long now);
+
+    @Query("UPDATE outbound_sms SET parts_delivered = parts_delivered + 1 WHERE id = :id")
+    void incrementPartsDelivered(long id);
+
+    @Query("UPDATE outbound_sms SET status = 'DELIVERED', delivered_at = :now "
+            + "WHERE id = :id AND status IN ('SENDING', 'SENT') AND parts_delivered >= part_count")
+    int markDeliveredIfComplete(long id, long now);
+
+    // Retry while attempts remain, otherwise give up on the message
+    @Query("UPDATE outbound_sms SET status = CASE WHEN attempts < :maxAttempts THEN 'PENDING' ELSE 'FAILED' END, "
+            + "last_error = :error WHERE id = :id AND status IN ('SENDING', 'SENT')")
+    int markFailed(long id, String error, int maxAttempts);
+
+    // Messages whose sent report never came back (process killed, radio reset) go round again
+    @Query("UPDATE outbound_sms SET status = CASE WHEN attempts < :maxAttempts THEN 'PENDING' ELSE 'FAILED' END, "
+            + "last_error = 'no sent report' WHERE status = 'SENDING' AND dispatched_at < :ts")
+    int expireSendingBefore(long ts, int maxAttempts);
+
+    @Query("SELECT delivered_at - sent_at FROM outbound_sms WHERE delivered_at IS NOT NULL AND sent_at IS NOT NULL "
+            + "ORDER BY delivered_at DESC LIMIT :limit")
+    List<Long> getRecentDeliveryLatencies(int limit);
+
+    @Query("DELETE FROM outbound_sms WHERE status IN ('DELIVERED', 'FAILED') AND created_at < :ts")
+    int deleteFinishedBefore(long ts);
+}
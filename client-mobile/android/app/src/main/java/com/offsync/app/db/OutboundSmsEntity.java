@@ -0,0 +1,54 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "outbound_sms", indices = {@Index(value = {"status"})})
+public class OutboundSmsEntity {
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_SENT = "SENT";
+    public static final String STATUS_DELIVERED = "DELIVERED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "destination")
+    public String destination;
+
+    @ColumnInfo(name = "body")
+    public String body;
+
+    @ColumnInfo(name = "status")
+    public String status = STATUS_PENDING;
+
+    @ColumnInfo(name = "part_count")
+    public int partCount;
+
+    @ColumnInfo(name = "parts_sent")
+    public int partsSent;
+
+    @ColumnInfo(name = "parts_delivered")
+    public int partsDelivered;
+
+    @ColumnInfo(name = "attempts")
+    public int attempts;
+
+    @ColumnInfo(name = "created_at")
+    public long createdAt = System.currentTimeMillis();
+
+    @ColumnInfo(name = "dispatched_at")
+    public Long dispatchedAt; // handed to SmsManager
+
+    @ColumnInfo(name = "sent_at")
+    public Long sentAt; // all parts reported sent by the radio
+
+    @ColumnInfo(name = "delivered_at")
+    public Long deliveredAt; // all parts reported delivered by the carrier
+
+    @ColumnInfo(name = "last_error")
+    public String lastError;
+}
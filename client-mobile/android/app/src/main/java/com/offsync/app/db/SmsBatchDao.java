@@ -0,0 +1,34 @@
+package com.offsync.app.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import java.util.List;
+
+@Dao
+public interface SmsBatchDao {
+    @Insert
+    long insert(SmsBatchEntity batch);
+
+    @Query("SELECT * FROM sms_transport_batches WHERE id = :id LIMIT 1")
+    SmsBatchEntity getById(long id);
+
+    @Query("SELECT point_ids FROM sms_transport_batches WHERE status = 'SENDING'")
+    List<String> getInFlightPointIds();
+
+    @Query("SELECT COALESCE(MAX(sequence), 0) FROM sms_transport_batches")
+    long getMaxSequence();
+
+    @Query("UPDATE sms_transport_batches SET status = 'DELIVERED', delivered_at = :now WHERE id = :id AND status = 'SENDING'")
+    int markDelivered(long id, long now);
+
+    @Query("UPDATE sms_transport_batches SET status = 'FAILED' WHERE id = :id AND status = 'SENDING'")
+    int markFailed(long id);
+
+    // Batches with no delivery report after the timeout release their points for another attempt
+    @Query("UPDATE sms_transport_batches SET status = 'FAILED' WHERE status = 'SENDING' AND created_at < :ts")
+    int expireSendingBefore(long ts);
+
+    @Query("DELETE FROM sms_transport_batches WHERE status IN ('DELIVERED', 'FAILED') AND created_at < :ts")
+    int deleteFinishedBefore(long ts);
+}
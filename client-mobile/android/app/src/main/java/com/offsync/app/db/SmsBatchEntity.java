@@ -0,0 +1,35 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/** A binary SMS batch of location points sent by the SMS fallback transport. */
+@Entity(tableName = "sms_transport_batches", indices = {@Index(value = {"status"})})
+public class SmsBatchEntity {
+    public static final String STATUS_SENDING = "SENDING";
+    public static final String STATUS_DELIVERED = "DELIVERED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "sequence")
+    public long sequence;
+
+    @ColumnInfo(name = "point_ids")
+    public String pointIds; // comma-separated location_points ids
+
+    @ColumnInfo(name = "payload_bytes")
+    public int payloadBytes;
+
+    @ColumnInfo(name = "status")
+    public String status = STATUS_SENDING;
+
+    @ColumnInfo(name = "created_at")
+    public long createdAt = System.currentTimeMillis();
+
+    @ColumnInfo(name = "delivered_at")
+    public Long deliveredAt;
+}
@@ -0,0 +1,77 @@
+package com.offsync.app.db;
+
+import android.database.Cursor;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * R-Tree over {@code location_points} on (lat, lng, capturedAt in epoch seconds), so viewport
+ * and "near this place" lookups read a few index pages instead of the whole table. Triggers
+ * keep it in step with every write, including the deletes done by retention, quota eviction and
+ * thinning, so no write path has to know about it. Room does not model virtual tables; the
+ * table and triggers are created here and read through {@link LocationDao#findInBox} and
+ * {@link LocationDao#findNear}.
+ *
+ * SQLCipher and the platform SQLite both ship the rtree module. Should a build lack it, the
+ * table is simply absent and lookups fall back to a full scan.
+ */
+public final class SpatialIndex {
+    private static final String TAG = "SpatialIndex";
+    private static final String EPOCH_SECONDS = "COALESCE(CAST(strftime('%s', new.capturedAt) AS INTEGER), 0)";
+    private static final String UPSERT = "INSERT OR REPLACE INTO location_rtree VALUES (new.id, new.lat, new.lat, new.lng, new.lng, "
+            + EPOCH_SECONDS + ", " + EPOCH_SECONDS + ")";
+    private static final String[] DDL = {
+            "CREATE VIRTUAL TABLE IF NOT EXISTS location_rtree USING rtree(id, minLat, maxLat, minLng, maxLng, minT, maxT)",
+            // REPLACE on location_points fires no delete trigger, hence the upsert
+            "CREATE TRIGGER IF NOT EXISTS location_rtree_insert AFTER INSERT ON location_points BEGIN " + UPSERT + "; END",
+            "CREATE TRIGGER IF NOT EXISTS location_rtree_update AFTER UPDATE OF lat, lng, capturedAt ON location_points BEGIN "
+                    + UPSERT + "; END",
+            "CREATE TRIGGER IF NOT EXISTS location_rtree_delete AFTER DELETE ON location_points BEGIN "
+                    + "DELETE FROM location_rtree WHERE id = old.id; END",
+    };
+    private static final String BACKFILL = "INSERT OR REPLACE INTO location_rtree SELECT id, lat, lat, lng, lng, "
+            + EPOCH_SECONDS.replace("new.", "") + ", " + EPOCH_SECONDS.replace("new.", "") + " FROM location_points";
+
+    private static volatile boolean enabled;
+
+    /** Creates the index on a fresh database and checks for it on every open. */
+    static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            create(db, false);
+        }
+
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            enabled = exists(db);
+        }
+    };
+
+    private SpatialIndex() {
+    }
+
+    /** Whether lookups use the R-Tree on the open database. */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Create the table and triggers, optionally indexing the rows already stored. */
+    static void create(SupportSQLiteDatabase db, boolean backfill) {
+        try {
+            for (String sql : DDL) db.execSQL(sql);
+            if (backfill) db.execSQL(BACKFILL);
+        } catch (Exception e) {
+            Log.w(TAG, "R-Tree unavailable; spatial lookups will scan", e);
+        }
+    }
+
+    private static boolean exists(SupportSQLiteDatabase db) {
+        try (Cursor c = db.query("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'location_rtree'")) {
+            return c.moveToFirst();
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.offsync.app.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * SQL for bounding-box lookups on {@code location_points}, with or without the
+ * {@code location_rtree} index (see {@link SpatialIndex}). The R-Tree stores 32-bit floats
+ * rounded outwards, so it only narrows the candidates; the exact bounds are re-checked against
+ * the row itself. Time bounds are half-open, [from, to).
+ */
+public final class SpatialQuery {
+    static final double METERS_PER_DEG_LAT = 111_320;
+    /** Passed as LIMIT for no limit. */
+    public static final int NO_LIMIT = -1;
+
+    /** A box in degrees. Never crosses the antimeridian; {@link #around} splits such boxes. */
+    public static final class Box {
+        public final double minLat;
+        public final double minLng;
+        public final double maxLat;
+        public final double maxLng;
+
+        public Box(double minLat, double minLng, double maxLat, double maxLng) {
+            if (!(minLat <= maxLat) || !(minLng <= maxLng)) {
+                throw new IllegalArgumentException("Empty box: " + minLat + "," + minLng + " .. " + maxLat + "," + maxLng);
+            }
+            this.minLat = minLat;
+            this.minLng = minLng;
+            this.maxLat = maxLat;
+            this.maxLng = maxLng;
+        }
+
+        public boolean contains(double lat, double lng) {
+            return lat >= minLat && lat <= maxLat && lng >= minLng && lng <= maxLng;
+        }
+    }
+
+    /** Statement text and its bind arguments. */
+    public static final class Sql {
+        public final String text;
+        public final Object[] args;
+
+        Sql(String text, Object[] args) {
+            this.text = text;
+            this.args = args;
+        }
+    }
+
+    /** A point and its distance from the place searched around. */
+    public static final class Near {
+        public final LocationPointEntity point;
+        public final double distanceM;
+
+        Near(LocationPointEntity point, double distanceM) {
+            this.point = point;
+            this.distanceM = distanceM;
+        }
+    }
+
+    private SpatialQuery() {
+    }
+
+    /** Keep the candidates within {@code radiusM} of the place, nearest first, at most {@code limit}. */
+    public static List<Near> nearest(List<LocationPointEntity> candidates, double lat, double lng, double radiusM, int limit) {
+        List<Near> hits = new ArrayList<>();
+        for (LocationPointEntity p : candidates) {
+            double d = TrackAggregator.distanceM(lat, lng, p.lat, p.lng);
+            if (d <= radiusM) hits.add(new Near(p, d));
+        }
+        hits.sort(Comparator.comparingDouble(n -> n.distanceM));
+        return limit >= 0 && hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * Boxes covering the circle of {@code radiusM} around a point: one box, or two when the
+     * circle crosses the antimeridian. A circle reaching a pole covers every longitude.
+     */
+    public static List<Box> around(double lat, double lng, double radiusM) {
+        if (!(radiusM >= 0)) throw new IllegalArgumentException("radiusM must be >= 0");
+        double dLat = radiusM / METERS_PER_DEG_LAT;
+        double minLat = Math.max(-90, lat - dLat);
+        double maxLat = Math.min(90, lat + dLat);
+        List<Box> boxes = new ArrayList<>(2);
+        double cos = Math.cos(Math.toRadians(Math.max(Math.abs(minLat), Math.abs(maxLat))));
+        if (minLat <= -90 || maxLat >= 90 || cos <= 1e-9) {
+            boxes.add(new Box(minLat, -180, maxLat, 180));
+            return boxes;
+        }
+        double dLng = radiusM / (METERS_PER_DEG_LAT * cos);
+        if (dLng >= 180) {
+            boxes.add(new Box(minLat, -180, maxLat, 180));
+        } else if (lng - dLng < -180) {
+            boxes.add(new Box(minLat, lng - dLng + 360, maxLat, 180));
+            boxes.add(new Box(minLat, -180, maxLat, lng + dLng));
+        } else if (lng + dLng > 180) {
+            boxes.add(new Box(minLat, lng - dLng, maxLat, 180));
+            boxes.add(new Box(minLat, -180, maxLat, lng + dLng - 360));
+        } else {
+            boxes.add(new Box(minLat, lng - dLng, maxLat, lng + dLng));
+        }
+        return boxes;
+    }
+
+    /**
+     * Points in {@code box} captured in [{@code fromMs}, {@code toMs}), oldest first. Either time
+     * bound may be null. {@code indexed} chooses the R-Tree plan or the full scan.
+     */
+    public static Sql inBox(Box box, Long fromMs, Long toMs, int limit, boolean indexed) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        if (indexed) {
+            sql.append("SELECT p.* FROM location_rtree r JOIN location_points p ON p.id = r.id")
+                    .append(" WHERE r.maxLat >= ? AND r.minLat <= ? AND r.maxLng >= ? AND r.minLng <= ?");
+            args.add(box.minLat);
+            args.add(box.maxLat);
+            args.add(box.minLng);
+            args.add(box.maxLng);
+            // Whole seconds, widened so rounding never drops a point the exact check would keep
+            if (fromMs != null) {
+                sql.append(" AND r.maxT >= ?");
+                args.add(Math.floorDiv(fromMs, 1000L));
+            }
+            if (toMs != null) {
+                sql.append(" AND r.minT <= ?");
+                args.add(Math.floorDiv(toMs, 1000L) + 1);
+            }
+            sql.append(" AND ");
+        } else {
+            sql.append("SELECT p.* FROM location_points p WHERE ");
+        }
+        sql.append("p.lat >= ? AND p.lat <= ? AND p.lng >= ? AND p.lng <= ?");
+        args.add(box.minLat);
+        args.add(box.maxLat);
+        args.add(box.minLng);
+        args.add(box.maxLng);
+        if (fromMs != null) {
+            sql.append(" AND p.capturedAt >= ?");
+            args.add(TrackAggregator.formatTime(fromMs));
+        }
+        if (toMs != null) {
+            sql.append(" AND p.capturedAt < ?");
+            args.add(TrackAggregator.formatTime(toMs));
+        }
+        sql.append(" ORDER BY p.capturedAt ASC, p.id ASC LIMIT ?");
+        args.add(limit);
+        return new Sql(sql.toString(), args.toArray());
+    }
+}
@@ -0,0 +1,32 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A place the device stayed, as found by {@link TrackAggregator}. The newest stop is extended
+ * in place while the device stays within the stop radius.
+ */
+@Entity(tableName = "stops", indices = {@Index(value = {"end_at"})})
+public class StopEntity {
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "start_at")
+    public long startAt;
+
+    @ColumnInfo(name = "end_at")
+    public long endAt;
+
+    /** Centroid of the points in the stop. */
+    @ColumnInfo(name = "lat")
+    public double lat;
+
+    @ColumnInfo(name = "lng")
+    public double lng;
+
+    @ColumnInfo(name = "point_count")
+    public int pointCount;
+}
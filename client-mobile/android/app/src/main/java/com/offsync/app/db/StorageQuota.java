@@ -0,0 +1,127 @@
+package com.offsync.app.db;
+
+/**
+ * Size and row quota for {@code location_points}.
+ *
+ * {@link #overage} says how many rows have to go. Rows already uploaded go first. After that,
+ * {@link #selectThinning} drops pending points from the oldest end by thinning them rather than
+ * truncating: the older the point, the wider the spacing kept between survivors, so an old
+ * offline stretch keeps its shape at lower resolution. The newest {@code protectNewest} rows
+ * are never touched.
+ *
+ * Low free disk space is not the table's doing, so {@link #lowDiskShed} only gives up
+ * uploaded rows, and no more than would cover the shortfall.
+ */
+public final class StorageQuota {
+    public static final int DEFAULT_MAX_ROWS = 250_000;
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_MIN_FREE_BYTES = 200L * 1024 * 1024;
+    public static final int DEFAULT_PROTECT_NEWEST = 5_000;
+    /** Spacing kept between surviving points in the youngest thinned band. */
+    public static final long BASE_SPACING_MS = 30_000;
+    /** Most of the table to give up on each check while free disk space is below the floor. */
+    static final double LOW_DISK_SHED = 0.10;
+    private static final int MAX_PASSES = 24;
+
+    private StorageQuota() {
+    }
+
+    public static final class Config {
+        public final int maxRows;
+        public final long maxBytes;
+        public final long minFreeBytes;
+        public final int protectNewest;
+
+        public Config(int maxRows, long maxBytes, long minFreeBytes, int protectNewest) {
+            this.maxRows = maxRows;
+            this.maxBytes = maxBytes;
+            this.minFreeBytes = minFreeBytes;
+            this.protectNewest = protectNewest;
+        }
+    }
+
+    /**
+     * Rows to remove so the table fits the quota, uploaded or not.
+     *
+     * @param usedBytes bytes in use inside the database file (pages minus the freelist)
+     */
+    public static int overage(Config config, int rows, long usedBytes) {
+        if (rows <= 0) return 0;
+        long over = Math.max(0, rows - (long) config.maxRows);
+        if (config.maxBytes > 0 && usedBytes > config.maxBytes) {
+            double bytesPerRow = (double) usedBytes / rows;
+            over = Math.max(over, (long) Math.ceil((usedBytes - config.maxBytes) / bytesPerRow));
+        }
+        return (int) Math.min(over, Math.max(0, rows - config.protectNewest));
+    }
+
+    /**
+     * Uploaded rows to give up while free space on the volume is below the floor: enough to
+     * cover the shortfall, at most {@link #LOW_DISK_SHED} of the table per check. Deleted pages
+     * are reused by later inserts, so this stops the file from growing; pending rows are kept.
+     *
+     * @param freeBytes usable space left on the volume holding the database
+     */
+    public static int lowDiskShed(Config config, int rows, long usedBytes, long freeBytes) {
+        if (rows <= 0 || freeBytes >= config.minFreeBytes || usedBytes <= 0) return 0;
+        double bytesPerRow = (double) usedBytes / rows;
+        long shortfallRows = (long) Math.ceil((config.minFreeBytes - freeBytes) / bytesPerRow);
+        long shed = Math.min(shortfallRows, (long) Math.ceil(rows * LOW_DISK_SHED));
+        return (int) Math.min(shed, Math.max(0, rows - config.protectNewest));
+    }
+
+    /**
+     * Mark up to {@code target} of the first {@code n} pending points for deletion.
+     * {@code timesMs} is ascending; the last {@code protectNewest} entries are never marked.
+     *
+     * Each pass walks the eligible points oldest first and drops any point closer to the last
+     * survivor than its band's spacing. Bands double in length and in spacing going back in
+     * time from the protected tail. Passes repeat with twice the spacing until enough points are
+     * marked, and the oldest marked points are the ones kept in {@code drop}.
+     *
+     * @return number of entries set in {@code drop}
+     */
+    public static int selectThinning(long[] timesMs, int n, int protectNewest, int target, boolean[] drop) {
+        int eligible = Math.max(0, n - protectNewest);
+        target = Math.min(target, eligible);
+        if (target <= 0) return 0;
+        int bandRows = Math.max(1, eligible / 16);
+        boolean[] candidate = new boolean[eligible];
+        int marked = 0;
+        long spacing = BASE_SPACING_MS;
+        for (int pass = 0; pass < MAX_PASSES && marked < target; pass++, spacing *= 2) {
+            long lastKept = Long.MIN_VALUE;
+            for (int i = 0; i < eligible; i++) {
+                if (candidate[i]) continue;
+                long required = spacing << band(eligible - 1 - i, bandRows);
+                if (lastKept != Long.MIN_VALUE && timesMs[i] - lastKept < required) {
+                    candidate[i] = true;
+                    marked++;
+                } else {
+                    lastKept = timesMs[i];
+                }
+            }
+        }
+        // Points spread wider than any spacing tried: fall back to the oldest ones
+        for (int i = 0; i < eligible && marked < target; i++) {
+            if (!candidate[i]) {
+                candidate[i] = true;
+                marked++;
+            }
+        }
+        int selected = 0;
+        for (int i = 0; i < eligible && selected < target; i++) {
+            if (candidate[i]) {
+                drop[i] = true;
+                selected++;
+            }
+        }
+        return selected;
+    }
+
+    /** Band 0 is the {@code bandRows} points just before the protected tail, band 1 the next 2x, and so on. */
+    private static int band(int rankFromNewest, int bandRows) {
+        int band = 31 - Integer.numberOfLeadingZeros(rankFromNewest / bandRows + 1);
+        return Math.min(band, 16);
+    }
+}
@@ -0,0 +1,185 @@
+package com.offsync.app.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.metrics.SyncTrace;
+import java.io.File;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Android side of {@link StorageQuota}: keeps the quota settings in {@code app_prefs}, measures
+ * the database and the volume it lives on, and deletes rows when the quota is exceeded or the
+ * disk runs low. {@link LocationWriter} calls {@link #enforceInBackground} every so many inserts,
+ * so the measuring and deleting stay off the write path. Call {@link #enforce} off the main thread.
+ */
+public final class StorageQuotaStore {
+    private static final String PREF_MAX_ROWS = "quota_max_rows";
+    private static final String PREF_MAX_BYTES = "quota_max_bytes";
+    private static final String PREF_MIN_FREE_BYTES = "quota_min_free_bytes";
+    private static final String PREF_PROTECT_NEWEST = "quota_protect_newest";
+    private static final String DB_NAME = "offsync_native_db";
+    private static final String PENDING_BEFORE =
+            "SELECT id, capturedAt FROM location_points WHERE isUploaded = 0 AND capturedAt < ? ORDER BY capturedAt ASC";
+    // Stay well under SQLite's bound-parameter limit
+    private static final int DELETE_CHUNK = 500;
+
+    private static final AtomicBoolean running = new AtomicBoolean();
+    private static final AtomicBoolean queued = new AtomicBoolean();
+    private static final ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "offsync-quota");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private StorageQuotaStore() {
+    }
+
+    /** Current measurements, as reported to JS. */
+    public static final class Usage {
+        public int rows;
+        public int pending;
+        public int uploaded;
+        public long usedBytes;
+        public long fileBytes;
+        public long freeBytes;
+        public int overage;
+        /** Uploaded rows to shed for low disk space, on top of {@link #overage}. */
+        public int lowDiskShed;
+    }
+
+    public static StorageQuota.Config config(Context context) {
+        SharedPreferences prefs = prefs(context);
+        return new StorageQuota.Config(
+                prefs.getInt(PREF_MAX_ROWS, StorageQuota.DEFAULT_MAX_ROWS),
+                prefs.getLong(PREF_MAX_BYTES, StorageQuota.DEFAULT_MAX_BYTES),
+                prefs.getLong(PREF_MIN_FREE_BYTES, StorageQuota.DEFAULT_MIN_FREE_BYTES),
+                prefs.getInt(PREF_PROTECT_NEWEST, StorageQuota.DEFAULT_PROTECT_NEWEST));
+    }
+
+    public static void setConfig(Context context, int maxRows, long maxBytes, long minFreeBytes, int protectNewest) {
+        prefs(context).edit()
+                .putInt(PREF_MAX_ROWS, Math.max(1_000, maxRows))
+                .putLong(PREF_MAX_BYTES, Math.max(0, maxBytes))
+                .putLong(PREF_MIN_FREE_BYTES, Math.max(0, minFreeBytes))
+                .putInt(PREF_PROTECT_NEWEST, Math.max(0, protectNewest))
+                .apply();
+    }
+
+    public static Usage usage(Context context) {
+        AppDatabase db = AppDatabase.getInstance(context);
+        LocationDao dao = db.locationDao();
+        Usage u = new Usage();
+        u.rows = dao.countAll();
+        u.pending = dao.countPending();
+        u.uploaded = u.rows - u.pending;
+        SupportSQLiteDatabase sql = db.getOpenHelper().getReadableDatabase();
+        long pageSize = pragma(sql, "page_size");
+        u.usedBytes = (pragma(sql, "page_count") - pragma(sql, "freelist_count")) * pageSize;
+        File file = context.getDatabasePath(DB_NAME);
+        u.fileBytes = file.length();
+        File dir = file.getParentFile();
+        u.freeBytes = dir != null ? dir.getUsableSpace() : Long.MAX_VALUE;
+        StorageQuota.Config config = config(context);
+        u.overage = StorageQuota.overage(config, u.rows, u.usedBytes);
+        u.lowDiskShed = StorageQuota.lowDiskShed(config, u.rows, u.usedBytes, u.freeBytes);
+        SyncMetrics.DB_USED_BYTES.set(u.usedBytes);
+        return u;
+    }
+
+    /** Run {@link #enforce} on a background thread; a check already queued or running covers this one. */
+    public static void enforceInBackground(Context context) {
+        if (!queued.compareAndSet(false, true)) return;
+        Context app = context.getApplicationContext();
+        background.execute(() -> {
+            queued.set(false);
+            enforce(app);
+        });
+    }
+
+    /**
+     * Bring the table back under quota: evict uploaded rows oldest first, then thin the oldest
+     * pending rows. Low disk space only evicts uploaded rows. Returns the number of rows
+     * deleted; 0 if another enforcement is running.
+     */
+    public static int enforce(Context context) {
+        if (!running.compareAndSet(false, true)) return 0;
+        boolean traced = SyncTrace.begin("offsync:db.quota");
+        try {
+            StorageQuota.Config config = config(context);
+            Usage u = usage(context);
+            if (u.overage == 0 && u.lowDiskShed == 0) return 0;
+            LocationDao dao = AppDatabase.getInstance(context).locationDao();
+            String protectFrom = dao.getCapturedAtFromNewest(Math.max(0, config.protectNewest - 1));
+            if (protectFrom == null) return 0;
+
+            int evicted = dao.deleteOldestUploaded(protectFrom, Math.max(u.overage, u.lowDiskShed));
+            SyncMetrics.POINTS_EVICTED.add(evicted);
+            int thinned = u.overage > evicted ? thinPending(context, protectFrom, u.overage - evicted) : 0;
+            SyncMetrics.POINTS_THINNED.add(thinned);
+            return evicted + thinned;
+        } finally {
+            SyncTrace.end(traced);
+            running.set(false);
+        }
+    }
+
+    private static int thinPending(Context context, String before, int target) {
+        AppDatabase db = AppDatabase.getInstance(context);
+        int[] ids = new int[1024];
+        long[] times = new long[1024];
+        int n = 0;
+        try (Cursor c = db.query(new SimpleSQLiteQuery(PENDING_BEFORE, new Object[]{before}))) {
+            long last = 0;
+            while (c.moveToNext()) {
+                if (n == ids.length) {
+                    ids = Arrays.copyOf(ids, n * 2);
+                    times = Arrays.copyOf(times, n * 2);
+                }
+                ids[n] = c.getInt(0);
+                // Rows sort by the ISO string, so an unparsable one just inherits its predecessor's time
+                try {
+                    last = Instant.parse(c.getString(1)).toEpochMilli();
+                } catch (Exception ignored) {
+                }
+                times[n++] = last;
+            }
+        }
+        boolean[] drop = new boolean[n];
+        int selected = StorageQuota.selectThinning(times, n, 0, target, drop);
+        if (selected == 0) return 0;
+
+        LocationDao dao = db.locationDao();
+        List<Integer> chunk = new ArrayList<>(DELETE_CHUNK);
+        int deleted = 0;
+        for (int i = 0; i < n; i++) {
+            if (!drop[i]) continue;
+            chunk.add(ids[i]);
+            if (chunk.size() == DELETE_CHUNK) {
+                deleted += dao.deleteByIds(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) deleted += dao.deleteByIds(chunk);
+        return deleted;
+    }
+
+    private static long pragma(SupportSQLiteDatabase sql, String name) {
+        try (Cursor c = sql.query("PRAGMA " + name)) {
+            return c.moveToFirst() ? c.getLong(0) : 0;
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+}
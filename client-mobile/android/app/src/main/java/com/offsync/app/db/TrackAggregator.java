@@ -0,0 +1,176 @@
+package com.offsync.app.db;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Incremental summary of the track, one point at a time: hop distance, and stops found with a
+ * stay-point rule. A stop is a run of consecutive points that stay within {@link #STOP_RADIUS_M}
+ * of the run's first point for at least {@link #MIN_DWELL_MS}. Each point costs O(1) and
+ * touches only {@link State}, so {@link AggregateStore} can fold it into the aggregate tables
+ * in the same transaction as the insert.
+ *
+ * Every hop counts towards distance except hops inside an open stop, which are GPS jitter.
+ * Jitter before a stop is recognised is counted, so a short stop adds a few metres. A point
+ * older than the last one cannot be placed on the track; it is counted but adds no distance
+ * and does not move the stop state.
+ *
+ * Pure and deterministic; not thread-safe.
+ */
+public final class TrackAggregator {
+    private static final double EARTH_RADIUS_M = 6_371_008.8;
+    public static final double STOP_RADIUS_M = 50;
+    public static final long MIN_DWELL_MS = 5 * 60 * 1000L;
+    public static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final DateTimeFormatter STORED_TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    /** Where the track left off. Persisted as the single {@code track_state} row. */
+    public static final class State {
+        public boolean hasLast;
+        public long lastAt;
+        public double lastLat;
+        public double lastLng;
+        /** First point of the current run of nearby points, and its running centroid. */
+        public long clusterStartAt;
+        public double clusterLat;
+        public double clusterLng;
+        public double clusterSumLat;
+        public double clusterSumLng;
+        public int clusterCount;
+        /** Row id of the stop being extended, 0 when none is open. */
+        public long openStopId;
+    }
+
+    public enum StopChange {
+        NONE,
+        /** The current run just reached the minimum dwell; insert a stop row and set {@link State#openStopId}. */
+        OPENED,
+        /** The point extended the open stop. */
+        EXTENDED
+    }
+
+    /** What one point adds. Reused between calls. */
+    public static final class Step {
+        public boolean outOfOrder;
+        public double distanceM;
+        public long dwellMs;
+        public StopChange stop = StopChange.NONE;
+
+        void clear() {
+            outOfOrder = false;
+            distanceM = 0;
+            dwellMs = 0;
+            stop = StopChange.NONE;
+        }
+    }
+
+    private TrackAggregator() {
+    }
+
+    /** Fold the point at {@code at} (epoch ms) into {@code state} and describe its effect in {@code out}. */
+    public static void advance(State state, long at, double lat, double lng, Step out) {
+        out.clear();
+        if (!state.hasLast) {
+            startCluster(state, at, lat, lng);
+            moveTo(state, at, lat, lng);
+            return;
+        }
+        if (at < state.lastAt) {
+            out.outOfOrder = true;
+            return;
+        }
+        double hop = distanceM(state.lastLat, state.lastLng, lat, lng);
+        if (distanceM(state.clusterLat, state.clusterLng, lat, lng) <= STOP_RADIUS_M) {
+            state.clusterCount++;
+            state.clusterSumLat += lat;
+            state.clusterSumLng += lng;
+            if (state.openStopId != 0) {
+                out.stop = StopChange.EXTENDED;
+                out.dwellMs = at - state.lastAt;
+            } else if (at - state.clusterStartAt >= MIN_DWELL_MS) {
+                out.stop = StopChange.OPENED;
+                out.dwellMs = at - state.clusterStartAt;
+                out.distanceM = hop;
+            } else {
+                out.distanceM = hop;
+            }
+        } else {
+            // Leaving the run closes any open stop; this point anchors the next run
+            out.distanceM = hop;
+            startCluster(state, at, lat, lng);
+        }
+        moveTo(state, at, lat, lng);
+    }
+
+    /** Centroid of the current run, for the stop row. */
+    public static double stopLat(State state) {
+        return state.clusterSumLat / state.clusterCount;
+    }
+
+    public static double stopLng(State state) {
+        return state.clusterSumLng / state.clusterCount;
+    }
+
+    /** Great-circle distance in metres. */
+    public static double distanceM(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** Local calendar day of {@code at}, as yyyy-MM-dd; the key of {@code daily_summaries}. */
+    public static String dayOf(long at, ZoneId zone) {
+        return Instant.ofEpochMilli(at).atZone(zone).toLocalDate().toString();
+    }
+
+    /** Start of the UTC hour holding {@code at}; the key of {@code hourly_counts}. */
+    public static long hourOf(long at) {
+        return Math.floorDiv(at, HOUR_MS) * HOUR_MS;
+    }
+
+    /** Epoch ms of a stored capturedAt, or -1 when it cannot be read. */
+    /**
+     * {@code ms} in the stored form of capturedAt, JS {@code toISOString()}: UTC, always with
+     * milliseconds. Bounds compared against capturedAt as strings must use this form, since
+     * {@link Instant#toString} drops zero milliseconds and '.' sorts before 'Z'.
+     */
+    public static String formatTime(long ms) {
+        return STORED_TIME.format(Instant.ofEpochMilli(ms));
+    }
+
+    public static long parseTime(String iso) {
+        if (iso == null) return -1;
+        try {
+            return Instant.parse(iso).toEpochMilli();
+        } catch (Exception e) {
+            try {
+                return OffsetDateTime.parse(iso).toInstant().toEpochMilli();
+            } catch (Exception ignored) {
+                return -1;
+            }
+        }
+    }
+
+    private static void startCluster(State state, long at, double lat, double lng) {
+        state.clusterStartAt = at;
+        state.clusterLat = lat;
+        state.clusterLng = lng;
+        state.clusterSumLat = lat;
+        state.clusterSumLng = lng;
+        state.clusterCount = 1;
+        state.openStopId = 0;
+    }
+
+    private static void moveTo(State state, long at, double lat, double lng) {
+        state.hasLast = true;
+        state.lastAt = at;
+        state.lastLat = lat;
+        state.lastLng = lng;
+    }
+}
@@ -0,0 +1,86 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * The single row holding {@link TrackAggregator.State} between inserts. {@link #rebuildPending}
+ * is set by the migration that created the aggregate tables, so the first write afterwards
+ * backfills them from the existing history.
+ */
+@Entity(tableName = "track_state")
+public class TrackStateEntity {
+    public static final int ID = 0;
+
+    @PrimaryKey
+    public int id = ID;
+
+    @ColumnInfo(name = "has_last")
+    public boolean hasLast;
+
+    @ColumnInfo(name = "last_at")
+    public long lastAt;
+
+    @ColumnInfo(name = "last_lat")
+    public double lastLat;
+
+    @ColumnInfo(name = "last_lng")
+    public double lastLng;
+
+    @ColumnInfo(name = "cluster_start_at")
+    public long clusterStartAt;
+
+    @ColumnInfo(name = "cluster_lat")
+    public double clusterLat;
+
+    @ColumnInfo(name = "cluster_lng")
+    public double clusterLng;
+
+    @ColumnInfo(name = "cluster_sum_lat")
+    public double clusterSumLat;
+
+    @ColumnInfo(name = "cluster_sum_lng")
+    public double clusterSumLng;
+
+    @ColumnInfo(name = "cluster_count")
+    public int clusterCount;
+
+    @ColumnInfo(name = "open_stop_id")
+    public long openStopId;
+
+    @ColumnInfo(name = "rebuild_pending")
+    public boolean rebuildPending;
+
+    TrackAggregator.State toState() {
+        TrackAggregator.State s = new TrackAggregator.State();
+        s.hasLast = hasLast;
+        s.lastAt = lastAt;
+        s.lastLat = lastLat;
+        s.lastLng = lastLng;
+        s.clusterStartAt = clusterStartAt;
+        s.clusterLat = clusterLat;
+        s.clusterLng = clusterLng;
+        s.clusterSumLat = clusterSumLat;
+        s.clusterSumLng = clusterSumLng;
+        s.clusterCount = clusterCount;
+        s.openStopId = openStopId;
+        return s;
+    }
+
+    static TrackStateEntity of(TrackAggregator.State s) {
+        TrackStateEntity e = new TrackStateEntity();
+        e.hasLast = s.hasLast;
+        e.lastAt = s.lastAt;
+        e.lastLat = s.lastLat;
+        e.lastLng = s.lastLng;
+        e.clusterStartAt = s.clusterStartAt;
+        e.clusterLat = s.clusterLat;
+        e.clusterLng = s.clusterLng;
+        e.clusterSumLat = s.clusterSumLat;
+        e.clusterSumLng = s.clusterSumLng;
+        e.clusterCount = s.clusterCount;
+        e.openStopId = s.openStopId;
+        return e;
+    }
+}
@@ -0,0 +1,31 @@
+package com.offsync.app.db;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+import java.util.List;
+
+@Dao
+public interface UploadSegmentDao {
+    @Insert
+    long insert(UploadSegmentEntity segment);
+
+    @Query("SELECT * FROM upload_segments WHERE status = 'SEALED' ORDER BY id ASC")
+    List<UploadSegmentEntity> getSealed();
+
+    /** Highest point id already sealed into a segment that is not committed yet, or 0. */
+    @Query("SELECT COALESCE(MAX(last_point_id), 0) FROM upload_segments WHERE status = 'SEALED'")
+    long getSealedUpTo();
+
+    @Query("UPDATE upload_segments SET uploaded_bytes = :offset WHERE id = :id")
+    void updateOffset(long id, long offset);
+
+    @Query("UPDATE upload_segments SET status = 'COMMITTED', committed_at = :now WHERE id = :id")
+    void markCommitted(long id, long now);
+
+    @Query("DELETE FROM upload_segments WHERE id = :id")
+    void delete(long id);
+
+    @Query("DELETE FROM upload_segments WHERE status = 'COMMITTED' AND committed_at < :ts")
+    int deleteCommittedBefore(long ts);
+}
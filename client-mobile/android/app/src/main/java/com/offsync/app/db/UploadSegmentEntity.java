@@ -0,0 +1,53 @@
+package com.offsync.app.db;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A sealed catch-up segment: the pending {@code location_points} with ids in
+ * [{@link #firstPointId}, {@link #lastPointId}], gzipped into {@link #fileName} under the
+ * app's no-backup files. {@link #uploadedBytes} is the last offset the server confirmed.
+ */
+@Entity(tableName = "upload_segments", indices = {@Index(value = {"status"})})
+public class UploadSegmentEntity {
+    public static final String STATUS_SEALED = "SEALED";
+    public static final String STATUS_COMMITTED = "COMMITTED";
+
+    @PrimaryKey(autoGenerate = true)
+    public long id;
+
+    @ColumnInfo(name = "segment_id")
+    public String segmentId;
+
+    @ColumnInfo(name = "first_point_id")
+    public long firstPointId;
+
+    @ColumnInfo(name = "last_point_id")
+    public long lastPointId;
+
+    @ColumnInfo(name = "point_count")
+    public int pointCount;
+
+    @ColumnInfo(name = "byte_count")
+    public long byteCount;
+
+    @ColumnInfo(name = "sha256")
+    public String sha256;
+
+    @ColumnInfo(name = "file_name")
+    public String fileName;
+
+    @ColumnInfo(name = "uploaded_bytes")
+    public long uploadedBytes;
+
+    @ColumnInfo(name = "status")
+    public String status = STATUS_SEALED;
+
+    @ColumnInfo(name = "created_at")
+    public long createdAt = System.currentTimeMillis();
+
+    @ColumnInfo(name = "committed_at")
+    public Long committedAt;
+}
@@ -0,0 +1,142 @@
+package com.offsync.app.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Process-wide metrics for the native sync pipeline.
+ * All metrics are created up front and updated with plain atomics, so recording on the hot
+ * paths (writer, worker, prune) does not allocate. {@link #snapshot(JSONObject)} copies the
+ * current values out for the plugin.
+ */
+public final class SyncMetrics {
+    // Points written by the native writer
+    public static final Counter POINTS_WRITTEN = new Counter("pointsWritten");
+    public static final Counter POINTS_UPLOADED = new Counter("pointsUploaded");
+    public static final Counter POINTS_PRUNED = new Counter("pointsPruned");
+    public static final Counter BATCHES_UPLOADED = new Counter("batchesUploaded");
+    public static final Counter BATCHES_FAILED = new Counter("batchesFailed");
+    public static final Counter RETRIES = new Counter("retries");
+    public static final Counter BYTES_SENT = new Counter("bytesSent");
+    public static final Counter ERRORS = new Counter("errors");
+    // Fixes dropped by the capture filter, by reason
+    public static final Counter FIXES_REJECTED_ACCURACY = new Counter("fixesRejectedAccuracy");
+    public static final Counter FIXES_REJECTED_SPEED = new Counter("fixesRejectedSpeed");
+    public static final Counter FIXES_REJECTED_OUTLIER = new Counter("fixesRejectedOutlier");
+    // Rows removed by the storage quota: uploaded rows evicted, pending rows thinned
+    public static final Counter POINTS_EVICTED = new Counter("pointsEvicted");
+    public static final Counter POINTS_THINNED = new Counter("pointsThinned");
+
+    public static final Gauge BACKLOG = new Gauge("backlog");
+    public static final Gauge OLDEST_PENDING_AGE_MS = new Gauge("oldestPendingAgeMs");
+    public static final Gauge LAST_SYNC_AT = new Gauge("lastSyncAt");
+    public static final Gauge LAST_FAILURE_AT = new Gauge("lastFailureAt");
+    // Age of the newest point when the live lane delivered it
+    public static final Gauge LIVE_POINT_AGE_MS = new Gauge("livePointAgeMs");
+    public static final Gauge DB_USED_BYTES = new Gauge("dbUsedBytes");
+
+    public static final Histogram BATCH_LATENCY_MS = new Histogram("batchLatencyMs");
+    public static final Histogram WRITE_LATENCY_MS = new Histogram("writeLatencyMs");
+
+    private static final Counter[] COUNTERS = {
+            POINTS_WRITTEN, POINTS_UPLOADED, POINTS_PRUNED, BATCHES_UPLOADED, BATCHES_FAILED, RETRIES, BYTES_SENT, ERRORS,
+            FIXES_REJECTED_ACCURACY, FIXES_REJECTED_SPEED, FIXES_REJECTED_OUTLIER, POINTS_EVICTED, POINTS_THINNED
+    };
+    private static final Gauge[] GAUGES = {BACKLOG, OLDEST_PENDING_AGE_MS, LAST_SYNC_AT, LAST_FAILURE_AT, LIVE_POINT_AGE_MS,
+            DB_USED_BYTES};
+    private static final Histogram[] HISTOGRAMS = {BATCH_LATENCY_MS, WRITE_LATENCY_MS};
+
+    private SyncMetrics() {
+    }
+
+    public static void snapshot(JSONObject out) throws JSONException {
+        for (Counter c : COUNTERS) out.put(c.name, c.get());
+        for (Gauge g : GAUGES) out.put(g.name, g.get());
+        for (Histogram h : HISTOGRAMS) {
+            JSONObject o = new JSONObject();
+            o.put("count", h.count());
+            o.put("mean", h.mean());
+            o.put("p50", h.percentile(0.50));
+            o.put("p95", h.percentile(0.95));
+            o.put("max", h.max());
+            out.put(h.name, o);
+        }
+    }
+
+    public static final class Counter {
+        final String name;
+        private final AtomicLong value = new AtomicLong();
+
+        Counter(String name) {
+            this.name = name;
+        }
+
+        public void inc() { value.incrementAndGet(); }
+        public void add(long n) { value.addAndGet(n); }
+        public long get() { return value.get(); }
+    }
+
+    public static final class Gauge {
+        final String name;
+        private volatile long value;
+
+        Gauge(String name) {
+            this.name = name;
+        }
+
+        public void set(long v) { value = v; }
+        public long get() { return value; }
+    }
+
+    /**
+     * Fixed-bucket latency histogram (milliseconds). Percentiles are reported as the upper bound
+     * of the bucket they fall in, which is precise enough to spot slow devices.
+     */
+    public static final class Histogram {
+        private static final long[] BOUNDS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10_000, 30_000, 60_000};
+
+        final String name;
+        private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length + 1);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String name) {
+            this.name = name;
+        }
+
+        public void record(long valueMs) {
+            int i = 0;
+            while (i < BOUNDS.length && valueMs > BOUNDS[i]) i++;
+            buckets.incrementAndGet(i);
+            count.incrementAndGet();
+            sum.addAndGet(valueMs);
+            long prev;
+            while (valueMs > (prev = max.get()) && !max.compareAndSet(prev, valueMs)) {
+                // retry
+            }
+        }
+
+        public long count() { return count.get(); }
+        public long max() { return max.get(); }
+
+        public long mean() {
+            long n = count.get();
+            return n == 0 ? 0 : sum.get() / n;
+        }
+
+        public long percentile(double q) {
+            long n = count.get();
+            if (n == 0) return 0;
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length(); i++) {
+                seen += buckets.get(i);
+                if (seen >= rank) return i < BOUNDS.length ? BOUNDS[i] : max.get();
+            }
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.offsync.app.metrics;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import androidx.tracing.Trace;
+
+/**
+ * Perfetto trace sections for the native hot paths. Sections are emitted while a system trace
+ * is recording the app (profileable builds, macrobenchmark runs) and, in any build, once the
+ * developer-mode flag forces app tracing on. Section names follow {@code offsync:<area>.<operation>} (areas: bridge, db, sync, sms)
+ * and counter tracks {@code offsync:<name>}.
+ *
+ * {@link #begin} returns whether a section was opened; pass that to {@link #end} so toggling
+ * the flag mid-section never leaves the trace stack unbalanced.
+ */
+public final class SyncTrace {
+    private static volatile boolean enabled;
+    private static volatile boolean initialized;
+
+    private SyncTrace() {
+    }
+
+    /** Read the developer-mode flag once per process. */
+    public static void init(Context context) {
+        if (initialized) return;
+        SharedPreferences prefs = context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+        setEnabled(prefs.getBoolean("developer_mode", false));
+    }
+
+    public static void setEnabled(boolean on) {
+        // Release builds are not profileable by default; let developer mode opt in
+        if (on) Trace.forceEnableAppTracing();
+        enabled = on;
+        initialized = true;
+    }
+
+    /** Whether sections and counters are recorded; check it before computing a costly counter value. */
+    public static boolean isActive() {
+        return enabled || Trace.isEnabled();
+    }
+
+    public static boolean begin(String section) {
+        if (!isActive()) return false;
+        Trace.beginSection(section);
+        return true;
+    }
+
+    public static void end(boolean started) {
+        if (started) Trace.endSection();
+    }
+
+    public static boolean beginAsync(String section, int cookie) {
+        if (!isActive()) return false;
+        Trace.beginAsyncSection(section, cookie);
+        return true;
+    }
+
+    public static void endAsync(boolean started, String section, int cookie) {
+        if (started) Trace.endAsyncSection(section, cookie);
+    }
+
+    public static void counter(String name, long value) {
+        if (isActive()) Trace.setCounter(name, (int) Math.min(Integer.MAX_VALUE, value));
+    }
+}
@@ -0,0 +1,107 @@
+package com.offsync.app.work;
+
+/**
+ * Growable UTF-8 byte buffer with the allocation-free number and text primitives shared by
+ * the {@link com.offsync.app.db.LocationBatch} encoders. Subclasses define the record layout;
+ * the encoded bytes are {@code buffer()[0 .. length())} until the next encode.
+ */
+abstract class BatchEncoder {
+    private static final long[] POW10 = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L};
+
+    private byte[] buf;
+    int len;
+    private final byte[] digits = new byte[20];
+
+    BatchEncoder(int initialBytes) {
+        buf = new byte[initialBytes];
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    /** Coordinates use 7 decimals (about 1 cm), trailing zeros trimmed. */
+    final void number(double v, int decimals) {
+        if (Double.isNaN(v) || Double.isInfinite(v)) throw new IllegalArgumentException("non-finite number " + v);
+        long scaled = Math.round(Math.abs(v) * POW10[decimals]);
+        if (v < 0 && scaled != 0) put('-');
+        integer(scaled / POW10[decimals]);
+        long frac = scaled % POW10[decimals];
+        if (frac == 0) return;
+        int d = decimals;
+        while (frac % 10 == 0) {
+            frac /= 10;
+            d--;
+        }
+        put('.');
+        for (int i = d - 1; i >= 0; i--) {
+            put('0' + (int) (frac / POW10[i] % 10));
+        }
+    }
+
+    final void integer(long v) {
+        if (v < 0) {
+            put('-');
+            v = -v;
+        }
+        int n = 0;
+        do {
+            digits[n++] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v != 0);
+        ensure(n);
+        while (n > 0) buf[len++] = digits[--n];
+    }
+
+    /** ASCII constants such as keys and headers. */
+    final void ascii(String s) {
+        ensure(s.length());
+        for (int i = 0; i < s.length(); i++) buf[len++] = (byte) s.charAt(i);
+    }
+
+    /** UTF-8 encode one char, or a surrogate pair starting at {@code chars[i]}; returns chars consumed. */
+    final int utf8(char[] chars, int i, int n) {
+        char c = chars[i];
+        if (c < 0x80) {
+            put(c);
+        } else if (c < 0x800) {
+            put(0xc0 | (c >> 6));
+            put(0x80 | (c & 0x3f));
+        } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(chars[i + 1])) {
+            int cp = Character.toCodePoint(c, chars[i + 1]);
+            put(0xf0 | (cp >> 18));
+            put(0x80 | ((cp >> 12) & 0x3f));
+            put(0x80 | ((cp >> 6) & 0x3f));
+            put(0x80 | (cp & 0x3f));
+            return 2;
+        } else {
+            put(0xe0 | (c >> 12));
+            put(0x80 | ((c >> 6) & 0x3f));
+            put(0x80 | (c & 0x3f));
+        }
+        return 1;
+    }
+
+    final void put(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buf, len, bytes.length);
+        len += bytes.length;
+    }
+
+    final void put(int b) {
+        ensure(1);
+        buf[len++] = (byte) b;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra > buf.length) {
+            byte[] grown = new byte[Math.max(buf.length * 2, len + extra)];
+            System.arraycopy(buf, 0, grown, 0, len);
+            buf = grown;
+        }
+    }
+}
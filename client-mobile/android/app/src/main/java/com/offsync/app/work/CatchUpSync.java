@@ -0,0 +1,240 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationBatchReader;
+import com.offsync.app.db.LocationDao;
+import com.offsync.app.db.UploadSegmentDao;
+import com.offsync.app.db.UploadSegmentEntity;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.metrics.SyncTrace;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Catch-up mode of {@link LocationSyncWorker} for large backlogs. Pending rows are sealed into
+ * segment files of {@link #SEGMENT_POINTS} points, each recorded in {@code upload_segments}
+ * before upload starts, and sent with {@link SegmentUploader}. The confirmed offset is saved
+ * after every chunk, so a dropped connection resumes where it stopped. Rows are marked
+ * uploaded only when the server has committed the whole segment.
+ *
+ * Sealing claims its rows with the segment id as token for {@link #SEGMENT_LEASE_MS}, so batch
+ * lanes in other runs skip them until the segment commits or is discarded. The lease is renewed
+ * only when the server makes progress: after a successful open and after every confirmed chunk.
+ * A segment the server keeps refusing lets its rows lapse to the batch lanes; once any of them
+ * has been taken over, the segment is discarded rather than sent. Only one run drives catch-up
+ * at a time.
+ *
+ * A server without the segment routes answers the open with 404 or 405. Catch-up then
+ * discards its segments, releasing their rows to the batch lanes, and stays off for
+ * {@link #UNSUPPORTED_RECHECK_MS} before trying the server again.
+ */
+final class CatchUpSync {
+    private static final String TAG = "CatchUpSync";
+    /** Below this many unsealed pending points the ordinary batch lanes are cheaper. */
+    static final int THRESHOLD_POINTS = 5_000;
+    static final int SEGMENT_POINTS = 20_000;
+    private static final long KEEP_COMMITTED_MS = 7L * 24 * 60 * 60 * 1000;
+    static final long UNSUPPORTED_RECHECK_MS = 24L * 60 * 60 * 1000;
+    private static final String PREF_UNSUPPORTED_AT = "segment_upload_unsupported_at";
+    /** How long a sealed segment holds its rows without the server making progress. */
+    static final long SEGMENT_LEASE_MS = 24L * 60 * 60 * 1000;
+    // Workers share a process, so this is enough to keep two runs from sealing the same rows
+    private static final ReentrantLock RUNNING = new ReentrantLock();
+
+    /** Bytes this run may still send, and where to charge them. */
+    interface Budget {
+        long remaining();
+
+        void charge(long bytes);
+    }
+
+    private final AppDatabase db;
+    private final UploadSegmentDao segments;
+    private final LocationBatchReader reader;
+    private final SegmentUploader uploader;
+    private final File dir;
+    private final SharedPreferences prefs;
+
+    CatchUpSync(Context context, AppDatabase db, LocationBatchReader reader, SegmentUploader uploader) {
+        this.db = db;
+        this.segments = db.uploadSegmentDao();
+        this.reader = reader;
+        this.uploader = uploader;
+        this.dir = new File(context.getNoBackupFilesDir(), "segments");
+        this.prefs = context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Whether a segment is half-way or enough unsealed points are waiting to seal a new one.
+     * Always false while the server is known not to take segments.
+     */
+    boolean needed() {
+        long unsupportedAt = prefs.getLong(PREF_UNSUPPORTED_AT, 0);
+        long now = System.currentTimeMillis();
+        if (now >= unsupportedAt && now - unsupportedAt < UNSUPPORTED_RECHECK_MS) return false;
+        return !segments.getSealed().isEmpty()
+                || db.locationDao().countPendingAfter(segments.getSealedUpTo()) >= THRESHOLD_POINTS;
+    }
+
+    /**
+     * Finish open segments, then keep sealing and sending new ones while the backlog stays
+     * above the threshold. Returns true when no sealed segment is left, including when the
+     * server turned out not to take segments; false also when another run is already doing
+     * catch-up.
+     */
+    boolean run(BooleanSupplier stopped, Budget budget) throws Exception {
+        if (!RUNNING.tryLock()) return false;
+        try {
+            return runLocked(stopped, budget);
+        } catch (SegmentUploader.UnsupportedException e) {
+            Log.w(TAG, "Server takes no segments; leaving the backlog to batches", e);
+            prefs.edit().putLong(PREF_UNSUPPORTED_AT, System.currentTimeMillis()).apply();
+            for (UploadSegmentEntity segment : segments.getSealed()) {
+                discard(segment, new File(dir, segment.fileName));
+            }
+            return true;
+        } finally {
+            RUNNING.unlock();
+        }
+    }
+
+    private boolean runLocked(BooleanSupplier stopped, Budget budget) throws Exception {
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        deleteOrphans();
+        segments.deleteCommittedBefore(System.currentTimeMillis() - KEEP_COMMITTED_MS);
+        for (UploadSegmentEntity segment : segments.getSealed()) {
+            if (stopped.getAsBoolean() || !send(segment, budget)) return false;
+        }
+        while (!stopped.getAsBoolean()
+                && db.locationDao().countPendingAfter(segments.getSealedUpTo()) >= THRESHOLD_POINTS) {
+            UploadSegmentEntity segment = seal(segments.getSealedUpTo());
+            if (segment == null) break;
+            if (!send(segment, budget)) return false;
+        }
+        return segments.getSealed().isEmpty();
+    }
+
+    private UploadSegmentEntity seal(long afterId) throws IOException {
+        boolean traced = SyncTrace.begin("offsync:sync.seal");
+        try {
+            String segmentId = UUID.randomUUID().toString();
+            File partial = new File(dir, segmentId + ".partial");
+            File file = new File(dir, segmentId + ".ndjson.gz");
+            LocationDao dao = db.locationDao();
+            long now = System.currentTimeMillis();
+            if (dao.claimPendingAfter(afterId, segmentId, now, now + SEGMENT_LEASE_MS, SEGMENT_POINTS) == 0) {
+                return null;
+            }
+            SegmentSealer.Sealed sealed;
+            try {
+                sealed = SegmentSealer.seal((after, out) -> reader.readClaimedAfter(segmentId, after, out), afterId,
+                        SEGMENT_POINTS, new FileOutputStream(partial));
+                if (sealed != null && !partial.renameTo(file)) throw new IOException("Cannot rename " + partial);
+            } catch (IOException e) {
+                partial.delete();
+                dao.releaseClaims(segmentId);
+                throw e;
+            }
+            if (sealed == null) {
+                // The claimed rows were deleted under us, e.g. by the storage quota
+                partial.delete();
+                dao.releaseClaims(segmentId);
+                return null;
+            }
+            UploadSegmentEntity e = new UploadSegmentEntity();
+            e.segmentId = segmentId;
+            e.firstPointId = sealed.firstId;
+            e.lastPointId = sealed.lastId;
+            e.pointCount = sealed.points;
+            e.byteCount = sealed.bytes;
+            e.sha256 = sealed.sha256;
+            e.fileName = file.getName();
+            e.id = segments.insert(e);
+            return e;
+        } finally {
+            SyncTrace.end(traced);
+        }
+    }
+
+    /** Upload and commit one segment; false when the budget ran out before it was committed. */
+    private boolean send(UploadSegmentEntity segment, Budget budget) throws Exception {
+        File file = new File(dir, segment.fileName);
+        if (!file.isFile() || file.length() != segment.byteCount) {
+            // The file is gone; its rows are still pending and will be sealed again
+            Log.w(TAG, "Dropping segment " + segment.segmentId + " without its file");
+            discard(segment, file);
+            return true;
+        }
+        LocationDao dao = db.locationDao();
+        if (dao.countClaimed(segment.segmentId) < segment.pointCount) {
+            // The lease lapsed and batches took rows over, or the quota deleted some: the file is stale
+            Log.w(TAG, "Dropping segment " + segment.segmentId + " that no longer holds all its rows");
+            discard(segment, file);
+            return true;
+        }
+        boolean traced = SyncTrace.begin("offsync:sync.segment");
+        try {
+            long offset = uploader.open(segment.segmentId, segment.byteCount, segment.pointCount, segment.sha256);
+            dao.renewClaims(segment.segmentId, System.currentTimeMillis() + SEGMENT_LEASE_MS);
+            if (offset < segment.byteCount) {
+                long before = offset;
+                offset = uploader.upload(segment.segmentId, file, offset, budget.remaining(), confirmed -> {
+                    segments.updateOffset(segment.id, confirmed);
+                    dao.renewClaims(segment.segmentId, System.currentTimeMillis() + SEGMENT_LEASE_MS);
+                });
+                long sent = Math.max(0, offset - before);
+                budget.charge(sent);
+                SyncMetrics.BYTES_SENT.add(sent);
+                if (offset < segment.byteCount) return false;
+            }
+            if (!uploader.commit(segment.segmentId, segment.sha256, segment.pointCount)) {
+                Log.w(TAG, "Server rejected segment " + segment.segmentId + "; resealing its rows");
+                discard(segment, file);
+                return true;
+            }
+            db.runInTransaction(() -> {
+                db.locationDao().markClaimUploaded(segment.segmentId);
+                segments.markCommitted(segment.id, System.currentTimeMillis());
+            });
+            file.delete();
+            SyncMetrics.BATCHES_UPLOADED.inc();
+            SyncMetrics.POINTS_UPLOADED.add(segment.pointCount);
+            SyncMetrics.LAST_SYNC_AT.set(System.currentTimeMillis());
+            return true;
+        } finally {
+            SyncTrace.end(traced);
+        }
+    }
+
+    private void discard(UploadSegmentEntity segment, File file) {
+        db.runInTransaction(() -> {
+            db.locationDao().releaseClaims(segment.segmentId);
+            segments.delete(segment.id);
+        });
+        file.delete();
+    }
+
+    /** Files and row holds left by a crash between sealing and recording the segment. */
+    private void deleteOrphans() {
+        // No batch claim runs longer than its lease, so anything held past that is a segment's
+        db.locationDao().releaseOrphanedHolds(System.currentTimeMillis() + LocationSyncWorker.CLAIM_LEASE_MS);
+        Set<String> known = new HashSet<>();
+        List<UploadSegmentEntity> sealed = segments.getSealed();
+        for (UploadSegmentEntity s : sealed) known.add(s.fileName);
+        File[] files = dir.listFiles();
+        if (files == null) return;
+        for (File f : files) {
+            if (!known.contains(f.getName())) f.delete();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.offsync.app.work;
+
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Turns bursts of change signals into at most one read per {@code minIntervalMs}, and forwards
+ * the value only when it differs from the last one delivered. A null read is skipped.
+ * {@link #signal()} is cheap and safe from any thread; the read and the delivery run on
+ * {@code executor}. Signals arriving after {@code executor} is shut down are ignored.
+ */
+public final class CoalescingEmitter<T> {
+    private final ScheduledExecutorService executor;
+    private final long minIntervalMs;
+    private final Supplier<T> source;
+    private final Consumer<T> sink;
+
+    private boolean scheduled;
+    private long lastRunAt = Long.MIN_VALUE / 2;
+    private T last;
+    private boolean hasLast;
+
+    public CoalescingEmitter(ScheduledExecutorService executor, long minIntervalMs, Supplier<T> source, Consumer<T> sink) {
+        this.executor = executor;
+        this.minIntervalMs = minIntervalMs;
+        this.source = source;
+        this.sink = sink;
+    }
+
+    public synchronized void signal() {
+        if (scheduled) return;
+        scheduled = true;
+        long delay = Math.max(0, lastRunAt + minIntervalMs - now());
+        try {
+            executor.schedule(this::run, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The owner stopped; a change notified on another thread just before that has nobody to reach
+            scheduled = false;
+        }
+    }
+
+    private void run() {
+        synchronized (this) {
+            scheduled = false;
+            lastRunAt = now();
+        }
+        T value = source.get();
+        if (value == null) return;
+        synchronized (this) {
+            if (hasLast && Objects.equals(last, value)) return;
+            last = value;
+            hasLast = true;
+        }
+        sink.accept(value);
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000L;
+    }
+}
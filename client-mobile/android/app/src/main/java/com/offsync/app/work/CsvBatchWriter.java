@@ -0,0 +1,70 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationBatch;
+
+/**
+ * RFC 4180 CSV encoding of a {@link LocationBatch} for history export. Empty fields stand for
+ * NULL; text fields are quoted only when they contain a comma, quote or line break.
+ */
+public final class CsvBatchWriter extends BatchEncoder {
+    public static final String HEADER =
+            "id,capturedAt,lat,lng,accuracyM,provider,batteryPct,isCharging,accuracyMode,isUploaded\r\n";
+
+    public CsvBatchWriter() {
+        super(16 * 1024);
+    }
+
+    public void writeHeader() {
+        len = 0;
+        ascii(HEADER);
+    }
+
+    public void write(LocationBatch batch) {
+        len = 0;
+        for (int i = 0; i < batch.size; i++) {
+            integer(batch.ids[i]);
+            put(',');
+            text(batch.capturedAt, i);
+            put(',');
+            number(batch.lat[i], 7);
+            put(',');
+            number(batch.lng[i], 7);
+            put(',');
+            number(batch.accuracyM[i], 2);
+            put(',');
+            text(batch.provider, i);
+            put(',');
+            if (batch.batteryPct[i] != LocationBatch.NO_BATTERY) integer(batch.batteryPct[i]);
+            put(',');
+            if (batch.isCharging[i] != LocationBatch.CHARGING_UNKNOWN) integer(batch.isCharging[i]);
+            put(',');
+            text(batch.accuracyMode, i);
+            put(',');
+            integer(batch.isUploaded[i]);
+            put('\r');
+            put('\n');
+        }
+    }
+
+    private void text(LocationBatch.TextColumn column, int row) {
+        if (column.isNull(row)) return;
+        char[] chars = column.chars[row];
+        int n = column.length[row];
+        boolean quote = false;
+        for (int i = 0; i < n && !quote; i++) {
+            char c = chars[i];
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (quote) put('"');
+        for (int i = 0; i < n; ) {
+            if (chars[i] == '"') {
+                put('"');
+                put('"');
+                i++;
+            } else {
+                i += utf8(chars, i, n);
+            }
+        }
+        if (quote) put('"');
+    }
+}
@@ -0,0 +1,47 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+
+/**
+ * Device id and token written by the JS layer through Capacitor Preferences.
+ * Capacitor has used several SharedPreferences file names over time, so try each of them
+ * before falling back to the default preferences.
+ */
+public final class DeviceCredentials {
+    public final String deviceId;
+    public final String deviceToken;
+
+    private DeviceCredentials(String deviceId, String deviceToken) {
+        this.deviceId = deviceId;
+        this.deviceToken = deviceToken;
+    }
+
+    public static DeviceCredentials load(Context context) {
+        String deviceId = null;
+        String deviceToken = null;
+        String[] candidatePrefs = new String[]{"capacitor.preferences", "CapacitorPreferences", "CapacitorStorage", "preferences"};
+        for (String name : candidatePrefs) {
+            try {
+                SharedPreferences p = context.getSharedPreferences(name, Context.MODE_PRIVATE);
+                if (deviceId == null) deviceId = p.getString("device_id", null);
+                if (deviceToken == null) deviceToken = p.getString("device_token", null);
+                if (deviceId != null && deviceToken != null) break;
+            } catch (Exception ex) {
+                // ignore and try next
+            }
+        }
+        // Also check default shared preferences
+        if ((deviceId == null || deviceToken == null)) {
+            try {
+                SharedPreferences def = PreferenceManager.getDefaultSharedPreferences(context);
+                if (deviceId == null) deviceId = def.getString("device_id", deviceId);
+                if (deviceToken == null) deviceToken = def.getString("device_token", deviceToken);
+            } catch (Exception ex) {
+                // ignore
+            }
+        }
+        return new DeviceCredentials(deviceId, deviceToken);
+    }
+}
@@ -0,0 +1,72 @@
+package com.offsync.app.work;
+
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip (RFC 1952) into a reusable byte buffer with one long-lived {@link Deflater}, so
+ * compressing each upload batch does not allocate once the buffer has grown.
+ * Not thread-safe; call {@link #close()} to free the native deflater.
+ */
+public final class GzipEncoder implements AutoCloseable {
+    private static final byte[] HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] buf;
+    private int len;
+
+    public GzipEncoder() {
+        this(8 * 1024);
+    }
+
+    public GzipEncoder(int initialBytes) {
+        buf = new byte[Math.max(initialBytes, 64)];
+    }
+
+    public byte[] buffer() {
+        return buf;
+    }
+
+    public int length() {
+        return len;
+    }
+
+    /** Compress {@code data[off .. off+count)}; the result is {@code buffer()[0 .. length())}. */
+    public void encode(byte[] data, int off, int count, int level) {
+        deflater.reset();
+        deflater.setLevel(level);
+        deflater.setInput(data, off, count);
+        deflater.finish();
+        crc.reset();
+        crc.update(data, off, count);
+
+        System.arraycopy(HEADER, 0, buf, 0, HEADER.length);
+        len = HEADER.length;
+        while (!deflater.finished()) {
+            if (len == buf.length) grow();
+            len += deflater.deflate(buf, len, buf.length - len);
+        }
+        if (buf.length - len < 8) grow();
+        writeIntLe((int) crc.getValue());
+        writeIntLe(count);
+    }
+
+    @Override
+    public void close() {
+        deflater.end();
+    }
+
+    private void writeIntLe(int v) {
+        buf[len++] = (byte) v;
+        buf[len++] = (byte) (v >>> 8);
+        buf[len++] = (byte) (v >>> 16);
+        buf[len++] = (byte) (v >>> 24);
+    }
+
+    private void grow() {
+        byte[] grown = new byte[buf.length * 2];
+        System.arraycopy(buf, 0, grown, 0, len);
+        buf = grown;
+    }
+}
@@ -0,0 +1,103 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.os.SystemClock;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationBatchReader;
+import com.offsync.app.metrics.SyncTrace;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the local history to a gzip file under {@code cache/exports}, which the app's
+ * FileProvider already shares. Output goes to a {@code .partial} file that is renamed only on
+ * success, so a cancelled or failed export never leaves a truncated file behind. Each run first
+ * deletes exports older than {@link #MAX_AGE_MS}, by which time the share sheet is long done
+ * with them, and partial files a killed process left behind. Call off the main thread.
+ */
+public final class HistoryExport {
+    private static final String DIR = "exports";
+    private static final int STREAM_BUFFER = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 250L;
+    static final long MAX_AGE_MS = 24 * 60 * 60 * 1000L;
+
+    public static final class Result {
+        public final File file;
+        public final long rows;
+        public final long bytes;
+
+        Result(File file, long rows, long bytes) {
+            this.file = file;
+            this.rows = rows;
+            this.bytes = bytes;
+        }
+    }
+
+    private HistoryExport() {
+    }
+
+    /**
+     * Export every stored point. Progress is reported at most every
+     * {@link #PROGRESS_INTERVAL_MS} plus once at the end; throws {@link CancellationException}
+     * once {@code cancelled} turns true.
+     */
+    public static Result run(Context context, HistoryExporter.Format format, BooleanSupplier cancelled,
+                             HistoryExporter.Progress progress) throws IOException {
+        File dir = new File(context.getCacheDir(), DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        deleteStale(dir, System.currentTimeMillis());
+        String name = "offsync-history-" + System.currentTimeMillis() + "." + format.extension + ".gz";
+        File target = new File(dir, name);
+        File partial = new File(dir, name + ".partial");
+
+        LocationBatchReader reader = new LocationBatchReader(AppDatabase.getInstance(context));
+        long[] lastReport = {0L};
+        HistoryExporter.Progress throttled = rows -> {
+            long now = SystemClock.elapsedRealtime();
+            if (progress != null && now - lastReport[0] >= PROGRESS_INTERVAL_MS) {
+                lastReport[0] = now;
+                progress.onProgress(rows);
+            }
+        };
+        boolean traced = SyncTrace.begin("offsync:export.run");
+        boolean done = false;
+        try {
+            long rows;
+            // Speed over ratio: location text compresses well even at level 1, and the CPU is the bottleneck
+            try (OutputStream out = new GZIPOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(partial), STREAM_BUFFER), STREAM_BUFFER) {
+                {
+                    def.setLevel(Deflater.BEST_SPEED);
+                }
+            }) {
+                rows = HistoryExporter.export(reader::readAfter, format, out, cancelled, throttled);
+            }
+            if (!partial.renameTo(target)) throw new IOException("Cannot rename " + partial);
+            done = true;
+            if (progress != null) progress.onProgress(rows);
+            return new Result(target, rows, target.length());
+        } finally {
+            if (!done) partial.delete();
+            SyncTrace.end(traced);
+        }
+    }
+
+    /** Delete files in {@code dir} last written more than {@link #MAX_AGE_MS} before {@code now}; returns how many. */
+    static int deleteStale(File dir, long now) {
+        File[] files = dir.listFiles();
+        if (files == null) return 0;
+        int deleted = 0;
+        for (File f : files) {
+            // A running export keeps touching its partial file, so age alone is safe for both kinds
+            if (f.isFile() && now - f.lastModified() > MAX_AGE_MS && f.delete()) deleted++;
+        }
+        return deleted;
+    }
+}
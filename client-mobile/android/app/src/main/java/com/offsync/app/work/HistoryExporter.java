@@ -0,0 +1,85 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationBatch;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Streams the whole local history to an {@link OutputStream} one page at a time. Rows are read
+ * by keyset on id into a single reused {@link LocationBatch} and encoded into a reused byte
+ * buffer, so memory stays at one page however many rows are exported. Compression and the
+ * destination file are the caller's business.
+ */
+public final class HistoryExporter {
+    public static final int PAGE_SIZE = 500;
+
+    public enum Format {
+        NDJSON("ndjson"),
+        CSV("csv");
+
+        public final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** Case-insensitive lookup; null or unknown names fall back to NDJSON. */
+        public static Format of(String name) {
+            if (name != null) {
+                for (Format f : values()) {
+                    if (f.extension.equalsIgnoreCase(name)) return f;
+                }
+            }
+            return NDJSON;
+        }
+    }
+
+    /** Fills {@code out} with the rows after {@code afterId} in id order; returns the row count. */
+    public interface RowSource {
+        int read(long afterId, LocationBatch out);
+    }
+
+    public interface Progress {
+        void onProgress(long rows);
+    }
+
+    private HistoryExporter() {
+    }
+
+    /**
+     * Write every row from {@code source} to {@code out}. {@code cancelled} is polled between
+     * pages; when it turns true a {@link CancellationException} is thrown and the output is
+     * incomplete. Returns the number of rows written. Does not close {@code out}.
+     */
+    public static long export(RowSource source, Format format, OutputStream out, BooleanSupplier cancelled,
+                              Progress progress) throws IOException {
+        LocationBatch page = new LocationBatch(PAGE_SIZE);
+        IngestJsonWriter json = format == Format.NDJSON ? new IngestJsonWriter(64 * 1024) : null;
+        CsvBatchWriter csv = format == Format.CSV ? new CsvBatchWriter() : null;
+        if (csv != null) {
+            csv.writeHeader();
+            out.write(csv.buffer(), 0, csv.length());
+        }
+        long rows = 0;
+        long afterId = 0;
+        while (true) {
+            if (cancelled.getAsBoolean()) throw new CancellationException("export cancelled after " + rows + " rows");
+            if (source.read(afterId, page) == 0) break;
+            if (json != null) {
+                json.writeNdjson(page);
+                out.write(json.buffer(), 0, json.length());
+            } else {
+                csv.write(page);
+                out.write(csv.buffer(), 0, csv.length());
+            }
+            rows += page.size;
+            afterId = page.ids[page.size - 1];
+            if (progress != null) progress.onProgress(rows);
+            if (page.size < page.capacity) break;
+        }
+        out.flush();
+        return rows;
+    }
+}
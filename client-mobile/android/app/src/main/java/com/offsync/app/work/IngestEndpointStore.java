@@ -0,0 +1,60 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.offsync.app.BuildConfig;
+import java.util.List;
+
+/**
+ * Android side of {@link IngestEndpoints}: one instance per process, built from the configured
+ * server URL ({@code runtime_offsync_server_url} in {@code app_prefs}, else
+ * {@code BuildConfig.OFFSYNC_SERVER_URL}), either of which may list several endpoints separated
+ * by commas. Health figures live in memory; the preferred endpoint is kept in {@code app_prefs}
+ * so a restarted process does not go back to a region it already left.
+ */
+public final class IngestEndpointStore {
+    public static final String PREF_SERVER_URL = "runtime_offsync_server_url";
+    private static final String PREF_PREFERRED = "ingest_preferred_url";
+
+    private static IngestEndpoints instance;
+    private static String instanceConfig;
+
+    private IngestEndpointStore() {
+    }
+
+    /** The endpoints for the current configuration, rebuilt when it changes. */
+    public static synchronized IngestEndpoints get(Context context) {
+        String configured = configured(context);
+        if (instance == null || !configured.equals(instanceConfig)) {
+            List<String> urls = IngestEndpoints.parse(configured);
+            if (urls.isEmpty()) urls = IngestEndpoints.parse(BuildConfig.OFFSYNC_SERVER_URL);
+            instance = new IngestEndpoints(urls, prefs(context).getString(PREF_PREFERRED, null));
+            instanceConfig = configured;
+        }
+        return instance;
+    }
+
+    /** Remember the current preference; call after a run that may have moved it. */
+    public static void persist(Context context) {
+        String preferred = get(context).preferred();
+        SharedPreferences prefs = prefs(context);
+        if (!preferred.equals(prefs.getString(PREF_PREFERRED, null))) {
+            prefs.edit().putString(PREF_PREFERRED, preferred).apply();
+        }
+    }
+
+    private static String configured(Context context) {
+        // Prefer a runtime-configured URL stored in SharedPreferences (so we don't need to rebuild)
+        try {
+            String runtime = prefs(context).getString(PREF_SERVER_URL, null);
+            if (runtime != null && runtime.length() > 0) return runtime;
+        } catch (Exception ex) {
+            // ignore and fall back
+        }
+        return BuildConfig.OFFSYNC_SERVER_URL;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+}
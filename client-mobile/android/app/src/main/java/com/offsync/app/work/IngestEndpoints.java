@@ -0,0 +1,268 @@
+package com.offsync.app.work;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * The ingest servers a device may upload to, with passive health tracking. There is no
+ * separate probe traffic: every real request records its latency or failure against the
+ * endpoint that served it. Requests stick to one preferred endpoint, which changes only when it
+ * fails, or when another has proved clearly faster, so a device does not flap between regions
+ * on noise. A failed endpoint sits out a cooldown that doubles with each consecutive failure.
+ * Every {@link #PROBE_EVERY} requests, one real request goes first to a standby endpoint
+ * whose figures are stale, with the preferred endpoint as its fallback; that is how a
+ * recovered or newly faster region is noticed.
+ *
+ * Each attempt is a fresh request built for that endpoint, so the HMAC covers the path that
+ * server actually sees, including any base path in the endpoint URL. Thread-safe.
+ */
+public final class IngestEndpoints {
+    /** Weight of the newest sample in the latency and error averages. */
+    static final double ALPHA = 0.3;
+    /** Latency assumed for an endpoint with no samples yet. */
+    static final double UNKNOWN_MS = 1_000;
+    /** A standby endpoint must score below this fraction of the preferred one to take over. */
+    static final double SWITCH_RATIO = 0.5;
+    /** Samples a standby endpoint needs before it can take over on speed. */
+    static final int MIN_SAMPLES = 3;
+    static final long BASE_COOLDOWN_MS = 30_000;
+    static final long MAX_COOLDOWN_MS = 15 * 60_000;
+    static final int PROBE_EVERY = 20;
+    static final long PROBE_STALE_MS = 10 * 60_000;
+
+    /** Health of one endpoint; {@link #snapshot} hands out copies. */
+    public static final class Endpoint {
+        public final String baseUrl;
+        /** Moving average of time to response headers; -1 before the first answer. */
+        public double latencyMs = -1;
+        /** Moving average of failures, 0..1. */
+        public double errorRate;
+        public int samples;
+        public int consecutiveFailures;
+        /** Wall time the cooldown ends; 0 when the endpoint is up. */
+        public long downUntil;
+        public long lastSampleAt;
+
+        Endpoint(String baseUrl) {
+            this.baseUrl = baseUrl;
+        }
+
+        /** Expected cost of a request: latency inflated by the recent error rate. */
+        double score() {
+            return (latencyMs < 0 ? UNKNOWN_MS : latencyMs) * (1 + 4 * errorRate);
+        }
+    }
+
+    /** Builds the request for one attempt; called once per endpoint tried. */
+    public interface RequestFactory {
+        Request build(HttpUrl url, String signingPath) throws Exception;
+    }
+
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final LongSupplier clock;
+    private int preferred;
+    private int sinceProbe;
+
+    public IngestEndpoints(List<String> baseUrls, String preferredUrl) {
+        this(baseUrls, preferredUrl, System::currentTimeMillis);
+    }
+
+    IngestEndpoints(List<String> baseUrls, String preferredUrl, LongSupplier clock) {
+        if (baseUrls.isEmpty()) throw new IllegalArgumentException("No ingest endpoints");
+        for (String url : baseUrls) endpoints.add(new Endpoint(url));
+        this.clock = clock;
+        int i = indexOf(preferredUrl);
+        preferred = Math.max(i, 0);
+    }
+
+    /**
+     * Split a configured server URL, one URL or several separated by commas, into base URLs
+     * without trailing slashes. The first listed is the initial preference.
+     */
+    public static List<String> parse(String configured) {
+        List<String> urls = new ArrayList<>();
+        if (configured == null) return urls;
+        for (String part : configured.split(",")) {
+            String url = part.trim();
+            while (url.endsWith("/")) url = url.substring(0, url.length() - 1);
+            if (!url.isEmpty() && !urls.contains(url)) urls.add(url);
+        }
+        return urls;
+    }
+
+    public synchronized List<String> baseUrls() {
+        List<String> urls = new ArrayList<>(endpoints.size());
+        for (Endpoint e : endpoints) urls.add(e.baseUrl);
+        return urls;
+    }
+
+    /** Base URL requests currently go to; for calls that do not fail over. */
+    public synchronized String preferred() {
+        Endpoint p = endpoints.get(preferred);
+        if (p.downUntil <= clock.getAsLong()) return p.baseUrl;
+        return endpoints.get(order(false).get(0)).baseUrl;
+    }
+
+    /** Snapshot of every endpoint's figures, for diagnostics. */
+    public synchronized List<Endpoint> snapshot() {
+        List<Endpoint> copy = new ArrayList<>(endpoints.size());
+        for (Endpoint e : endpoints) {
+            Endpoint c = new Endpoint(e.baseUrl);
+            c.latencyMs = e.latencyMs;
+            c.errorRate = e.errorRate;
+            c.samples = e.samples;
+            c.consecutiveFailures = e.consecutiveFailures;
+            c.downUntil = e.downUntil;
+            c.lastSampleAt = e.lastSampleAt;
+            copy.add(c);
+        }
+        return copy;
+    }
+
+    /**
+     * Send {@code path} to the endpoints in health order until one answers. A connection
+     * failure, 5xx or 429 counts against that endpoint and moves on to the next; any other
+     * answer is returned. When the last endpoint fails too, its answer is returned or its
+     * connection error thrown.
+     */
+    public Response execute(OkHttpClient client, String path, RequestFactory factory) throws Exception {
+        List<Endpoint> attempts = attemptOrder();
+        IOException lastError = null;
+        for (int i = 0; i < attempts.size(); i++) {
+            Endpoint e = attempts.get(i);
+            HttpUrl url = HttpUrl.get(e.baseUrl + path);
+            Request request = factory.build(url, RequestSigner.pathOf(url));
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = client.newCall(request).execute();
+            } catch (IOException ex) {
+                recordFailure(e);
+                lastError = ex;
+                continue;
+            }
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            if (!isEndpointFailure(response.code())) {
+                recordSuccess(e, elapsedMs);
+                return response;
+            }
+            recordFailure(e);
+            if (i == attempts.size() - 1) return response;
+            response.close();
+        }
+        throw lastError;
+    }
+
+    static boolean isEndpointFailure(int code) {
+        return code >= 500 || code == 429;
+    }
+
+    /** Endpoints in the order one request should try them, with a probe first when one is due. */
+    synchronized List<Endpoint> attemptOrder() {
+        List<Integer> order = order(true);
+        List<Endpoint> attempts = new ArrayList<>(order.size());
+        for (int i : order) attempts.add(endpoints.get(i));
+        return attempts;
+    }
+
+    synchronized void recordSuccess(Endpoint e, long latencyMs) {
+        e.latencyMs = e.latencyMs < 0 ? latencyMs : ALPHA * latencyMs + (1 - ALPHA) * e.latencyMs;
+        e.errorRate = (1 - ALPHA) * e.errorRate;
+        e.samples++;
+        e.consecutiveFailures = 0;
+        e.downUntil = 0;
+        e.lastSampleAt = clock.getAsLong();
+        reconsider();
+    }
+
+    synchronized void recordFailure(Endpoint e) {
+        long now = clock.getAsLong();
+        e.errorRate = ALPHA + (1 - ALPHA) * e.errorRate;
+        e.samples++;
+        e.consecutiveFailures++;
+        int doublings = Math.min(e.consecutiveFailures - 1, 10);
+        e.downUntil = now + Math.min(BASE_COOLDOWN_MS << doublings, MAX_COOLDOWN_MS);
+        e.lastSampleAt = now;
+        reconsider();
+    }
+
+    /** Move the preference only when the preferred endpoint is down or clearly beaten. */
+    private void reconsider() {
+        long now = clock.getAsLong();
+        Endpoint current = endpoints.get(preferred);
+        int best = bestUp(now);
+        if (best < 0 || best == preferred) return;
+        Endpoint candidate = endpoints.get(best);
+        if (current.downUntil > now
+                || (candidate.samples >= MIN_SAMPLES && candidate.score() < SWITCH_RATIO * current.score())) {
+            preferred = best;
+        }
+    }
+
+    private int bestUp(long now) {
+        int best = -1;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint e = endpoints.get(i);
+            if (e.downUntil > now) continue;
+            if (best < 0 || e.score() < endpoints.get(best).score()) best = i;
+        }
+        return best;
+    }
+
+    /**
+     * The preferred endpoint if it is up, then the other available ones by score, then those
+     * cooling down by how soon they are back, so a request always has somewhere to go.
+     */
+    private List<Integer> order(boolean allowProbe) {
+        long now = clock.getAsLong();
+        List<Integer> up = new ArrayList<>();
+        List<Integer> down = new ArrayList<>();
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (i != preferred) (endpoints.get(i).downUntil > now ? down : up).add(i);
+        }
+        boolean preferredUp = endpoints.get(preferred).downUntil <= now;
+        if (!preferredUp) down.add(preferred);
+        up.sort((a, b) -> Double.compare(endpoints.get(a).score(), endpoints.get(b).score()));
+        down.sort((a, b) -> Long.compare(endpoints.get(a).downUntil, endpoints.get(b).downUntil));
+
+        List<Integer> order = new ArrayList<>(endpoints.size());
+        if (preferredUp) {
+            order.add(preferred);
+            if (allowProbe && !up.isEmpty() && ++sinceProbe >= PROBE_EVERY) {
+                int stale = stalest(up, now);
+                if (stale >= 0) {
+                    sinceProbe = 0;
+                    up.remove(Integer.valueOf(stale));
+                    order.add(0, stale);
+                }
+            }
+        }
+        order.addAll(up);
+        order.addAll(down);
+        return order;
+    }
+
+    private int stalest(List<Integer> candidates, long now) {
+        int stalest = -1;
+        for (int i : candidates) {
+            long at = endpoints.get(i).lastSampleAt;
+            if (now - at < PROBE_STALE_MS) continue;
+            if (stalest < 0 || at < endpoints.get(stalest).lastSampleAt) stalest = i;
+        }
+        return stalest;
+    }
+
+    private int indexOf(String baseUrl) {
+        if (baseUrl == null) return -1;
+        for (int i = 0; i < endpoints.size(); i++) {
+            if (endpoints.get(i).baseUrl.equals(baseUrl)) return i;
+        }
+        return -1;
+    }
+}
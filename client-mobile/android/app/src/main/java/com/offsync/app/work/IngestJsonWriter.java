@@ -0,0 +1,127 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationBatch;
+
+/**
+ * Writes a {@link LocationBatch} as the {@code /ingest/locations} JSON array straight into a
+ * reusable UTF-8 byte buffer, with the same fields and null handling as {@link IngestPayload}.
+ * Coordinates are written with 7 decimals (about 1 cm) and accuracy with 2, trailing zeros
+ * trimmed. No objects are allocated per point once the buffer has grown to the batch size.
+ * {@link #writeLines} writes the same objects one per line for catch-up segments, and
+ * {@link #writeNdjson} the export form, which adds id and upload state.
+ */
+public final class IngestJsonWriter extends BatchEncoder {
+    private static final byte[] NULL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE = {'f', 'a', 'l', 's', 'e'};
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    public IngestJsonWriter() {
+        this(8 * 1024);
+    }
+
+    public IngestJsonWriter(int initialBytes) {
+        super(initialBytes);
+    }
+
+    /** Encode {@code batch}; the result is {@code buffer()[0 .. length())} until the next call. */
+    public void write(LocationBatch batch) {
+        len = 0;
+        put('[');
+        for (int i = 0; i < batch.size; i++) {
+            if (i > 0) put(',');
+            object(batch, i, false);
+        }
+        put(']');
+    }
+
+    /** Encode {@code batch} as newline-delimited ingest objects. */
+    public void writeLines(LocationBatch batch) {
+        len = 0;
+        for (int i = 0; i < batch.size; i++) {
+            object(batch, i, false);
+            put('\n');
+        }
+    }
+
+    /** Encode {@code batch} as newline-delimited export rows, with id and upload state. */
+    public void writeNdjson(LocationBatch batch) {
+        len = 0;
+        for (int i = 0; i < batch.size; i++) {
+            object(batch, i, true);
+            put('\n');
+        }
+    }
+
+    private void object(LocationBatch batch, int i, boolean export) {
+        put('{');
+        if (export) {
+            key("id", false);
+            integer(batch.ids[i]);
+        }
+        key("capturedAt", export);
+        text(batch.capturedAt, i);
+        key("lat", true);
+        number(batch.lat[i], 7);
+        key("lng", true);
+        number(batch.lng[i], 7);
+        key("accuracyM", true);
+        number(batch.accuracyM[i], 2);
+        key("provider", true);
+        text(batch.provider, i);
+        if (batch.batteryPct[i] != LocationBatch.NO_BATTERY) {
+            key("batteryPct", true);
+            integer(batch.batteryPct[i]);
+        }
+        if (batch.isCharging[i] != LocationBatch.CHARGING_UNKNOWN) {
+            key("isCharging", true);
+            put(batch.isCharging[i] == 1 ? TRUE : FALSE);
+        }
+        if (!batch.accuracyMode.isNull(i)) {
+            key("accuracyMode", true);
+            text(batch.accuracyMode, i);
+        }
+        if (export) {
+            key("isUploaded", true);
+            put(batch.isUploaded[i] == 1 ? TRUE : FALSE);
+        }
+        put('}');
+    }
+
+    private void key(String name, boolean comma) {
+        if (comma) put(',');
+        put('"');
+        ascii(name);
+        put('"');
+        put(':');
+    }
+
+    private void text(LocationBatch.TextColumn column, int row) {
+        if (column.isNull(row)) {
+            put(NULL);
+            return;
+        }
+        char[] chars = column.chars[row];
+        int n = column.length[row];
+        put('"');
+        for (int i = 0; i < n; ) {
+            char c = chars[i];
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+                i++;
+            } else if (c < 0x20) {
+                put('\\');
+                put('u');
+                put('0');
+                put('0');
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xf]);
+                i++;
+            } else {
+                i += utf8(chars, i, n);
+            }
+        }
+        put('"');
+    }
+}
@@ -0,0 +1,32 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationPointEntity;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** Body of {@code POST /ingest/locations}: a raw JSON array of points. */
+public final class IngestPayload {
+    private IngestPayload() {
+    }
+
+    /** Serialize {@code points}, collecting their row ids into {@code idsOut} when non-null. */
+    public static String build(List<LocationPointEntity> points, List<Integer> idsOut) throws JSONException {
+        JSONArray arr = new JSONArray();
+        for (LocationPointEntity p : points) {
+            JSONObject o = new JSONObject();
+            o.put("capturedAt", p.capturedAt);
+            o.put("lat", p.lat);
+            o.put("lng", p.lng);
+            o.put("accuracyM", p.accuracyM);
+            o.put("provider", p.provider == null ? JSONObject.NULL : p.provider);
+            if (p.batteryPct != null) o.put("batteryPct", p.batteryPct);
+            if (p.isCharging != null) o.put("isCharging", p.isCharging == 1);
+            if (p.accuracyMode != null) o.put("accuracyMode", p.accuracyMode);
+            arr.put(o);
+            if (idsOut != null && p.id != null) idsOut.add(p.id);
+        }
+        return arr.toString();
+    }
+}
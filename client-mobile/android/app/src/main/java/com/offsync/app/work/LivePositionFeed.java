@@ -0,0 +1,121 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.db.TrackAggregator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Live positions for an on-screen map, without waking the WebView at the capture rate.
+ * Every stored point is {@link #publish published} here; each {@link Subscription} reads only
+ * the newest one, at most {@code maxRateHz} times a second through a {@link CoalescingEmitter},
+ * and skips it unless it is at least {@code minDisplacementM} from the last point delivered, so
+ * slow drift still gets through once it adds up. A paused subscription reads nothing; resuming
+ * delivers one catch-up event with the newest point, whatever its displacement. A new
+ * subscription starts with such an event too.
+ */
+public final class LivePositionFeed {
+    public static final double MAX_RATE_HZ = 10;
+
+    private static final Set<Subscription> subscriptions = new CopyOnWriteArraySet<>();
+    private static volatile LocationPointEntity latest;
+
+    private LivePositionFeed() {
+    }
+
+    public interface Listener {
+        void onPosition(LocationPointEntity point, boolean catchUp);
+    }
+
+    /** Offer a newly stored point to every subscription. Cheap; call from the write path. */
+    public static void publish(LocationPointEntity point) {
+        latest = point;
+        for (Subscription s : subscriptions) s.signal();
+    }
+
+    /** Start delivering positions to {@code listener} on {@code executor}. */
+    public static Subscription subscribe(ScheduledExecutorService executor, double maxRateHz, double minDisplacementM,
+                                         Listener listener) {
+        if (!(maxRateHz > 0)) throw new IllegalArgumentException("maxRateHz must be > 0");
+        long intervalMs = Math.round(1000 / Math.min(maxRateHz, MAX_RATE_HZ));
+        Subscription s = new Subscription(executor, intervalMs, Math.max(0, minDisplacementM), listener);
+        subscriptions.add(s);
+        s.signal();
+        return s;
+    }
+
+    /** Forget the newest point and every subscription; for tests. */
+    static void clear() {
+        latest = null;
+        subscriptions.clear();
+    }
+
+    /** One listener's window, displacement threshold and pause state. */
+    public static final class Subscription {
+        private final CoalescingEmitter<Event> emitter;
+        private final double minDisplacementM;
+        private LocationPointEntity delivered;
+        private boolean paused;
+        private boolean closed;
+        private boolean catchUpDue = true;
+
+        Subscription(ScheduledExecutorService executor, long intervalMs, double minDisplacementM, Listener listener) {
+            this.minDisplacementM = minDisplacementM;
+            this.emitter = new CoalescingEmitter<>(executor, intervalMs, this::read,
+                    e -> listener.onPosition(e.point, e.catchUp));
+        }
+
+        /** Stop reading while the consumer cannot draw, e.g. while the WebView is in the background. */
+        public synchronized void setPaused(boolean paused) {
+            if (this.paused == paused) return;
+            this.paused = paused;
+            if (!paused) {
+                catchUpDue = true;
+                emitter.signal();
+            }
+        }
+
+        public void close() {
+            subscriptions.remove(this);
+            synchronized (this) {
+                closed = true;
+            }
+        }
+
+        private void signal() {
+            synchronized (this) {
+                if (paused) return;
+            }
+            emitter.signal();
+        }
+
+        private synchronized Event read() {
+            if (paused || closed) return null;
+            LocationPointEntity p = latest;
+            if (p == null || p == delivered) {
+                catchUpDue = false;
+                return null;
+            }
+            boolean catchUp = catchUpDue;
+            if (!catchUp && delivered != null
+                    && TrackAggregator.distanceM(delivered.lat, delivered.lng, p.lat, p.lng) < minDisplacementM) {
+                return null;
+            }
+            catchUpDue = false;
+            delivered = p;
+            return new Event(p, catchUp);
+        }
+    }
+
+    // A fresh object per delivery, so the emitter's change check never drops one
+    private static final class Event {
+        final LocationPointEntity point;
+        final boolean catchUp;
+
+        Event(LocationPointEntity point, boolean catchUp) {
+            this.point = point;
+            this.catchUp = catchUp;
+        }
+    }
+}
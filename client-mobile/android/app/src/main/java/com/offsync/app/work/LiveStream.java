@@ -0,0 +1,225 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationDao;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.metrics.SyncMetrics;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+
+/**
+ * Foreground live streaming on top of {@link LiveStreamClient}.
+ * While enabled and the app is in the foreground, saved points are pushed over the socket and
+ * marked uploaded on ack. Each streamed point is claimed under the connection's token first, so
+ * the batch worker does not send it too. Whenever the socket is not open, writes fall back to
+ * the batch worker; points in flight when it dropped are released back to that worker, and it
+ * is only woken when unclaimed points are actually waiting.
+ */
+public final class LiveStream {
+    private static final String TAG = "LiveStream";
+    public static final String PREF_ENABLED = "live_stream_enabled";
+    private static final long MIN_RECONNECT_MS = 1_000L;
+    private static final long MAX_RECONNECT_MS = 60_000L;
+
+    private static final OkHttpClient HTTP = new OkHttpClient();
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static final Set<Runnable> connectionListeners = new CopyOnWriteArraySet<>();
+
+    private static LiveStreamClient client;
+    private static String claimToken;
+    private static boolean foreground;
+    private static long reconnectDelayMs = MIN_RECONNECT_MS;
+
+    private LiveStream() {
+    }
+
+    public static boolean isEnabled(Context context) {
+        return prefs(context).getBoolean(PREF_ENABLED, false);
+    }
+
+    public static synchronized void setEnabled(Context context, boolean enabled) {
+        prefs(context).edit().putBoolean(PREF_ENABLED, enabled).apply();
+        if (enabled && foreground) {
+            connect(context.getApplicationContext());
+        } else if (!enabled) {
+            disconnect();
+        }
+    }
+
+    /** Called from the plugin on resume/pause; streaming only runs in the foreground. */
+    public static synchronized void setForeground(Context context, boolean inForeground) {
+        foreground = inForeground;
+        if (inForeground && isEnabled(context)) {
+            connect(context.getApplicationContext());
+        } else if (!inForeground) {
+            disconnect();
+        }
+    }
+
+    public static synchronized boolean isConnected() {
+        return client != null && client.isOpen();
+    }
+
+    /** Run {@code listener} whenever the socket opens or drops; it may be called on any thread. */
+    public static void addConnectionListener(Runnable listener) {
+        connectionListeners.add(listener);
+    }
+
+    public static void removeConnectionListener(Runnable listener) {
+        connectionListeners.remove(listener);
+    }
+
+    private static void notifyConnectionChanged() {
+        for (Runnable l : connectionListeners) l.run();
+    }
+
+    /**
+     * Push a freshly written point; false means the caller should schedule the batch worker.
+     * Claims the row, so call it off the main thread.
+     */
+    public static boolean offer(Context context, LocationPointEntity point) {
+        LiveStreamClient c;
+        String token;
+        // Not under the class lock: setForeground runs on the main thread and must not wait on the database
+        synchronized (LiveStream.class) {
+            c = client;
+            token = claimToken;
+        }
+        if (c == null || !c.isOpen() || point.id == null) return false;
+        LocationDao dao = AppDatabase.getInstance(context).locationDao();
+        long now = System.currentTimeMillis();
+        // A batch run that already claimed the point will send it
+        if (dao.claimPoint(point.id, token, now, now + LocationSyncWorker.CLAIM_LEASE_MS) == 0) return false;
+        try {
+            if (c.send(Collections.singletonList(point))) return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to stream point", e);
+        }
+        dao.releaseClaimsOf(Collections.singletonList(point.id), token);
+        return false;
+    }
+
+    private static void connect(Context context) {
+        if (client != null) return;
+        DeviceCredentials creds = DeviceCredentials.load(context);
+        String token = "live-" + UUID.randomUUID();
+        Listener listener = new Listener(context, token);
+        LiveStreamClient c = new LiveStreamClient(HTTP, IngestEndpointStore.get(context).preferred(),
+                creds.deviceId, creds.deviceToken, listener);
+        listener.owner = c;
+        client = c;
+        claimToken = token;
+        try {
+            c.connect();
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to open live stream", e);
+            client = null;
+            scheduleReconnect(context);
+        }
+    }
+
+    private static void disconnect() {
+        if (client != null) {
+            client.close();
+            client = null;
+        }
+        reconnectDelayMs = MIN_RECONNECT_MS;
+    }
+
+    private static void scheduleReconnect(Context context) {
+        long delay = reconnectDelayMs;
+        reconnectDelayMs = Math.min(MAX_RECONNECT_MS, reconnectDelayMs * 2);
+        EXECUTOR.schedule(() -> {
+            synchronized (LiveStream.class) {
+                if (foreground && isEnabled(context)) connect(context);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /** Wake the batch worker only for points the stream will not carry: unclaimed and still pending. */
+    private static void scheduleIfBacklog(Context context) {
+        if (AppDatabase.getInstance(context).locationDao().countUnclaimedPending(System.currentTimeMillis()) > 0) {
+            SyncScheduler.scheduleAfterWrite(context);
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+
+    private static final class Listener implements LiveStreamClient.Listener {
+        private final Context context;
+        private final String token;
+        LiveStreamClient owner;
+
+        Listener(Context context, String token) {
+            this.context = context;
+            this.token = token;
+        }
+
+        @Override
+        public void onOpen() {
+            synchronized (LiveStream.class) {
+                reconnectDelayMs = MIN_RECONNECT_MS;
+            }
+            notifyConnectionChanged();
+            // Anything written while the socket was down still goes through the worker
+            EXECUTOR.execute(() -> {
+                try {
+                    scheduleIfBacklog(context);
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to check the backlog", e);
+                    SyncScheduler.scheduleAfterWrite(context);
+                }
+            });
+        }
+
+        @Override
+        public void onAcked(List<Integer> ids) {
+            EXECUTOR.execute(() -> {
+                try {
+                    AppDatabase.getInstance(context).locationDao().markBatchAsUploaded(ids);
+                    SyncMetrics.POINTS_UPLOADED.add(ids.size());
+                    SyncMetrics.LAST_SYNC_AT.set(System.currentTimeMillis());
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to mark streamed points uploaded", e);
+                }
+            });
+        }
+
+        @Override
+        public void onDown(List<Integer> unackedIds, Throwable cause) {
+            if (cause != null) Log.w(TAG, "Live stream dropped", cause);
+            synchronized (LiveStream.class) {
+                // A client we already closed or replaced must not tear down its successor
+                if (client == owner) {
+                    client = null;
+                    if (foreground && isEnabled(context)) scheduleReconnect(context);
+                }
+            }
+            notifyConnectionChanged();
+            // Unacked points are still isUploaded = 0; release them to the batch worker
+            EXECUTOR.execute(() -> {
+                try {
+                    if (!unackedIds.isEmpty()) {
+                        AppDatabase.getInstance(context).locationDao().releaseClaimsOf(unackedIds, token);
+                    }
+                    scheduleIfBacklog(context);
+                } catch (Exception e) {
+                    Log.w(TAG, "Failed to release streamed points", e);
+                    SyncScheduler.scheduleAfterWrite(context);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationPointEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.json.JSONObject;
+
+/**
+ * WebSocket channel to {@code /ingest/stream} that pushes each point as it is saved.
+ *
+ * The upgrade request carries the usual device headers, signed over {@code GET:/ingest/stream:TS:}.
+ * Each point goes out as a text frame
+ * {@code {"type":"points","seq":N,"ts":"<ms>","body":"<ingest JSON array>","sig":"<hex>"}}, signed
+ * with {@link RequestSigner#signFrame}, and the server answers {@code {"type":"ack","seq":N}} once
+ * the points are stored. Only acked points are reported through {@link Listener#onAcked}; when
+ * the socket goes away the unacked ones are handed to {@link Listener#onDown} so the batch
+ * worker can take over. Liveness is checked with protocol-level pings. A client is single-use:
+ * reconnect with a new instance.
+ */
+public final class LiveStreamClient {
+    public static final String PATH = "/ingest/stream";
+    static final long PING_INTERVAL_MS = 15_000L;
+    // A server that stops acking is as good as down; hand the points back to the batch worker
+    static final int MAX_IN_FLIGHT = 64;
+
+    public interface Listener {
+        void onOpen();
+
+        void onAcked(List<Integer> ids);
+
+        void onDown(List<Integer> unackedIds, Throwable cause);
+    }
+
+    private final OkHttpClient client;
+    private final String serverUrl;
+    private final String deviceId;
+    private final String deviceToken;
+    private final Listener listener;
+
+    private final Map<Long, List<Integer>> inFlight = new LinkedHashMap<>();
+    private WebSocket socket;
+    private boolean open;
+    private boolean down;
+    private long nextSeq = 1;
+
+    public LiveStreamClient(OkHttpClient client, String serverUrl, String deviceId, String deviceToken, Listener listener) {
+        this.client = client.newBuilder()
+                .pingInterval(PING_INTERVAL_MS, TimeUnit.MILLISECONDS)
+                .build();
+        this.serverUrl = serverUrl;
+        this.deviceId = deviceId;
+        this.deviceToken = deviceToken;
+        this.listener = listener;
+    }
+
+    public synchronized void connect() throws Exception {
+        if (socket != null) return;
+        // OkHttp maps http(s) to ws(s) for upgrade requests
+        Request.Builder rb = new Request.Builder().url(serverUrl + PATH);
+        // The builder already holds the http(s) form of the URL, which is what the server sees
+        String signingPath = RequestSigner.pathOf(rb.build().url());
+        if (deviceId != null) rb.addHeader("x-device-id", deviceId);
+        if (deviceToken != null) {
+            String timestamp = String.valueOf(System.currentTimeMillis());
+            rb.addHeader("x-device-token", deviceToken);
+            rb.addHeader("x-timestamp", timestamp);
+            rb.addHeader("x-signature", RequestSigner.sign(deviceToken, "GET", signingPath, timestamp, ""));
+        }
+        socket = client.newWebSocket(rb.build(), new Handler());
+    }
+
+    public synchronized boolean isOpen() {
+        return open;
+    }
+
+    /** Push {@code points} now; false when the channel is not open and the caller should batch them. */
+    public synchronized boolean send(List<LocationPointEntity> points) throws Exception {
+        if (!open || points.isEmpty()) return false;
+        if (inFlight.size() >= MAX_IN_FLIGHT) {
+            socket.cancel();
+            return false;
+        }
+        List<Integer> ids = new ArrayList<>(points.size());
+        String body = IngestPayload.build(points, ids);
+        long seq = nextSeq++;
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        JSONObject frame = new JSONObject();
+        frame.put("type", "points");
+        frame.put("seq", seq);
+        frame.put("ts", timestamp);
+        frame.put("body", body);
+        if (deviceToken != null) frame.put("sig", RequestSigner.signFrame(deviceToken, PATH, timestamp, seq, body));
+        if (!socket.send(frame.toString())) return false;
+        inFlight.put(seq, ids);
+        return true;
+    }
+
+    public synchronized void close() {
+        if (socket != null) socket.close(1000, "client closing");
+    }
+
+    private void onAck(long seq) {
+        List<Integer> ids;
+        synchronized (this) {
+            ids = inFlight.remove(seq);
+        }
+        if (ids != null && !ids.isEmpty()) listener.onAcked(ids);
+    }
+
+    private void goDown(Throwable cause) {
+        List<Integer> unacked = new ArrayList<>();
+        synchronized (this) {
+            if (down) return;
+            down = true;
+            open = false;
+            for (List<Integer> ids : inFlight.values()) unacked.addAll(ids);
+            inFlight.clear();
+        }
+        listener.onDown(Collections.unmodifiableList(unacked), cause);
+    }
+
+    private final class Handler extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            synchronized (LiveStreamClient.this) {
+                open = true;
+            }
+            listener.onOpen();
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                JSONObject msg = new JSONObject(text);
+                if ("ack".equals(msg.optString("type"))) onAck(msg.getLong("seq"));
+            } catch (Exception e) {
+                // Unknown or malformed server frames are ignored; unacked points fall back on close
+            }
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(1000, null);
+            goDown(null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            goDown(null);
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            goDown(t);
+        }
+    }
+}
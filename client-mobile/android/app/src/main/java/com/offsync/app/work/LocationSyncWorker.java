@@ -1,30 +1,61 @@
 package com.offsync.app.work;
 
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
 import android.content.Context;
-import android.content.SharedPreferences;
-import android.preference.PreferenceManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.work.ForegroundInfo;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 import com.offsync.app.db.AppDatabase;
-import com.offsync.app.db.LocationPointEntity;
-import com.offsync.app.BuildConfig;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
+import com.offsync.app.db.LocationBatch;
+import com.offsync.app.db.LocationBatchReader;
+import com.offsync.app.db.LocationWriter;
+import com.offsync.app.metrics.SyncMetrics;
+import com.offsync.app.metrics.SyncTrace;
+import io.sentry.ISpan;
+import io.sentry.ITransaction;
+import io.sentry.Sentry;
+import io.sentry.SpanStatus;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import org.json.JSONArray;
-import org.json.JSONObject;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Instant;
+import java.util.UUID;
 
+/**
+ * Uploads pending points in two lanes. The live lane sends the newest {@link #LIVE_LANE_SIZE}
+ * pending points first in one small request, so the dashboard is current after a single round
+ * trip. The backlog lane then drains whatever is left oldest-first. Both lanes claim their rows
+ * under a per-run lease token before reading them, so when one-off and periodic runs overlap
+ * each point still goes out in exactly one lane of one run; a run finding nothing left to claim
+ * and no catch-up to resume exits early. Claims of a crashed run lapse after {@link #CLAIM_LEASE_MS}.
+ * Batch size, compression level and the metered byte budget come from {@link SyncPolicy}.
+ * A backlog too large for batches is sent as resumable segments by {@link CatchUpSync} before
+ * the backlog lane runs; when catch-up fails, or the server takes no segments, the backlog
+ * lane still runs for every row no segment holds. Batches go to the healthiest of the
+ * configured {@link IngestEndpoints} and fail over to the others within the same call. After the run the {@link RemotePolicy} is
+ * refreshed if the ingest responses advertised a new one; after a successful run the retention
+ * window it sets is applied to points already uploaded.
+ */
 public class LocationSyncWorker extends Worker {
+    private static final String TAG = "LocationSyncWorker";
     private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    static final int LIVE_LANE_SIZE = 5;
+    /** Long enough for one batch request including OkHttp's timeouts, renewed with every claim. */
+    static final long CLAIM_LEASE_MS = 5 * 60 * 1000L;
+    private static final String CHANNEL_ID = "offsync_sync";
+    private static final int NOTIFICATION_ID = 4301;
     private final OkHttpClient client = new OkHttpClient();
+    /** Policy ETag from the latest ingest response of this run. */
+    private String advertisedPolicyEtag;
 
     public LocationSyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
         super(context, params);
@@ -33,122 +64,315 @@ public class LocationSyncWorker extends Worker {
     @NonNull
     @Override
     public Result doWork() {
+        if (getRunAttemptCount() > 0) SyncMetrics.RETRIES.inc();
+        SyncTrace.init(getApplicationContext());
+        // Async so the whole run shows as one slice even though the HTTP call blocks elsewhere
+        int cookie = getId().hashCode();
+        boolean runTraced = SyncTrace.beginAsync("offsync:sync.run", cookie);
+        // Sampling is governed by io.sentry.traces.sample-rate in the manifest
+        ITransaction tx = Sentry.startTransaction("sync.batch", "task");
+        AppDatabase db = null;
+        DeviceCredentials creds = null;
+        String serverUrl = null;
         try {
-            AppDatabase db = AppDatabase.getInstance(getApplicationContext());
-            List<LocationPointEntity> pending = db.locationDao().getPending(50);
-            if (pending == null || pending.size() == 0) {
+            db = AppDatabase.getInstance(getApplicationContext());
+            // Read device credentials from Capacitor Preferences
+            creds = DeviceCredentials.load(getApplicationContext());
+            IngestEndpoints endpoints = IngestEndpointStore.get(getApplicationContext());
+            // Batches fail over between endpoints; resumable segments and the policy stay on the preferred one
+            serverUrl = endpoints.preferred();
+            SyncPolicy.Decision policy = SyncPolicyStore.current(getApplicationContext(), (int) SyncMetrics.BACKLOG.get());
+            tx.setData("tier", policy.tier.name());
+            if (policy.tier == SyncPolicy.Tier.METERED_DEFERRED) {
+                deferToNextWindow();
+                tx.finish(SpanStatus.OK);
                 return Result.success();
             }
 
-            JSONArray arr = new JSONArray();
-            List<Integer> ids = new ArrayList<>();
-            for (LocationPointEntity p : pending) {
-                JSONObject o = new JSONObject();
-                o.put("capturedAt", p.capturedAt);
-                o.put("lat", p.lat);
-                o.put("lng", p.lng);
-                o.put("accuracyM", p.accuracyM);
-                o.put("provider", p.provider == null ? JSONObject.NULL : p.provider);
-                if (p.batteryPct != null) o.put("batteryPct", p.batteryPct);
-                if (p.isCharging != null) o.put("isCharging", p.isCharging == 1);
-                if (p.accuracyMode != null) o.put("accuracyMode", p.accuracyMode);
-                arr.put(o);
-                if (p.id != null) ids.add(p.id);
-            }
-
-            // We'll send the raw JSON array expected by the server
-            String bodyString = arr.toString();
+            // Buffers are reused for every batch of this run, so a long drain allocates little per point
+            try (Uploader uploader = new Uploader(db, policy, tx, creds, endpoints)) {
+                LocationBatch live = new LocationBatch(LIVE_LANE_SIZE);
+                boolean liveClaimed = uploader.claim(true, live) > 0;
+                if (liveClaimed) {
+                    if (!uploader.upload(live, "live")) {
+                        tx.finish(SpanStatus.UNAVAILABLE);
+                        return Result.retry();
+                    }
+                    SyncMetrics.LIVE_POINT_AGE_MS.set(ageMs(live.capturedAt, 0));
+                }
 
-            // Read device credentials from Capacitor Preferences (try multiple SharedPreferences locations)
-            String deviceId = null;
-            String deviceToken = null;
-            String[] candidatePrefs = new String[]{"capacitor.preferences", "CapacitorPreferences", "CapacitorStorage", "preferences"};
-            for (String name : candidatePrefs) {
+                // The backlog lane would resend rows an unfinished segment already holds. Checked even
+                // when the live lane found nothing: every pending row may sit in a half-sent segment
+                CatchUpSync catchUp = new CatchUpSync(getApplicationContext(), db, uploader.reader,
+                        new SegmentUploader(client, serverUrl, creds.deviceId, creds.deviceToken));
+                boolean catchUpNeeded = false;
+                boolean caughtUp = true;
                 try {
-                    SharedPreferences p = getApplicationContext().getSharedPreferences(name, Context.MODE_PRIVATE);
-                    if (deviceId == null) deviceId = p.getString("device_id", null);
-                    if (deviceToken == null) deviceToken = p.getString("device_token", null);
-                    if (deviceId != null && deviceToken != null) break;
-                } catch (Exception ex) {
-                    // ignore and try next
+                    catchUpNeeded = catchUp.needed();
+                    if (catchUpNeeded) caughtUp = catchUp.run(this::isStopped, uploader);
+                } catch (Exception e) {
+                    // Rows its segments hold stay skipped; everything else still goes out in batches
+                    Log.w(TAG, "Catch-up failed; falling back to batches", e);
+                    tx.setData("catchUp", "failed");
                 }
-            }
-            // Also check default shared preferences
-            if ((deviceId == null || deviceToken == null)) {
-                try {
-                    SharedPreferences def = PreferenceManager.getDefaultSharedPreferences(getApplicationContext());
-                    if (deviceId == null) deviceId = def.getString("device_id", deviceId);
-                    if (deviceToken == null) deviceToken = def.getString("device_token", deviceToken);
-                } catch (Exception ex) {
-                    // ignore
+                if (!liveClaimed && !catchUpNeeded) {
+                    pruneByRetention();
+                    tx.finish(SpanStatus.OK);
+                    return Result.success();
                 }
+                if (!caughtUp) {
+                    if (uploader.remainingBytes <= 0) deferToNextWindow();
+                    tx.setData("catchUp", "incomplete");
+                    tx.finish(SpanStatus.OK);
+                    // A stop, a spent budget or another run's catch-up leaves it unfinished; a later run resumes
+                    return Result.success();
+                }
+
+                LocationBatch backlog = new LocationBatch(policy.batchSize);
+                int batches = 0;
+                while (!isStopped()) {
+                    if (uploader.remainingBytes <= 0) {
+                        deferToNextWindow();
+                        break;
+                    }
+                    if (uploader.claim(false, backlog) == 0) break;
+                    if (!uploader.upload(backlog, "backlog")) {
+                        tx.finish(SpanStatus.UNAVAILABLE);
+                        return Result.retry();
+                    }
+                    batches++;
+                }
+                tx.setData("backlogBatches", batches);
             }
+            pruneByRetention();
+            tx.finish(SpanStatus.OK);
+            return Result.success();
+        } catch (Exception e) {
+            Log.w(TAG, "Sync batch failed", e);
+            SyncMetrics.ERRORS.inc();
+            SyncMetrics.LAST_FAILURE_AT.set(System.currentTimeMillis());
+            tx.setThrowable(e);
+            tx.finish(SpanStatus.INTERNAL_ERROR);
+            return Result.retry();
+        } finally {
+            if (creds != null) applyPolicy(creds, serverUrl);
+            IngestEndpointStore.persist(getApplicationContext());
+            if (db != null) updateBacklogGauges(db);
+            SyncTrace.endAsync(runTraced, "offsync:sync.run", cookie);
+        }
+    }
 
-            // Construct request to server
-            String serverUrl = getServerUrl();
-            // The server expects an array directly; send the raw array to /ingest/locations
-            RequestBody rb = RequestBody.create(bodyString, JSON);
-            Request.Builder reqBuilder = new Request.Builder()
-                    .url(serverUrl + "/ingest/locations")
-                    .post(rb)
-                    .addHeader("Content-Type", "application/json");
-            if (deviceId != null) reqBuilder.addHeader("x-device-id", deviceId);
-            if (deviceToken != null) reqBuilder.addHeader("x-device-token", deviceToken);
-
-            // Add HMAC signature headers if deviceToken available
-            if (deviceToken != null) {
-                String timestamp = String.valueOf(System.currentTimeMillis());
-                String method = "POST";
-                String path = "/ingest/locations";
-                String toSign = method + ":" + path + ":" + timestamp + ":" + bodyString;
-                try {
-                    String signature = hmacSha256Hex(deviceToken, toSign);
-                    reqBuilder.addHeader("x-timestamp", timestamp);
-                    reqBuilder.addHeader("x-signature", signature);
-                } catch (Exception ex) {
-                    // ignore signature failure and proceed with token header
-                    ex.printStackTrace();
+    /** Refresh the remote policy when due; never fails the run. */
+    private void applyPolicy(DeviceCredentials creds, String serverUrl) {
+        try {
+            RemotePolicyStore.refreshIfStale(getApplicationContext(), client, serverUrl, creds, advertisedPolicyEtag);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to apply device policy", e);
+        }
+    }
+
+    /** Drop uploaded points past the policy's retention window; only after a run that succeeded. */
+    private void pruneByRetention() {
+        Context ctx = getApplicationContext();
+        try {
+            LocationWriter.pruneIfDue(ctx, RemotePolicyStore.current(ctx).retentionDays);
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to apply the retention window", e);
+        }
+    }
+
+    /** Metered budget is spent: wait for the window to roll over rather than retrying now. */
+    private void deferToNextWindow() {
+        Context ctx = getApplicationContext();
+        long now = System.currentTimeMillis();
+        long resetsAt = SyncPolicyStore.windowResetsAt(ctx, now);
+        // A zero budget has no open window; check back in an hour in case it was raised
+        long delayMs = resetsAt == 0 ? SyncPolicy.WINDOW_MS : Math.max(0, resetsAt - now);
+        SyncScheduler.scheduleAfterBudgetWindow(ctx, delayMs);
+    }
+
+    /** Shown only when expedited work has to run as a foreground service (before Android 12). */
+    @NonNull
+    @Override
+    public ForegroundInfo getForegroundInfo() {
+        Context ctx = getApplicationContext();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationManager nm = (NotificationManager) ctx.getSystemService(Context.NOTIFICATION_SERVICE);
+            nm.createNotificationChannel(new NotificationChannel(CHANNEL_ID, "Offsync sync", NotificationManager.IMPORTANCE_LOW));
+        }
+        Notification notification = new NotificationCompat.Builder(ctx, CHANNEL_ID)
+                .setSmallIcon(ctx.getApplicationInfo().icon)
+                .setContentTitle("Offsync")
+                .setContentText("Uploading saved locations")
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setOngoing(true)
+                .build();
+        return new ForegroundInfo(NOTIFICATION_ID, notification);
+    }
+
+    /** Per-run upload state: the claim token, the reused buffers and what is left of the metered budget. */
+    private final class Uploader implements AutoCloseable, CatchUpSync.Budget {
+        final LocationBatchReader reader;
+        private final AppDatabase db;
+        private final String token = UUID.randomUUID().toString();
+        private final IngestJsonWriter writer = new IngestJsonWriter();
+        private final GzipEncoder gzip = new GzipEncoder();
+        private final SyncPolicy.Decision policy;
+        private final ITransaction tx;
+        private final DeviceCredentials creds;
+        private final IngestEndpoints endpoints;
+        long remainingBytes;
+
+        Uploader(AppDatabase db, SyncPolicy.Decision policy, ITransaction tx, DeviceCredentials creds,
+                 IngestEndpoints endpoints) {
+            this.db = db;
+            this.reader = new LocationBatchReader(db);
+            this.policy = policy;
+            this.tx = tx;
+            this.creds = creds;
+            this.endpoints = endpoints;
+            this.remainingBytes = policy.remainingBytes;
+        }
+
+        /** Claim the next free pending rows for this run and read them into {@code out}. */
+        int claim(boolean newestFirst, LocationBatch out) {
+            boolean traced = SyncTrace.begin("offsync:sync.query");
+            try {
+                long now = System.currentTimeMillis();
+                return reader.claimPending(newestFirst, token, now, now + CLAIM_LEASE_MS, out);
+            } finally {
+                SyncTrace.end(traced);
+            }
+        }
+
+        /** POST one batch and mark it uploaded; false when the server did not accept it. */
+        boolean upload(LocationBatch batch, String lane) throws Exception {
+            long start = SystemClock.elapsedRealtime();
+            boolean traced = SyncTrace.begin("offsync:sync.serialize");
+            try {
+                // We'll send the raw JSON array expected by the server
+                writer.write(batch);
+                if (writer.length() >= SyncPolicy.MIN_COMPRESS_BYTES) {
+                    gzip.encode(writer.buffer(), 0, writer.length(), policy.compressionLevel);
                 }
+            } finally {
+                SyncTrace.end(traced);
             }
+            boolean compressed = writer.length() >= SyncPolicy.MIN_COMPRESS_BYTES;
+
+            // The server expects an array directly; send the raw array to /ingest/locations.
+            // The body wraps a reused buffer, which is not touched again until this call returns.
+            RequestBody rb = compressed
+                    ? RequestBody.create(gzip.buffer(), JSON, 0, gzip.length())
+                    : RequestBody.create(writer.buffer(), JSON, 0, writer.length());
+            long bodyBytes = rb.contentLength();
+            ISpan http = tx.startChild("http.client", "POST /ingest/locations");
+            http.setData("lane", lane);
+            http.setData("points", batch.size);
+            http.setData("bytes", bodyBytes);
+            int[] attempts = new int[1];
+            // Built afresh for each endpoint tried, signed over the path that endpoint will see
+            IngestEndpoints.RequestFactory request = (url, signingPath) -> {
+                attempts[0]++;
+                Request.Builder reqBuilder = new Request.Builder()
+                        .url(url)
+                        .post(rb)
+                        .addHeader("Content-Type", "application/json");
+                // body-parser inflates before the HMAC check, so the signature stays over the plain JSON
+                if (compressed) reqBuilder.addHeader("Content-Encoding", "gzip");
+                if (creds.deviceId != null) reqBuilder.addHeader("x-device-id", creds.deviceId);
+                if (creds.deviceToken != null) reqBuilder.addHeader("x-device-token", creds.deviceToken);
 
-            Request request = reqBuilder.build();
-            try (Response response = client.newCall(request).execute()) {
-                if (response.isSuccessful()) {
-                    if (ids.size() > 0) {
-                        db.locationDao().markBatchAsUploaded(ids);
+                // Add HMAC signature headers if deviceToken available
+                if (creds.deviceToken != null) {
+                    boolean signTraced = SyncTrace.begin("offsync:sync.sign");
+                    String timestamp = String.valueOf(System.currentTimeMillis());
+                    try {
+                        String signature = RequestSigner.sign(creds.deviceToken, "POST", signingPath, timestamp,
+                                writer.buffer(), 0, writer.length());
+                        reqBuilder.addHeader("x-timestamp", timestamp);
+                        reqBuilder.addHeader("x-signature", signature);
+                    } catch (Exception ex) {
+                        // ignore signature failure and proceed with token header
+                        Log.w(TAG, "Failed to sign upload", ex);
+                    } finally {
+                        SyncTrace.end(signTraced);
                     }
-                    return Result.success();
-                } else {
-                    return Result.retry();
                 }
+                return reqBuilder.build();
+            };
+            traced = SyncTrace.begin("offsync:sync.http");
+            try (Response response = endpoints.execute(client, "/ingest/locations", request)) {
+                SyncTrace.end(traced);
+                traced = false;
+                http.setData("status", response.code());
+                http.setData("endpoint", response.request().url().host());
+                String policyEtag = response.header(RemotePolicyClient.ADVERTISED_ETAG);
+                if (policyEtag != null) advertisedPolicyEtag = policyEtag;
+                http.finish(response.isSuccessful() ? SpanStatus.OK : SpanStatus.UNAVAILABLE);
+                SyncMetrics.BYTES_SENT.add(bodyBytes * attempts[0]);
+                // Failed attempts cost data too
+                charge(bodyBytes * attempts[0]);
+                if (!response.isSuccessful()) {
+                    SyncMetrics.BATCHES_FAILED.inc();
+                    SyncMetrics.LAST_FAILURE_AT.set(System.currentTimeMillis());
+                    return false;
+                }
+                reader.markUploaded(batch);
+                SyncMetrics.BATCHES_UPLOADED.inc();
+                SyncMetrics.POINTS_UPLOADED.add(batch.size);
+                SyncMetrics.BATCH_LATENCY_MS.record(SystemClock.elapsedRealtime() - start);
+                SyncMetrics.LAST_SYNC_AT.set(System.currentTimeMillis());
+                return true;
+            } finally {
+                SyncTrace.end(traced);
+            }
+        }
+
+        @Override
+        public long remaining() {
+            return remainingBytes;
+        }
+
+        @Override
+        public void charge(long bytes) {
+            if (policy.tier == SyncPolicy.Tier.UNMETERED) return;
+            SyncPolicyStore.recordMeteredBytes(getApplicationContext(), bytes);
+            remainingBytes -= bytes;
+        }
+
+        /** Hand back rows claimed but not delivered, so the next run need not wait out the lease. */
+        @Override
+        public void close() {
+            gzip.close();
+            try {
+                db.locationDao().releaseClaims(token);
+            } catch (Exception e) {
+                Log.w(TAG, "Failed to release claims; they lapse with the lease", e);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            return Result.retry();
         }
     }
 
-    private String getServerUrl() {
-        // Prefer a runtime-configured URL stored in SharedPreferences (so we don't need to rebuild)
+    private static long ageMs(LocationBatch.TextColumn capturedAt, int row) {
+        if (capturedAt.isNull(row)) return 0;
         try {
-            SharedPreferences prefs = getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
-            String runtime = prefs.getString("runtime_offsync_server_url", null);
-            if (runtime != null && runtime.length() > 0) return runtime;
-        } catch (Exception ex) {
-            // ignore and fall back
+            String iso = new String(capturedAt.chars[row], 0, capturedAt.length[row]);
+            return Math.max(0, System.currentTimeMillis() - Instant.parse(iso).toEpochMilli());
+        } catch (Exception e) {
+            return 0;
         }
-        return BuildConfig.OFFSYNC_SERVER_URL;
     }
 
-    private static String hmacSha256Hex(String key, String data) throws Exception {
-        Mac mac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
-        mac.init(secretKey);
-        byte[] raw = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        StringBuilder sb = new StringBuilder(raw.length * 2);
-        for (byte b : raw) {
-            sb.append(String.format("%02x", b & 0xff));
+    private static void updateBacklogGauges(AppDatabase db) {
+        try {
+            int backlog = db.locationDao().countPending();
+            SyncMetrics.BACKLOG.set(backlog);
+            SyncTrace.counter("offsync:backlog", backlog);
+            String oldest = db.locationDao().getOldestPendingCapturedAt();
+            SyncMetrics.OLDEST_PENDING_AGE_MS.set(oldest == null ? 0
+                    : Math.max(0, System.currentTimeMillis() - Instant.parse(oldest).toEpochMilli()));
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to refresh backlog gauges", e);
         }
-        return sb.toString();
     }
 }
@@ -0,0 +1,74 @@
+package com.offsync.app.work;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Per-device tuning document served at {@code GET /devices/policy}:
+ * <pre>
+ *   {"batchSize":500, "meteredBatchSize":50, "syncIntervalMinutes":15,
+ *    "retentionDays":90, "accuracyMode":"high_accuracy", "maxAccuracyM":150}
+ * </pre>
+ * Every field is optional. A missing, mistyped or out-of-range value falls back to the built-in
+ * default or is clamped into range, so a bad document can slow the device down but never stop
+ * it syncing. Immutable.
+ */
+public final class RemotePolicy {
+    public static final String ACCURACY_HIGH = "high_accuracy";
+    public static final String ACCURACY_BALANCED = "balanced_power";
+
+    public static final RemotePolicy DEFAULTS = new RemotePolicy(SyncPolicy.BULK_BATCH_SIZE,
+            SyncPolicy.STANDARD_BATCH_SIZE, 15, 90, ACCURACY_HIGH, 150);
+
+    public final int batchSize;
+    public final int meteredBatchSize;
+    /** WorkManager will not run periodic work more often than every 15 minutes. */
+    public final int syncIntervalMinutes;
+    /** Applies to uploaded points only; unsent points are left to the storage quota. */
+    public final int retentionDays;
+    public final String accuracyMode;
+    public final double maxAccuracyM;
+
+    RemotePolicy(int batchSize, int meteredBatchSize, int syncIntervalMinutes, int retentionDays, String accuracyMode,
+                 double maxAccuracyM) {
+        this.batchSize = batchSize;
+        this.meteredBatchSize = meteredBatchSize;
+        this.syncIntervalMinutes = syncIntervalMinutes;
+        this.retentionDays = retentionDays;
+        this.accuracyMode = accuracyMode;
+        this.maxAccuracyM = maxAccuracyM;
+    }
+
+    /** Read a policy document; anything that is not a JSON object yields {@link #DEFAULTS}. */
+    public static RemotePolicy parse(String json) {
+        JSONObject o;
+        try {
+            o = new JSONObject(json);
+        } catch (JSONException | NullPointerException e) {
+            return DEFAULTS;
+        }
+        String mode = o.optString("accuracyMode", DEFAULTS.accuracyMode);
+        return new RemotePolicy(
+                clamp(o.optInt("batchSize", DEFAULTS.batchSize), 10, 2_000),
+                clamp(o.optInt("meteredBatchSize", DEFAULTS.meteredBatchSize), 5, 500),
+                clamp(o.optInt("syncIntervalMinutes", DEFAULTS.syncIntervalMinutes), 15, 24 * 60),
+                clamp(o.optInt("retentionDays", DEFAULTS.retentionDays), 1, 3_650),
+                ACCURACY_BALANCED.equals(mode) || ACCURACY_HIGH.equals(mode) ? mode : DEFAULTS.accuracyMode,
+                Math.max(10, Math.min(5_000, o.optDouble("maxAccuracyM", DEFAULTS.maxAccuracyM))));
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject o = new JSONObject();
+        o.put("batchSize", batchSize);
+        o.put("meteredBatchSize", meteredBatchSize);
+        o.put("syncIntervalMinutes", syncIntervalMinutes);
+        o.put("retentionDays", retentionDays);
+        o.put("accuracyMode", accuracyMode);
+        o.put("maxAccuracyM", maxAccuracyM);
+        return o;
+    }
+
+    private static int clamp(int v, int min, int max) {
+        return Math.max(min, Math.min(max, v));
+    }
+}
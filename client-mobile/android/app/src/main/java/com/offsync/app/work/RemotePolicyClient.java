@@ -0,0 +1,90 @@
+package com.offsync.app.work;
+
+import java.io.IOException;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Conditional fetch of the device's {@link RemotePolicy}.
+ *
+ * Servers that serve policies put the current document's ETag in an {@link #ADVERTISED_ETAG}
+ * header on every ingest response, so the sync round trips the device makes anyway tell it
+ * when its copy is stale. Only then does it send {@code GET /devices/policy} with
+ * {@code If-None-Match}. A server that never advertises is asked at most once per
+ * {@link #RECHECK_MS}, and that request is usually answered with a bodiless 304.
+ */
+public final class RemotePolicyClient {
+    public static final String PATH = "/devices/policy";
+    public static final String ADVERTISED_ETAG = "x-policy-etag";
+    static final long RECHECK_MS = 24 * 60 * 60 * 1000L;
+    /** Floor between fetches, in case the advertised and served ETags never agree. */
+    static final long MIN_GAP_MS = 10 * 60 * 1000L;
+
+    public enum Outcome {
+        UPDATED,
+        NOT_MODIFIED,
+        /** No policy for this device, or no endpoint at all; keep what is cached. */
+        UNAVAILABLE
+    }
+
+    public static final class Result {
+        public final Outcome outcome;
+        /** Raw document and its ETag; set only for {@link Outcome#UPDATED}. */
+        public final String body;
+        public final String etag;
+
+        Result(Outcome outcome, String body, String etag) {
+            this.outcome = outcome;
+            this.body = body;
+            this.etag = etag;
+        }
+    }
+
+    private final OkHttpClient client;
+    private final String serverUrl;
+    private final String deviceId;
+    private final String deviceToken;
+
+    public RemotePolicyClient(OkHttpClient client, String serverUrl, String deviceId, String deviceToken) {
+        this.client = client;
+        this.serverUrl = serverUrl;
+        this.deviceId = deviceId;
+        this.deviceToken = deviceToken;
+    }
+
+    /**
+     * Whether a fetch is worth a request.
+     *
+     * @param advertised ETag seen on the latest ingest response, null if the server sent none
+     * @param lastCheckAt when the policy was last fetched or confirmed, 0 if never
+     */
+    public static boolean shouldFetch(String advertised, String cachedEtag, long lastCheckAt, long now) {
+        long since = now - lastCheckAt;
+        // A clock moved backwards counts as due
+        if (since < 0) return true;
+        if (advertised != null) return !advertised.equals(cachedEtag) && since >= MIN_GAP_MS;
+        return since >= RECHECK_MS;
+    }
+
+    /** GET the policy, conditional on {@code cachedEtag} when there is one. */
+    public Result fetch(String cachedEtag) throws Exception {
+        HttpUrl url = HttpUrl.get(serverUrl + PATH);
+        Request.Builder rb = new Request.Builder().url(url).get();
+        if (cachedEtag != null) rb.addHeader("If-None-Match", cachedEtag);
+        if (deviceId != null) rb.addHeader("x-device-id", deviceId);
+        if (deviceToken != null) {
+            String timestamp = String.valueOf(System.currentTimeMillis());
+            rb.addHeader("x-device-token", deviceToken);
+            rb.addHeader("x-timestamp", timestamp);
+            rb.addHeader("x-signature", RequestSigner.sign(deviceToken, "GET", RequestSigner.pathOf(url), timestamp, ""));
+        }
+        try (Response response = client.newCall(rb.build()).execute()) {
+            if (response.code() == 304) return new Result(Outcome.NOT_MODIFIED, null, null);
+            if (response.code() == 404 || response.code() == 204) return new Result(Outcome.UNAVAILABLE, null, null);
+            if (!response.isSuccessful()) throw new IOException("Policy fetch failed: HTTP " + response.code());
+            return new Result(Outcome.UPDATED, response.body().string(), response.header("ETag"));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKey;
+import com.offsync.app.CaptureFilter;
+import okhttp3.OkHttpClient;
+
+/**
+ * Android side of {@link RemotePolicy}: caches the last document and its ETag in the encrypted
+ * {@code secure_prefs}, so a tampered plain prefs file cannot retune the device, and applies
+ * changes to the periodic schedule and the capture filter. Until a document has been fetched,
+ * or if the keystore is unusable, {@link RemotePolicy#DEFAULTS} apply.
+ */
+public final class RemotePolicyStore {
+    private static final String TAG = "RemotePolicyStore";
+    private static final String PREFS_NAME = "secure_prefs";
+    private static final String PREF_BODY = "remote_policy_json";
+    private static final String PREF_ETAG = "remote_policy_etag";
+    private static final String PREF_CHECKED_AT = "remote_policy_checked_at";
+
+    private static volatile RemotePolicy current;
+    private static SharedPreferences securePrefs;
+
+    private RemotePolicyStore() {
+    }
+
+    public static RemotePolicy current(Context context) {
+        RemotePolicy p = current;
+        if (p == null) {
+            SharedPreferences prefs = prefs(context);
+            String body = prefs == null ? null : prefs.getString(PREF_BODY, null);
+            p = body == null ? RemotePolicy.DEFAULTS : RemotePolicy.parse(body);
+            current = p;
+        }
+        return p;
+    }
+
+    public static String etag(Context context) {
+        SharedPreferences prefs = prefs(context);
+        return prefs == null ? null : prefs.getString(PREF_ETAG, null);
+    }
+
+    public static long checkedAt(Context context) {
+        SharedPreferences prefs = prefs(context);
+        return prefs == null ? 0 : prefs.getLong(PREF_CHECKED_AT, 0);
+    }
+
+    /**
+     * Fetch the policy if the ETag advertised on this run's ingest responses differs from the
+     * cached one, or if the periodic recheck is due. Failures keep the cached document.
+     */
+    public static synchronized void refreshIfStale(Context context, OkHttpClient client, String serverUrl,
+                                                   DeviceCredentials creds, String advertisedEtag) {
+        SharedPreferences prefs = prefs(context);
+        if (prefs == null) return;
+        long now = System.currentTimeMillis();
+        String cachedEtag = prefs.getString(PREF_ETAG, null);
+        if (!RemotePolicyClient.shouldFetch(advertisedEtag, cachedEtag, prefs.getLong(PREF_CHECKED_AT, 0), now)) {
+            return;
+        }
+        // Recorded up front, so a failing endpoint is retried after the gap rather than every run
+        prefs.edit().putLong(PREF_CHECKED_AT, now).apply();
+        try {
+            RemotePolicyClient.Result result = new RemotePolicyClient(client, serverUrl, creds.deviceId,
+                    creds.deviceToken).fetch(cachedEtag);
+            if (result.outcome != RemotePolicyClient.Outcome.UPDATED) return;
+            RemotePolicy before = current(context);
+            RemotePolicy after = RemotePolicy.parse(result.body);
+            prefs.edit().putString(PREF_BODY, result.body).putString(PREF_ETAG, result.etag).apply();
+            current = after;
+            apply(context, before, after);
+        } catch (Exception e) {
+            Log.w(TAG, "Policy fetch failed; keeping the cached policy", e);
+        }
+    }
+
+    private static void apply(Context context, RemotePolicy before, RemotePolicy after) {
+        if (before.syncIntervalMinutes != after.syncIntervalMinutes) SyncScheduler.updatePeriodic(context);
+        if (before.maxAccuracyM != after.maxAccuracyM) CaptureFilter.reload();
+    }
+
+    private static synchronized SharedPreferences prefs(Context context) {
+        if (securePrefs == null) {
+            try {
+                Context app = context.getApplicationContext();
+                MasterKey masterKey = new MasterKey.Builder(app)
+                        .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                        .build();
+                securePrefs = EncryptedSharedPreferences.create(
+                        app,
+                        PREFS_NAME,
+                        masterKey,
+                        EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                        EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
+                );
+            } catch (Exception e) {
+                Log.w(TAG, "Secure prefs unavailable; using default policy", e);
+                return null;
+            }
+        }
+        return securePrefs;
+    }
+}
@@ -0,0 +1,74 @@
+package com.offsync.app.work;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import okhttp3.HttpUrl;
+
+/**
+ * HMAC-SHA256 request signing as verified by the server:
+ * {@code hex(HMAC(deviceToken, METHOD:PATH:TIMESTAMP:BODY))}.
+ */
+public final class RequestSigner {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private RequestSigner() {
+    }
+
+    public static String sign(String deviceToken, String method, String path, String timestamp, String body)
+            throws Exception {
+        return hmacSha256Hex(deviceToken, method + ":" + path + ":" + timestamp + ":" + body);
+    }
+
+    /** Same signature over a UTF-8 body that is already encoded, without copying it into a String. */
+    public static String sign(String deviceToken, String method, String path, String timestamp,
+                              byte[] body, int offset, int length) throws Exception {
+        Mac mac = mac(deviceToken);
+        mac.update((method + ":" + path + ":" + timestamp + ":").getBytes(StandardCharsets.UTF_8));
+        mac.update(body, offset, length);
+        return hex(mac.doFinal());
+    }
+
+    /** Signature of one live stream frame: {@code hex(HMAC(deviceToken, FRAME:PATH:TIMESTAMP:SEQ:BODY))}. */
+    public static String signFrame(String deviceToken, String path, String timestamp, long seq, String body)
+            throws Exception {
+        return hmacSha256Hex(deviceToken, "FRAME:" + path + ":" + timestamp + ":" + seq + ":" + body);
+    }
+
+    /**
+     * Signature binding a catch-up segment's content to the device:
+     * {@code hex(HMAC(deviceToken, SEGMENT:ID:SHA256:BYTES:POINTS))}.
+     */
+    public static String signSegment(String deviceToken, String segmentId, String sha256, long bytes, int points)
+            throws Exception {
+        return hmacSha256Hex(deviceToken, "SEGMENT:" + segmentId + ":" + sha256 + ":" + bytes + ":" + points);
+    }
+
+    /**
+     * The PATH to sign for a request to {@code url}: what the server reads as its original URL,
+     * i.e. the encoded path including any base path of the endpoint, plus the query if any.
+     */
+    public static String pathOf(HttpUrl url) {
+        String query = url.encodedQuery();
+        return query == null ? url.encodedPath() : url.encodedPath() + "?" + query;
+    }
+
+    public static String hmacSha256Hex(String key, String data) throws Exception {
+        return hex(mac(key).doFinal(data.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static Mac mac(String key) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return mac;
+    }
+
+    private static String hex(byte[] raw) {
+        char[] out = new char[raw.length * 2];
+        for (int i = 0; i < raw.length; i++) {
+            out[i * 2] = HEX[(raw[i] >> 4) & 0xf];
+            out[i * 2 + 1] = HEX[raw[i] & 0xf];
+        }
+        return new String(out);
+    }
+}
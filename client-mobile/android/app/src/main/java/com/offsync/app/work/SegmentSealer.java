@@ -0,0 +1,110 @@
+package com.offsync.app.work;
+
+import com.offsync.app.db.LocationBatch;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Seals pending rows into one catch-up segment: gzip of newline-delimited ingest objects
+ * (see {@link IngestJsonWriter#writeLines}), with the size and SHA-256 of the compressed bytes
+ * that the server checks on commit. Rows are read by id in pages, so memory stays at one page.
+ */
+public final class SegmentSealer {
+    public static final int PAGE_SIZE = 500;
+
+    public static final class Sealed {
+        public final long firstId;
+        public final long lastId;
+        public final int points;
+        public final long bytes;
+        public final String sha256;
+
+        Sealed(long firstId, long lastId, int points, long bytes, String sha256) {
+            this.firstId = firstId;
+            this.lastId = lastId;
+            this.points = points;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+    }
+
+    private SegmentSealer() {
+    }
+
+    /**
+     * Write up to {@code maxPoints} pending rows after {@code afterId} to {@code out}, rounded
+     * up to whole pages. Returns null, with nothing written, when there are no such rows.
+     * Closes {@code out}.
+     */
+    public static Sealed seal(HistoryExporter.RowSource pending, long afterId, int maxPoints, OutputStream out)
+            throws IOException {
+        LocationBatch page = new LocationBatch(PAGE_SIZE);
+        if (pending.read(afterId, page) == 0) {
+            out.close();
+            return null;
+        }
+        MessageDigest sha;
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        CountingStream counted = new CountingStream(new DigestOutputStream(out, sha));
+        IngestJsonWriter writer = new IngestJsonWriter(64 * 1024);
+        long firstId = page.ids[0];
+        long lastId;
+        int points = 0;
+        try (GZIPOutputStream gz = new GZIPOutputStream(counted, 64 * 1024)) {
+            while (true) {
+                writer.writeLines(page);
+                gz.write(writer.buffer(), 0, writer.length());
+                points += page.size;
+                lastId = page.ids[page.size - 1];
+                if (points >= maxPoints || page.size < page.capacity) break;
+                if (pending.read(lastId, page) == 0) break;
+            }
+        }
+        return new Sealed(firstId, lastId, points, counted.count, hex(sha.digest()));
+    }
+
+    static String hex(byte[] raw) {
+        StringBuilder sb = new StringBuilder(raw.length * 2);
+        for (byte b : raw) sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return sb.toString();
+    }
+
+    private static final class CountingStream extends OutputStream {
+        private final OutputStream out;
+        long count;
+
+        CountingStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.offsync.app.work;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import org.json.JSONObject;
+
+/**
+ * Resumable upload of sealed catch-up segments (see {@link SegmentSealer}).
+ *
+ * <pre>
+ *   POST  /ingest/segments               {"segmentId","bytes","points","sha256","sig"}
+ *                                         -> {"offset":N}, creating the segment or reporting progress
+ *   PATCH /ingest/segments/ID            x-upload-offset: N, raw chunk
+ *                                         -> 2xx with x-upload-offset: N + chunk length,
+ *                                            409 with the server's offset when they disagree
+ *   POST  /ingest/segments/ID/commit     {"sha256","points"}
+ *                                         -> 2xx once every point is stored, 409 if bytes are
+ *                                            still missing, 422 if the content does not verify
+ * </pre>
+ * Every request carries the usual device headers with the HMAC over its own body; for
+ * PATCH that is the raw chunk. {@code sig} ({@link RequestSigner#signSegment}) binds the
+ * whole segment, so the server can reject a segment assembled from foreign chunks.
+ */
+public final class SegmentUploader {
+    public static final String PATH = "/ingest/segments";
+    static final String OFFSET_HEADER = "x-upload-offset";
+    static final int CHUNK_BYTES = 256 * 1024;
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final MediaType OCTETS = MediaType.get("application/offset+octet-stream");
+
+    public interface Progress {
+        void onOffset(long offset);
+    }
+
+    /** The server has no segment routes; backlogs have to go in ordinary batches. */
+    public static final class UnsupportedException extends IOException {
+        UnsupportedException(int code) {
+            super("Segment upload not supported: HTTP " + code);
+        }
+    }
+
+    private final OkHttpClient client;
+    private final String serverUrl;
+    private final String deviceId;
+    private final String deviceToken;
+    private final byte[] chunk;
+
+    public SegmentUploader(OkHttpClient client, String serverUrl, String deviceId, String deviceToken) {
+        this(client, serverUrl, deviceId, deviceToken, CHUNK_BYTES);
+    }
+
+    SegmentUploader(OkHttpClient client, String serverUrl, String deviceId, String deviceToken, int chunkBytes) {
+        this.client = client;
+        this.serverUrl = serverUrl;
+        this.deviceId = deviceId;
+        this.deviceToken = deviceToken;
+        this.chunk = new byte[chunkBytes];
+    }
+
+    /**
+     * Create the segment on the server, or look it up again; returns the offset to resume from.
+     * Throws {@link UnsupportedException} when the server does not know the route.
+     */
+    public long open(String segmentId, long bytes, int points, String sha256) throws Exception {
+        JSONObject body = new JSONObject();
+        body.put("segmentId", segmentId);
+        body.put("bytes", bytes);
+        body.put("points", points);
+        body.put("sha256", sha256);
+        if (deviceToken != null) body.put("sig", RequestSigner.signSegment(deviceToken, segmentId, sha256, bytes, points));
+        try (Response response = post(PATH, body.toString())) {
+            int code = response.code();
+            if (code == 404 || code == 405 || code == 501) throw new UnsupportedException(code);
+            if (!response.isSuccessful()) throw new IOException("Segment open failed: HTTP " + response.code());
+            long offset = new JSONObject(response.body().string()).getLong("offset");
+            if (offset < 0 || offset > bytes) throw new IOException("Server offset " + offset + " outside segment");
+            return offset;
+        }
+    }
+
+    /**
+     * Send {@code file} from {@code offset} in chunks until it is complete or {@code maxBytes}
+     * have been sent. Returns the server's offset afterwards; each confirmed offset is also
+     * passed to {@code progress} so a later run can resume from it.
+     */
+    public long upload(String segmentId, File file, long offset, long maxBytes, Progress progress) throws Exception {
+        String path = PATH + "/" + segmentId;
+        long sent = 0;
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            long length = in.length();
+            while (offset < length && sent < maxBytes) {
+                int n = (int) Math.min(Math.min(chunk.length, length - offset), maxBytes - sent);
+                in.seek(offset);
+                in.readFully(chunk, 0, n);
+                HttpUrl url = HttpUrl.get(serverUrl + path);
+                Request.Builder rb = new Request.Builder()
+                        .url(url)
+                        .patch(RequestBody.create(chunk, OCTETS, 0, n))
+                        .addHeader(OFFSET_HEADER, String.valueOf(offset));
+                sign(rb, "PATCH", RequestSigner.pathOf(url), chunk, n);
+                try (Response response = client.newCall(rb.build()).execute()) {
+                    sent += n;
+                    if (response.code() == 409 || response.isSuccessful()) {
+                        // On 409 the server tells us where it actually is; carry on from there
+                        offset = serverOffset(response, length);
+                        progress.onOffset(offset);
+                    } else {
+                        throw new IOException("Segment chunk failed: HTTP " + response.code());
+                    }
+                }
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Ask the server to store the segment's points. True once committed; false when the
+     * server rejects the content, in which case the segment should be discarded and resealed.
+     */
+    public boolean commit(String segmentId, String sha256, int points) throws Exception {
+        JSONObject body = new JSONObject();
+        body.put("sha256", sha256);
+        body.put("points", points);
+        try (Response response = post(PATH + "/" + segmentId + "/commit", body.toString())) {
+            if (response.isSuccessful()) return true;
+            if (response.code() == 422) return false;
+            throw new IOException("Segment commit failed: HTTP " + response.code());
+        }
+    }
+
+    private Response post(String path, String json) throws Exception {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        HttpUrl url = HttpUrl.get(serverUrl + path);
+        Request.Builder rb = new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(bytes, JSON))
+                .addHeader("Content-Type", "application/json");
+        sign(rb, "POST", RequestSigner.pathOf(url), bytes, bytes.length);
+        return client.newCall(rb.build()).execute();
+    }
+
+    private void sign(Request.Builder rb, String method, String path, byte[] body, int length) throws Exception {
+        if (deviceId != null) rb.addHeader("x-device-id", deviceId);
+        if (deviceToken == null) return;
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        rb.addHeader("x-device-token", deviceToken);
+        rb.addHeader("x-timestamp", timestamp);
+        rb.addHeader("x-signature", RequestSigner.sign(deviceToken, method, path, timestamp, body, 0, length));
+    }
+
+    private static long serverOffset(Response response, long length) throws IOException {
+        String header = response.header(OFFSET_HEADER);
+        long offset;
+        try {
+            offset = Long.parseLong(header);
+        } catch (NumberFormatException e) {
+            throw new IOException("Missing " + OFFSET_HEADER + " in HTTP " + response.code());
+        }
+        if (offset < 0 || offset > length) throw new IOException("Server offset " + offset + " outside segment");
+        return offset;
+    }
+}
@@ -0,0 +1,225 @@
+package com.offsync.app.work;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Binary packing of location points for the SMS fallback transport.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   u8  version
+ *   u32 device tag   first 4 bytes of SHA-256(deviceId), lets the gateway find the key
+ *   u32 sequence     per-device batch counter, lets the gateway drop duplicates
+ *   u32 base time    epoch seconds of the first point
+ *   u8  count
+ *   first point:  s32 lat, s32 lng (1e-5 degrees), varint accuracy (m)
+ *   next points:  zigzag varint dt (s), dlat, dlng; varint accuracy (m)
+ *   8 bytes       truncated HMAC-SHA256(deviceToken, everything above)
+ * </pre>
+ * Consecutive fixes are close in space and time, so most deltas take one or two bytes and a
+ * single 133-byte data SMS carries a dozen or more points.
+ */
+public final class SmsBatchCodec {
+    public static final int VERSION = 1;
+    /** Payload of a single port-addressed data SMS (140 bytes minus the 7-byte port UDH). */
+    public static final int MAX_SEGMENT_BYTES = 133;
+    private static final int HEADER_BYTES = 14;
+    private static final int MAC_BYTES = 8;
+    private static final double SCALE = 1e5;
+
+    private SmsBatchCodec() {
+    }
+
+    public static final class Point {
+        public final long timeMs;
+        public final double lat;
+        public final double lng;
+        public final double accuracyM;
+
+        public Point(long timeMs, double lat, double lng, double accuracyM) {
+            this.timeMs = timeMs;
+            this.lat = lat;
+            this.lng = lng;
+            this.accuracyM = accuracyM;
+        }
+    }
+
+    /** One encoded segment and how many of the input points it carries. */
+    public static final class Packed {
+        public final byte[] payload;
+        public final int count;
+
+        Packed(byte[] payload, int count) {
+            this.payload = payload;
+            this.count = count;
+        }
+    }
+
+    public static final class Batch {
+        public final int deviceTag;
+        public final long sequence;
+        public final List<Point> points;
+
+        Batch(int deviceTag, long sequence, List<Point> points) {
+            this.deviceTag = deviceTag;
+            this.sequence = sequence;
+            this.points = points;
+        }
+    }
+
+    public static int deviceTag(String deviceId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(deviceId.getBytes(StandardCharsets.UTF_8));
+            return ByteBuffer.wrap(digest, 0, 4).getInt();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Pack as many points as fit into one segment, starting at {@code from}.
+     * Points must be in ascending time order.
+     */
+    public static Packed pack(List<Point> points, int from, int deviceTag, long sequence, byte[] key, int maxBytes)
+            throws GeneralSecurityException {
+        int budget = maxBytes - HEADER_BYTES - MAC_BYTES;
+        ByteArrayOutputStream body = new ByteArrayOutputStream(budget);
+        ByteArrayOutputStream scratch = new ByteArrayOutputStream(16);
+        Point first = points.get(from);
+        long baseSec = first.timeMs / 1000;
+        int prevLat = 0, prevLng = 0;
+        long prevSec = baseSec;
+        int count = 0;
+        for (int i = from; i < points.size() && count < 255; i++) {
+            Point p = points.get(i);
+            int lat = (int) Math.round(p.lat * SCALE);
+            int lng = (int) Math.round(p.lng * SCALE);
+            long sec = p.timeMs / 1000;
+            scratch.reset();
+            if (count == 0) {
+                writeInt(scratch, lat);
+                writeInt(scratch, lng);
+            } else {
+                writeVarint(scratch, zigzag(sec - prevSec));
+                writeVarint(scratch, zigzag(lat - prevLat));
+                writeVarint(scratch, zigzag(lng - prevLng));
+            }
+            writeVarint(scratch, Math.max(0, Math.round(p.accuracyM)));
+            if (body.size() + scratch.size() > budget) break;
+            body.write(scratch.toByteArray(), 0, scratch.size());
+            prevLat = lat;
+            prevLng = lng;
+            prevSec = sec;
+            count++;
+        }
+        if (count == 0) throw new IllegalArgumentException("segment too small for a single point");
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_BYTES + body.size() + MAC_BYTES);
+        out.put((byte) VERSION);
+        out.putInt(deviceTag);
+        out.putInt((int) sequence);
+        out.putInt((int) baseSec);
+        out.put((byte) count);
+        out.put(body.toByteArray());
+        byte[] mac = mac(key, out.array(), out.position());
+        out.put(mac, 0, MAC_BYTES);
+        return new Packed(out.array(), count);
+    }
+
+    /** Split {@code points} into consecutive segments, each signed on its own. */
+    public static List<Packed> packAll(List<Point> points, int deviceTag, long firstSequence, byte[] key, int maxBytes)
+            throws GeneralSecurityException {
+        List<Packed> out = new ArrayList<>();
+        int from = 0;
+        long seq = firstSequence;
+        while (from < points.size()) {
+            Packed p = pack(points, from, deviceTag, seq++, key, maxBytes);
+            out.add(p);
+            from += p.count;
+        }
+        return out;
+    }
+
+    /** Verify and decode one segment; throws if the signature or layout is wrong. */
+    public static Batch unpack(byte[] data, byte[] key) throws GeneralSecurityException {
+        if (data.length < HEADER_BYTES + MAC_BYTES) throw new IllegalArgumentException("payload too short");
+        int signedLen = data.length - MAC_BYTES;
+        byte[] expected = mac(key, data, signedLen);
+        int diff = 0;
+        for (int i = 0; i < MAC_BYTES; i++) diff |= expected[i] ^ data[signedLen + i];
+        if (diff != 0) throw new GeneralSecurityException("bad signature");
+
+        ByteBuffer in = ByteBuffer.wrap(data, 0, signedLen);
+        int version = in.get() & 0xff;
+        if (version != VERSION) throw new IllegalArgumentException("unsupported version " + version);
+        int tag = in.getInt();
+        long seq = in.getInt() & 0xffffffffL;
+        long baseSec = in.getInt() & 0xffffffffL;
+        int count = in.get() & 0xff;
+        List<Point> points = new ArrayList<>(count);
+        int lat = 0, lng = 0;
+        long sec = baseSec;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                lat = in.getInt();
+                lng = in.getInt();
+            } else {
+                sec += unzigzag(readVarint(in));
+                lat += (int) unzigzag(readVarint(in));
+                lng += (int) unzigzag(readVarint(in));
+            }
+            long acc = readVarint(in);
+            points.add(new Point(sec * 1000, lat / SCALE, lng / SCALE, acc));
+        }
+        if (in.hasRemaining()) throw new IllegalArgumentException("trailing bytes");
+        return new Batch(tag, seq, points);
+    }
+
+    private static byte[] mac(byte[] key, byte[] data, int len) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        mac.update(data, 0, len);
+        return mac.doFinal();
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    private static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    private static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+}
@@ -0,0 +1,180 @@
+package com.offsync.app.work;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.Uri;
+import android.telephony.SmsManager;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.offsync.app.SmsStatusReceiver;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.db.SmsBatchDao;
+import com.offsync.app.db.SmsBatchEntity;
+import com.offsync.app.metrics.SyncMetrics;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secondary transport for {@link LocationSyncWorker}: when the device has had no data network
+ * for a while, pack the oldest pending points into signed binary SMS (see {@link SmsBatchCodec})
+ * and send them to the configured gateway number. Points are marked uploaded only when the
+ * carrier reports delivery, and the worker steps aside as soon as data connectivity is back.
+ */
+public class SmsFallbackWorker extends Worker {
+    public static final String ACTION_BATCH_SENT = "com.offsync.app.SMS_BATCH_SENT";
+    public static final String ACTION_BATCH_DELIVERED = "com.offsync.app.SMS_BATCH_DELIVERED";
+    public static final String EXTRA_BATCH_ID = "batch_id";
+    public static final String PREF_GATEWAY_NUMBER = "sms_gateway_number";
+    public static final String PREF_ENABLED = "sms_fallback_enabled";
+    public static final short GATEWAY_PORT = 16101;
+
+    private static final String TAG = "SmsFallbackWorker";
+    private static final String UNIQUE_WORK_NAME = "offsync_sms_fallback";
+    // Only fall back once points have been stuck this long; short outages are left to the HTTP worker
+    private static final long MIN_PENDING_AGE_MS = 30 * 60 * 1000L;
+    private static final long DELIVERY_TIMEOUT_MS = 60 * 60 * 1000L;
+    private static final long RETENTION_MS = 7 * 24 * 60 * 60 * 1000L;
+    private static final int MAX_SEGMENTS_PER_RUN = 3;
+    private static final int MAX_CANDIDATES = 300;
+
+    public SmsFallbackWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    public static void schedule(Context context) {
+        // No network constraint on purpose: this is the path for when there is none
+        PeriodicWorkRequest periodic = new PeriodicWorkRequest.Builder(SmsFallbackWorker.class, 15, TimeUnit.MINUTES)
+                .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                UNIQUE_WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, periodic);
+    }
+
+    public static void cancel(Context context) {
+        WorkManager.getInstance(context).cancelUniqueWork(UNIQUE_WORK_NAME);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context ctx = getApplicationContext();
+        SharedPreferences prefs = ctx.getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+        String gateway = prefs.getString(PREF_GATEWAY_NUMBER, null);
+        if (!prefs.getBoolean(PREF_ENABLED, false) || gateway == null || gateway.isEmpty()) {
+            return Result.success();
+        }
+        if (hasDataConnectivity(ctx)) {
+            return Result.success();
+        }
+        if (ContextCompat.checkSelfPermission(ctx, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            return Result.success();
+        }
+        DeviceCredentials creds = DeviceCredentials.load(ctx);
+        if (creds.deviceId == null || creds.deviceToken == null) {
+            return Result.success();
+        }
+
+        try {
+            AppDatabase db = AppDatabase.getInstance(ctx);
+            SmsBatchDao batchDao = db.smsBatchDao();
+            long now = System.currentTimeMillis();
+            batchDao.expireSendingBefore(now - DELIVERY_TIMEOUT_MS);
+            batchDao.deleteFinishedBefore(now - RETENTION_MS);
+
+            Set<Integer> inFlight = new HashSet<>();
+            for (String ids : batchDao.getInFlightPointIds()) inFlight.addAll(parseIds(ids));
+
+            List<LocationPointEntity> candidates = new ArrayList<>();
+            for (LocationPointEntity p : db.locationDao().getPending(MAX_CANDIDATES)) {
+                if (p.id != null && !inFlight.contains(p.id)) candidates.add(p);
+            }
+            if (candidates.isEmpty()) return Result.success();
+            if (now - Instant.parse(candidates.get(0).capturedAt).toEpochMilli() < MIN_PENDING_AGE_MS) {
+                return Result.success();
+            }
+
+            List<SmsBatchCodec.Point> points = new ArrayList<>(candidates.size());
+            for (LocationPointEntity p : candidates) {
+                points.add(new SmsBatchCodec.Point(Instant.parse(p.capturedAt).toEpochMilli(), p.lat, p.lng, p.accuracyM));
+            }
+
+            byte[] key = creds.deviceToken.getBytes(StandardCharsets.UTF_8);
+            int tag = SmsBatchCodec.deviceTag(creds.deviceId);
+            long seq = batchDao.getMaxSequence() + 1;
+            SmsManager sms = SmsManager.getDefault();
+            int from = 0;
+            for (int segment = 0; segment < MAX_SEGMENTS_PER_RUN && from < points.size() && !isStopped(); segment++) {
+                SmsBatchCodec.Packed packed = SmsBatchCodec.pack(points, from, tag, seq, key, SmsBatchCodec.MAX_SEGMENT_BYTES);
+                StringBuilder ids = new StringBuilder();
+                for (int i = from; i < from + packed.count; i++) {
+                    if (ids.length() > 0) ids.append(',');
+                    ids.append(candidates.get(i).id);
+                }
+                SmsBatchEntity batch = new SmsBatchEntity();
+                batch.sequence = seq;
+                batch.pointIds = ids.toString();
+                batch.payloadBytes = packed.payload.length;
+                batch.createdAt = now;
+                long batchId = batchDao.insert(batch);
+
+                sms.sendDataMessage(gateway, null, GATEWAY_PORT, packed.payload,
+                        statusIntent(ctx, ACTION_BATCH_SENT, batchId, PendingIntent.FLAG_IMMUTABLE),
+                        statusIntent(ctx, ACTION_BATCH_DELIVERED, batchId, PendingIntent.FLAG_MUTABLE));
+                from += packed.count;
+                seq++;
+            }
+            return Result.success();
+        } catch (Exception e) {
+            Log.w(TAG, "SMS fallback run failed", e);
+            SyncMetrics.ERRORS.inc();
+            SyncMetrics.LAST_FAILURE_AT.set(System.currentTimeMillis());
+            return Result.retry();
+        }
+    }
+
+    public static boolean hasDataConnectivity(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return false;
+        Network active = cm.getActiveNetwork();
+        if (active == null) return false;
+        NetworkCapabilities caps = cm.getNetworkCapabilities(active);
+        return caps != null
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_VALIDATED);
+    }
+
+    public static List<Integer> parseIds(String csv) {
+        List<Integer> out = new ArrayList<>();
+        if (csv == null || csv.isEmpty()) return out;
+        for (String s : csv.split(",")) out.add(Integer.parseInt(s));
+        return out;
+    }
+
+    // The delivered intent must be mutable: the radio fills in the status report as "pdu" and
+    // "format" extras, and drops fill-ins on immutable intents
+    private static PendingIntent statusIntent(Context context, String action, long batchId, int mutability) {
+        Intent intent = new Intent(action);
+        intent.setClass(context, SmsStatusReceiver.class);
+        intent.setData(Uri.parse("offsync-sms://batch/" + batchId));
+        intent.putExtra(EXTRA_BATCH_ID, batchId);
+        return PendingIntent.getBroadcast(context, 0, intent, mutability);
+    }
+}
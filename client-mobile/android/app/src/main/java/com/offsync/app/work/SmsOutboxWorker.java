@@ -0,0 +1,75 @@
+package com.offsync.app.work;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import com.offsync.app.SmsOutbox;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.OutboundSmsDao;
+import com.offsync.app.db.OutboundSmsEntity;
+import com.offsync.app.metrics.SyncTrace;
+import java.util.List;
+
+/**
+ * Drains the outbound SMS queue one message at a time.
+ * Android throttles apps that send more than 30 messages in 30 minutes, so we stay below that
+ * and space consecutive sends; when the window is used up the drain reschedules itself.
+ */
+public class SmsOutboxWorker extends Worker {
+    private static final String TAG = "SmsOutboxWorker";
+    private static final long WINDOW_MS = 30 * 60 * 1000L;
+    private static final int MAX_PER_WINDOW = 25;
+    private static final long MIN_SEND_INTERVAL_MS = 1500L;
+    private static final long RETENTION_MS = 7 * 24 * 60 * 60 * 1000L;
+    private static final long SENT_REPORT_TIMEOUT_MS = 10 * 60 * 1000L;
+
+    public SmsOutboxWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        Context ctx = getApplicationContext();
+        if (ContextCompat.checkSelfPermission(ctx, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            // Leave messages queued; the next enqueue after the grant drains them
+            return Result.success();
+        }
+        try {
+            OutboundSmsDao dao = AppDatabase.getInstance(ctx).outboundSmsDao();
+            dao.expireSendingBefore(System.currentTimeMillis() - SENT_REPORT_TIMEOUT_MS, SmsOutbox.MAX_ATTEMPTS);
+            traceDepth(dao);
+            dao.deleteFinishedBefore(System.currentTimeMillis() - RETENTION_MS);
+            int dispatched = dao.countDispatchedSince(System.currentTimeMillis() - WINDOW_MS);
+            while (!isStopped()) {
+                if (dispatched >= MAX_PER_WINDOW) {
+                    SmsOutbox.scheduleDrain(ctx, WINDOW_MS / MAX_PER_WINDOW);
+                    return Result.success();
+                }
+                List<OutboundSmsEntity> next = dao.getQueued(1);
+                if (next == null || next.isEmpty()) break;
+                SmsOutbox.dispatch(ctx, next.get(0));
+                dispatched++;
+                traceDepth(dao);
+                Thread.sleep(MIN_SEND_INTERVAL_MS);
+            }
+            return Result.success();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.retry();
+        } catch (Exception e) {
+            Log.w(TAG, "SMS outbox drain failed", e);
+            return Result.retry();
+        }
+    }
+
+    // The depth is a COUNT query; only run it while a trace is recording
+    private static void traceDepth(OutboundSmsDao dao) {
+        if (SyncTrace.isActive()) SyncTrace.counter("offsync:smsOutboxDepth", dao.countQueued());
+    }
+}
@@ -0,0 +1,91 @@
+package com.offsync.app.work;
+
+import java.util.zip.Deflater;
+
+/**
+ * Chooses how a sync run uses the current network. Unmetered networks get large batches; a
+ * metered network gets small batches and spends at most {@link Config#meteredBudgetBytes}
+ * request-body bytes per hour, after which uploads wait for the next window. Bodies are
+ * gzipped on every tier: at the highest level when bytes cost money or the phone is
+ * charging, at the default level otherwise.
+ */
+public final class SyncPolicy {
+    public static final long WINDOW_MS = 60 * 60 * 1000L;
+    public static final long DEFAULT_METERED_BUDGET_BYTES = 512 * 1024L;
+    public static final int DEFAULT_EXPEDITE_BACKLOG = 500;
+    static final int BULK_BATCH_SIZE = 500;
+    static final int STANDARD_BATCH_SIZE = 50;
+    /** Bodies smaller than this go out uncompressed; gzip framing would eat the savings. */
+    static final int MIN_COMPRESS_BYTES = 1024;
+
+    public enum Tier {
+        /** Wi-Fi or another unmetered link: bulk batches, no byte limit. */
+        UNMETERED,
+        /** Cellular or hotspot: standard batches within the hourly byte budget. */
+        METERED,
+        /** Metered and this hour's budget is spent: nothing is sent until the window resets. */
+        METERED_DEFERRED
+    }
+
+    public static final class Config {
+        public final long meteredBudgetBytes;
+        public final int expediteBacklog;
+        public final int bulkBatchSize;
+        public final int standardBatchSize;
+
+        public Config(long meteredBudgetBytes, int expediteBacklog) {
+            this(meteredBudgetBytes, expediteBacklog, BULK_BATCH_SIZE, STANDARD_BATCH_SIZE);
+        }
+
+        /** Batch sizes normally come from the device's {@link RemotePolicy}. */
+        public Config(long meteredBudgetBytes, int expediteBacklog, int bulkBatchSize, int standardBatchSize) {
+            this.meteredBudgetBytes = meteredBudgetBytes;
+            this.expediteBacklog = expediteBacklog;
+            this.bulkBatchSize = bulkBatchSize;
+            this.standardBatchSize = standardBatchSize;
+        }
+    }
+
+    public static final class Decision {
+        public final Tier tier;
+        public final int batchSize;
+        public final int compressionLevel;
+        /** Request-body bytes this run may still send; {@link Long#MAX_VALUE} when unlimited. */
+        public final long remainingBytes;
+        /** Whether a catch-up run should be expedited for the current backlog. */
+        public final boolean expedite;
+
+        Decision(Tier tier, int batchSize, int compressionLevel, long remainingBytes, boolean expedite) {
+            this.tier = tier;
+            this.batchSize = batchSize;
+            this.compressionLevel = compressionLevel;
+            this.remainingBytes = remainingBytes;
+            this.expedite = expedite;
+        }
+    }
+
+    private SyncPolicy() {
+    }
+
+    /**
+     * @param usedBytes bytes already sent on metered networks in the current window, see
+     *                  {@link #usedInWindow}
+     */
+    public static Decision decide(boolean unmetered, boolean charging, int backlog, long usedBytes, Config config) {
+        boolean expedite = backlog >= config.expediteBacklog;
+        if (unmetered) {
+            int level = charging ? Deflater.BEST_COMPRESSION : Deflater.DEFAULT_COMPRESSION;
+            return new Decision(Tier.UNMETERED, config.bulkBatchSize, level, Long.MAX_VALUE, expedite);
+        }
+        long remaining = Math.max(0, config.meteredBudgetBytes - usedBytes);
+        if (remaining == 0) {
+            return new Decision(Tier.METERED_DEFERRED, config.standardBatchSize, Deflater.BEST_COMPRESSION, 0, false);
+        }
+        return new Decision(Tier.METERED, config.standardBatchSize, Deflater.BEST_COMPRESSION, remaining, expedite);
+    }
+
+    /** Bytes that still count against the budget at {@code now}; zero once the window has passed. */
+    public static long usedInWindow(long windowStart, long usedBytes, long now) {
+        return now - windowStart >= WINDOW_MS || now < windowStart ? 0 : usedBytes;
+    }
+}
@@ -0,0 +1,94 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.os.BatteryManager;
+import android.os.Build;
+
+/**
+ * Android side of {@link SyncPolicy}: reads the network and charging state, keeps the policy
+ * settings and the metered byte window in {@code app_prefs}.
+ */
+public final class SyncPolicyStore {
+    static final String PREF_METERED_BUDGET = "sync_metered_budget_bytes";
+    static final String PREF_EXPEDITE_BACKLOG = "sync_expedite_backlog";
+    private static final String PREF_WINDOW_START = "sync_budget_window_start";
+    private static final String PREF_WINDOW_BYTES = "sync_budget_window_bytes";
+
+    private SyncPolicyStore() {
+    }
+
+    public static SyncPolicy.Config config(Context context) {
+        SharedPreferences prefs = prefs(context);
+        RemotePolicy remote = RemotePolicyStore.current(context);
+        return new SyncPolicy.Config(
+                prefs.getLong(PREF_METERED_BUDGET, SyncPolicy.DEFAULT_METERED_BUDGET_BYTES),
+                prefs.getInt(PREF_EXPEDITE_BACKLOG, SyncPolicy.DEFAULT_EXPEDITE_BACKLOG),
+                remote.batchSize, remote.meteredBatchSize);
+    }
+
+    public static void setConfig(Context context, long meteredBudgetBytes, int expediteBacklog) {
+        prefs(context).edit()
+                .putLong(PREF_METERED_BUDGET, Math.max(0, meteredBudgetBytes))
+                .putInt(PREF_EXPEDITE_BACKLOG, Math.max(1, expediteBacklog))
+                .apply();
+    }
+
+    /** Decide for the network the app would use right now. */
+    public static SyncPolicy.Decision current(Context context, int backlog) {
+        return SyncPolicy.decide(isUnmetered(context), isCharging(context), backlog,
+                usedBytes(context, System.currentTimeMillis()), config(context));
+    }
+
+    /** Metered bytes already spent in the current window. */
+    public static long usedBytes(Context context, long now) {
+        SharedPreferences prefs = prefs(context);
+        return SyncPolicy.usedInWindow(prefs.getLong(PREF_WINDOW_START, 0), prefs.getLong(PREF_WINDOW_BYTES, 0), now);
+    }
+
+    /** When the current window ends, or 0 if nothing has been spent in it. */
+    public static long windowResetsAt(Context context, long now) {
+        SharedPreferences prefs = prefs(context);
+        long start = prefs.getLong(PREF_WINDOW_START, 0);
+        return usedBytes(context, now) == 0 ? 0 : start + SyncPolicy.WINDOW_MS;
+    }
+
+    /** Charge {@code bytes} sent on a metered network against the current window. */
+    public static synchronized void recordMeteredBytes(Context context, long bytes) {
+        long now = System.currentTimeMillis();
+        SharedPreferences prefs = prefs(context);
+        long used = usedBytes(context, now);
+        long start = used == 0 ? now : prefs.getLong(PREF_WINDOW_START, now);
+        prefs.edit().putLong(PREF_WINDOW_START, start).putLong(PREF_WINDOW_BYTES, used + bytes).apply();
+    }
+
+    static boolean isUnmetered(Context context) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return false;
+        Network network = cm.getActiveNetwork();
+        NetworkCapabilities caps = network == null ? null : cm.getNetworkCapabilities(network);
+        if (caps == null) return false;
+        if (caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED)) return true;
+        // Carriers can flag 5G plans as temporarily unmetered
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                && caps.hasCapability(NetworkCapabilities.NET_CAPABILITY_TEMPORARILY_NOT_METERED);
+    }
+
+    static boolean isCharging(Context context) {
+        // Sticky broadcast: returns the last battery state without registering a receiver
+        Intent battery = context.getApplicationContext()
+                .registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) return false;
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        return status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getApplicationContext().getSharedPreferences("app_prefs", Context.MODE_PRIVATE);
+    }
+}
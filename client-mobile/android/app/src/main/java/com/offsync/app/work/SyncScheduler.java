@@ -0,0 +1,97 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.OutOfQuotaPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import com.offsync.app.metrics.SyncMetrics;
+import java.util.concurrent.TimeUnit;
+
+/** Schedules {@link LocationSyncWorker} runs. */
+public final class SyncScheduler {
+    public static final String PERIODIC_WORK_NAME = "offsync_periodic_sync";
+    // Shared by one-off and periodic sync work so their state can be observed together
+    public static final String WORK_TAG = "offsync_sync";
+    static final String CATCH_UP_WORK_NAME = "offsync_catch_up_sync";
+    static final String BUDGET_WORK_NAME = "offsync_budget_resume_sync";
+
+    private SyncScheduler() {
+    }
+
+    /** Trigger a one-off sync after a write and make sure the periodic sync is scheduled. */
+    public static void scheduleAfterWrite(Context context) {
+        // The gauge is refreshed by every sync run; a large backlog gets an expedited drain instead
+        if (SyncMetrics.BACKLOG.get() >= SyncPolicyStore.config(context).expediteBacklog) {
+            scheduleCatchUp(context);
+            ensurePeriodic(context);
+            return;
+        }
+        // Trigger a one-off sync that only runs when network is connected
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(LocationSyncWorker.class)
+                .setConstraints(connected())
+                .addTag(WORK_TAG)
+                .build();
+        WorkManager.getInstance(context).enqueue(req);
+        ensurePeriodic(context);
+    }
+
+    /**
+     * Enqueue one expedited sync to drain a large backlog. Unique, so repeated calls while it is
+     * pending are no-ops; runs as ordinary work once the app's expedited quota is used up.
+     */
+    public static void scheduleCatchUp(Context context) {
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(LocationSyncWorker.class)
+                .setConstraints(connected())
+                .setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST)
+                .addTag(WORK_TAG)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(CATCH_UP_WORK_NAME, ExistingWorkPolicy.KEEP, req);
+    }
+
+    /** Resume a metered drain once the byte budget window has rolled over. */
+    static void scheduleAfterBudgetWindow(Context context, long delayMs) {
+        OneTimeWorkRequest req = new OneTimeWorkRequest.Builder(LocationSyncWorker.class)
+                .setConstraints(connected())
+                .setInitialDelay(delayMs, TimeUnit.MILLISECONDS)
+                .addTag(WORK_TAG)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(BUDGET_WORK_NAME, ExistingWorkPolicy.KEEP, req);
+    }
+
+    private static Constraints connected() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+    }
+
+    /** Make sure the periodic sync is scheduled (15 minute interval minimum). */
+    public static void ensurePeriodic(Context context) {
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME,
+                ExistingPeriodicWorkPolicy.KEEP,
+                periodic(context)
+        );
+    }
+
+    /** Apply a changed interval to the scheduled periodic sync without restarting its period. */
+    static void updatePeriodic(Context context) {
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(
+                PERIODIC_WORK_NAME,
+                ExistingPeriodicWorkPolicy.UPDATE,
+                periodic(context)
+        );
+    }
+
+    private static PeriodicWorkRequest periodic(Context context) {
+        int minutes = RemotePolicyStore.current(context).syncIntervalMinutes;
+        return new PeriodicWorkRequest.Builder(LocationSyncWorker.class, minutes, TimeUnit.MINUTES)
+                .setConstraints(connected())
+                .addTag(WORK_TAG)
+                .build();
+    }
+}
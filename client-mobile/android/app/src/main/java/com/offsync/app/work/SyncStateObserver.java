@@ -0,0 +1,145 @@
+package com.offsync.app.work;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.InvalidationTracker;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.metrics.SyncMetrics;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+
+/**
+ * Pushes queue and sync state to a listener when it changes.
+ * Room invalidations of {@code location_points} / {@code outbound_sms} and WorkManager state
+ * changes of sync work only signal a {@link CoalescingEmitter}; the DB is read at most once per
+ * {@link #MIN_INTERVAL_MS} and nothing is delivered unless the state actually changed.
+ * {@link LiveStream} connects and drops signal it too, since they change {@link State#liveConnected}.
+ */
+public final class SyncStateObserver {
+    private static final String TAG = "SyncStateObserver";
+    static final long MIN_INTERVAL_MS = 500L;
+
+    /** Immutable snapshot of what the UI shows about the queue. */
+    public static final class State {
+        public final int pending;
+        public final String oldestPendingAt;
+        public final int outboxDepth;
+        public final long lastSyncAt;
+        public final long lastFailureAt;
+        public final boolean syncing;
+        public final boolean retrying;
+        public final boolean liveConnected;
+
+        State(int pending, String oldestPendingAt, int outboxDepth, long lastSyncAt, long lastFailureAt,
+              boolean syncing, boolean retrying, boolean liveConnected) {
+            this.pending = pending;
+            this.oldestPendingAt = oldestPendingAt;
+            this.outboxDepth = outboxDepth;
+            this.lastSyncAt = lastSyncAt;
+            this.lastFailureAt = lastFailureAt;
+            this.syncing = syncing;
+            this.retrying = retrying;
+            this.liveConnected = liveConnected;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof State)) return false;
+            State s = (State) o;
+            return pending == s.pending && outboxDepth == s.outboxDepth && lastSyncAt == s.lastSyncAt
+                    && lastFailureAt == s.lastFailureAt && syncing == s.syncing && retrying == s.retrying
+                    && liveConnected == s.liveConnected && Objects.equals(oldestPendingAt, s.oldestPendingAt);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(pending, oldestPendingAt, outboxDepth, lastSyncAt, lastFailureAt, syncing, retrying, liveConnected);
+        }
+    }
+
+    private final Context context;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CoalescingEmitter<State> emitter;
+    private final InvalidationTracker.Observer tableObserver;
+    private final Observer<List<WorkInfo>> workObserver;
+    private final Runnable liveListener;
+    private LiveData<List<WorkInfo>> workInfos;
+    private volatile boolean syncing;
+    private volatile boolean retrying;
+    private boolean stopped;
+
+    public SyncStateObserver(Context context, Consumer<State> listener) {
+        this.context = context.getApplicationContext();
+        this.emitter = new CoalescingEmitter<>(executor, MIN_INTERVAL_MS, this::read, listener);
+        this.tableObserver = new InvalidationTracker.Observer("location_points", "outbound_sms") {
+            @Override
+            public void onInvalidated(Set<String> tables) {
+                emitter.signal();
+            }
+        };
+        this.workObserver = infos -> {
+            boolean running = false;
+            boolean backingOff = false;
+            if (infos != null) {
+                for (WorkInfo info : infos) {
+                    if (info.getState() == WorkInfo.State.RUNNING) running = true;
+                    if (info.getState() == WorkInfo.State.ENQUEUED && info.getRunAttemptCount() > 0) backingOff = true;
+                }
+            }
+            syncing = running;
+            retrying = backingOff;
+            emitter.signal();
+        };
+        this.liveListener = emitter::signal;
+    }
+
+    public void start() {
+        executor.execute(() -> {
+            AppDatabase.getInstance(context).getInvalidationTracker().addObserver(tableObserver);
+            emitter.signal();
+        });
+        mainHandler.post(() -> {
+            if (stopped) return;
+            workInfos = WorkManager.getInstance(context).getWorkInfosByTagLiveData(SyncScheduler.WORK_TAG);
+            workInfos.observeForever(workObserver);
+        });
+        LiveStream.addConnectionListener(liveListener);
+    }
+
+    /** Call on the main thread. Signals still in flight afterwards are dropped by the emitter. */
+    public void stop() {
+        if (stopped) return;
+        stopped = true;
+        LiveStream.removeConnectionListener(liveListener);
+        if (workInfos != null) workInfos.removeObserver(workObserver);
+        // Room wants observer changes off the main thread; the executor runs this before it shuts down
+        executor.execute(() -> AppDatabase.getInstance(context).getInvalidationTracker().removeObserver(tableObserver));
+        executor.shutdown();
+    }
+
+    private State read() {
+        try {
+            AppDatabase db = AppDatabase.getInstance(context);
+            int pending = db.locationDao().countPending();
+            SyncMetrics.BACKLOG.set(pending);
+            return new State(pending, db.locationDao().getOldestPendingCapturedAt(), db.outboundSmsDao().countQueued(),
+                    SyncMetrics.LAST_SYNC_AT.get(), SyncMetrics.LAST_FAILURE_AT.get(), syncing, retrying,
+                    LiveStream.isConnected());
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to read sync state", e);
+            return null;
+        }
+    }
+}
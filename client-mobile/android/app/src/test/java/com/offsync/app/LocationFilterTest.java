@@ -0,0 +1,167 @@
+package com.offsync.app;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class LocationFilterTest {
+    private static final double LAT0 = 12.9716;
+    private static final double LNG0 = 77.5946;
+    private static final double M_PER_DEG_LAT = 111_195;
+    private static final long T0 = 1_760_000_000_000L;
+
+    /** Walking north-east at 1.4 m/s, one GPS fix a second with about 6 m of noise. */
+    private static List<double[]> walk(int n, long seed) {
+        Random random = new Random(seed);
+        List<double[]> fixes = new ArrayList<>();
+        double mPerDegLng = M_PER_DEG_LAT * Math.cos(Math.toRadians(LAT0));
+        for (int i = 0; i < n; i++) {
+            double trueN = i * 1.0;
+            double trueE = i * 1.0;
+            double noisyN = trueN + random.nextGaussian() * 6;
+            double noisyE = trueE + random.nextGaussian() * 6;
+            fixes.add(new double[]{T0 + i * 1000L, LAT0 + noisyN / M_PER_DEG_LAT, LNG0 + noisyE / mPerDegLng,
+                    8, LAT0 + trueN / M_PER_DEG_LAT, LNG0 + trueE / mPerDegLng});
+        }
+        return fixes;
+    }
+
+    @Test
+    public void smoothingReducesErrorOnNoisyWalk() {
+        LocationFilter filter = new LocationFilter(new LocationFilter.Config());
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        double rawSq = 0, filteredSq = 0;
+        int counted = 0;
+        List<double[]> trace = walk(300, 1);
+        for (int i = 0; i < trace.size(); i++) {
+            double[] f = trace.get(i);
+            LocationFilter.Verdict v = filter.apply(fix.set((long) f[0], f[1], f[2], f[3], "gps"));
+            assertFalse("fix " + i + " " + v, v.isRejected());
+            if (i < 20) continue;
+            rawSq += sq(meters(f[1], f[2], f[4], f[5]));
+            filteredSq += sq(meters(fix.lat, fix.lng, f[4], f[5]));
+            counted++;
+        }
+        double rawRms = Math.sqrt(rawSq / counted);
+        double filteredRms = Math.sqrt(filteredSq / counted);
+        assertTrue("raw " + rawRms + " filtered " + filteredRms, filteredRms < rawRms * 0.7);
+    }
+
+    @Test
+    public void rejectsMultipathJumpAndRecoversAfterIt() {
+        LocationFilter filter = new LocationFilter(new LocationFilter.Config());
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        List<double[]> trace = walk(60, 2);
+        int rejected = 0;
+        for (int i = 0; i < trace.size(); i++) {
+            double[] f = trace.get(i);
+            double lat = f[1];
+            // Fix 30 claims 20 m accuracy but sits 400 m away
+            if (i == 30) lat += 400 / M_PER_DEG_LAT;
+            LocationFilter.Verdict v = filter.apply(fix.set((long) f[0], lat, f[2], i == 30 ? 20 : f[3], "gps"));
+            if (i == 30) {
+                assertEquals(LocationFilter.Verdict.REJECTED_SPEED, v);
+            } else if (v.isRejected()) {
+                rejected++;
+            }
+        }
+        assertEquals(0, rejected);
+    }
+
+    @Test
+    public void innovationGateCatchesPlausibleSpeedButUnlikelyFix() {
+        LocationFilter filter = new LocationFilter(new LocationFilter.Config());
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        for (double[] f : walk(40, 3)) filter.apply(fix.set((long) f[0], f[1], f[2], f[3], "gps"));
+        // 60 m sideways in 10 s is a legal speed, but not for someone walking steadily with 5 m fixes
+        long t = T0 + 49_000L;
+        double lat = LAT0 + (49 + 60) / M_PER_DEG_LAT;
+        double lng = LNG0 + 49 / (M_PER_DEG_LAT * Math.cos(Math.toRadians(LAT0)));
+        assertEquals(LocationFilter.Verdict.REJECTED_OUTLIER, filter.apply(fix.set(t, lat, lng, 5, "gps")));
+    }
+
+    @Test
+    public void accuracyGateAndProviderFloor() {
+        LocationFilter.Config config = new LocationFilter.Config();
+        LocationFilter filter = new LocationFilter(config);
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        assertEquals(LocationFilter.Verdict.REJECTED_ACCURACY, filter.apply(fix.set(T0, LAT0, LNG0, 900, "network")));
+        assertEquals(LocationFilter.Verdict.REJECTED_ACCURACY, filter.apply(fix.set(T0, LAT0, LNG0, Double.NaN, "gps")));
+        assertEquals(LocationFilter.Verdict.RESET, filter.apply(fix.set(T0, LAT0, LNG0, 5, "gps")));
+        // A network fix claiming 5 m is weighted as 25 m, so it moves the estimate far less than its offset
+        double offset = 30 / M_PER_DEG_LAT;
+        assertEquals(LocationFilter.Verdict.ACCEPTED, filter.apply(fix.set(T0 + 5_000, LAT0 + offset, LNG0, 5, "network")));
+        assertTrue((fix.lat - LAT0) < offset * 0.6);
+        assertEquals(25, config.floorFor("network"), 0);
+    }
+
+    @Test
+    public void floorPerProviderLabel() {
+        LocationFilter.Config config = new LocationFilter.Config();
+        // The labels LocationService and LocationConfig write
+        assertEquals(3, config.floorFor("gps"), 0);
+        assertEquals(25, config.floorFor("network"), 0);
+        assertEquals(25, config.floorFor("network_fallback"), 0);
+        assertEquals(10, config.floorFor("fused"), 0);
+        assertEquals(10, config.floorFor(null), 0);
+        assertEquals(10, config.floorFor("passive"), 0);
+    }
+
+    @Test
+    public void restartsAfterRepeatedRejectionsOrLongGap() {
+        LocationFilter.Config config = new LocationFilter.Config();
+        LocationFilter filter = new LocationFilter(config);
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        filter.apply(fix.set(T0, LAT0, LNG0, 5, "gps"));
+        double far = LAT0 + 0.5;
+        for (int i = 1; i <= config.maxConsecutiveRejects; i++) {
+            assertEquals(LocationFilter.Verdict.REJECTED_SPEED, filter.apply(fix.set(T0 + i * 1000L, far, LNG0, 5, "gps")));
+        }
+        assertEquals(LocationFilter.Verdict.RESET, filter.apply(fix.set(T0 + 10_000L, far, LNG0, 5, "gps")));
+        assertEquals(far, fix.lat, 0);
+        assertEquals(LocationFilter.Verdict.RESET,
+                filter.apply(fix.set(T0 + 10_000L + config.resetAfterMs + 1, LAT0, LNG0, 5, "gps")));
+    }
+
+    @Test
+    public void sameTraceGivesSameOutput() {
+        double[] a = run(walk(100, 4));
+        double[] b = run(walk(100, 4));
+        assertArrayEquals(a, b, 0);
+    }
+
+    @Test
+    public void disabledPassesEverythingThrough() {
+        LocationFilter.Config config = new LocationFilter.Config();
+        config.enabled = false;
+        LocationFilter.Fix fix = new LocationFilter.Fix().set(T0, LAT0, LNG0, 5_000, "network");
+        assertEquals(LocationFilter.Verdict.ACCEPTED, new LocationFilter(config).apply(fix));
+        assertEquals(LAT0, fix.lat, 0);
+    }
+
+    private static double[] run(List<double[]> trace) {
+        LocationFilter filter = new LocationFilter(new LocationFilter.Config());
+        LocationFilter.Fix fix = new LocationFilter.Fix();
+        double[] out = new double[trace.size() * 2];
+        for (int i = 0; i < trace.size(); i++) {
+            double[] f = trace.get(i);
+            filter.apply(fix.set((long) f[0], f[1], f[2], f[3], "gps"));
+            out[2 * i] = fix.lat;
+            out[2 * i + 1] = fix.lng;
+        }
+        return out;
+    }
+
+    private static double meters(double lat1, double lng1, double lat2, double lng2) {
+        double dn = (lat1 - lat2) * M_PER_DEG_LAT;
+        double de = (lng1 - lng2) * M_PER_DEG_LAT * Math.cos(Math.toRadians(LAT0));
+        return Math.hypot(dn, de);
+    }
+
+    private static double sq(double v) {
+        return v * v;
+    }
+}
@@ -0,0 +1,80 @@
+package com.offsync.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SmsLocationCodecTest {
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Test
+    public void humanFormFitsOneSegment() {
+        String msg = SmsLocationCodec.encode(12.9715987, 77.5945627, 4.7, NOW - 180_000L, NOW, "gps", false);
+        assertEquals("I'm here: https://maps.google.com/?q=12.9716,77.59456 ~5m 3min ago (gps)", msg);
+        assertEquals(1, SmsLocationCodec.segmentCount(msg));
+    }
+
+    @Test
+    public void coarseFixUsesFewerDecimals() {
+        String msg = SmsLocationCodec.encode(-33.8688197, 151.2092955, 1500, NOW, NOW, "network", false);
+        assertTrue(msg, msg.contains("?q=-33.87,151.21 "));
+    }
+
+    @Test
+    public void machineFormRoundTrips() {
+        String msg = SmsLocationCodec.encode(51.5007292, -0.1246254, 12, NOW - 7_200_000L, NOW, "fused", true);
+        assertTrue(SmsLocationCodec.fitsSingleSegment(msg));
+        SmsLocationCodec.Decoded d = SmsLocationCodec.decode(msg, NOW);
+        assertNotNull(d);
+        assertEquals(51.5007292, d.lat, 0.001);
+        assertEquals(-0.1246254, d.lng, 0.001);
+        assertEquals(12, d.accuracyM, 0.0);
+        assertEquals(NOW - 7_200_000L, d.fixTimeMs);
+        assertEquals("fused", d.provider);
+    }
+
+    @Test
+    public void unknownAccuracyAndTimeStillDecode() {
+        String msg = SmsLocationCodec.encode(0.5, 0.5, -1, 0, NOW, null, true);
+        SmsLocationCodec.Decoded d = SmsLocationCodec.decode(msg, NOW);
+        assertNotNull(d);
+        assertEquals(-1, d.accuracyM, 0.0);
+        assertEquals(0, d.fixTimeMs);
+        assertEquals("unknown", d.provider);
+    }
+
+    @Test
+    public void geohashLengthTracksAccuracy() {
+        assertEquals(9, SmsLocationCodec.geohashLengthFor(3));
+        assertEquals(8, SmsLocationCodec.geohashLengthFor(25));
+        assertEquals(6, SmsLocationCodec.geohashLengthFor(800));
+        assertEquals(5, SmsLocationCodec.geohashLengthFor(50_000));
+        assertEquals("u4pruydqq", SmsLocationCodec.geohashEncode(57.64911, 10.40744, 9));
+    }
+
+    @Test
+    public void segmentCounts() {
+        assertEquals(1, SmsLocationCodec.segmentCount(repeat('a', 160)));
+        assertEquals(2, SmsLocationCodec.segmentCount(repeat('a', 161)));
+        assertEquals(3, SmsLocationCodec.segmentCount(repeat('a', 307)));
+        // Extension characters take two septets
+        assertEquals(2, SmsLocationCodec.segmentCount(repeat('a', 159) + "\u20AC"));
+        // A single non-GSM character forces UCS-2
+        assertEquals(1, SmsLocationCodec.segmentCount(repeat('a', 69) + "\u0107"));
+        assertEquals(2, SmsLocationCodec.segmentCount(repeat('a', 70) + "\u0107"));
+    }
+
+    @Test
+    public void legacyLocaleFormatNeededMultipleSegments() {
+        // The old buildSmsMessage output with a narrow no-break space in the time format
+        String legacy = "I'm here: https://maps.google.com/?q=12.971598712345678,77.59456271234567"
+                + " (accuracy 5m) at 2/12/2026 3:30\u202FPM";
+        assertEquals(2, SmsLocationCodec.segmentCount(legacy));
+    }
+
+    private static String repeat(char c, int n) {
+        StringBuilder sb = new StringBuilder(n);
+        for (int i = 0; i < n; i++) sb.append(c);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package com.offsync.app;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SmsQueryDispatcherTest {
+
+    @Test
+    public void collapsesRepeatsInsideWindow() {
+        SmsQueryDispatcher d = new SmsQueryDispatcher(60_000L, 3, 300_000L);
+        assertEquals(SmsQueryDispatcher.Decision.ACCEPT, d.admit("+15551234567", 1_000L));
+        assertEquals(SmsQueryDispatcher.Decision.DUPLICATE, d.admit("+15551234567", 30_000L));
+        assertEquals(SmsQueryDispatcher.Decision.ACCEPT, d.admit("+15559876543", 30_000L));
+        assertEquals(1, d.getDuplicateCount());
+    }
+
+    @Test
+    public void throttlesOnceBucketIsEmpty() {
+        SmsQueryDispatcher d = new SmsQueryDispatcher(1_000L, 2, 600_000L);
+        assertEquals(SmsQueryDispatcher.Decision.ACCEPT, d.admit("a", 0L));
+        assertEquals(SmsQueryDispatcher.Decision.ACCEPT, d.admit("a", 2_000L));
+        assertEquals(SmsQueryDispatcher.Decision.THROTTLED, d.admit("a", 4_000L));
+        // One refill interval later a token is available again
+        assertEquals(SmsQueryDispatcher.Decision.ACCEPT, d.admit("a", 604_000L));
+        assertEquals(1, d.getThrottledCount());
+    }
+
+    @Test
+    public void concurrentCallersShareOneAcquisition() throws Exception {
+        SmsQueryDispatcher d = new SmsQueryDispatcher(60_000L, 3, 300_000L);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = pool.submit(() -> d.acquire(() -> {
+                loads.incrementAndGet();
+                release.await(5, TimeUnit.SECONDS);
+                return "fix";
+            }));
+            while (d.getAcquisitionCount() == 0) Thread.sleep(1);
+            Future<String> second = pool.submit(() -> d.acquire(() -> "other"));
+            Future<String> third = pool.submit(() -> d.acquire(() -> "other"));
+            while (d.getCoalescedCount() < 2) Thread.sleep(1);
+            release.countDown();
+            assertEquals("fix", first.get(5, TimeUnit.SECONDS));
+            assertEquals("fix", second.get(5, TimeUnit.SECONDS));
+            assertEquals("fix", third.get(5, TimeUnit.SECONDS));
+            assertEquals(1, loads.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.offsync.app;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Looper;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.db.OutboundSmsEntity;
+import com.offsync.app.db.SmsBatchEntity;
+import com.offsync.app.work.SmsFallbackWorker;
+import com.offsync.app.work.SyncTestRig;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/** Delivery reports for outbox messages and fallback batches, fed as the status-report PDUs the radio attaches. */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SmsStatusReceiverTest {
+    private SyncTestRig rig;
+    private Context context;
+    private AppDatabase db;
+    private SmsStatusReceiver receiver;
+
+    @Before
+    public void setUp() throws Exception {
+        rig = new SyncTestRig();
+        context = rig.context;
+        db = rig.db;
+        receiver = new SmsStatusReceiver();
+        IntentFilter filter = new IntentFilter(SmsFallbackWorker.ACTION_BATCH_DELIVERED);
+        filter.addAction(SmsOutbox.ACTION_SMS_DELIVERED);
+        context.registerReceiver(receiver, filter, Context.RECEIVER_NOT_EXPORTED);
+    }
+
+    @After
+    public void tearDown() {
+        context.unregisterReceiver(receiver);
+        rig.close();
+    }
+
+    @Test
+    public void tpStatusRanges() {
+        assertEquals(SmsStatusReceiver.Delivery.DELIVERED, SmsStatusReceiver.deliveryOf(0x00));
+        assertEquals(SmsStatusReceiver.Delivery.DELIVERED, SmsStatusReceiver.deliveryOf(0x1F));
+        assertEquals(SmsStatusReceiver.Delivery.PENDING, SmsStatusReceiver.deliveryOf(0x20));
+        assertEquals(SmsStatusReceiver.Delivery.PENDING, SmsStatusReceiver.deliveryOf(0x3F));
+        assertEquals(SmsStatusReceiver.Delivery.FAILED, SmsStatusReceiver.deliveryOf(0x40));
+        assertEquals(SmsStatusReceiver.Delivery.FAILED, SmsStatusReceiver.deliveryOf(0x65));
+    }
+
+    @Test
+    public void completedReportAcknowledgesThePoints() throws Exception {
+        long batchId = seedBatch();
+        deliver(batchId, statusReport(0x00));
+        waitForStatus(batchId, SmsBatchEntity.STATUS_DELIVERED);
+        assertEquals(0, (int) rig.onDb(db.locationDao()::countPending));
+    }
+
+    @Test
+    public void permanentErrorFailsTheBatch() throws Exception {
+        long batchId = seedBatch();
+        deliver(batchId, statusReport(0x41));
+        waitForStatus(batchId, SmsBatchEntity.STATUS_FAILED);
+        assertEquals(3, (int) rig.onDb(db.locationDao()::countPending));
+    }
+
+    @Test
+    public void inconclusiveReportsLeaveTheBatchInFlight() throws Exception {
+        long batchId = seedBatch();
+        // The SMSC is still trying
+        deliver(batchId, statusReport(0x30));
+        // An intent whose status report was dropped
+        deliver(batchId, null);
+        assertEquals(SmsBatchEntity.STATUS_SENDING, rig.onDb(() -> db.smsBatchDao().getById(batchId)).status);
+        assertEquals(3, (int) rig.onDb(db.locationDao()::countPending));
+    }
+
+    @Test
+    public void undeliveredOutboxMessageIsRetried() throws Exception {
+        long id = seedOutbox();
+        deliverOutbox(id, statusReport(0x41));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        OutboundSmsEntity sms = rig.onDb(() -> db.outboundSmsDao().getById(id));
+        while (!OutboundSmsEntity.STATUS_PENDING.equals(sms.status) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            sms = rig.onDb(() -> db.outboundSmsDao().getById(id));
+        }
+        // One attempt of three used: back in the queue, never stamped delivered
+        assertEquals(OutboundSmsEntity.STATUS_PENDING, sms.status);
+        assertNotNull(sms.lastError);
+        assertNull(sms.deliveredAt);
+    }
+
+    @Test
+    public void inconclusiveOutboxReportKeepsTheMessageSent() throws Exception {
+        long id = seedOutbox();
+        deliverOutbox(id, statusReport(0x20));
+        deliverOutbox(id, null);
+        OutboundSmsEntity sms = rig.onDb(() -> db.outboundSmsDao().getById(id));
+        assertEquals(OutboundSmsEntity.STATUS_SENT, sms.status);
+        assertEquals(0, sms.partsDelivered);
+        assertNull(sms.deliveredAt);
+    }
+
+    /**
+     * An SMS-STATUS-REPORT (3GPP TS 23.040 9.2.2.3) with no SMSC address, message reference 1,
+     * recipient +46708251358 and the given TP-Status.
+     */
+    private static byte[] statusReport(int tpStatus) {
+        return new byte[]{
+                0x00, // no SMSC address
+                0x06, // TP-MTI = status report, TP-MMS
+                0x01, // TP-MR
+                0x0B, (byte) 0x91, 0x64, 0x07, 0x28, 0x15, 0x53, (byte) 0xF8, // TP-RA
+                0x62, 0x01, (byte) 0x81, 0x10, 0x00, 0x00, 0x00, // TP-SCTS 2026-10-18 01:00:00
+                0x62, 0x01, (byte) 0x81, 0x10, 0x00, 0x00, 0x00, // TP-DT
+                (byte) tpStatus};
+    }
+
+    private void deliver(long batchId, byte[] pdu) {
+        Intent intent = new Intent(SmsFallbackWorker.ACTION_BATCH_DELIVERED);
+        intent.setPackage(context.getPackageName());
+        intent.putExtra(SmsFallbackWorker.EXTRA_BATCH_ID, batchId);
+        if (pdu != null) {
+            intent.putExtra("pdu", pdu);
+            intent.putExtra("format", "3gpp");
+        }
+        context.sendBroadcast(intent);
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private void deliverOutbox(long id, byte[] pdu) {
+        Intent intent = new Intent(SmsOutbox.ACTION_SMS_DELIVERED);
+        intent.setPackage(context.getPackageName());
+        intent.putExtra(SmsOutbox.EXTRA_OUTBOX_ID, id);
+        if (pdu != null) {
+            intent.putExtra("pdu", pdu);
+            intent.putExtra("format", "3gpp");
+        }
+        context.sendBroadcast(intent);
+        shadowOf(Looper.getMainLooper()).idle();
+    }
+
+    private long seedOutbox() throws Exception {
+        OutboundSmsEntity sms = new OutboundSmsEntity();
+        sms.destination = "+46708251358";
+        sms.body = "loc 12.9716,77.5946";
+        sms.status = OutboundSmsEntity.STATUS_SENT;
+        sms.partCount = 1;
+        sms.partsSent = 1;
+        sms.attempts = 1;
+        sms.dispatchedAt = System.currentTimeMillis() - 5_000;
+        sms.sentAt = System.currentTimeMillis() - 4_000;
+        return rig.onDb(() -> db.outboundSmsDao().insert(sms));
+    }
+
+    private long seedBatch() throws Exception {
+        StringBuilder ids = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            LocationPointEntity e = SyncTestRig.point(SyncTestRig.SEED_BASE + i * 1000L, 0);
+            long id = rig.onDb(() -> db.locationDao().insert(e));
+            if (ids.length() > 0) ids.append(',');
+            ids.append(id);
+        }
+        SmsBatchEntity batch = new SmsBatchEntity();
+        batch.sequence = 1;
+        batch.pointIds = ids.toString();
+        batch.payloadBytes = 120;
+        return rig.onDb(() -> db.smsBatchDao().insert(batch));
+    }
+
+    // The receiver records the report on its own thread
+    private void waitForStatus(long batchId, String status) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String seen = null;
+        while (System.nanoTime() < deadline) {
+            seen = rig.onDb(() -> db.smsBatchDao().getById(batchId)).status;
+            if (status.equals(seen)) return;
+            Thread.sleep(10);
+        }
+        assertEquals(status, seen);
+    }
+}
@@ -0,0 +1,189 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import com.offsync.app.work.SyncTestRig;
+import java.io.File;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class LegacyQueueImporterTest {
+    private static final String[] COLUMNS = {
+            "id", "capturedAt", "lat", "lng", "accuracyM", "provider", "batteryPct", "isCharging", "accuracyMode", "isUploaded"};
+    private static final long BASE = Instant.parse("2026-05-04T08:00:00Z").toEpochMilli();
+
+    private SyncTestRig rig;
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        rig = new SyncTestRig();
+        context = rig.context;
+        db = rig.db;
+        context.deleteDatabase(LegacyQueueImporter.LEGACY_DB_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(LegacyQueueImporter.LEGACY_DB_NAME);
+        rig.close();
+    }
+
+    @Test
+    public void interruptedImportResumesAndSkipsStoredPoints() throws Exception {
+        int rows = 2 * LegacyQueueImporter.PAGE_SIZE + 300;
+        writeLegacyQueue(rows);
+        // Captured after both paths were written: the native store already has these
+        for (int i = rows - 100; i < rows; i++) storeNative(i);
+
+        // The file becomes unreadable after two pages
+        AtomicInteger pages = new AtomicInteger();
+        LegacyQueueImporter.Result first = rig.onDb(() -> LegacyQueueImporter.run(context, (ctx, file) -> {
+            LegacyQueueImporter.LegacyFile legacy = openPlain(ctx, file);
+            return new LegacyQueueImporter.LegacyFile() {
+                @Override
+                public Cursor rawQuery(String sql, Object[] args) {
+                    if (sql.contains("WHERE id > ?") && pages.incrementAndGet() > 2) {
+                        throw new IllegalStateException("disk I/O error");
+                    }
+                    return legacy.rawQuery(sql, args);
+                }
+
+                @Override
+                public void close() {
+                    legacy.close();
+                }
+            };
+        }));
+        assertFalse(first.done);
+        assertEquals(2 * LegacyQueueImporter.PAGE_SIZE, first.imported);
+        assertTrue(context.getDatabasePath(LegacyQueueImporter.LEGACY_DB_NAME).exists());
+
+        // The next run starts after the last page copied
+        LegacyQueueImporter.Result second = rig.onDb(() -> LegacyQueueImporter.run(context, LegacyQueueImporterTest::openPlain));
+        assertTrue(second.done);
+        assertEquals(200, second.imported);
+        assertEquals(100, second.duplicates);
+        assertEquals(rows, (int) rig.onDb(db.locationDao()::countAll));
+        assertEquals(rows, (int) rig.onDb(db.locationDao()::countPending));
+        assertFalse(context.getDatabasePath(LegacyQueueImporter.LEGACY_DB_NAME).exists());
+
+        LegacyQueueImporter.Result third = rig.onDb(() -> LegacyQueueImporter.run(context, LegacyQueueImporterTest::openPlain));
+        assertTrue(third.done);
+        assertEquals(0, third.imported);
+        assertEquals(rows, (int) rig.onDb(db.locationDao()::countAll));
+    }
+
+    @Test
+    public void mapsAJsQueueRow() {
+        MatrixCursor c = new MatrixCursor(COLUMNS);
+        c.addRow(new Object[]{7, "2026-05-04T08:00:00.000Z", 12.9716, 77.5946, 8.5, "gps", 47.6, 1, "balanced", 1});
+        c.moveToFirst();
+
+        LocationPointEntity e = LegacyQueueImporter.toEntity(c);
+        assertNull(e.id);
+        assertEquals("2026-05-04T08:00:00.000Z", e.capturedAt);
+        assertEquals(12.9716, e.lat, 0);
+        assertEquals(77.5946, e.lng, 0);
+        assertEquals(8.5, e.accuracyM, 0);
+        assertEquals("gps", e.provider);
+        // The JS queue stored battery as REAL
+        assertEquals(Integer.valueOf(48), e.batteryPct);
+        assertEquals(Integer.valueOf(1), e.isCharging);
+        assertEquals("balanced", e.accuracyMode);
+        // Already sent by the JS sync, so the native sync must not send it again
+        assertEquals(Integer.valueOf(1), e.isUploaded);
+    }
+
+    @Test
+    public void missingOptionalValuesStayNull() {
+        // Installs from before accuracyMode was added have no such column
+        MatrixCursor c = new MatrixCursor(new String[]{"id", "capturedAt", "lat", "lng", "accuracyM", "provider", "batteryPct", "isCharging", "isUploaded"});
+        c.addRow(new Object[]{1, "2026-05-04T08:00:00Z", 1.0, 2.0, 20.0, null, null, null, 0});
+        c.moveToFirst();
+
+        LocationPointEntity e = LegacyQueueImporter.toEntity(c);
+        assertNull(e.provider);
+        assertNull(e.batteryPct);
+        assertNull(e.isCharging);
+        assertNull(e.accuracyMode);
+        assertEquals(Integer.valueOf(0), e.isUploaded);
+    }
+
+    @Test
+    public void rowsWithoutAReadableTimeAreSkipped() {
+        MatrixCursor c = new MatrixCursor(COLUMNS);
+        c.addRow(new Object[]{1, "yesterday", 1.0, 2.0, 5.0, "gps", null, null, null, 0});
+        c.addRow(new Object[]{2, null, 1.0, 2.0, 5.0, "gps", null, null, null, 0});
+        c.moveToFirst();
+        assertNull(LegacyQueueImporter.toEntity(c));
+        c.moveToNext();
+        assertNull(LegacyQueueImporter.toEntity(c));
+    }
+
+    /** The JS queue's table, as @capacitor-community/sqlite left it (one row per fix, ids from 1). */
+    private void writeLegacyQueue(int rows) {
+        File file = context.getDatabasePath(LegacyQueueImporter.LEGACY_DB_NAME);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        SQLiteDatabase legacy = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            legacy.execSQL("CREATE TABLE pending_location_points (id INTEGER PRIMARY KEY AUTOINCREMENT, capturedAt TEXT NOT NULL, "
+                    + "lat REAL NOT NULL, lng REAL NOT NULL, accuracyM REAL NOT NULL, provider TEXT, batteryPct REAL, "
+                    + "isCharging INTEGER, accuracyMode TEXT, isUploaded INTEGER DEFAULT 0)");
+            legacy.beginTransaction();
+            for (int i = 0; i < rows; i++) {
+                legacy.execSQL("INSERT INTO pending_location_points (capturedAt, lat, lng, accuracyM, provider, isUploaded) "
+                        + "VALUES (?, ?, ?, ?, ?, 0)", new Object[]{capturedAt(i), 12.9716 + i * 1e-5, 77.5946, 8.0, "gps"});
+            }
+            legacy.setTransactionSuccessful();
+            legacy.endTransaction();
+        } finally {
+            legacy.close();
+        }
+    }
+
+    private void storeNative(int i) throws Exception {
+        LocationPointEntity e = new LocationPointEntity();
+        e.capturedAt = capturedAt(i);
+        e.lat = 12.9716 + i * 1e-5;
+        e.lng = 77.5946;
+        e.accuracyM = 8;
+        e.provider = "gps";
+        e.isUploaded = 0;
+        rig.onDb(() -> db.locationDao().insert(e));
+    }
+
+    private static String capturedAt(int i) {
+        return TrackAggregator.formatTime(BASE + i * 1000L);
+    }
+
+    private static LegacyQueueImporter.LegacyFile openPlain(Context context, File file) {
+        SQLiteDatabase legacy = SQLiteDatabase.openDatabase(file.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+        return new LegacyQueueImporter.LegacyFile() {
+            @Override
+            public Cursor rawQuery(String sql, Object[] args) {
+                String[] bound = new String[args.length];
+                for (int i = 0; i < args.length; i++) bound[i] = String.valueOf(args[i]);
+                return legacy.rawQuery(sql, bound);
+            }
+
+            @Override
+            public void close() {
+                legacy.close();
+            }
+        };
+    }
+}
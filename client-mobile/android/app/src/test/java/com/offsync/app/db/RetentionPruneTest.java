@@ -0,0 +1,55 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+
+import android.content.Context;
+import com.offsync.app.work.SyncTestRig;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class RetentionPruneTest {
+    private SyncTestRig rig;
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() throws Exception {
+        rig = new SyncTestRig();
+        context = rig.context;
+        db = rig.db;
+    }
+
+    @After
+    public void tearDown() {
+        rig.close();
+    }
+
+    @Test
+    public void policyRetentionKeepsUnsentPoints() throws Exception {
+        Instant now = Instant.now();
+        insert(now.minus(40, ChronoUnit.DAYS), 1);
+        insert(now.minus(40, ChronoUnit.DAYS).plusSeconds(1), 0);
+        insert(now.minus(2, ChronoUnit.DAYS), 1);
+
+        assertEquals(1, (int) rig.onDb(() -> LocationWriter.pruneIfDue(context, 30)));
+        assertEquals(2, (int) rig.onDb(db.locationDao()::countAll));
+        assertEquals(1, (int) rig.onDb(db.locationDao()::countPending));
+
+        // Once a day at most
+        insert(now.minus(40, ChronoUnit.DAYS).plusSeconds(2), 1);
+        assertEquals(0, (int) rig.onDb(() -> LocationWriter.pruneIfDue(context, 30)));
+    }
+
+    private void insert(Instant at, int uploaded) throws Exception {
+        LocationPointEntity e = SyncTestRig.point(at.toEpochMilli(), uploaded);
+        rig.onDb(() -> db.locationDao().insert(e));
+    }
+}
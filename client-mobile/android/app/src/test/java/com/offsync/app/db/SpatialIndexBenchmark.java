@@ -0,0 +1,201 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import android.content.Context;
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+import androidx.test.core.app.ApplicationProvider;
+import java.io.File;
+import java.io.FileWriter;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Viewport and radius lookups through {@code location_rtree} against the full-scan plan over
+ * the same rows. Every query runs both ways and must return identical rows. Skipped unless
+ * {@code -Poffsync.spatial} is passed. Knobs (Gradle {@code -P} properties):
+ * <pre>
+ *   offsync.spatial.rows=1000000   points in the table
+ *   offsync.spatial.queries=200    queries per plan
+ *   offsync.spatial.boxKm=2        viewport edge
+ * </pre>
+ * Results go to stdout and {@code build/reports/spatial/spatial-index.json}. The database runs
+ * without SQLCipher here (no Android keystore on the JVM); the instrumented
+ * {@code SpatialIndexCipherTest} covers the encrypted build.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SpatialIndexBenchmark {
+    private static final String DB_NAME = "spatial-bench";
+
+    private final int rows = Integer.getInteger("offsync.spatial.rows", 1_000_000);
+    private final int queries = Integer.getInteger("offsync.spatial.queries", 200);
+    private final double boxKm = Double.parseDouble(System.getProperty("offsync.spatial.boxKm", "2"));
+
+    private Context context;
+    private AppDatabase db;
+
+    @Before
+    public void setUp() {
+        assumeTrue("spatial benchmark disabled; pass -Poffsync.spatial", System.getProperty("offsync.spatial") != null);
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DB_NAME);
+        // A private instance: the benchmark drives it from the test thread, which Robolectric makes the main thread
+        db = AppDatabase.configure(Room.databaseBuilder(context, AppDatabase.class, DB_NAME))
+                .allowMainThreadQueries()
+                .build();
+        db.getOpenHelper().getWritableDatabase();
+        assumeTrue("this SQLite has no rtree module", SpatialIndex.isEnabled());
+    }
+
+    @After
+    public void tearDown() {
+        if (db != null) db.close();
+        if (context != null) context.deleteDatabase(DB_NAME);
+    }
+
+    @Test
+    public void indexedLookupsAgainstFullScan() throws Exception {
+        long[] times = new long[rows];
+        double[][] pos = new double[rows][];
+        long seedStart = System.nanoTime();
+        seed(times, pos);
+        long seedMs = (System.nanoTime() - seedStart) / 1_000_000;
+        assertEquals(rows, countRows("location_points"));
+        assertEquals(rows, countRows("location_rtree"));
+
+        Random random = new Random(11);
+        double dLat = boxKm * 500 / SpatialQuery.METERS_PER_DEG_LAT;
+        long[] boxIndexed = new long[queries];
+        long[] boxScan = new long[queries];
+        long[] timedIndexed = new long[queries];
+        long[] timedScan = new long[queries];
+        long[] nearIndexed = new long[queries];
+        long matched = 0;
+        LocationDao dao = db.locationDao();
+        for (int q = 0; q < queries; q++) {
+            // Centre each viewport on a stored point so it is never empty
+            int i = random.nextInt(rows);
+            double dLng = dLat / Math.cos(Math.toRadians(pos[i][0]));
+            SpatialQuery.Box box = new SpatialQuery.Box(pos[i][0] - dLat, pos[i][1] - dLng, pos[i][0] + dLat, pos[i][1] + dLng);
+            long from = times[i] - 3 * 86_400_000L;
+            long to = times[i] + 4 * 86_400_000L;
+
+            matched += compare(box, null, null, boxIndexed, boxScan, q);
+            compare(box, from, to, timedIndexed, timedScan, q);
+
+            long start = System.nanoTime();
+            List<SpatialQuery.Near> near = dao.findNear(pos[i][0], pos[i][1], boxKm * 500, from, to, 100);
+            nearIndexed[q] = System.nanoTime() - start;
+            assertFalse(near.isEmpty());
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("rows", rows);
+        report.put("queries", queries);
+        report.put("boxKm", boxKm);
+        report.put("seedMs", seedMs);
+        report.put("meanRowsPerBox", (double) matched / queries);
+        report.put("box", plan(boxIndexed, boxScan));
+        report.put("boxAndWeek", plan(timedIndexed, timedScan));
+        report.put("radiusP50Ms", percentileMs(nearIndexed, 0.5));
+        report.put("dbBytes", context.getDatabasePath(DB_NAME).length());
+        System.out.println("spatial-index " + report.toString(2));
+        File out = new File("build/reports/spatial/spatial-index.json");
+        if (out.getParentFile().isDirectory() || out.getParentFile().mkdirs()) {
+            try (FileWriter w = new FileWriter(out)) {
+                w.write(report.toString(2));
+            }
+        }
+        assertTrue("index slower than a full scan", percentileMs(boxIndexed, 0.5) < percentileMs(boxScan, 0.5));
+    }
+
+    /** Run one lookup with both plans, check they agree and record their times; returns the row count. */
+    private int compare(SpatialQuery.Box box, Long from, Long to, long[] indexed, long[] scan, int q) {
+        SpatialQuery.Sql withIndex = SpatialQuery.inBox(box, from, to, SpatialQuery.NO_LIMIT, true);
+        SpatialQuery.Sql withoutIndex = SpatialQuery.inBox(box, from, to, SpatialQuery.NO_LIMIT, false);
+        long start = System.nanoTime();
+        int[] a = ids(db.locationDao().findPoints(new SimpleSQLiteQuery(withIndex.text, withIndex.args)));
+        indexed[q] = System.nanoTime() - start;
+        start = System.nanoTime();
+        int[] b = ids(db.locationDao().findPoints(new SimpleSQLiteQuery(withoutIndex.text, withoutIndex.args)));
+        scan[q] = System.nanoTime() - start;
+        assertArrayEquals(b, a);
+        return a.length;
+    }
+
+    /** A 30 s random walk spread over a metro area, written in transactions of 10k rows. */
+    private void seed(long[] times, double[][] pos) {
+        SupportSQLiteDatabase sql = db.getOpenHelper().getWritableDatabase();
+        SupportSQLiteStatement insert = sql.compileStatement("INSERT INTO location_points "
+                + "(capturedAt, lat, lng, accuracyM, provider, accuracyMode, isUploaded, claimExpiresAt) "
+                + "VALUES (?, ?, ?, 5, 'gps', 'balanced', 1, 0)");
+        Random random = new Random(7);
+        long time = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+        double lat = 12.9716;
+        double lng = 77.5946;
+        for (int written = 0; written < rows; ) {
+            int chunk = Math.min(10_000, rows - written);
+            sql.beginTransaction();
+            try {
+                for (int i = written; i < written + chunk; i++) {
+                    // Drift back towards the centre so the walk stays within ~30 km
+                    lat += (random.nextDouble() - 0.5) * 4e-3 + (12.9716 - lat) * 1e-3;
+                    lng += (random.nextDouble() - 0.5) * 4e-3 + (77.5946 - lng) * 1e-3;
+                    time += 30_000;
+                    times[i] = time;
+                    pos[i] = new double[]{lat, lng};
+                    insert.bindString(1, TrackAggregator.formatTime(time));
+                    insert.bindDouble(2, lat);
+                    insert.bindDouble(3, lng);
+                    insert.executeInsert();
+                    insert.clearBindings();
+                }
+                sql.setTransactionSuccessful();
+            } finally {
+                sql.endTransaction();
+            }
+            written += chunk;
+        }
+    }
+
+    private long countRows(String table) {
+        return db.getOpenHelper().getReadableDatabase().compileStatement("SELECT COUNT(*) FROM " + table)
+                .simpleQueryForLong();
+    }
+
+    private static int[] ids(List<LocationPointEntity> points) {
+        int[] ids = new int[points.size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = points.get(i).id;
+        return ids;
+    }
+
+    private static JSONObject plan(long[] indexed, long[] scan) throws Exception {
+        JSONObject o = new JSONObject();
+        o.put("indexedP50Ms", percentileMs(indexed, 0.5));
+        o.put("indexedP95Ms", percentileMs(indexed, 0.95));
+        o.put("scanP50Ms", percentileMs(scan, 0.5));
+        o.put("scanP95Ms", percentileMs(scan, 0.95));
+        o.put("speedupP50", percentileMs(scan, 0.5) / Math.max(1e-6, percentileMs(indexed, 0.5)));
+        return o;
+    }
+
+    private static double percentileMs(long[] nanos, double p) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(p * sorted.length))] / 1e6;
+    }
+}
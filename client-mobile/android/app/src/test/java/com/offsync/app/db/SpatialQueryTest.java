@@ -0,0 +1,109 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class SpatialQueryTest {
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+
+    @Test
+    public void boxAroundAPointCoversTheCircle() {
+        List<SpatialQuery.Box> boxes = SpatialQuery.around(LAT, LNG, 1_000);
+        assertEquals(1, boxes.size());
+        SpatialQuery.Box box = boxes.get(0);
+        // Points 999 m due north and due east are inside, and the box is not much larger
+        assertTrue(box.contains(LAT + 999 / 111_320.0, LNG));
+        assertTrue(box.contains(LAT, LNG + 999 / (111_320.0 * Math.cos(Math.toRadians(LAT)))));
+        assertEquals(2_000 / 111_320.0, box.maxLat - box.minLat, 1e-9);
+        assertTrue(box.maxLng - box.minLng < 2 * 1_050 / (111_320.0 * Math.cos(Math.toRadians(LAT))));
+    }
+
+    @Test
+    public void circleAcrossTheAntimeridianIsSplit() {
+        List<SpatialQuery.Box> boxes = SpatialQuery.around(-16.5, 179.99, 5_000);
+        assertEquals(2, boxes.size());
+        assertEquals(180, boxes.get(0).maxLng, 0);
+        assertEquals(-180, boxes.get(1).minLng, 0);
+        assertTrue(boxes.get(1).contains(-16.5, -179.99));
+        assertTrue(boxes.get(0).contains(-16.5, 179.97));
+    }
+
+    @Test
+    public void circleOverAPoleCoversEveryLongitude() {
+        List<SpatialQuery.Box> boxes = SpatialQuery.around(89.99, 10, 5_000);
+        assertEquals(1, boxes.size());
+        assertEquals(-180, boxes.get(0).minLng, 0);
+        assertEquals(180, boxes.get(0).maxLng, 0);
+        assertEquals(90, boxes.get(0).maxLat, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invertedBoxIsRejected() {
+        new SpatialQuery.Box(13, LNG, 12, LNG + 1);
+    }
+
+    @Test
+    public void indexedPlanWidensTimeToWholeSecondsAndRechecksExactly() {
+        SpatialQuery.Box box = new SpatialQuery.Box(12, 77, 13, 78);
+        long from = Instant.parse("2026-05-04T08:00:00.500Z").toEpochMilli();
+        long to = Instant.parse("2026-05-04T09:00:00.250Z").toEpochMilli();
+
+        SpatialQuery.Sql indexed = SpatialQuery.inBox(box, from, to, 50, true);
+        SpatialQuery.Sql scan = SpatialQuery.inBox(box, from, to, 50, false);
+
+        assertTrue(indexed.text.contains("location_rtree"));
+        assertFalse(scan.text.contains("location_rtree"));
+        assertEquals(from / 1000, indexed.args[4]);
+        assertEquals(to / 1000 + 1, indexed.args[5]);
+        // Both plans end with the same exact predicates and arguments
+        assertEquals(scan.text.substring(scan.text.indexOf("p.lat >=")), indexed.text.substring(indexed.text.indexOf("p.lat >=")));
+        for (int i = 0; i < scan.args.length; i++) {
+            assertEquals(scan.args[scan.args.length - 1 - i], indexed.args[indexed.args.length - 1 - i]);
+        }
+        assertEquals("2026-05-04T08:00:00.500Z", scan.args[4]);
+        assertEquals(50, scan.args[scan.args.length - 1]);
+    }
+
+    @Test
+    public void wholeSecondBoundsAreComparedInTheStoredForm() {
+        long from = Instant.parse("2026-05-04T08:00:00Z").toEpochMilli();
+        SpatialQuery.Sql sql = SpatialQuery.inBox(new SpatialQuery.Box(12, 77, 13, 78), from, from + 3_600_000L, 50, false);
+        // capturedAt comes from JS toISOString(); Instant.toString() would drop the zero millis
+        assertEquals("2026-05-04T08:00:00.000Z", sql.args[4]);
+        assertEquals("2026-05-04T09:00:00.000Z", sql.args[5]);
+        assertTrue("2026-05-04T08:00:00.400Z".compareTo((String) sql.args[4]) >= 0);
+        assertTrue("2026-05-04T09:00:00.400Z".compareTo((String) sql.args[5]) >= 0);
+    }
+
+    @Test
+    public void openTimeBoundsAddNoTimePredicates() {
+        SpatialQuery.Sql sql = SpatialQuery.inBox(new SpatialQuery.Box(12, 77, 13, 78), null, null, SpatialQuery.NO_LIMIT, true);
+        assertFalse(sql.text.contains("maxT"));
+        assertFalse(sql.text.contains("capturedAt >="));
+        assertEquals(9, sql.args.length);
+    }
+
+    @Test
+    public void nearestKeepsPointsInsideTheRadiusSortedByDistance() {
+        List<LocationPointEntity> candidates = new ArrayList<>();
+        // 300 m, 100 m, 1.5 km and 50 m north of the centre
+        for (double m : new double[]{300, 100, 1_500, 50}) {
+            LocationPointEntity p = new LocationPointEntity();
+            p.lat = LAT + m / 111_195.0;
+            p.lng = LNG;
+            candidates.add(p);
+        }
+
+        List<SpatialQuery.Near> near = SpatialQuery.nearest(candidates, LAT, LNG, 1_000, 10);
+        assertEquals(3, near.size());
+        assertEquals(50, near.get(0).distanceM, 1);
+        assertEquals(100, near.get(1).distanceM, 1);
+        assertEquals(300, near.get(2).distanceM, 1);
+        assertEquals(2, SpatialQuery.nearest(candidates, LAT, LNG, 1_000, 2).size());
+    }
+}
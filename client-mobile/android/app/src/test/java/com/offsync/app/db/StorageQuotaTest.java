@@ -0,0 +1,112 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StorageQuotaTest {
+    private static final long MB = 1024 * 1024;
+    private final StorageQuota.Config config = new StorageQuota.Config(100_000, 64 * MB, 200 * MB, 5_000);
+
+    @Test
+    public void withinQuotaNeedsNothing() {
+        assertEquals(0, StorageQuota.overage(config, 80_000, 30 * MB));
+        assertEquals(0, StorageQuota.overage(config, 0, 0));
+        assertEquals(0, StorageQuota.lowDiskShed(config, 80_000, 30 * MB, 10_000 * MB));
+    }
+
+    @Test
+    public void overageTakesTheTighterOfRowsAndBytes() {
+        assertEquals(20_000, StorageQuota.overage(config, 120_000, 30 * MB));
+        // 80 MB over 80k rows, so a fifth of the bytes is a fifth of the rows
+        assertEquals(16_000, StorageQuota.overage(config, 80_000, 80 * MB));
+    }
+
+    @Test
+    public void lowDiskShedsAShareEvenUnderQuota() {
+        assertEquals(0, StorageQuota.overage(config, 50_000, 10 * MB));
+        assertEquals(5_000, StorageQuota.lowDiskShed(config, 50_000, 10 * MB, 100 * MB));
+    }
+
+    @Test
+    public void lowDiskShedStopsAtTheShortfall() {
+        // 100 KB short at ~210 bytes a row: other apps filled the disk, not this table
+        assertEquals(489, StorageQuota.lowDiskShed(config, 100_000, 20 * MB, 200 * MB - 100 * 1024));
+    }
+
+    @Test
+    public void overageNeverReachesTheProtectedTail() {
+        StorageQuota.Config tight = new StorageQuota.Config(1_000, 0, 0, 5_000);
+        assertEquals(1_000, StorageQuota.overage(tight, 6_000, 10 * MB));
+        assertEquals(0, StorageQuota.overage(tight, 4_000, 10 * MB));
+        StorageQuota.Config lowDisk = new StorageQuota.Config(1_000_000, 0, 200 * MB, 5_000);
+        assertEquals(600, StorageQuota.lowDiskShed(lowDisk, 6_000, 10 * MB, 0));
+        assertEquals(0, StorageQuota.lowDiskShed(lowDisk, 4_000, 10 * MB, 0));
+    }
+
+    @Test
+    public void thinningHitsTargetAndSparesNewestPoints() {
+        int n = 36_000;
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) times[i] = i * 1_000L;
+        boolean[] drop = new boolean[n];
+        int target = 10_000;
+        assertEquals(target, StorageQuota.selectThinning(times, n, 5_000, target, drop));
+        int dropped = 0;
+        for (int i = 0; i < n; i++) {
+            if (!drop[i]) continue;
+            assertTrue("protected row " + i + " dropped", i < n - 5_000);
+            dropped++;
+        }
+        assertEquals(target, dropped);
+        assertFalse("oldest survivor anchors the trace", drop[0]);
+    }
+
+    @Test
+    public void olderPointsAreThinnedHarder() {
+        int n = 40_000;
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++) times[i] = i * 5_000L;
+        boolean[] drop = new boolean[n];
+        StorageQuota.selectThinning(times, n, 0, 30_000, drop);
+        int keptOldest = kept(drop, 0, 10_000);
+        int keptNewest = kept(drop, 30_000, 40_000);
+        assertTrue("oldest " + keptOldest + " newest " + keptNewest, keptOldest < keptNewest);
+        // Survivors in the oldest quarter stay spread out rather than cut to a contiguous block
+        long span = lastKept(drop, times, 0, 10_000) - firstKept(drop, times, 0, 10_000);
+        assertTrue(span > times[10_000 - 1] / 2);
+    }
+
+    @Test
+    public void sparsePointsFallBackToOldestFirst() {
+        long day = 86_400_000L;
+        long[] times = {0, 40 * day, 80 * day, 120 * day, 160 * day, 200 * day};
+        boolean[] drop = new boolean[times.length];
+        assertEquals(2, StorageQuota.selectThinning(times, times.length, 2, 2, drop));
+        assertArrayEquals(new boolean[]{false, true, true, false, false, false}, drop);
+    }
+
+    @Test
+    public void nothingEligibleSelectsNothing() {
+        long[] times = {1, 2, 3};
+        boolean[] drop = new boolean[3];
+        assertEquals(0, StorageQuota.selectThinning(times, 3, 3, 10, drop));
+        assertEquals(0, StorageQuota.selectThinning(times, 3, 0, 0, drop));
+    }
+
+    private static int kept(boolean[] drop, int from, int to) {
+        int k = 0;
+        for (int i = from; i < to; i++) if (!drop[i]) k++;
+        return k;
+    }
+
+    private static long firstKept(boolean[] drop, long[] times, int from, int to) {
+        for (int i = from; i < to; i++) if (!drop[i]) return times[i];
+        return -1;
+    }
+
+    private static long lastKept(boolean[] drop, long[] times, int from, int to) {
+        for (int i = to - 1; i >= from; i--) if (!drop[i]) return times[i];
+        return -1;
+    }
+}
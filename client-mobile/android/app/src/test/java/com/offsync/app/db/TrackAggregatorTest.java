@@ -0,0 +1,118 @@
+package com.offsync.app.db;
+
+import static org.junit.Assert.*;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import org.junit.Test;
+
+public class TrackAggregatorTest {
+    private static final long T0 = Instant.parse("2026-05-04T08:00:00Z").toEpochMilli();
+    private static final long MINUTE = 60_000L;
+    // About 111 m per 0.001 degree of latitude
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+
+    @Test
+    public void distanceIsTheSumOfHops() {
+        TrackAggregator.State state = new TrackAggregator.State();
+        TrackAggregator.Step step = new TrackAggregator.Step();
+        double total = 0;
+        double expected = 0;
+        for (int i = 0; i < 20; i++) {
+            TrackAggregator.advance(state, T0 + i * MINUTE, LAT + i * 0.001, LNG, step);
+            total += step.distanceM;
+            if (i > 0) expected += TrackAggregator.distanceM(LAT + (i - 1) * 0.001, LNG, LAT + i * 0.001, LNG);
+            assertEquals(TrackAggregator.StopChange.NONE, step.stop);
+        }
+        assertEquals(expected, total, 1e-6);
+        assertEquals(19 * 111.2, total, 19 * 0.5);
+    }
+
+    @Test
+    public void stayingPutOpensOneStopAndAccruesDwell() {
+        TrackAggregator.State state = new TrackAggregator.State();
+        TrackAggregator.Step step = new TrackAggregator.Step();
+        int opened = 0;
+        long dwell = 0;
+        double jitterAfterOpen = 0;
+        for (int i = 0; i <= 30; i++) {
+            // Jitter of a few metres around one place
+            double lat = LAT + (i % 3 - 1) * 0.00003;
+            TrackAggregator.advance(state, T0 + i * MINUTE, lat, LNG, step);
+            if (step.stop == TrackAggregator.StopChange.OPENED) {
+                opened++;
+                state.openStopId = 42;
+                assertEquals(T0, state.clusterStartAt);
+            } else if (step.stop == TrackAggregator.StopChange.EXTENDED) {
+                jitterAfterOpen += step.distanceM;
+            }
+            dwell += step.dwellMs;
+        }
+        assertEquals(1, opened);
+        assertEquals(30 * MINUTE, dwell);
+        assertEquals(0, jitterAfterOpen, 0);
+        assertEquals(31, state.clusterCount);
+        assertEquals(LAT, TrackAggregator.stopLat(state), 0.00003);
+    }
+
+    @Test
+    public void leavingClosesTheStop() {
+        TrackAggregator.State state = new TrackAggregator.State();
+        TrackAggregator.Step step = new TrackAggregator.Step();
+        for (int i = 0; i <= 10; i++) {
+            TrackAggregator.advance(state, T0 + i * MINUTE, LAT, LNG, step);
+            if (step.stop == TrackAggregator.StopChange.OPENED) state.openStopId = 7;
+        }
+        assertEquals(7, state.openStopId);
+
+        TrackAggregator.advance(state, T0 + 11 * MINUTE, LAT + 0.01, LNG, step);
+
+        assertEquals(TrackAggregator.StopChange.NONE, step.stop);
+        assertEquals(0, state.openStopId);
+        assertEquals(T0 + 11 * MINUTE, state.clusterStartAt);
+        assertEquals(1_112, step.distanceM, 5);
+    }
+
+    @Test
+    public void shortPauseIsNotAStop() {
+        TrackAggregator.State state = new TrackAggregator.State();
+        TrackAggregator.Step step = new TrackAggregator.Step();
+        for (int i = 0; i < 4; i++) {
+            TrackAggregator.advance(state, T0 + i * MINUTE, LAT, LNG, step);
+            assertEquals(TrackAggregator.StopChange.NONE, step.stop);
+        }
+        TrackAggregator.advance(state, T0 + 4 * MINUTE, LAT + 0.01, LNG, step);
+        assertEquals(TrackAggregator.StopChange.NONE, step.stop);
+        assertEquals(0, step.dwellMs);
+    }
+
+    @Test
+    public void outOfOrderPointLeavesTheStateAlone() {
+        TrackAggregator.State state = new TrackAggregator.State();
+        TrackAggregator.Step step = new TrackAggregator.Step();
+        TrackAggregator.advance(state, T0 + 10 * MINUTE, LAT, LNG, step);
+
+        TrackAggregator.advance(state, T0, LAT + 0.05, LNG, step);
+
+        assertTrue(step.outOfOrder);
+        assertEquals(0, step.distanceM, 0);
+        assertEquals(T0 + 10 * MINUTE, state.lastAt);
+        assertEquals(LAT, state.lastLat, 0);
+    }
+
+    @Test
+    public void keysAndTimes() {
+        ZoneId kolkata = ZoneId.of("Asia/Kolkata");
+        // 20:00 UTC is already the next day in India
+        long late = Instant.parse("2026-05-04T20:00:00Z").toEpochMilli();
+        assertEquals("2026-05-04", TrackAggregator.dayOf(late, ZoneId.of("UTC")));
+        assertEquals("2026-05-05", TrackAggregator.dayOf(late, kolkata));
+        assertEquals(Instant.parse("2026-05-04T20:00:00Z").toEpochMilli(),
+                TrackAggregator.hourOf(late + 59 * MINUTE));
+        assertEquals(late, TrackAggregator.parseTime("2026-05-04T20:00:00Z"));
+        assertEquals(late, TrackAggregator.parseTime("2026-05-05T01:30:00+05:30"));
+        assertEquals(-1, TrackAggregator.parseTime("yesterday"));
+        assertEquals(-1, TrackAggregator.parseTime(null));
+    }
+}
@@ -0,0 +1,34 @@
+package com.offsync.app.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SyncMetricsTest {
+
+    @Test
+    public void histogramReportsBucketPercentiles() {
+        SyncMetrics.Histogram h = new SyncMetrics.Histogram("test");
+        for (int i = 0; i < 90; i++) h.record(40);
+        for (int i = 0; i < 10; i++) h.record(4_000);
+        assertEquals(100, h.count());
+        assertEquals(50, h.percentile(0.50));
+        assertEquals(5_000, h.percentile(0.95));
+        assertEquals(4_000, h.max());
+        assertEquals(436, h.mean());
+    }
+
+    @Test
+    public void overflowBucketReportsMax() {
+        SyncMetrics.Histogram h = new SyncMetrics.Histogram("test");
+        h.record(120_000);
+        assertEquals(120_000, h.percentile(0.99));
+    }
+
+    @Test
+    public void emptyHistogramIsZero() {
+        SyncMetrics.Histogram h = new SyncMetrics.Histogram("test");
+        assertEquals(0, h.percentile(0.5));
+        assertEquals(0, h.mean());
+    }
+}
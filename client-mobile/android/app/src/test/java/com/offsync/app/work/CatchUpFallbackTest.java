@@ -0,0 +1,176 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import androidx.work.ListenableWorker;
+import androidx.work.testing.TestWorkerBuilder;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.UploadSegmentEntity;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * A backlog above the catch-up threshold against a server that only has the batch route: the
+ * run must still drain it in batches, and later runs must not try segments again.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class CatchUpFallbackTest {
+    private static final int POINTS = CatchUpSync.THRESHOLD_POINTS + 1_000;
+
+    private SyncTestRig rig;
+    private AppDatabase db;
+    private MockWebServer server;
+    private final AtomicInteger segmentRequests = new AtomicInteger();
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicInteger commits = new AtomicInteger();
+    private volatile int segmentStatus = 404;
+    /** Where the server says a half-sent segment stands; negative while segment routes answer {@link #segmentStatus}. */
+    private volatile long segmentOffset = -1;
+    private final ExecutorService workerExecutor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        rig = new SyncTestRig();
+        db = rig.db;
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                if (path.startsWith(SegmentUploader.PATH)) {
+                    segmentRequests.incrementAndGet();
+                    if (segmentOffset < 0) return new MockResponse().setResponseCode(segmentStatus);
+                    return segment(request);
+                }
+                if (path.equals("/ingest/locations")) {
+                    batchRequests.incrementAndGet();
+                    return new MockResponse().setResponseCode(201).setBody("{\"ok\":true}");
+                }
+                return new MockResponse().setResponseCode(404);
+            }
+        });
+        server.start();
+
+        rig.connect(server, "catch-up-device", "catch-up-device-token");
+        rig.network(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+        workerExecutor.shutdownNow();
+        rig.close();
+    }
+
+    @Test
+    public void missingSegmentRoutesFallBackToBatches() throws Exception {
+        rig.seed(0, POINTS);
+
+        assertTrue(runWorker() instanceof ListenableWorker.Result.Success);
+        assertEquals(1, segmentRequests.get());
+        assertEquals(0, (int) rig.onDb(db.locationDao()::countPending));
+        assertTrue(rig.onDb(db.uploadSegmentDao()::getSealed).isEmpty());
+        assertTrue(batchRequests.get() > 1);
+
+        // The next large backlog goes straight to batches
+        rig.seed(POINTS, POINTS);
+        assertTrue(runWorker() instanceof ListenableWorker.Result.Success);
+        assertEquals(1, segmentRequests.get());
+        assertEquals(0, (int) rig.onDb(db.locationDao()::countPending));
+    }
+
+    @Test
+    public void lapsedSegmentHoldGoesOutInBatches() throws Exception {
+        segmentStatus = 503;
+        rig.seed(0, 3_000);
+        long now = System.currentTimeMillis();
+        // A segment the server kept failing; its hold has lapsed
+        rig.onDb(() -> db.locationDao().claimPendingAfter(0, "seg-stale", now, now - 1, 2_000));
+        File file = segmentFile("seg-stale", 64);
+        UploadSegmentEntity segment = segment("seg-stale", file, 2_000);
+        rig.onDb(() -> db.uploadSegmentDao().insert(segment));
+
+        // The open fails, and the backlog lane takes over the lapsed rows
+        assertTrue(runWorker() instanceof ListenableWorker.Result.Success);
+        assertEquals(1, segmentRequests.get());
+        assertEquals(0, (int) rig.onDb(db.locationDao()::countPending));
+
+        // The next run drops the segment without asking the server again
+        rig.seed(3_000, 10);
+        assertTrue(runWorker() instanceof ListenableWorker.Result.Success);
+        assertEquals(1, segmentRequests.get());
+        assertTrue(rig.onDb(db.uploadSegmentDao()::getSealed).isEmpty());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void halfSentSegmentResumesWithoutNewPoints() throws Exception {
+        rig.seed(0, 2_000);
+        long now = System.currentTimeMillis();
+        // A segment holding every pending row, stopped halfway by an earlier run
+        rig.onDb(() -> db.locationDao().claimPendingAfter(0, "seg-half", now, now + CatchUpSync.SEGMENT_LEASE_MS, 2_000));
+        File file = segmentFile("seg-half", 64 * 1024);
+        UploadSegmentEntity segment = segment("seg-half", file, 2_000);
+        segment.uploadedBytes = file.length() / 2;
+        rig.onDb(() -> db.uploadSegmentDao().insert(segment));
+        segmentOffset = segment.uploadedBytes;
+
+        // The live lane finds nothing to claim; the run still finishes the segment
+        assertTrue(runWorker() instanceof ListenableWorker.Result.Success);
+        assertEquals(1, commits.get());
+        assertEquals(0, batchRequests.get());
+        assertEquals(0, (int) rig.onDb(db.locationDao()::countPending));
+        assertTrue(rig.onDb(db.uploadSegmentDao()::getSealed).isEmpty());
+        assertFalse(file.exists());
+    }
+
+    /** Open reports {@link #segmentOffset}, chunks are taken as they come, and commit accepts. */
+    private MockResponse segment(RecordedRequest request) {
+        String path = request.getPath();
+        if (path.equals(SegmentUploader.PATH)) return new MockResponse().setBody("{\"offset\":" + segmentOffset + "}");
+        if (path.endsWith("/commit")) {
+            commits.incrementAndGet();
+            return new MockResponse().setBody("{\"inserted\":0}");
+        }
+        segmentOffset = Long.parseLong(request.getHeader(SegmentUploader.OFFSET_HEADER)) + request.getBodySize();
+        return new MockResponse().setResponseCode(204).addHeader(SegmentUploader.OFFSET_HEADER, segmentOffset);
+    }
+
+    private File segmentFile(String segmentId, int bytes) throws Exception {
+        File dir = new File(rig.context.getNoBackupFilesDir(), "segments");
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+        File file = new File(dir, segmentId + ".ndjson.gz");
+        Files.write(file.toPath(), new byte[bytes]);
+        return file;
+    }
+
+    private static UploadSegmentEntity segment(String segmentId, File file, int points) {
+        UploadSegmentEntity segment = new UploadSegmentEntity();
+        segment.segmentId = segmentId;
+        segment.firstPointId = 1;
+        segment.lastPointId = points;
+        segment.pointCount = points;
+        segment.byteCount = file.length();
+        segment.sha256 = "00";
+        segment.fileName = file.getName();
+        return segment;
+    }
+
+    private ListenableWorker.Result runWorker() throws Exception {
+        return rig.onDb(() -> TestWorkerBuilder.from(rig.context, LocationSyncWorker.class, workerExecutor).build().doWork());
+    }
+}
@@ -0,0 +1,85 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class CoalescingEmitterTest {
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicInteger reads = new AtomicInteger();
+    private final AtomicInteger value = new AtomicInteger();
+    private final List<Integer> delivered = new CopyOnWriteArrayList<>();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void burstIsReadOnceAndDeliveredOnce() throws Exception {
+        CoalescingEmitter<Integer> emitter = emitter(200);
+        for (int i = 0; i < 100; i++) emitter.signal();
+        drain();
+        assertEquals(1, reads.get());
+        assertEquals(List.of(0), delivered);
+    }
+
+    @Test
+    public void unchangedValueIsNotDeliveredAgain() throws Exception {
+        CoalescingEmitter<Integer> emitter = emitter(0);
+        emitter.signal();
+        drain();
+        emitter.signal();
+        drain();
+        value.set(5);
+        emitter.signal();
+        drain();
+        assertEquals(3, reads.get());
+        assertEquals(List.of(0, 5), delivered);
+    }
+
+    @Test
+    public void signalAfterShutdownIsDropped() throws Exception {
+        CoalescingEmitter<Integer> emitter = emitter(0);
+        executor.shutdown();
+        // A Room or LiveData callback racing the owner's stop must not throw
+        emitter.signal();
+        emitter.signal();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, reads.get());
+    }
+
+    @Test
+    public void signalsAfterARunWaitForTheInterval() throws Exception {
+        CoalescingEmitter<Integer> emitter = emitter(300);
+        emitter.signal();
+        drain();
+        long start = System.nanoTime();
+        value.set(1);
+        emitter.signal();
+        emitter.signal();
+        while (delivered.size() < 2 && System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5)) Thread.sleep(10);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+        assertEquals(2, reads.get());
+        assertEquals(List.of(0, 1), delivered);
+    }
+
+    private CoalescingEmitter<Integer> emitter(long minIntervalMs) {
+        return new CoalescingEmitter<>(executor, minIntervalMs, () -> {
+            reads.incrementAndGet();
+            return value.get();
+        }, delivered::add);
+    }
+
+    /** Wait until everything scheduled with no delay so far has run. */
+    private void drain() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,41 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+public class GzipEncoderTest {
+    @Test
+    public void roundTripsThroughGzipInputStream() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            sb.append("{\"capturedAt\":\"2026-10-18T10:00:").append(i % 60).append("Z\",\"lat\":12.97").append(i).append("},");
+        }
+        byte[] plain = sb.toString().getBytes(StandardCharsets.UTF_8);
+        try (GzipEncoder gzip = new GzipEncoder(16)) {
+            for (int level : new int[]{Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION}) {
+                gzip.encode(plain, 0, plain.length, level);
+                assertTrue(gzip.length() < plain.length / 4);
+                assertArrayEquals(plain, gunzip(gzip.buffer(), gzip.length()));
+            }
+            // Reuse with a slice of the input
+            gzip.encode(plain, 10, 5, Deflater.DEFAULT_COMPRESSION);
+            assertEquals(new String(plain, 10, 5, StandardCharsets.UTF_8),
+                    new String(gunzip(gzip.buffer(), gzip.length()), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static byte[] gunzip(byte[] data, int len) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(data, 0, len))) {
+            byte[] buf = new byte[4096];
+            for (int n; (n = in.read(buf)) > 0; ) out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+}
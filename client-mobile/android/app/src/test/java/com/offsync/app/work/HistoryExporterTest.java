@@ -0,0 +1,119 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import com.offsync.app.db.LocationBatch;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class HistoryExporterTest {
+    /** In-memory table of {@code count} rows with ids 1..count; every third row is uploaded. */
+    private static HistoryExporter.RowSource rows(int count) {
+        return (afterId, out) -> {
+            out.clear();
+            for (long id = afterId + 1; id <= count && !out.isFull(); id++) {
+                int row = out.size;
+                out.add(id, "2026-10-18T10:00:00Z", 12.5 + id * 1e-5, 77.25, 4.5, id % 2 == 0 ? "gps" : "net,work",
+                        id % 5 == 0 ? null : 80, null, null);
+                out.isUploaded[row] = (byte) (id % 3 == 0 ? 1 : 0);
+            }
+            return out.size;
+        };
+    }
+
+    @Test
+    public void ndjsonRoundTripsThroughGzipAcrossPages() throws Exception {
+        int count = HistoryExporter.PAGE_SIZE * 2 + 7;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<Long> progress = new ArrayList<>();
+        long written;
+        try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+            written = HistoryExporter.export(rows(count), HistoryExporter.Format.NDJSON, gz, () -> false, progress::add);
+        }
+        assertEquals(count, written);
+        assertEquals(Long.valueOf(count), progress.get(progress.size() - 1));
+
+        List<String> lines = readLines(bytes.toByteArray());
+        assertEquals(count, lines.size());
+        for (int i = 0; i < count; i++) {
+            JSONObject o = new JSONObject(lines.get(i));
+            long id = i + 1;
+            assertEquals(id, o.getLong("id"));
+            assertEquals(id % 3 == 0, o.getBoolean("isUploaded"));
+            assertEquals(id % 5 != 0, o.has("batteryPct"));
+        }
+    }
+
+    @Test
+    public void csvHasHeaderAndQuotesText() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        HistoryExporter.export(rows(3), HistoryExporter.Format.CSV, bytes, () -> false, null);
+        String[] lines = bytes.toString("UTF-8").split("\r\n");
+        assertEquals(4, lines.length);
+        assertEquals(CsvBatchWriter.HEADER.trim(), lines[0]);
+        assertEquals("1,2026-10-18T10:00:00Z,12.50001,77.25,4.5,\"net,work\",80,,,0", lines[1]);
+        assertEquals("3,2026-10-18T10:00:00Z,12.50003,77.25,4.5,\"net,work\",80,,,1", lines[3]);
+    }
+
+    @Test
+    public void cancellationStopsBetweenPages() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long[] seen = {0};
+        try {
+            HistoryExporter.export(rows(HistoryExporter.PAGE_SIZE * 10), HistoryExporter.Format.NDJSON, bytes,
+                    () -> seen[0] >= HistoryExporter.PAGE_SIZE * 2, rows -> seen[0] = rows);
+            fail("expected cancellation");
+        } catch (CancellationException expected) {
+            assertEquals(HistoryExporter.PAGE_SIZE * 2, seen[0]);
+        }
+    }
+
+    @Test
+    public void unknownFormatFallsBackToNdjson() {
+        assertEquals(HistoryExporter.Format.CSV, HistoryExporter.Format.of("CSV"));
+        assertEquals(HistoryExporter.Format.NDJSON, HistoryExporter.Format.of("parquet"));
+        assertEquals(HistoryExporter.Format.NDJSON, HistoryExporter.Format.of(null));
+    }
+
+    @Test
+    public void exportsOlderThanADayAreDeleted() throws Exception {
+        File dir = Files.createTempDirectory("exports").toFile();
+        long now = System.currentTimeMillis();
+        File fresh = touch(dir, "offsync-history-2.ndjson.gz", now - 60_000);
+        File old = touch(dir, "offsync-history-1.csv.gz", now - HistoryExport.MAX_AGE_MS - 60_000);
+        File orphan = touch(dir, "offsync-history-0.csv.gz.partial", now - HistoryExport.MAX_AGE_MS - 1);
+
+        assertEquals(2, HistoryExport.deleteStale(dir, now));
+        assertTrue(fresh.exists());
+        assertFalse(old.exists());
+        assertFalse(orphan.exists());
+    }
+
+    private static File touch(File dir, String name, long modifiedAt) throws Exception {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), new byte[16]);
+        assertTrue(f.setLastModified(modifiedAt));
+        return f;
+    }
+
+    private static List<String> readLines(byte[] gzipped) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped)), StandardCharsets.UTF_8))) {
+            for (String line; (line = r.readLine()) != null; ) lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,227 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IngestEndpointsTest {
+    private static final String TOKEN = "device-token";
+    private static final String PATH = "/ingest/locations";
+    private static final String BODY = "[{\"lat\":1.5}]";
+
+    private final MockWebServer eu = new MockWebServer();
+    private final MockWebServer us = new MockWebServer();
+    private final AtomicLong now = new AtomicLong(1_760_000_000_000L);
+    // No transparent retry, so a dropped connection reaches the endpoint list like a lost region would
+    private final OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build();
+
+    @Before
+    public void setUp() throws Exception {
+        eu.start();
+        us.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        eu.shutdown();
+        us.shutdown();
+    }
+
+    @Test
+    public void failsOverAndSignsThePathEachServerSees() throws Exception {
+        IngestEndpoints endpoints = endpoints(base(eu, "/eu"), base(us, "/us/v1"));
+        eu.enqueue(new MockResponse().setResponseCode(503));
+        us.enqueue(new MockResponse().setResponseCode(200));
+
+        try (Response response = post(endpoints)) {
+            assertEquals(200, response.code());
+        }
+        assertSigned(eu.takeRequest(1, TimeUnit.SECONDS), "/eu" + PATH);
+        assertSigned(us.takeRequest(1, TimeUnit.SECONDS), "/us/v1" + PATH);
+
+        // The failed region cools down and the next request goes straight to the other one
+        assertEquals(base(us, "/us/v1"), endpoints.preferred());
+        us.enqueue(new MockResponse().setResponseCode(200));
+        post(endpoints).close();
+        assertEquals(1, eu.getRequestCount());
+        assertEquals(2, us.getRequestCount());
+    }
+
+    @Test
+    public void droppedConnectionFailsOver() throws Exception {
+        IngestEndpoints endpoints = endpoints(base(eu, ""), base(us, ""));
+        eu.enqueue(new MockResponse().setSocketPolicy(SocketPolicy.DISCONNECT_AT_START));
+        us.enqueue(new MockResponse().setResponseCode(200));
+
+        try (Response response = post(endpoints)) {
+            assertEquals(us.getPort(), response.request().url().port());
+        }
+        IngestEndpoints.Endpoint failed = endpoints.snapshot().get(0);
+        assertEquals(1, failed.consecutiveFailures);
+        assertEquals(now.get() + IngestEndpoints.BASE_COOLDOWN_MS, failed.downUntil);
+    }
+
+    @Test
+    public void clientErrorsAreReturnedWithoutFailingOver() throws Exception {
+        IngestEndpoints endpoints = endpoints(base(eu, ""), base(us, ""));
+        eu.enqueue(new MockResponse().setResponseCode(401));
+
+        try (Response response = post(endpoints)) {
+            assertEquals(401, response.code());
+        }
+        assertEquals(0, us.getRequestCount());
+        assertEquals(base(eu, ""), endpoints.preferred());
+    }
+
+    @Test
+    public void whenEveryEndpointFailsTheLastAnswerIsReturned() throws Exception {
+        IngestEndpoints endpoints = endpoints(base(eu, ""), base(us, ""));
+        eu.enqueue(new MockResponse().setResponseCode(503));
+        us.enqueue(new MockResponse().setResponseCode(502));
+
+        try (Response response = post(endpoints)) {
+            assertEquals(502, response.code());
+        }
+
+        // Both cooling down: the next request still has both to try
+        assertEquals(2, endpoints.attemptOrder().size());
+    }
+
+    @Test
+    public void cooldownDoublesWithConsecutiveFailures() {
+        IngestEndpoints endpoints = endpoints("https://a", "https://b");
+        IngestEndpoints.Endpoint a = endpoints.attemptOrder().get(0);
+        endpoints.recordFailure(a);
+        endpoints.recordFailure(a);
+        endpoints.recordFailure(a);
+        assertEquals(now.get() + 4 * IngestEndpoints.BASE_COOLDOWN_MS, a.downUntil);
+        for (int i = 0; i < 20; i++) endpoints.recordFailure(a);
+        assertEquals(now.get() + IngestEndpoints.MAX_COOLDOWN_MS, a.downUntil);
+        endpoints.recordSuccess(a, 80);
+        assertEquals(0, a.downUntil);
+        assertEquals(0, a.consecutiveFailures);
+    }
+
+    @Test
+    public void preferenceSticksUntilAnotherIsClearlyFaster() {
+        IngestEndpoints endpoints = endpoints("https://a", "https://b");
+        IngestEndpoints.Endpoint a = endpoints.attemptOrder().get(0);
+        IngestEndpoints.Endpoint b = endpoints.attemptOrder().get(1);
+        for (int i = 0; i < 5; i++) {
+            endpoints.recordSuccess(a, 200);
+            endpoints.recordSuccess(b, 150);
+        }
+        // 25% faster is noise
+        assertEquals("https://a", endpoints.preferred());
+
+        for (int i = 0; i < 10; i++) endpoints.recordSuccess(b, 40);
+        assertEquals("https://b", endpoints.preferred());
+        assertEquals("https://b", endpoints.attemptOrder().get(0).baseUrl);
+    }
+
+    @Test
+    public void fastStandbyNeedsEnoughSamplesToTakeOver() {
+        IngestEndpoints endpoints = endpoints("https://a", "https://b");
+        IngestEndpoints.Endpoint a = endpoints.attemptOrder().get(0);
+        IngestEndpoints.Endpoint b = endpoints.attemptOrder().get(1);
+        endpoints.recordSuccess(a, 400);
+        endpoints.recordSuccess(b, 20);
+        endpoints.recordSuccess(b, 20);
+        assertEquals("https://a", endpoints.preferred());
+        endpoints.recordSuccess(b, 20);
+        assertEquals("https://b", endpoints.preferred());
+    }
+
+    @Test
+    public void probeRidesOnRealTrafficOnceAStandbyIsStale() throws Exception {
+        us.setDispatcher(ok());
+        eu.setDispatcher(ok());
+        IngestEndpoints endpoints = endpoints(base(eu, ""), base(us, ""));
+        // Leave eu after a failure; us becomes preferred
+        IngestEndpoints.Endpoint euEndpoint = endpoints.attemptOrder().get(0);
+        endpoints.recordFailure(euEndpoint);
+        assertEquals(base(us, ""), endpoints.preferred());
+
+        // Fresh figures: no probe however many requests go out
+        for (int i = 0; i < IngestEndpoints.PROBE_EVERY; i++) post(endpoints).close();
+        assertEquals(0, eu.getRequestCount());
+
+        // Once the standby's figures are stale, one real request is sent to it first
+        now.addAndGet(IngestEndpoints.PROBE_STALE_MS);
+        for (int i = 0; i < IngestEndpoints.PROBE_EVERY; i++) post(endpoints).close();
+        assertEquals(1, eu.getRequestCount());
+        assertEquals(2 * IngestEndpoints.PROBE_EVERY - 1, us.getRequestCount());
+        assertEquals(2, endpoints.snapshot().get(0).samples);
+    }
+
+    @Test
+    public void configuredListIsSplitAndTrimmed() {
+        assertEquals(Arrays.asList("https://eu.example.com", "https://us.example.com/api"),
+                IngestEndpoints.parse(" https://eu.example.com/ ,https://us.example.com/api//,, https://eu.example.com"));
+        assertEquals(Arrays.asList("https://api.offsync.local"), IngestEndpoints.parse("https://api.offsync.local"));
+        assertTrue(IngestEndpoints.parse(null).isEmpty());
+    }
+
+    @Test
+    public void storedPreferenceIsKeptWhenStillConfigured() {
+        List<String> urls = Arrays.asList("https://a", "https://b");
+        assertEquals("https://b", new IngestEndpoints(urls, "https://b").preferred());
+        assertEquals("https://a", new IngestEndpoints(urls, "https://gone").preferred());
+    }
+
+    private IngestEndpoints endpoints(String... urls) {
+        return new IngestEndpoints(Arrays.asList(urls), null, now::get);
+    }
+
+    private Response post(IngestEndpoints endpoints) throws Exception {
+        return endpoints.execute(client, PATH, (url, signingPath) -> {
+            String timestamp = String.valueOf(now.get());
+            return new Request.Builder()
+                    .url(url)
+                    .post(RequestBody.create(BODY, MediaType.get("application/json; charset=utf-8")))
+                    .addHeader("x-timestamp", timestamp)
+                    .addHeader("x-signature", RequestSigner.sign(TOKEN, "POST", signingPath, timestamp, BODY))
+                    .build();
+        });
+    }
+
+    private static void assertSigned(RecordedRequest request, String path) throws Exception {
+        assertNotNull(request);
+        assertEquals(path, request.getPath());
+        // What the server computes: METHOD:originalUrl:TIMESTAMP:BODY
+        String expected = RequestSigner.hmacSha256Hex(TOKEN, request.getMethod() + ":" + request.getPath() + ":"
+                + request.getHeader("x-timestamp") + ":" + request.getBody().readString(StandardCharsets.UTF_8));
+        assertEquals(expected, request.getHeader("x-signature"));
+    }
+
+    private static String base(MockWebServer server, String basePath) {
+        String url = server.url(basePath.isEmpty() ? "/" : basePath).toString();
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static Dispatcher ok() {
+        return new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200);
+            }
+        };
+    }
+}
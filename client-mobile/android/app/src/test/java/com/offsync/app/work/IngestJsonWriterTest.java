@@ -0,0 +1,87 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import com.offsync.app.db.LocationBatch;
+import com.offsync.app.db.LocationPointEntity;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class IngestJsonWriterTest {
+    @Test
+    public void matchesIngestPayloadFields() throws Exception {
+        List<LocationPointEntity> points = new ArrayList<>();
+        points.add(point(1, "2026-10-18T10:00:00Z", 12.9715987, 77.5945627, 4.75, "gps", 81, 1, "high"));
+        points.add(point(2, "2026-10-18T10:00:30Z", -33.8688197, -151.2092955, 1500, null, null, null, null));
+        points.add(point(3, "2026-10-18T10:01:00Z", 0.0000001, -0.00000004, 0, "network", 5, 0, "balanced"));
+
+        LocationBatch batch = new LocationBatch(4);
+        for (LocationPointEntity p : points) {
+            batch.add(p.id, p.capturedAt, p.lat, p.lng, p.accuracyM, p.provider, p.batteryPct, p.isCharging, p.accuracyMode);
+        }
+        IngestJsonWriter writer = new IngestJsonWriter(16);
+        writer.write(batch);
+        JSONArray actual = new JSONArray(new String(writer.buffer(), 0, writer.length(), StandardCharsets.UTF_8));
+        JSONArray expected = new JSONArray(IngestPayload.build(points, null));
+
+        assertEquals(expected.length(), actual.length());
+        for (int i = 0; i < expected.length(); i++) {
+            JSONObject e = expected.getJSONObject(i);
+            JSONObject a = actual.getJSONObject(i);
+            assertEquals(e.keySet(), a.keySet());
+            for (String key : e.keySet()) {
+                Object ev = e.get(key);
+                if (ev instanceof Number) {
+                    assertEquals(key, ((Number) ev).doubleValue(), ((Number) a.get(key)).doubleValue(), 1e-7);
+                } else {
+                    assertEquals(key, ev, a.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void trimsTrailingZerosAndEscapesText() throws Exception {
+        LocationBatch batch = new LocationBatch(1);
+        batch.add(1, "a\"b\\c\n\u00e9", -1.5, 2, 10.1, "gps", null, null, null);
+        IngestJsonWriter writer = new IngestJsonWriter();
+        writer.write(batch);
+        String json = new String(writer.buffer(), 0, writer.length(), StandardCharsets.UTF_8);
+        assertEquals("[{\"capturedAt\":\"a\\\"b\\\\c\\u000a\u00e9\",\"lat\":-1.5,\"lng\":2,\"accuracyM\":10.1,\"provider\":\"gps\"}]", json);
+        assertEquals("a\"b\\c\n\u00e9", new JSONArray(json).getJSONObject(0).getString("capturedAt"));
+    }
+
+    @Test
+    public void reusedWriterOnlyReflectsLatestBatch() {
+        LocationBatch batch = new LocationBatch(2);
+        IngestJsonWriter writer = new IngestJsonWriter();
+        batch.add(1, "2026-10-18T10:00:00Z", 1, 1, 1, "gps", null, null, null);
+        batch.add(2, "2026-10-18T10:00:30Z", 1, 1, 1, "gps", null, null, null);
+        writer.write(batch);
+        int two = writer.length();
+        batch.clear();
+        batch.add(3, "2026-10-18T10:01:00Z", 1, 1, 1, "gps", null, null, null);
+        writer.write(batch);
+        assertTrue(writer.length() < two);
+        assertEquals(']', writer.buffer()[writer.length() - 1]);
+    }
+
+    private static LocationPointEntity point(int id, String capturedAt, double lat, double lng, double acc,
+                                             String provider, Integer battery, Integer charging, String mode) {
+        LocationPointEntity p = new LocationPointEntity();
+        p.id = id;
+        p.capturedAt = capturedAt;
+        p.lat = lat;
+        p.lng = lng;
+        p.accuracyM = acc;
+        p.provider = provider;
+        p.batteryPct = battery;
+        p.isCharging = charging;
+        p.accuracyMode = mode;
+        return p;
+    }
+}
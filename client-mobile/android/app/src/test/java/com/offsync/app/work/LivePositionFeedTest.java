@@ -0,0 +1,132 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import com.offsync.app.db.LocationPointEntity;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LivePositionFeedTest {
+    private static final double LAT = 12.9716;
+    private static final double LNG = 77.5946;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final List<Integer> delivered = new CopyOnWriteArrayList<>();
+    private final List<Boolean> catchUps = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() {
+        LivePositionFeed.clear();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        LivePositionFeed.clear();
+    }
+
+    @Test
+    public void burstIsCoalescedToTheNewestPoint() throws Exception {
+        LivePositionFeed.subscribe(executor, 2, 0, this::record);
+        drain();
+        // 50 fixes inside one window
+        for (int i = 1; i <= 50; i++) LivePositionFeed.publish(point(i, i));
+        waitFor(1);
+        Thread.sleep(700);
+        assertEquals(List.of(50), delivered);
+        assertEquals(List.of(false), catchUps);
+    }
+
+    @Test
+    public void subscriptionStartsWithTheLatestPoint() throws Exception {
+        LivePositionFeed.publish(point(1, 0));
+        LivePositionFeed.subscribe(executor, 1, 0, this::record);
+        waitFor(1);
+        assertEquals(List.of(1), delivered);
+        assertEquals(List.of(true), catchUps);
+    }
+
+    @Test
+    public void smallMovesAreHeldUntilTheyAddUp() throws Exception {
+        LivePositionFeed.subscribe(executor, LivePositionFeed.MAX_RATE_HZ, 25, this::record);
+        drain();
+        LivePositionFeed.publish(point(1, 0));
+        waitFor(1);
+        // 10 m steps: nothing until 30 m from the last delivered point
+        LivePositionFeed.publish(point(2, 10));
+        settle();
+        LivePositionFeed.publish(point(3, 20));
+        settle();
+        LivePositionFeed.publish(point(4, 30));
+        waitFor(2);
+        assertEquals(List.of(1, 4), delivered);
+    }
+
+    @Test
+    public void pausedSubscriptionResumesWithOneCatchUp() throws Exception {
+        LivePositionFeed.Subscription s = LivePositionFeed.subscribe(executor, LivePositionFeed.MAX_RATE_HZ, 1_000, this::record);
+        drain();
+        LivePositionFeed.publish(point(1, 0));
+        waitFor(1);
+
+        s.setPaused(true);
+        for (int i = 2; i <= 20; i++) {
+            LivePositionFeed.publish(point(i, i * 5_000));
+            settle();
+        }
+        assertEquals(1, delivered.size());
+
+        // Only 5 m from where the map is, but it is newer: sent anyway, once
+        LivePositionFeed.publish(point(21, 5));
+        s.setPaused(false);
+        waitFor(2);
+        settle();
+        assertEquals(List.of(1, 21), delivered);
+        assertEquals(List.of(false, true), catchUps);
+    }
+
+    @Test
+    public void closedSubscriptionGetsNothing() throws Exception {
+        LivePositionFeed.Subscription s = LivePositionFeed.subscribe(executor, LivePositionFeed.MAX_RATE_HZ, 0, this::record);
+        s.close();
+        LivePositionFeed.publish(point(1, 0));
+        settle();
+        assertTrue(delivered.isEmpty());
+    }
+
+    private void record(LocationPointEntity p, boolean catchUp) {
+        delivered.add(p.id);
+        catchUps.add(catchUp);
+    }
+
+    /** A point {@code northM} metres north of the reference. */
+    private static LocationPointEntity point(int id, double northM) {
+        LocationPointEntity p = new LocationPointEntity();
+        p.id = id;
+        p.lat = LAT + northM / 111_195.0;
+        p.lng = LNG;
+        return p;
+    }
+
+    private void waitFor(int events) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (delivered.size() < events && System.nanoTime() < deadline) Thread.sleep(5);
+        assertEquals(events, delivered.size());
+    }
+
+    /** Long enough for a window at the maximum rate to pass and any pending read to run. */
+    private void settle() throws Exception {
+        Thread.sleep(150);
+        drain();
+    }
+
+    private void drain() throws Exception {
+        executor.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+}
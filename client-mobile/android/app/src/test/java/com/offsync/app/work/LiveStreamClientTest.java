@@ -0,0 +1,150 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import com.offsync.app.db.LocationPointEntity;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LiveStreamClientTest {
+    private static final String TOKEN = "device-token";
+
+    private MockWebServer server;
+    private final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<Integer>> acked = new LinkedBlockingQueue<>();
+    private final BlockingQueue<List<Integer>> down = new LinkedBlockingQueue<>();
+    private final CountDownLatch opened = new CountDownLatch(1);
+    private volatile WebSocket serverSocket;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void signedFramesAreAckedBySequence() throws Exception {
+        LiveStreamClient client = connect(true);
+        assertTrue(client.send(Collections.singletonList(point(7, "2026-10-18T10:00:00Z"))));
+
+        String raw = frames.poll(5, TimeUnit.SECONDS);
+        assertNotNull(raw);
+        JSONObject frame = new JSONObject(raw);
+        assertEquals("points", frame.getString("type"));
+        assertEquals(1, frame.getLong("seq"));
+        String body = frame.getString("body");
+        assertEquals(RequestSigner.signFrame(TOKEN, LiveStreamClient.PATH, frame.getString("ts"), 1, body),
+                frame.getString("sig"));
+        assertEquals("2026-10-18T10:00:00Z", new JSONArray(body).getJSONObject(0).getString("capturedAt"));
+
+        assertEquals(Collections.singletonList(7), acked.poll(5, TimeUnit.SECONDS));
+        client.close();
+    }
+
+    @Test
+    public void upgradeRequestIsSigned() throws Exception {
+        connect(true).close();
+        RecordedRequest req = server.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(LiveStreamClient.PATH, req.getPath());
+        assertEquals("device-1", req.getHeader("x-device-id"));
+        assertEquals(RequestSigner.sign(TOKEN, "GET", LiveStreamClient.PATH, req.getHeader("x-timestamp"), ""),
+                req.getHeader("x-signature"));
+    }
+
+    @Test
+    public void unackedPointsFallBackWhenServerDrops() throws Exception {
+        LiveStreamClient client = connect(false);
+        assertTrue(client.send(Collections.singletonList(point(3, "2026-10-18T10:00:00Z"))));
+        assertTrue(client.send(Collections.singletonList(point(4, "2026-10-18T10:00:05Z"))));
+        assertNotNull(frames.poll(5, TimeUnit.SECONDS));
+        assertNotNull(frames.poll(5, TimeUnit.SECONDS));
+
+        serverSocket.close(1001, "going away");
+        List<Integer> unacked = down.poll(5, TimeUnit.SECONDS);
+        assertNotNull(unacked);
+        assertEquals(new ArrayList<>(List.of(3, 4)), new ArrayList<>(unacked));
+        assertFalse(client.isOpen());
+        assertFalse(client.send(Collections.singletonList(point(5, "2026-10-18T10:00:10Z"))));
+        assertTrue(acked.isEmpty());
+    }
+
+    private LiveStreamClient connect(boolean ack) throws Exception {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                serverSocket = webSocket;
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                webSocket.close(1000, null);
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                frames.add(text);
+                if (!ack) return;
+                try {
+                    long seq = new JSONObject(text).getLong("seq");
+                    webSocket.send("{\"type\":\"ack\",\"seq\":" + seq + "}");
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+            }
+        }));
+        String url = server.url("").toString();
+        LiveStreamClient client = new LiveStreamClient(new OkHttpClient(), url.substring(0, url.length() - 1),
+                "device-1", TOKEN, new LiveStreamClient.Listener() {
+                    @Override
+                    public void onOpen() {
+                        opened.countDown();
+                    }
+
+                    @Override
+                    public void onAcked(List<Integer> ids) {
+                        acked.add(ids);
+                    }
+
+                    @Override
+                    public void onDown(List<Integer> unackedIds, Throwable cause) {
+                        down.add(unackedIds);
+                    }
+                });
+        client.connect();
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        return client;
+    }
+
+    private static LocationPointEntity point(int id, String capturedAt) {
+        LocationPointEntity p = new LocationPointEntity();
+        p.id = id;
+        p.capturedAt = capturedAt;
+        p.lat = 12.97;
+        p.lng = 77.59;
+        p.accuracyM = 5;
+        p.provider = "gps";
+        return p;
+    }
+}
@@ -0,0 +1,123 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RemotePolicyTest {
+    private static final String TOKEN = "device-token";
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private MockWebServer server;
+    private RemotePolicyClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.start();
+        String url = server.url("/").toString();
+        client = new RemotePolicyClient(new OkHttpClient(), url.substring(0, url.length() - 1), "device-1", TOKEN);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void missingFieldsFallBackToDefaults() {
+        RemotePolicy p = RemotePolicy.parse("{\"batchSize\":200}");
+        assertEquals(200, p.batchSize);
+        assertEquals(RemotePolicy.DEFAULTS.meteredBatchSize, p.meteredBatchSize);
+        assertEquals(RemotePolicy.DEFAULTS.syncIntervalMinutes, p.syncIntervalMinutes);
+        assertEquals(RemotePolicy.DEFAULTS.retentionDays, p.retentionDays);
+        assertEquals(RemotePolicy.ACCURACY_HIGH, p.accuracyMode);
+        assertSame(RemotePolicy.DEFAULTS, RemotePolicy.parse("not json"));
+        assertSame(RemotePolicy.DEFAULTS, RemotePolicy.parse(null));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        RemotePolicy p = RemotePolicy.parse("{\"batchSize\":0,\"meteredBatchSize\":100000,\"syncIntervalMinutes\":1,"
+                + "\"retentionDays\":-5,\"maxAccuracyM\":1e9,\"accuracyMode\":\"turbo\"}");
+        assertEquals(10, p.batchSize);
+        assertEquals(500, p.meteredBatchSize);
+        assertEquals(15, p.syncIntervalMinutes);
+        assertEquals(1, p.retentionDays);
+        assertEquals(5_000, p.maxAccuracyM, 0);
+        assertEquals(RemotePolicy.ACCURACY_HIGH, p.accuracyMode);
+    }
+
+    @Test
+    public void jsonRoundTrips() throws Exception {
+        RemotePolicy p = RemotePolicy.parse("{\"batchSize\":300,\"meteredBatchSize\":25,\"syncIntervalMinutes\":60,"
+                + "\"retentionDays\":30,\"accuracyMode\":\"balanced_power\",\"maxAccuracyM\":80}");
+        RemotePolicy again = RemotePolicy.parse(p.toJson().toString());
+        assertEquals(300, again.batchSize);
+        assertEquals(25, again.meteredBatchSize);
+        assertEquals(60, again.syncIntervalMinutes);
+        assertEquals(30, again.retentionDays);
+        assertEquals(RemotePolicy.ACCURACY_BALANCED, again.accuracyMode);
+        assertEquals(80, again.maxAccuracyM, 0);
+    }
+
+    @Test
+    public void fetchesOnlyWhenTheAdvertisedEtagChangesOrTheRecheckIsDue() {
+        long now = 100 * HOUR;
+        // Piggybacked ETag: matching costs nothing, a new one is fetched once past the floor
+        assertFalse(RemotePolicyClient.shouldFetch("\"v1\"", "\"v1\"", now - 48 * HOUR, now));
+        assertTrue(RemotePolicyClient.shouldFetch("\"v2\"", "\"v1\"", now - HOUR, now));
+        assertFalse(RemotePolicyClient.shouldFetch("\"v2\"", "\"v1\"", now - 60_000, now));
+        // Nothing advertised: the daily recheck
+        assertFalse(RemotePolicyClient.shouldFetch(null, "\"v1\"", now - 23 * HOUR, now));
+        assertTrue(RemotePolicyClient.shouldFetch(null, "\"v1\"", now - 24 * HOUR, now));
+        assertTrue(RemotePolicyClient.shouldFetch(null, null, 0, now));
+        assertTrue(RemotePolicyClient.shouldFetch(null, "\"v1\"", now + HOUR, now));
+    }
+
+    @Test
+    public void fetchReturnsTheDocumentAndItsEtag() throws Exception {
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v7\"").setBody("{\"batchSize\":250}"));
+
+        RemotePolicyClient.Result result = client.fetch(null);
+
+        assertEquals(RemotePolicyClient.Outcome.UPDATED, result.outcome);
+        assertEquals("\"v7\"", result.etag);
+        assertEquals(250, RemotePolicy.parse(result.body).batchSize);
+        RecordedRequest request = server.takeRequest();
+        assertEquals("GET", request.getMethod());
+        assertEquals(RemotePolicyClient.PATH, request.getPath());
+        assertNull(request.getHeader("If-None-Match"));
+        String expected = RequestSigner.sign(TOKEN, "GET", RemotePolicyClient.PATH, request.getHeader("x-timestamp"), "");
+        assertEquals(expected, request.getHeader("x-signature"));
+    }
+
+    @Test
+    public void unchangedPolicyIsANotModified() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(304));
+
+        assertEquals(RemotePolicyClient.Outcome.NOT_MODIFIED, client.fetch("\"v7\"").outcome);
+        assertEquals("\"v7\"", server.takeRequest().getHeader("If-None-Match"));
+    }
+
+    @Test
+    public void missingEndpointIsUnavailableAndServerErrorsThrow() throws Exception {
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.enqueue(new MockResponse().setResponseCode(500));
+
+        assertEquals(RemotePolicyClient.Outcome.UNAVAILABLE, client.fetch(null).outcome);
+        try {
+            client.fetch(null);
+            fail("expected an IOException");
+        } catch (IOException expected) {
+            // The caller keeps its cached policy
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.assertEquals;
+
+import okhttp3.HttpUrl;
+import org.junit.Test;
+
+public class RequestSignerTest {
+    @Test
+    public void hmacMatchesRfc4231Vector() throws Exception {
+        assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+                RequestSigner.hmacSha256Hex("Jefe", "what do ya want for nothing?"));
+    }
+
+    @Test
+    public void signsMethodPathTimestampAndBody() throws Exception {
+        String body = "[{\"lat\":1.5}]";
+        assertEquals(RequestSigner.hmacSha256Hex("token", "POST:/ingest/locations:1760000000000:" + body),
+                RequestSigner.sign("token", "POST", "/ingest/locations", "1760000000000", body));
+    }
+
+    @Test
+    public void signedPathIncludesTheEndpointBasePathAndQuery() {
+        assertEquals("/ingest/locations", RequestSigner.pathOf(HttpUrl.get("https://api.example.com/ingest/locations")));
+        assertEquals("/eu/v1/ingest/locations?dry=1",
+                RequestSigner.pathOf(HttpUrl.get("https://api.example.com/eu/v1/ingest/locations?dry=1")));
+    }
+}
@@ -0,0 +1,228 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentUploadTest {
+    private static final String TOKEN = "device-token";
+    private static final int CHUNK = 16 * 1024;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private MockWebServer server;
+    private ResumableStandIn standIn;
+    private SegmentUploader uploader;
+
+    @Before
+    public void setUp() throws Exception {
+        standIn = new ResumableStandIn();
+        server = new MockWebServer();
+        server.setDispatcher(standIn);
+        server.start();
+        String url = server.url("/").toString();
+        // No transparent retry, so a dropped connection reaches the caller like a lost network would
+        OkHttpClient client = new OkHttpClient.Builder().retryOnConnectionFailure(false).build();
+        uploader = new SegmentUploader(client, url.substring(0, url.length() - 1), "device-1", TOKEN, CHUNK);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void sealsOnlyPendingRowsAfterTheCursor() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SegmentSealer.Sealed sealed = SegmentSealer.seal(rows(1_203), 200, 600, out);
+        assertEquals(201, sealed.firstId);
+        // Rounded up to whole pages
+        assertEquals(1_000, sealed.points);
+        assertEquals(1_200, sealed.lastId);
+        assertEquals(out.size(), sealed.bytes);
+        assertEquals(SegmentSealer.hex(MessageDigest.getInstance("SHA-256").digest(out.toByteArray())), sealed.sha256);
+        assertEquals(1_000, gunzipLines(out.toByteArray()).size());
+
+        assertNull(SegmentSealer.seal(rows(10), 10, 600, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void resumesAfterDroppedChunkAndCommitsOnce() throws Exception {
+        File file = tmp.newFile("seg.ndjson.gz");
+        SegmentSealer.Sealed sealed = SegmentSealer.seal(rows(20_000), 0, 20_000, new FileOutputStream(file));
+        assertTrue("need several chunks", sealed.bytes > 2L * CHUNK);
+
+        // The server stores the second chunk but the connection drops before the client hears back
+        standIn.dropAfterChunk = 2;
+        List<Long> saved = new ArrayList<>();
+        long offset = uploader.open("seg-1", sealed.bytes, sealed.points, sealed.sha256);
+        assertEquals(0, offset);
+        try {
+            uploader.upload("seg-1", file, offset, Long.MAX_VALUE, saved::add);
+            fail("expected the dropped connection to surface");
+        } catch (IOException expected) {
+            assertEquals(1, saved.size());
+        }
+
+        // A later run asks where the server is and skips the chunk it already has
+        offset = uploader.open("seg-1", sealed.bytes, sealed.points, sealed.sha256);
+        assertEquals(2L * CHUNK, offset);
+        int chunksBefore = standIn.chunks.get();
+        offset = uploader.upload("seg-1", file, offset, Long.MAX_VALUE, saved::add);
+        assertEquals(sealed.bytes, offset);
+        assertEquals((sealed.bytes - 2L * CHUNK + CHUNK - 1)
+                / CHUNK, standIn.chunks.get() - chunksBefore);
+
+        assertTrue(uploader.commit("seg-1", sealed.sha256, sealed.points));
+        assertEquals(20_000, standIn.committedPoints.get());
+        assertEquals(0, standIn.badSignatures.get());
+    }
+
+    @Test
+    public void budgetStopsMidSegmentAndMismatchIsRejected() throws Exception {
+        File file = tmp.newFile("seg.ndjson.gz");
+        SegmentSealer.Sealed sealed = SegmentSealer.seal(rows(20_000), 0, 20_000, new FileOutputStream(file));
+        uploader.open("seg-2", sealed.bytes, sealed.points, sealed.sha256);
+        long offset = uploader.upload("seg-2", file, 0, 100_000, o -> { });
+        assertEquals(100_000, offset);
+        try {
+            uploader.commit("seg-2", sealed.sha256, sealed.points);
+            fail("incomplete segment must not commit");
+        } catch (IOException expected) {
+            assertEquals(0, standIn.committedPoints.get());
+        }
+        uploader.upload("seg-2", file, offset, Long.MAX_VALUE, o -> { });
+        // Wrong count: the content does not verify
+        assertFalse(uploader.commit("seg-2", sealed.sha256, sealed.points + 1));
+        assertEquals(0, standIn.committedPoints.get());
+    }
+
+    /** Rows 1..count, all pending, shaped like a slow walk. */
+    private static HistoryExporter.RowSource rows(int count) {
+        return (afterId, out) -> {
+            out.clear();
+            Random random = new Random(afterId);
+            for (long id = afterId + 1; id <= count && !out.isFull(); id++) {
+                out.add(id, "2026-10-18T10:00:" + (id % 60 < 10 ? "0" : "") + id % 60 + "Z",
+                        12.97 + random.nextGaussian() * 1e-3, 77.59 + random.nextGaussian() * 1e-3,
+                        3 + random.nextInt(20), "gps", 80, 0, "balanced");
+            }
+            return out.size;
+        };
+    }
+
+    private static List<String> gunzipLines(byte[] data) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader r = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(data)), StandardCharsets.UTF_8))) {
+            for (String line; (line = r.readLine()) != null; ) lines.add(line);
+        }
+        return lines;
+    }
+
+    /** In-memory resumable segment endpoint with signature checks on every request. */
+    private static final class ResumableStandIn extends Dispatcher {
+        final Map<String, Segment> segments = new ConcurrentHashMap<>();
+        final AtomicInteger chunks = new AtomicInteger();
+        final AtomicInteger committedPoints = new AtomicInteger();
+        final AtomicInteger badSignatures = new AtomicInteger();
+        volatile int dropAfterChunk = -1;
+
+        static final class Segment {
+            long bytes;
+            int points;
+            String sha256;
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            boolean committed;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            try {
+                byte[] body = request.getBody().readByteArray();
+                String path = request.getPath();
+                String sig = RequestSigner.sign(TOKEN, request.getMethod(), path, request.getHeader("x-timestamp"),
+                        body, 0, body.length);
+                if (!sig.equals(request.getHeader("x-signature"))) {
+                    badSignatures.incrementAndGet();
+                    return new MockResponse().setResponseCode(401);
+                }
+                if (path.equals(SegmentUploader.PATH)) return open(new JSONObject(new String(body, StandardCharsets.UTF_8)));
+                String[] parts = path.substring(SegmentUploader.PATH.length() + 1).split("/");
+                Segment s = segments.get(parts[0]);
+                if (s == null) return new MockResponse().setResponseCode(404);
+                if (parts.length == 2 && parts[1].equals("commit")) {
+                    return commit(s, new JSONObject(new String(body, StandardCharsets.UTF_8)));
+                }
+                return append(s, Long.parseLong(request.getHeader(SegmentUploader.OFFSET_HEADER)), body);
+            } catch (Exception e) {
+                return new MockResponse().setResponseCode(500).setBody(String.valueOf(e));
+            }
+        }
+
+        private MockResponse open(JSONObject req) throws Exception {
+            String id = req.getString("segmentId");
+            String expected = RequestSigner.signSegment(TOKEN, id, req.getString("sha256"), req.getLong("bytes"),
+                    req.getInt("points"));
+            if (!expected.equals(req.getString("sig"))) return new MockResponse().setResponseCode(401);
+            Segment s = segments.computeIfAbsent(id, k -> new Segment());
+            s.bytes = req.getLong("bytes");
+            s.points = req.getInt("points");
+            s.sha256 = req.getString("sha256");
+            return new MockResponse().setBody("{\"offset\":" + s.data.size() + "}");
+        }
+
+        private synchronized MockResponse append(Segment s, long offset, byte[] chunk) {
+            if (offset != s.data.size()) {
+                return new MockResponse().setResponseCode(409).addHeader(SegmentUploader.OFFSET_HEADER, s.data.size());
+            }
+            s.data.write(chunk, 0, chunk.length);
+            MockResponse r = new MockResponse().setResponseCode(204).addHeader(SegmentUploader.OFFSET_HEADER, s.data.size());
+            if (chunks.incrementAndGet() == dropAfterChunk) r.setSocketPolicy(SocketPolicy.DISCONNECT_AFTER_REQUEST);
+            return r;
+        }
+
+        private synchronized MockResponse commit(Segment s, JSONObject req) throws Exception {
+            if (s.data.size() < s.bytes) {
+                return new MockResponse().setResponseCode(409).addHeader(SegmentUploader.OFFSET_HEADER, s.data.size());
+            }
+            byte[] data = s.data.toByteArray();
+            String sha = SegmentSealer.hex(MessageDigest.getInstance("SHA-256").digest(data));
+            int lines = gunzipLines(data).size();
+            if (!sha.equals(req.getString("sha256")) || lines != req.getInt("points") || lines != s.points) {
+                return new MockResponse().setResponseCode(422);
+            }
+            if (!s.committed) committedPoints.addAndGet(lines);
+            s.committed = true;
+            return new MockResponse().setBody("{\"inserted\":" + lines + "}");
+        }
+    }
+}
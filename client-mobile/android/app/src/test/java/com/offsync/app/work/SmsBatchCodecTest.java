@@ -0,0 +1,91 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SmsBatchCodecTest {
+    private static final byte[] KEY = "test-device-token-secret".getBytes(StandardCharsets.UTF_8);
+    private static final int TAG = SmsBatchCodec.deviceTag("test-device-id");
+
+    /** Stand-in for the SMS gateway: verifies each segment and drops replayed sequences. */
+    private static final class FakeGateway {
+        final Map<Long, List<SmsBatchCodec.Point>> received = new HashMap<>();
+
+        void deliver(byte[] payload, byte[] key) throws GeneralSecurityException {
+            SmsBatchCodec.Batch b = SmsBatchCodec.unpack(payload, key);
+            assertEquals(TAG, b.deviceTag);
+            received.putIfAbsent(b.sequence, b.points);
+        }
+
+        int pointCount() {
+            int n = 0;
+            for (List<SmsBatchCodec.Point> l : received.values()) n += l.size();
+            return n;
+        }
+    }
+
+    private static List<SmsBatchCodec.Point> walk(int n) {
+        List<SmsBatchCodec.Point> out = new ArrayList<>();
+        long t = 1_760_000_000_000L;
+        double lat = 12.9715987, lng = 77.5945627;
+        for (int i = 0; i < n; i++) {
+            out.add(new SmsBatchCodec.Point(t, lat, lng, 5 + (i % 20)));
+            t += 60_000L;
+            lat += 0.0004 * ((i % 3) - 1);
+            lng += 0.0003;
+        }
+        return out;
+    }
+
+    @Test
+    public void packsManyPointsPerSegment() throws Exception {
+        List<SmsBatchCodec.Point> points = walk(100);
+        SmsBatchCodec.Packed p = SmsBatchCodec.pack(points, 0, TAG, 1, KEY, SmsBatchCodec.MAX_SEGMENT_BYTES);
+        assertTrue(p.payload.length <= SmsBatchCodec.MAX_SEGMENT_BYTES);
+        assertTrue("only " + p.count + " points", p.count >= 15);
+    }
+
+    @Test
+    public void roundTripsThroughGateway() throws Exception {
+        List<SmsBatchCodec.Point> points = walk(100);
+        List<SmsBatchCodec.Packed> segments = SmsBatchCodec.packAll(points, TAG, 7, KEY, SmsBatchCodec.MAX_SEGMENT_BYTES);
+        FakeGateway gw = new FakeGateway();
+        for (SmsBatchCodec.Packed p : segments) {
+            gw.deliver(p.payload, KEY);
+            gw.deliver(p.payload, KEY); // duplicate delivery is ignored
+        }
+        assertEquals(points.size(), gw.pointCount());
+
+        int i = 0;
+        for (long seq = 7; seq < 7 + segments.size(); seq++) {
+            for (SmsBatchCodec.Point got : gw.received.get(seq)) {
+                SmsBatchCodec.Point want = points.get(i++);
+                assertEquals(want.timeMs, got.timeMs);
+                assertEquals(want.lat, got.lat, 0.00001);
+                assertEquals(want.lng, got.lng, 0.00001);
+                assertEquals(Math.round(want.accuracyM), got.accuracyM, 0.0);
+            }
+        }
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void rejectsTamperedPayload() throws Exception {
+        SmsBatchCodec.Packed p = SmsBatchCodec.pack(walk(10), 0, TAG, 1, KEY, SmsBatchCodec.MAX_SEGMENT_BYTES);
+        p.payload[20] ^= 0x01;
+        SmsBatchCodec.unpack(p.payload, KEY);
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void rejectsWrongKey() throws Exception {
+        SmsBatchCodec.Packed p = SmsBatchCodec.pack(walk(10), 0, TAG, 1, KEY, SmsBatchCodec.MAX_SEGMENT_BYTES);
+        SmsBatchCodec.unpack(p.payload, "other".getBytes(StandardCharsets.UTF_8));
+    }
+}
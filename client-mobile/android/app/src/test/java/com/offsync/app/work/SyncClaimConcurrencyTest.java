@@ -0,0 +1,169 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import androidx.work.ListenableWorker;
+import androidx.work.testing.TestWorkerBuilder;
+import com.offsync.app.db.LocationDao;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Runs several {@link LocationSyncWorker}s at once against one database, the way overlapping
+ * one-off and periodic work would, and checks on the server side that no point arrives twice.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SyncClaimConcurrencyTest {
+    private static final int WORKERS = 6;
+    private static final int POINTS = 4_000;
+    private static final int MAX_RUNS_PER_WORKER = 1_000;
+
+    private SyncTestRig rig;
+    private MockWebServer server;
+    private CountingIngest ingest;
+    private ExecutorService threads;
+
+    @Before
+    public void setUp() throws Exception {
+        rig = new SyncTestRig();
+        threads = Executors.newFixedThreadPool(WORKERS);
+        ingest = new CountingIngest();
+        server = new MockWebServer();
+        server.setDispatcher(ingest);
+        server.start();
+        rig.connect(server, "claim-device", "claim-device-token");
+        rig.network(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) server.shutdown();
+        if (threads != null) threads.shutdownNow();
+        if (rig != null) rig.close();
+    }
+
+    @Test
+    public void concurrentWorkersNeverSendARowTwice() throws Exception {
+        LocationDao dao = rig.db.locationDao();
+        rig.seed(0, POINTS);
+
+        drainConcurrently(dao, 0);
+
+        assertEquals(0, (int) rig.onDb(dao::countPending));
+        assertTrue("no failed request exercised the release path", ingest.failures.get() > 0);
+        assertEquals(POINTS, ingest.received.size());
+        for (Map.Entry<String, AtomicInteger> e : ingest.received.entrySet()) {
+            assertEquals("sent more than once: " + e.getKey(), 1, e.getValue().get());
+        }
+    }
+
+    @Test
+    public void lapsedClaimsAreReclaimedAndLiveOnesSkipped() throws Exception {
+        LocationDao dao = rig.db.locationDao();
+        long now = System.currentTimeMillis();
+        rig.seed(0, POINTS);
+        // A run that crashed with its lease now lapsed, and one that is still inside its lease
+        rig.onDb(() -> dao.claimOldestPending("crashed-run", now, now - 1, 300));
+        rig.onDb(() -> dao.claimNewestPending("running-elsewhere", now, now + 3_600_000L, 200));
+
+        drainConcurrently(dao, 200);
+
+        assertEquals(200, (int) rig.onDb(dao::countPending));
+        assertEquals(POINTS - 200, ingest.received.size());
+        for (AtomicInteger count : ingest.received.values()) assertEquals(1, count.get());
+    }
+
+    /** Start all workers together and keep re-running each until nothing is left for it to claim. */
+    private void drainConcurrently(LocationDao dao, int heldElsewhere) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> runs = new ArrayList<>();
+        for (int w = 0; w < WORKERS; w++) {
+            runs.add(threads.submit(() -> {
+                start.await();
+                ExecutorService executor = Executors.newSingleThreadExecutor();
+                try {
+                    int attempts = 0;
+                    for (int i = 0; i < MAX_RUNS_PER_WORKER; i++) {
+                        LocationSyncWorker worker = TestWorkerBuilder.from(rig.context, LocationSyncWorker.class, executor)
+                                .setRunAttemptCount(attempts)
+                                .build();
+                        ListenableWorker.Result result = worker.doWork();
+                        attempts = result instanceof ListenableWorker.Result.Retry ? attempts + 1 : 0;
+                        if (attempts == 0 && dao.countPending() <= heldElsewhere) return i + 1;
+                        // A run that found everything claimed returns at once; give the holders time to finish
+                        Thread.sleep(10);
+                    }
+                    return MAX_RUNS_PER_WORKER;
+                } finally {
+                    executor.shutdownNow();
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> run : runs) {
+            assertTrue("worker did not finish", run.get(5, TimeUnit.MINUTES) < MAX_RUNS_PER_WORKER);
+        }
+    }
+
+    /** Counts every capturedAt it accepts; every fifth request fails so claims get released and retried. */
+    static final class CountingIngest extends Dispatcher {
+        final Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            // Latency keeps several runs in flight at once
+            MockResponse response = new MockResponse().setHeadersDelay(15, TimeUnit.MILLISECONDS);
+            if (!"/ingest/locations".equals(request.getPath())) return response.setResponseCode(404);
+            try {
+                byte[] body = body(request);
+                if (requests.incrementAndGet() % 5 == 0) {
+                    failures.incrementAndGet();
+                    return response.setResponseCode(503);
+                }
+                JSONArray points = new JSONArray(new String(body, StandardCharsets.UTF_8));
+                for (int i = 0; i < points.length(); i++) {
+                    received.computeIfAbsent(points.getJSONObject(i).getString("capturedAt"), k -> new AtomicInteger())
+                            .incrementAndGet();
+                }
+                return response.setResponseCode(201).setBody("{\"ok\":true}");
+            } catch (Exception e) {
+                return response.setResponseCode(400).setBody(String.valueOf(e.getMessage()));
+            }
+        }
+
+        private static byte[] body(RecordedRequest request) throws Exception {
+            if (!"gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+                return request.getBody().readByteArray();
+            }
+            try (InputStream in = new GZIPInputStream(request.getBody().inputStream())) {
+                return in.readAllBytes();
+            }
+        }
+    }
+}
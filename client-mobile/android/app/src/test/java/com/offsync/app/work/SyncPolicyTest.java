@@ -0,0 +1,56 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+
+import java.util.zip.Deflater;
+import org.junit.Test;
+
+public class SyncPolicyTest {
+    private static final SyncPolicy.Config CONFIG = new SyncPolicy.Config(100_000, 500);
+
+    @Test
+    public void unmeteredUsesBulkBatchesWithoutLimit() {
+        SyncPolicy.Decision d = SyncPolicy.decide(true, false, 10, 999_999, CONFIG);
+        assertEquals(SyncPolicy.Tier.UNMETERED, d.tier);
+        assertEquals(SyncPolicy.BULK_BATCH_SIZE, d.batchSize);
+        assertEquals(Deflater.DEFAULT_COMPRESSION, d.compressionLevel);
+        assertEquals(Long.MAX_VALUE, d.remainingBytes);
+        assertEquals(Deflater.BEST_COMPRESSION, SyncPolicy.decide(true, true, 10, 0, CONFIG).compressionLevel);
+    }
+
+    @Test
+    public void meteredSpendsWhatIsLeftOfTheBudget() {
+        SyncPolicy.Decision d = SyncPolicy.decide(false, true, 10, 30_000, CONFIG);
+        assertEquals(SyncPolicy.Tier.METERED, d.tier);
+        assertEquals(SyncPolicy.STANDARD_BATCH_SIZE, d.batchSize);
+        assertEquals(70_000, d.remainingBytes);
+
+        SyncPolicy.Decision spent = SyncPolicy.decide(false, false, 10_000, 120_000, CONFIG);
+        assertEquals(SyncPolicy.Tier.METERED_DEFERRED, spent.tier);
+        assertEquals(0, spent.remainingBytes);
+        assertFalse(spent.expedite);
+    }
+
+    @Test
+    public void expeditesPastBacklogThreshold() {
+        assertFalse(SyncPolicy.decide(true, false, 499, 0, CONFIG).expedite);
+        assertTrue(SyncPolicy.decide(true, false, 500, 0, CONFIG).expedite);
+        assertTrue(SyncPolicy.decide(false, false, 500, 0, CONFIG).expedite);
+    }
+
+    @Test
+    public void batchSizesComeFromTheConfig() {
+        SyncPolicy.Config tuned = new SyncPolicy.Config(100_000, 500, 1_000, 20);
+        assertEquals(1_000, SyncPolicy.decide(true, false, 10, 0, tuned).batchSize);
+        assertEquals(20, SyncPolicy.decide(false, false, 10, 0, tuned).batchSize);
+    }
+
+    @Test
+    public void budgetWindowExpiresAfterAnHour() {
+        long start = 1_000_000L;
+        assertEquals(42, SyncPolicy.usedInWindow(start, 42, start + SyncPolicy.WINDOW_MS - 1));
+        assertEquals(0, SyncPolicy.usedInWindow(start, 42, start + SyncPolicy.WINDOW_MS));
+        // Clock moved backwards: do not stay locked out
+        assertEquals(0, SyncPolicy.usedInWindow(start, 42, start - 1));
+    }
+}
@@ -0,0 +1,312 @@
+package com.offsync.app.work;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+import androidx.work.ListenableWorker;
+import androidx.work.testing.TestWorkerBuilder;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationDao;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.db.TrackAggregator;
+import com.offsync.app.metrics.SyncMetrics;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * Offline-backlog soak: seeds the database with {@code days} of synthetic trajectory, then runs
+ * {@link LocationSyncWorker} until the backlog is empty against a local stand-in for
+ * {@code /ingest/locations} that checks the HMAC the way the server guard does.
+ * Skipped unless {@code -Poffsync.soak} is passed. Knobs (Gradle {@code -P} properties):
+ * <pre>
+ *   offsync.soak.days=7          days of offline history
+ *   offsync.soak.intervalSec=30  seconds between fixes
+ *   offsync.soak.unmetered=true  network tier the policy sees
+ *   offsync.soak.latencyMs=80    server response latency
+ *   offsync.soak.kbps=0          upload cap in KiB/s, 0 for none
+ *   offsync.soak.failureRate=0   share of requests answered with 503
+ * </pre>
+ * Results go to stdout and {@code build/reports/soak/sync-soak.json}. The database runs without
+ * SQLCipher here (no Android keystore on the JVM), so the reported size leaves out its
+ * per-page overhead.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34)
+public class SyncSoakBenchmark {
+    private static final String DEVICE_ID = "soak-device";
+    private static final String DEVICE_TOKEN = "soak-device-token-secret";
+    private static final int MAX_RUNS = 100_000;
+
+    private final int days = Integer.getInteger("offsync.soak.days", 7);
+    private final int intervalSec = Integer.getInteger("offsync.soak.intervalSec", 30);
+    private final boolean unmetered = Boolean.parseBoolean(System.getProperty("offsync.soak.unmetered", "true"));
+    private final long latencyMs = Long.getLong("offsync.soak.latencyMs", 80);
+    private final long kbps = Long.getLong("offsync.soak.kbps", 0);
+    private final double failureRate = Double.parseDouble(System.getProperty("offsync.soak.failureRate", "0"));
+
+    private SyncTestRig rig;
+    private MockWebServer server;
+    private IngestStandIn ingest;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        assumeTrue("soak benchmark disabled; pass -Poffsync.soak", System.getProperty("offsync.soak") != null);
+        rig = new SyncTestRig();
+        executor = Executors.newSingleThreadExecutor();
+        ingest = new IngestStandIn(DEVICE_TOKEN, latencyMs, kbps * 1024, failureRate, new Random(42));
+        server = new MockWebServer();
+        server.setDispatcher(ingest);
+        server.start();
+
+        rig.connect(server, DEVICE_ID, DEVICE_TOKEN);
+        rig.network(unmetered);
+        if (!unmetered) {
+            // Let the whole backlog through; the budget itself is covered by SyncPolicyTest
+            SyncPolicyStore.setConfig(rig.context, Long.MAX_VALUE / 2, SyncPolicy.DEFAULT_EXPEDITE_BACKLOG);
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) server.shutdown();
+        if (executor != null) executor.shutdownNow();
+        if (rig != null) rig.close();
+    }
+
+    @Test
+    public void drainOfflineBacklog() throws Exception {
+        AppDatabase db = rig.db;
+        LocationDao dao = db.locationDao();
+        int seeded = rig.onDb(() -> seed(db, days * 86_400 / intervalSec, intervalSec));
+        assertEquals(seeded, (int) rig.onDb(dao::countPending));
+        File dbFile = rig.context.getDatabasePath("offsync_native_db");
+        long seededDbBytes = dbBytes(dbFile);
+
+        resetPeakHeap();
+        long start = System.nanoTime();
+        int runs = 0;
+        int retries = 0;
+        int pending;
+        while ((pending = rig.onDb(dao::countPending)) > 0 && runs < MAX_RUNS) {
+            // Back-to-back runs: WorkManager backoff is left out so only the drain itself is measured
+            SyncMetrics.BACKLOG.set(pending);
+            LocationSyncWorker worker = TestWorkerBuilder.from(rig.context, LocationSyncWorker.class, executor)
+                    .setRunAttemptCount(retries)
+                    .build();
+            ListenableWorker.Result result = rig.onDb(worker::doWork);
+            retries = result instanceof ListenableWorker.Result.Retry ? retries + 1 : 0;
+            runs++;
+        }
+        long elapsedNs = System.nanoTime() - start;
+        long peakHeap = peakHeap();
+
+        assertEquals("backlog not drained", 0, (int) rig.onDb(dao::countPending));
+        assertEquals("server rejected signatures", 0, ingest.badSignatures.get());
+        assertEquals(seeded, ingest.points.get());
+
+        JSONObject report = new JSONObject();
+        report.put("days", days);
+        report.put("intervalSec", intervalSec);
+        report.put("unmetered", unmetered);
+        report.put("latencyMs", latencyMs);
+        report.put("kbps", kbps);
+        report.put("failureRate", failureRate);
+        report.put("points", seeded);
+        report.put("workerRuns", runs);
+        report.put("requests", ingest.requests.get());
+        report.put("failedRequests", ingest.failures.get());
+        report.put("drainMs", TimeUnit.NANOSECONDS.toMillis(elapsedNs));
+        report.put("pointsPerSec", seeded / (elapsedNs / 1e9));
+        report.put("wireBytesPerPoint", (double) ingest.wireBytes.get() / seeded);
+        report.put("jsonBytesPerPoint", (double) ingest.jsonBytes.get() / seeded);
+        report.put("dbBytesSeeded", seededDbBytes);
+        report.put("dbBytesDrained", dbBytes(dbFile));
+        report.put("peakHeapBytes", peakHeap);
+        System.out.println("sync-soak " + report.toString(2));
+        File out = new File("build/reports/soak/sync-soak.json");
+        if (out.getParentFile().isDirectory() || out.getParentFile().mkdirs()) {
+            try (FileWriter w = new FileWriter(out)) {
+                w.write(report.toString(2));
+            }
+        }
+    }
+
+    /** Random walk with GPS-like jitter, inserted in transactions of 5k rows. */
+    private static int seed(AppDatabase db, int count, int intervalSec) {
+        Random random = new Random(7);
+        long[] time = {SyncTestRig.SEED_BASE};
+        double[] pos = {12.9716, 77.5946};
+        for (int written = 0; written < count; ) {
+            int chunk = Math.min(5_000, count - written);
+            db.runInTransaction(() -> {
+                for (int i = 0; i < chunk; i++) {
+                    pos[0] += (random.nextDouble() - 0.5) * 2e-4;
+                    pos[1] += (random.nextDouble() - 0.5) * 2e-4;
+                    LocationPointEntity e = new LocationPointEntity();
+                    e.capturedAt = TrackAggregator.formatTime(time[0]);
+                    e.lat = pos[0];
+                    e.lng = pos[1];
+                    e.accuracyM = 3 + random.nextInt(25);
+                    e.provider = random.nextInt(10) == 0 ? "network" : "gps";
+                    e.batteryPct = 100 - (int) ((time[0] / 3_600_000L) % 80);
+                    e.isCharging = random.nextInt(5) == 0 ? 1 : 0;
+                    e.accuracyMode = "balanced";
+                    e.isUploaded = 0;
+                    db.locationDao().insert(e);
+                    time[0] += intervalSec * 1000L;
+                }
+            });
+            written += chunk;
+        }
+        return count;
+    }
+
+    private static long dbBytes(File dbFile) {
+        long total = 0;
+        for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+            total += new File(dbFile.getPath() + suffix).length();
+        }
+        return total;
+    }
+
+    private static void resetPeakHeap() {
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) pool.resetPeakUsage();
+        }
+    }
+
+    private static long peakHeap() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peak += pool.getPeakUsage().getUsed();
+        }
+        return peak;
+    }
+
+    /**
+     * Local {@code /ingest/locations}: verifies HMAC-SHA256 over {@code METHOD:PATH:TIMESTAMP:BODY}
+     * on the inflated body with the same freshness and replay rules as the device token guard.
+     */
+    static final class IngestStandIn extends Dispatcher {
+        private static final long MAX_DRIFT_MS = 5 * 60 * 1000L;
+
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong failures = new AtomicLong();
+        final AtomicLong badSignatures = new AtomicLong();
+        final AtomicLong points = new AtomicLong();
+        final AtomicLong wireBytes = new AtomicLong();
+        final AtomicLong jsonBytes = new AtomicLong();
+        private final Set<String> seenSignatures = ConcurrentHashMap.newKeySet();
+        private final String token;
+        private final long latencyMs;
+        private final long bytesPerSecond;
+        private final double failureRate;
+        private final Random random;
+
+        IngestStandIn(String token, long latencyMs, long bytesPerSecond, double failureRate, Random random) {
+            this.token = token;
+            this.latencyMs = latencyMs;
+            this.bytesPerSecond = bytesPerSecond;
+            this.failureRate = failureRate;
+            this.random = random;
+        }
+
+        /** MockWebServer applies the peeked throttle while reading the request body, i.e. the upload. */
+        @Override
+        public MockResponse peek() {
+            MockResponse r = new MockResponse();
+            if (bytesPerSecond > 0) r.throttleBody(Math.max(1, bytesPerSecond / 10), 100, TimeUnit.MILLISECONDS);
+            return r;
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            requests.incrementAndGet();
+            MockResponse response = new MockResponse().setHeadersDelay(latencyMs, TimeUnit.MILLISECONDS);
+            if (!"POST".equals(request.getMethod()) || !"/ingest/locations".equals(request.getPath())) {
+                return response.setResponseCode(404);
+            }
+            try {
+                wireBytes.addAndGet(request.getBodySize());
+                byte[] body = body(request);
+                if (!verify(request, body)) {
+                    badSignatures.incrementAndGet();
+                    return response.setResponseCode(401);
+                }
+                if (random.nextDouble() < failureRate) {
+                    failures.incrementAndGet();
+                    return response.setResponseCode(503);
+                }
+                jsonBytes.addAndGet(body.length);
+                points.addAndGet(new JSONArray(new String(body, StandardCharsets.UTF_8)).length());
+                return response.setResponseCode(201).setBody("{\"ok\":true}");
+            } catch (Exception e) {
+                return response.setResponseCode(400).setBody(String.valueOf(e.getMessage()));
+            }
+        }
+
+        private static byte[] body(RecordedRequest request) throws Exception {
+            if (!"gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+                return request.getBody().readByteArray();
+            }
+            try (InputStream in = new GZIPInputStream(request.getBody().inputStream())) {
+                return in.readAllBytes();
+            }
+        }
+
+        private boolean verify(RecordedRequest request, byte[] body) throws Exception {
+            String ts = request.getHeader("x-timestamp");
+            String sig = request.getHeader("x-signature");
+            if (ts == null || sig == null || !token.equals(request.getHeader("x-device-token"))) return false;
+            if (Math.abs(System.currentTimeMillis() - Long.parseLong(ts)) > MAX_DRIFT_MS) return false;
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(token.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update((request.getMethod() + ":" + request.getPath() + ":" + ts + ":").getBytes(StandardCharsets.UTF_8));
+            byte[] expected = mac.doFinal(body);
+            byte[] provided = hex(sig);
+            return provided != null && MessageDigest.isEqual(expected, provided) && seenSignatures.add(sig);
+        }
+
+        private static byte[] hex(String s) {
+            if (s.length() % 2 != 0) return null;
+            byte[] out = new byte[s.length() / 2];
+            for (int i = 0; i < out.length; i++) {
+                int hi = Character.digit(s.charAt(2 * i), 16);
+                int lo = Character.digit(s.charAt(2 * i + 1), 16);
+                if (hi < 0 || lo < 0) return null;
+                out[i] = (byte) (hi << 4 | lo);
+            }
+            return out;
+        }
+    }
+}
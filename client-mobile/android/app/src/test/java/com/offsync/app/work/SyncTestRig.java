@@ -0,0 +1,99 @@
+package com.offsync.app.work;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkCapabilities;
+import androidx.test.core.app.ApplicationProvider;
+import com.offsync.app.db.AppDatabase;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.db.TrackAggregator;
+import java.time.Instant;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import okhttp3.mockwebserver.MockWebServer;
+import org.robolectric.shadows.ShadowNetworkCapabilities;
+
+/**
+ * Shared setup for Robolectric tests that drive the database and the sync workers: an empty
+ * database, a thread to query it from, the server and device the workers talk as, and the network
+ * they see. Build one in {@code @Before} and {@link #close} it in {@code @After}.
+ */
+public final class SyncTestRig {
+    /** First capturedAt {@link #seed} writes; point {@code i} is {@code i} seconds later. */
+    public static final long SEED_BASE = Instant.parse("2026-03-01T00:00:00Z").toEpochMilli();
+
+    public final Context context;
+    public final AppDatabase db;
+    private final ExecutorService threads = Executors.newSingleThreadExecutor();
+
+    /** Starts from an empty database and default app prefs. */
+    public SyncTestRig() throws Exception {
+        context = ApplicationProvider.getApplicationContext();
+        context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE).edit().clear().apply();
+        db = AppDatabase.getInstance(context);
+        onDb(() -> {
+            db.clearAllTables();
+            return null;
+        });
+    }
+
+    /** Room refuses queries on the main thread, which is where Robolectric runs the test body. */
+    public <T> T onDb(Callable<T> query) throws Exception {
+        return threads.submit(query).get(1, TimeUnit.MINUTES);
+    }
+
+    /** Points the sync at {@code server} and signs its requests as {@code deviceId}. */
+    public void connect(MockWebServer server, String deviceId, String deviceToken) {
+        String url = server.url("/").toString();
+        context.getSharedPreferences("app_prefs", Context.MODE_PRIVATE).edit()
+                .putString("runtime_offsync_server_url", url.substring(0, url.length() - 1))
+                .apply();
+        context.getSharedPreferences("CapacitorStorage", Context.MODE_PRIVATE).edit()
+                .putString("device_id", deviceId)
+                .putString("device_token", deviceToken)
+                .apply();
+    }
+
+    /** Makes the active network unmetered Wi-Fi, or metered cellular. */
+    public void network(boolean unmetered) {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkCapabilities caps = ShadowNetworkCapabilities.newInstance();
+        shadowOf(caps).addTransportType(unmetered ? NetworkCapabilities.TRANSPORT_WIFI : NetworkCapabilities.TRANSPORT_CELLULAR);
+        shadowOf(caps).addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET);
+        if (unmetered) shadowOf(caps).addCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        shadowOf(cm).setNetworkCapabilities(cm.getActiveNetwork(), caps);
+    }
+
+    /** Inserts pending GPS fixes {@code from} to {@code from + count - 1}, one second apart, in one transaction. */
+    public void seed(int from, int count) throws Exception {
+        onDb(() -> db.runInTransaction(() -> {
+            for (int i = from; i < from + count; i++) {
+                LocationPointEntity e = point(SEED_BASE + i * 1000L, 0);
+                e.lat = 12.9716 + i * 1e-5;
+                db.locationDao().insert(e);
+            }
+            return null;
+        }));
+    }
+
+    /** A balanced-mode GPS fix at {@code capturedAtMs}, not yet inserted. */
+    public static LocationPointEntity point(long capturedAtMs, int uploaded) {
+        LocationPointEntity e = new LocationPointEntity();
+        e.capturedAt = TrackAggregator.formatTime(capturedAtMs);
+        e.lat = 12.9716;
+        e.lng = 77.5946;
+        e.accuracyM = 5;
+        e.provider = "gps";
+        e.accuracyMode = "balanced";
+        e.isUploaded = uploaded;
+        return e;
+    }
+
+    public void close() {
+        threads.shutdownNow();
+    }
+}
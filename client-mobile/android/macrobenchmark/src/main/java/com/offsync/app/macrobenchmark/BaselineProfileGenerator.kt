@@ -0,0 +1,31 @@
+package com.offsync.app.macrobenchmark
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Captures the classes and methods used by cold start, the first saveLocation and the first
+ * sync run. The baselineprofile plugin writes the output to
+ * app/src/main/generated/baselineProfiles; check it in and drop the seed rules in
+ * app/src/main/baseline-prof.txt.
+ */
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+    @get:Rule
+    val rule = BaselineProfileRule()
+
+    @Test
+    fun generate() = rule.collect(
+        packageName = TARGET_PACKAGE,
+        includeInStartupProfile = true,
+    ) {
+        prepareLocation()
+        pressHome()
+        startActivityAndWait()
+        waitForWebUi()
+        startTrackingAndAwaitFirstSync()
+    }
+}
@@ -0,0 +1,48 @@
+package com.offsync.app.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.ExperimentalMetricApi
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.TraceSectionMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * First saveLocation and first sync worker run after a cold start, measured from the
+ * offsync:* trace sections the app emits while a trace is being recorded.
+ */
+@OptIn(ExperimentalMetricApi::class)
+@RunWith(AndroidJUnit4::class)
+class FirstSyncBenchmark {
+    @get:Rule
+    val rule = MacrobenchmarkRule()
+
+    @Test
+    fun firstSyncNoCompilation() = firstSync(CompilationMode.None())
+
+    @Test
+    fun firstSyncBaselineProfile() = firstSync(CompilationMode.Partial(BaselineProfileMode.Require))
+
+    private fun firstSync(compilationMode: CompilationMode) = rule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(
+            TraceSectionMetric("offsync:bridge.saveLocation", TraceSectionMetric.Mode.First),
+            TraceSectionMetric("offsync:db.open", TraceSectionMetric.Mode.First),
+            TraceSectionMetric("offsync:db.insert", TraceSectionMetric.Mode.First),
+            TraceSectionMetric("offsync:sync.query", TraceSectionMetric.Mode.First),
+            TraceSectionMetric("offsync:sync.serialize", TraceSectionMetric.Mode.First),
+        ),
+        compilationMode = compilationMode,
+        startupMode = StartupMode.COLD,
+        iterations = 5,
+        setupBlock = { prepareLocation() },
+    ) {
+        startActivityAndWait()
+        waitForWebUi()
+        startTrackingAndAwaitFirstSync()
+    }
+}
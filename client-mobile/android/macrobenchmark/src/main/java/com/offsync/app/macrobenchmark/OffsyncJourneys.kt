@@ -0,0 +1,64 @@
+package com.offsync.app.macrobenchmark
+
+import android.os.SystemClock
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Until
+import java.util.regex.Pattern
+
+const val TARGET_PACKAGE = "com.offsync.app"
+
+private const val UI_TIMEOUT_MS = 15_000L
+// Upper bound for the one-off sync the first insert schedules; the wait ends as soon as it has run
+private const val FIRST_SYNC_TIMEOUT_MS = 60_000L
+private const val POLL_MS = 250L
+// "Last Captured" shows the capture time once the first point has been saved
+private val CAPTURE_TIME = Pattern.compile("\\d{1,2}:\\d{2}:\\d{2}.*")
+private const val SYNC_JOB_SERVICE = "androidx.work.impl.background.systemjob.SystemJobService"
+
+/**
+ * Grant location access and install a test GPS provider so the web layer gets a fix without
+ * user interaction. Runs from the shell user, which may add mock providers on API 31+.
+ */
+fun MacrobenchmarkScope.prepareLocation() {
+    device.executeShellCommand("pm grant $packageName android.permission.ACCESS_FINE_LOCATION")
+    device.executeShellCommand("pm grant $packageName android.permission.ACCESS_COARSE_LOCATION")
+    device.executeShellCommand("pm grant $packageName android.permission.POST_NOTIFICATIONS")
+    device.executeShellCommand("cmd location set-location-enabled true")
+    device.executeShellCommand("cmd location providers add-test-provider gps")
+    device.executeShellCommand("cmd location providers set-test-provider-enabled gps true")
+    device.executeShellCommand("cmd location providers set-test-provider-location gps --location 12.9716,77.5946 --accuracy 5")
+}
+
+/** Wait for the web UI to render; the WebView exposes its buttons to UiAutomator by text. */
+fun MacrobenchmarkScope.waitForWebUi() {
+    device.wait(Until.hasObject(By.text("Start Tracking")), UI_TIMEOUT_MS)
+}
+
+/** Start tracking and wait until the first point has been saved and the sync worker has run. */
+fun MacrobenchmarkScope.startTrackingAndAwaitFirstSync() {
+    val syncRunsBefore = finishedSyncJobs()
+    device.findObject(By.text("Start Tracking"))?.click()
+    device.wait(Until.hasObject(By.text("Stop Tracking")), UI_TIMEOUT_MS)
+    check(device.wait(Until.hasObject(By.text(CAPTURE_TIME)), UI_TIMEOUT_MS)) { "No point was captured" }
+    awaitSyncJobAfter(syncRunsBefore)
+    device.findObject(By.text("Stop Tracking"))?.click()
+}
+
+/**
+ * WorkManager runs the sync worker as a JobScheduler job; wait until one more of the app's jobs
+ * has stopped than had before, whether the upload succeeded or was rescheduled.
+ */
+private fun MacrobenchmarkScope.awaitSyncJobAfter(finishedBefore: Int) {
+    val deadline = SystemClock.uptimeMillis() + FIRST_SYNC_TIMEOUT_MS
+    while (finishedSyncJobs() <= finishedBefore) {
+        check(SystemClock.uptimeMillis() < deadline) { "Sync worker did not run" }
+        SystemClock.sleep(POLL_MS)
+    }
+}
+
+/** Stopped WorkManager jobs of the app in the JobScheduler history. */
+private fun MacrobenchmarkScope.finishedSyncJobs(): Int =
+    device.executeShellCommand("dumpsys jobscheduler $packageName")
+        .lineSequence()
+        .count { "STOP" in it && "$packageName/$SYNC_JOB_SERVICE" in it }
@@ -0,0 +1,57 @@
+package com.offsync.app.bench;
+
+import com.offsync.app.db.LocationPointEntity;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Deterministic inputs shaped like real device data. */
+final class Fixtures {
+    static final String DEVICE_TOKEN = "3f1c9a7e5b2d4c6e8a0b1d3f5e7c9a1b";
+
+    private Fixtures() {
+    }
+
+    /** A walk of one fix every 30 s, with the optional fields populated the way the JS layer does. */
+    static List<LocationPointEntity> points(int count) {
+        Random rnd = new Random(42);
+        List<LocationPointEntity> out = new ArrayList<>(count);
+        long t = 1_760_000_000_000L;
+        double lat = 12.9715987, lng = 77.5945627;
+        for (int i = 0; i < count; i++) {
+            LocationPointEntity e = new LocationPointEntity();
+            e.id = i + 1;
+            e.capturedAt = Instant.ofEpochMilli(t).toString();
+            e.lat = lat;
+            e.lng = lng;
+            e.accuracyM = 3 + rnd.nextDouble() * 40;
+            e.provider = i % 5 == 0 ? "network" : "gps";
+            e.batteryPct = 100 - i % 100;
+            e.isCharging = i % 7 == 0 ? 1 : 0;
+            e.accuracyMode = "balanced";
+            e.isUploaded = 0;
+            out.add(e);
+            t += 30_000;
+            lat += (rnd.nextDouble() - 0.5) * 2e-4;
+            lng += (rnd.nextDouble() - 0.5) * 2e-4;
+        }
+        return out;
+    }
+
+    /** Sender numbers as they arrive from different carriers and as users type them into settings. */
+    static String[] phoneCorpus(String kind) {
+        switch (kind) {
+            case "e164":
+                return new String[] {"+919123456789", "+15551234567", "+447911123456", "+4915123456789", "+61412345678"};
+            case "national":
+                return new String[] {"9123456789", "09123456789", "08041234567", "7012345678", "02212345678"};
+            case "formatted":
+                return new String[] {"+1 (555) 123-4567", "+91 91234 56789", "+44 7911 123456", "091234-56789", "(080) 4123 4567"};
+            case "invalid":
+                return new String[] {"VK-AIRTEL", "12345", "", "+", "JM-HDFCBK"};
+            default:
+                throw new IllegalArgumentException(kind);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.offsync.app.bench;
+
+import com.offsync.app.db.LocationBatch;
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.work.IngestJsonWriter;
+import com.offsync.app.work.IngestPayload;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Steady-state garbage of one upload batch: entity + JSONObject path versus the reusable
+ * LocationBatch + IngestJsonWriter path. Compare gc.alloc.rate.norm divided by batchSize.
+ * The cursor read is simulated by copying primitives and chars into the reused batch, which is
+ * what LocationBatchReader does from the cursor window.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestAllocationBenchmark {
+    @Param({"50", "200"})
+    public int batchSize;
+
+    private List<LocationPointEntity> entities;
+    private LocationBatch rows;
+    private LocationBatch batch;
+    private final IngestJsonWriter writer = new IngestJsonWriter();
+
+    @Setup
+    public void setUp() {
+        entities = Fixtures.points(batchSize);
+        rows = new LocationBatch(batchSize);
+        for (LocationPointEntity e : entities) {
+            rows.add(e.id, e.capturedAt, e.lat, e.lng, e.accuracyM, e.provider, e.batteryPct, e.isCharging, e.accuracyMode);
+        }
+        batch = new LocationBatch(batchSize);
+    }
+
+    @Benchmark
+    public String entityJson() throws Exception {
+        List<Integer> ids = new ArrayList<>(batchSize);
+        return IngestPayload.build(entities, ids);
+    }
+
+    @Benchmark
+    public int batchWriter() {
+        batch.clear();
+        for (int i = 0; i < rows.size; i++) {
+            int r = batch.size++;
+            batch.ids[r] = rows.ids[i];
+            batch.capturedAt.set(r, rows.capturedAt.chars[i], rows.capturedAt.length[i]);
+            batch.lat[r] = rows.lat[i];
+            batch.lng[r] = rows.lng[i];
+            batch.accuracyM[r] = rows.accuracyM[i];
+            batch.provider.set(r, rows.provider.chars[i], rows.provider.length[i]);
+            batch.batteryPct[r] = rows.batteryPct[i];
+            batch.isCharging[r] = rows.isCharging[i];
+            batch.accuracyMode.set(r, rows.accuracyMode.chars[i], rows.accuracyMode.length[i]);
+        }
+        writer.write(batch);
+        return writer.length();
+    }
+}
@@ -0,0 +1,50 @@
+package com.offsync.app.bench;
+
+import com.offsync.app.db.LocationPointEntity;
+import com.offsync.app.work.IngestPayload;
+import com.offsync.app.work.RequestSigner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/** One upload as LocationSyncWorker does it: serialize the batch, then sign the body. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IngestPayloadBenchmark {
+    @Param({"1", "10", "50", "200"})
+    public int batchSize;
+
+    private List<LocationPointEntity> points;
+    private String body;
+
+    @Setup
+    public void setUp() throws Exception {
+        points = Fixtures.points(batchSize);
+        body = IngestPayload.build(points, null);
+    }
+
+    @Benchmark
+    public String build() throws Exception {
+        return IngestPayload.build(points, new ArrayList<>(batchSize));
+    }
+
+    @Benchmark
+    public String sign() throws Exception {
+        return RequestSigner.sign(Fixtures.DEVICE_TOKEN, "POST", "/ingest/locations", "1760000000000", body);
+    }
+
+    @Benchmark
+    public String buildAndSign() throws Exception {
+        String payload = IngestPayload.build(points, new ArrayList<>(batchSize));
+        return RequestSigner.sign(Fixtures.DEVICE_TOKEN, "POST", "/ingest/locations", "1760000000000", payload);
+    }
+}
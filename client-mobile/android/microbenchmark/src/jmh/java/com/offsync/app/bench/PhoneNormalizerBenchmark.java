@@ -0,0 +1,39 @@
+package com.offsync.app.bench;
+
+import com.offsync.app.PhoneNormalizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Normalization runs on every incoming SMS and every number added in settings. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PhoneNormalizerBenchmark {
+    private static final int CORPUS_SIZE = 5;
+
+    @Param({"e164", "national", "formatted", "invalid"})
+    public String corpus;
+
+    private String[] numbers;
+
+    @Setup
+    public void setUp() {
+        numbers = Fixtures.phoneCorpus(corpus);
+        if (numbers.length != CORPUS_SIZE) throw new IllegalStateException("corpus size");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void normalize(Blackhole bh) {
+        for (String n : numbers) bh.consume(PhoneNormalizer.normalize(n));
+    }
+}
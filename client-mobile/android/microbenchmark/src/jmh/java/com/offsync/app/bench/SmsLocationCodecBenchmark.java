@@ -0,0 +1,33 @@
+package com.offsync.app.bench;
+
+import com.offsync.app.SmsLocationCodec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/** The reply body built by LocationPermissionHelper.buildSmsMessage and SmsLocationWorker. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SmsLocationCodecBenchmark {
+    private static final long NOW = 1_760_000_000_000L;
+
+    @Param({"false", "true"})
+    public boolean machineReadable;
+
+    @Benchmark
+    public String encode() {
+        return SmsLocationCodec.encode(12.9715987, 77.5945627, 4.7, NOW - 180_000L, NOW, "gps", machineReadable);
+    }
+
+    @Benchmark
+    public int segmentCount() {
+        return SmsLocationCodec.segmentCount(
+                SmsLocationCodec.encode(51.5007292, -0.1246254, 12, NOW - 7_200_000L, NOW, "fused", machineReadable));
+    }
+}
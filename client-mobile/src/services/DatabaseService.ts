@@ -1,7 +1,6 @@
-import { CapacitorSQLite, SQLiteConnection, SQLiteDBConnection } from '@capacitor-community/sqlite';
-import { Capacitor } from '@capacitor/core';
+import { Capacitor, registerPlugin } from '@capacitor/core';
 
-const DB_NAME = 'offsync_db';
+const NativeSync = registerPlugin<any>('NativeSync');
 
 export interface LocationPoint {
     id?: number;
@@ -16,193 +15,112 @@ export interface LocationPoint {
     isUploaded: number; // 0 = false, 1 = true
 }
 
+/**
+ * Location store used by the UI and the capture pipeline.
+ *
+ * On Android the native Room database is the only store: writes go through
+ * NativeSync.saveLocation (capture filter, aggregates, quota, upload scheduling) and reads
+ * through the plugin. Older releases also kept a queue in a separate SQLite file; init()
+ * asks the native side to import it once and delete it.
+ */
 class DatabaseService {
-    private sqlite: SQLiteConnection;
-    private db: SQLiteDBConnection | null = null;
-    private isWeb = false;
+    private isNative = false;
 
-    // In-memory fallback for web (SQLite plugin is native-only)
+    // In-memory fallback for web (the native store is Android-only)
     private memoryStore: LocationPoint[] = [];
     private nextId = 1;
 
     constructor() {
-        this.sqlite = new SQLiteConnection(CapacitorSQLite);
-        this.isWeb = !Capacitor.isNativePlatform();
+        this.isNative = Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android';
     }
 
     async init() {
-        if (this.isWeb) {
+        if (!this.isNative) {
             console.log('Database: using in-memory fallback (web mode)');
             return;
         }
 
         try {
-            // Attempt to obtain DB encryption secret from native side (Android EncryptedSharedPreferences)
-            let secret: string | undefined = undefined;
-            try {
-                const plugins = (Capacitor as any).Plugins || (window as any).Capacitor?.Plugins;
-                if (plugins && plugins.NativeSync && typeof plugins.NativeSync.getEncryptionKey === 'function') {
-                    const r = await plugins.NativeSync.getEncryptionKey();
-                    secret = r?.secret;
-                }
-                if (secret && (CapacitorSQLite as any).setEncryptionSecret) {
-                    try {
-                        await (CapacitorSQLite as any).setEncryptionSecret({ password: secret });
-                        console.log('Database: encryption secret set for native sqlite');
-                    } catch (e) {
-                        console.warn('Failed to set encryption secret on sqlite plugin', e);
-                    }
-                }
-            } catch (e) {
-                console.warn('Could not obtain native DB encryption key', e);
+            const r = await NativeSync.importLegacyQueue();
+            if (r?.imported || r?.duplicates) {
+                console.log(`Database: imported ${r.imported} queued points (${r.duplicates} already stored)`);
             }
-            // Create connection
-            // If we obtained a secret, request an encrypted connection; otherwise fallback to no-encryption
-            const encryptedFlag = !!secret;
-            const mode = encryptedFlag ? 'encryption' : 'no-encryption';
-            this.db = await this.sqlite.createConnection(
-                DB_NAME,
-                encryptedFlag,
-                mode,
-                1,
-                false
-            );
-
-            // Open connection
-            await this.db.open();
-
-            // Create tables
-            const createQuery = `
-                CREATE TABLE IF NOT EXISTS pending_location_points (
-                    id INTEGER PRIMARY KEY AUTOINCREMENT,
-                    capturedAt TEXT NOT NULL,
-                    lat REAL NOT NULL,
-                    lng REAL NOT NULL,
-                    accuracyM REAL NOT NULL,
-                    provider TEXT,
-                    batteryPct REAL,
-                    isCharging INTEGER,
-                    accuracyMode TEXT,
-                    isUploaded INTEGER DEFAULT 0
-                );
-            `;
-
-            // Migration guard: add accuracyMode column for existing installs
-            const migrationQuery = `
-                ALTER TABLE pending_location_points ADD COLUMN accuracyMode TEXT;
-            `;
-            await this.db.execute(createQuery);
-
-            // Run migration — silently ignore if column already exists
-            try {
-                await this.db.execute(migrationQuery);
-            } catch (_migrationErr) {
-                // Column already exists — safe to ignore
+            if (!r?.done) {
+                console.warn('Database: legacy queue not imported yet; will retry on next launch');
             }
-
-            console.log('Database initialized');
-
         } catch (error) {
-            console.error('Error initializing database', error);
+            console.error('Error importing legacy location queue', error);
         }
     }
 
     async addLocation(location: Omit<LocationPoint, 'id' | 'isUploaded'>) {
-        if (this.isWeb) {
+        if (!this.isNative) {
             const point: LocationPoint = { ...location, id: this.nextId++, isUploaded: 0 };
             this.memoryStore.push(point);
             console.log(`[Web] Location saved in memory with ID: ${point.id}`);
             return point.id;
         }
 
-        if (!this.db) {
-            console.error('Database not initialized');
-            return;
-        }
-
-        const query = `
-            INSERT INTO pending_location_points (capturedAt, lat, lng, accuracyM, provider, batteryPct, isCharging, accuracyMode, isUploaded)
-            VALUES (?, ?, ?, ?, ?, ?, ?, ?, 0)
-        `;
-        const values = [
-            location.capturedAt,
-            location.lat,
-            location.lng,
-            location.accuracyM,
-            location.provider,
-            location.batteryPct,
-            location.isCharging ? 1 : 0,
-            location.accuracyMode ?? null,
-        ];
-
         try {
-            const res = await this.db.run(query, values);
-            if (res.changes && res.changes.lastId) {
-                console.log(`Location saved locally with ID: ${res.changes.lastId}`);
-                return res.changes.lastId;
+            const r = await NativeSync.saveLocation({
+                capturedAt: location.capturedAt,
+                lat: location.lat,
+                lng: location.lng,
+                accuracyM: location.accuracyM,
+                provider: location.provider,
+                batteryPct: location.batteryPct,
+                isCharging: location.isCharging,
+                accuracyMode: location.accuracyMode,
+            });
+            if (r && r.saved === false) {
+                console.log(`Location rejected by capture filter: ${r.rejected}`);
             }
         } catch (error) {
             console.error('Error saving location locally', error);
         }
     }
 
+    // The native sync marks points as it uploads them; only the web store is marked from JS
     async markAsUploaded(id: number) {
-        if (this.isWeb) {
-            const point = this.memoryStore.find(p => p.id === id);
-            if (point) point.isUploaded = 1;
-            return;
-        }
-        if (!this.db) return;
-        const query = `UPDATE pending_location_points SET isUploaded = 1 WHERE id = ?`;
-        await this.db.run(query, [id]);
+        if (this.isNative) return;
+        const point = this.memoryStore.find(p => p.id === id);
+        if (point) point.isUploaded = 1;
     }
 
     async markBatchAsUploaded(ids: number[]) {
-        if (this.isWeb) {
-            this.memoryStore.forEach(p => { if (ids.includes(p.id!)) p.isUploaded = 1; });
-            return;
-        }
-        if (!this.db || ids.length === 0) return;
-        const placeholders = ids.map(() => '?').join(',');
-        const query = `UPDATE pending_location_points SET isUploaded = 1 WHERE id IN (${placeholders})`;
-        await this.db.run(query, ids);
+        if (this.isNative) return;
+        this.memoryStore.forEach(p => { if (ids.includes(p.id!)) p.isUploaded = 1; });
     }
 
     async getPendingLocations(limit?: number): Promise<LocationPoint[]> {
-        if (this.isWeb) {
+        if (!this.isNative) {
             const pending = this.memoryStore.filter(p => p.isUploaded === 0);
             return limit ? pending.slice(0, limit) : pending;
         }
-        if (!this.db) return [];
-        let query = `SELECT * FROM pending_location_points WHERE isUploaded = 0 ORDER BY capturedAt ASC`;
-        if (limit) {
-            query += ` LIMIT ${limit}`;
+        try {
+            const r = await NativeSync.getPendingLocations(limit ? { limit } : {});
+            return (r?.points || []).map((p: any) => ({ ...p, isUploaded: p.isUploaded ? 1 : 0 }));
+        } catch (error) {
+            console.error('Error reading pending locations', error);
+            return [];
         }
-        const res = await this.db.query(query);
-        return (res.values as LocationPoint[]) || [];
     }
 
     async getPendingCount(): Promise<number> {
-        if (this.isWeb) {
+        if (!this.isNative) {
             return this.memoryStore.filter(p => p.isUploaded === 0).length;
         }
-        if (!this.db) return 0;
-        const query = `SELECT COUNT(*) as count FROM pending_location_points WHERE isUploaded = 0`;
-        const res = await this.db.query(query);
-        if (res.values && res.values.length > 0) {
-            return res.values[0].count;
+        try {
+            const r = await NativeSync.getPendingCount();
+            return r?.count ?? 0;
+        } catch {
+            return 0;
         }
-        return 0;
     }
 
     async close() {
-        if (this.isWeb) {
+        if (!this.isNative) {
             this.memoryStore = [];
-            return;
-        }
-        if (this.db) {
-            await this.sqlite.closeConnection(DB_NAME, false);
-            this.db = null;
         }
     }
 }
@@ -1,5 +1,8 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
 import { Preferences } from '@capacitor/preferences';
 
+const NativeSync = registerPlugin<any>('NativeSync');
+
 // ─── Accuracy Mode ───────────────────────────────────────────────────
 export type AccuracyMode = 'high_accuracy' | 'balanced_power';
 
@@ -67,9 +70,20 @@ export async function saveAccuracyMode(mode: AccuracyMode): Promise<void> {
     await Preferences.set({ key: PREF_KEY, value: mode });
 }
 
-/** Load persisted accuracy mode (defaults to `high_accuracy`). */
+/**
+ * Load persisted accuracy mode. Without a saved choice the device policy
+ * decides, falling back to `high_accuracy`.
+ */
 export async function loadAccuracyMode(): Promise<AccuracyMode> {
     const { value } = await Preferences.get({ key: PREF_KEY });
-    if (value === 'balanced_power') return 'balanced_power';
+    if (value === 'balanced_power' || value === 'high_accuracy') return value;
+    if (Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android') {
+        try {
+            const policy = await NativeSync.getRemotePolicy();
+            if (policy?.accuracyMode === 'balanced_power') return 'balanced_power';
+        } catch {
+            // Plugin unavailable; use the built-in default
+        }
+    }
     return 'high_accuracy'; // default
 }
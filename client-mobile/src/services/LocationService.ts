@@ -14,7 +14,6 @@ import {
 import { databaseService } from './DatabaseService';
 import { syncService } from './SyncService';
 import { permissionService } from './PermissionService';
-const NativeSync = registerPlugin<any>('NativeSync');
 
 // ─── Types ───────────────────────────────────────────────────────────
 
@@ -330,26 +329,9 @@ export class LocationService {
         // Notify listeners
         this.listeners.forEach(listener => listener(point));
 
-        // 1. Save to local DB first
+        // 1. Save to the local store (the native Room database on Android, which also schedules the upload)
         try {
             await databaseService.addLocation(point);
-            // Also persist natively (Room) and trigger native WorkManager sync on Android
-            try {
-                if (Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android') {
-                    NativeSync.saveLocation({
-                        capturedAt: point.capturedAt,
-                        lat: point.lat,
-                        lng: point.lng,
-                        accuracyM: point.accuracyM,
-                        provider: point.provider,
-                        batteryPct: point.batteryPct,
-                        isCharging: point.isCharging,
-                        accuracyMode: point.accuracyMode,
-                    }).catch((e: any) => console.warn('[NativeSync] saveLocation failed', e));
-                }
-            } catch (e) {
-                console.warn('[LocationService] Native sync call failed', e);
-            }
         } catch (e) {
             console.error('Failed to save location locally', e);
         }
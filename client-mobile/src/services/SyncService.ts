@@ -1,6 +1,12 @@
+import { Capacitor, registerPlugin } from '@capacitor/core';
 import { Network } from '@capacitor/network';
 import { databaseService } from './DatabaseService';
 import { apiClient } from '../api/client';
+const NativeSync = registerPlugin<any>('NativeSync');
+
+// On Android the native store uploads its own points (WorkManager, scheduled on every write);
+// this loop only drains the in-memory store used on web.
+const isAndroid = Capacitor.isNativePlatform() && Capacitor.getPlatform() === 'android';
 
 class SyncService {
     private isSyncing = false;
@@ -12,6 +18,7 @@ class SyncService {
     private SYNC_INTERVAL_MS = 30000; // 30 seconds
 
     constructor() {
+        if (isAndroid) return;
         this.initNetworkListener();
         this.startSyncLoop();
     }
@@ -50,6 +57,7 @@ class SyncService {
     }
 
     public async triggerSync() {
+        if (isAndroid) return;
         if (this.isSyncing || !this.isOnline) return;
         if (this.consecutiveFailures >= this.MAX_FAILURES) {
             console.log('Sync paused due to consecutive failures. Waiting for network change or manual trigger.');
@@ -98,6 +106,10 @@ class SyncService {
      * Call this to manually retry after failure limit reached
      */
     public retrySync() {
+        if (isAndroid) {
+            NativeSync.requestSync().catch((e: any) => console.warn('[NativeSync] requestSync failed', e));
+            return;
+        }
         this.consecutiveFailures = 0;
         this.triggerSync();
     }